@@ -280,3 +280,4 @@ makeBuildDesktopTasks()
 makeBuildServiceTasks()
 makeBuildServiceDockerTasks()
 makeAzureTasks()
+makeJmhTasks()
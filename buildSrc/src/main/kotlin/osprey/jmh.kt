@@ -0,0 +1,57 @@
+package osprey
+
+import org.gradle.api.Project
+import org.gradle.api.tasks.JavaExec
+import org.gradle.kotlin.dsl.creating
+import org.gradle.kotlin.dsl.get
+import org.gradle.kotlin.dsl.getValue
+
+
+const val jmhVersion = "1.35"
+
+val Project.jmhResultsPath get() = buildPath / "reports/jmh/results.json"
+
+
+/**
+ * Adds a `jmh` source set (in src/jmh/java) for the JMH microbenchmarks, and a task to run them.
+ *
+ * The benchmarks can use anything in the main and test source sets,
+ * including the test resources, so fixtures can be built from the bundled PDBs and conf spaces.
+ */
+fun Project.makeJmhTasks() {
+
+	val main = sourceSets.main
+	val test = sourceSets.test
+
+	val jmhSources = sourceSets.create("jmh") {
+		compileClasspath += main.output + test.output + main.compileClasspath + test.compileClasspath
+		runtimeClasspath += main.output + test.output + main.runtimeClasspath + test.runtimeClasspath
+	}
+
+	dependencies.add(jmhSources.implementationConfigurationName, "org.openjdk.jmh:jmh-core:$jmhVersion")
+	dependencies.add(jmhSources.annotationProcessorConfigurationName, "org.openjdk.jmh:jmh-generator-annprocess:$jmhVersion")
+
+	@Suppress("UNUSED_VARIABLE")
+	val jmh by tasks.creating(JavaExec::class) {
+		group = "verification"
+		description = "Run the JMH benchmarks, and write the results to ${jmhResultsPath.fileName}. Use -PjmhInclude=regex to pick benchmarks"
+		dependsOn(tasks[jmhSources.classesTaskName])
+		classpath = jmhSources.runtimeClasspath
+		mainClass.set("org.openjdk.jmh.Main")
+
+		// the forked benchmark JVMs need the incubator modules too
+		val moduleArgs = Jvm.moduleArgs.joinToString(" ")
+
+		val include = findProperty("jmhInclude")?.toString()
+		args = listOfNotNull(
+			include,
+			"-jvmArgsAppend", moduleArgs,
+			"-rf", "json",
+			"-rff", jmhResultsPath.toString()
+		)
+
+		doFirst {
+			jmhResultsPath.parent.createFolderIfNeeded()
+		}
+	}
+}
@@ -10,7 +10,8 @@ object Jvm {
 	// add the module dependencies directly to the javac args
 	// I don't think gradle has a good way to handle this yet?
 	val moduleArgs = listOf(
-		"--add-modules=jdk.incubator.foreign"
+		"--add-modules=jdk.incubator.foreign",
+		"--add-modules=jdk.incubator.vector"
 	)
 
 	fun addModuleArgs(args: MutableList<String>?) {
@@ -0,0 +1,62 @@
+package edu.duke.cs.osprey.jmh;
+
+import edu.duke.cs.osprey.astar.conf.ConfAStarTree;
+import edu.duke.cs.osprey.confspace.ConfSearch;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Measures how quickly {@link ConfAStarTree} can enumerate conformations, ie node throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AStarBenchmark {
+
+	private static final int NumConfs = 100;
+
+	private Fixtures.Classic classic;
+
+	@Setup
+	public void setup() {
+		classic = Fixtures.classic();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(NumConfs)
+	public void traditional(Blackhole bh) {
+		ConfAStarTree tree = new ConfAStarTree.Builder(classic.emat, classic.confSpace)
+			.setTraditional()
+			.build();
+		for (int i=0; i<NumConfs; i++) {
+			ConfSearch.ScoredConf conf = tree.nextConf();
+			if (conf == null) {
+				break;
+			}
+			bh.consume(conf);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(NumConfs)
+	public void mplp(Blackhole bh) {
+		ConfAStarTree tree = new ConfAStarTree.Builder(classic.emat, classic.confSpace)
+			.setMPLP(new ConfAStarTree.MPLPBuilder()
+				.setNumIterations(1)
+			)
+			.build();
+		for (int i=0; i<NumConfs; i++) {
+			ConfSearch.ScoredConf conf = tree.nextConf();
+			if (conf == null) {
+				break;
+			}
+			bh.consume(conf);
+		}
+	}
+}
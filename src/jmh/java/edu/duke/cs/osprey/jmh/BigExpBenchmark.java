@@ -0,0 +1,76 @@
+package edu.duke.cs.osprey.jmh;
+
+import edu.duke.cs.osprey.tools.BigExp;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Measures {@link BigExp} arithmetic, like the partition function calculators use to accumulate bounds.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BigExpBenchmark {
+
+	private static final int Size = 1024;
+
+	private final BigExp[] values = new BigExp[Size];
+	private final double[] energies = new double[Size];
+
+	@Setup
+	public void setup() {
+		Random rand = new Random(12345);
+		for (int i=0; i<Size; i++) {
+			values[i] = new BigExp(rand.nextDouble(), rand.nextInt(200) - 100);
+			energies[i] = rand.nextDouble()*20.0 - 10.0;
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(Size)
+	public BigExp add() {
+		BigExp sum = new BigExp(0.0);
+		for (int i=0; i<Size; i++) {
+			sum.add(values[i]);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(Size)
+	public BigExp mult() {
+		BigExp product = new BigExp(1.0);
+		for (int i=0; i<Size; i++) {
+			product.mult(values[i]);
+		}
+		return product;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(Size)
+	public int compare() {
+		int count = 0;
+		for (int i=1; i<Size; i++) {
+			if (values[i].compareTo(values[i - 1]) > 0) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(Size)
+	public BigExp exp() {
+		BigExp sum = new BigExp(0.0);
+		for (int i=0; i<Size; i++) {
+			sum.add(BigExp.exp(energies[i]));
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,44 @@
+package edu.duke.cs.osprey.jmh;
+
+import edu.duke.cs.osprey.kstar.pfunc.BoltzmannCalculator;
+import edu.duke.cs.osprey.kstar.pfunc.PartitionFunction;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Measures {@link BoltzmannCalculator#calc}, which turns every conformation energy into a partition function weight.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoltzmannBenchmark {
+
+	private static final int Size = 1024;
+
+	private final BoltzmannCalculator bcalc = new BoltzmannCalculator(PartitionFunction.decimalPrecision);
+	private final double[] energies = new double[Size];
+
+	@Setup
+	public void setup() {
+		// use energies in the range typical for designs
+		Random rand = new Random(12345);
+		for (int i=0; i<Size; i++) {
+			energies[i] = rand.nextDouble()*100.0 - 80.0;
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(Size)
+	public void calc(Blackhole bh) {
+		for (int i=0; i<Size; i++) {
+			bh.consume(bcalc.calc(energies[i]));
+		}
+	}
+}
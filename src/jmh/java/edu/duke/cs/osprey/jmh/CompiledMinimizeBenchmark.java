@@ -0,0 +1,38 @@
+package edu.duke.cs.osprey.jmh;
+
+import edu.duke.cs.osprey.energy.compiled.CPUConfEnergyCalculator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Measures {@link CPUConfEnergyCalculator#minimize} on the wild-type conformation of the compiled fixture.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompiledMinimizeBenchmark {
+
+	private Fixtures.Compiled compiled;
+	private CPUConfEnergyCalculator ecalc;
+
+	@Setup
+	public void setup() {
+		compiled = Fixtures.compiled();
+		ecalc = new CPUConfEnergyCalculator(compiled.confSpace);
+	}
+
+	@Benchmark
+	public double calcEnergy() {
+		return ecalc.calcEnergy(compiled.conf, compiled.inters);
+	}
+
+	@Benchmark
+	public double minimize() {
+		return ecalc.minimize(compiled.conf, compiled.inters).energy;
+	}
+}
@@ -0,0 +1,43 @@
+package edu.duke.cs.osprey.jmh;
+
+import edu.duke.cs.osprey.pruning.PruningMatrix;
+import edu.duke.cs.osprey.pruning.SimpleDEE;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Measures {@link SimpleDEE} Goldstein pruning on the classic fixture.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DEEBenchmark {
+
+	private Fixtures.Classic classic;
+
+	@Setup
+	public void setup() {
+		classic = Fixtures.classic();
+	}
+
+	@Benchmark
+	public PruningMatrix goldsteinSingles() {
+		return new SimpleDEE.Runner()
+			.setThreshold(null)
+			.setSinglesGoldsteinDiffThreshold(10.0)
+			.run(classic.confSpace, classic.emat);
+	}
+
+	@Benchmark
+	public PruningMatrix goldsteinSinglesAndPairs() {
+		return new SimpleDEE.Runner()
+			.setThreshold(null)
+			.setGoldsteinDiffThreshold(10.0)
+			.run(classic.confSpace, classic.emat);
+	}
+}
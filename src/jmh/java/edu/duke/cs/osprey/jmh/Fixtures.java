@@ -0,0 +1,108 @@
+package edu.duke.cs.osprey.jmh;
+
+import edu.duke.cs.osprey.confspace.SimpleConfSpace;
+import edu.duke.cs.osprey.confspace.Strand;
+import edu.duke.cs.osprey.confspace.compiled.ConfSpace;
+import edu.duke.cs.osprey.confspace.compiled.PosInter;
+import edu.duke.cs.osprey.confspace.compiled.PosInterDist;
+import edu.duke.cs.osprey.ematrix.EnergyMatrix;
+import edu.duke.cs.osprey.ematrix.SimplerEnergyMatrixCalculator;
+import edu.duke.cs.osprey.energy.ConfEnergyCalculator;
+import edu.duke.cs.osprey.energy.EnergyCalculator;
+import edu.duke.cs.osprey.energy.forcefield.ForcefieldParams;
+import edu.duke.cs.osprey.parallelism.Parallelism;
+import edu.duke.cs.osprey.structure.PDBIO;
+import edu.duke.cs.osprey.tools.FileTools;
+
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * Deterministic inputs for the JMH benchmarks, built from the PDBs and conf spaces bundled with the tests.
+ *
+ * Fixtures are built lazily and cached, so each forked benchmark JVM only builds the ones it needs, just once.
+ */
+public class Fixtures {
+
+	/**
+	 * A small classic design on 1CC8, with rigid rotamers, so the energy matrix is quick to compute.
+	 */
+	public static class Classic {
+
+		public final SimpleConfSpace confSpace;
+		public final ForcefieldParams ffparams;
+		public final EnergyMatrix emat;
+
+		private Classic() {
+
+			Strand strand = new Strand.Builder(PDBIO.readResource("/1CC8.ss.pdb")).build();
+			strand.flexibility.get("A2").setLibraryRotamers(Strand.WildType, "ALA", "VAL", "LEU").addWildTypeRotamers();
+			strand.flexibility.get("A3").setLibraryRotamers(Strand.WildType, "ILE", "PHE").addWildTypeRotamers();
+			for (String resNum : Arrays.asList("A4", "A5", "A6", "A7", "A8", "A9")) {
+				strand.flexibility.get(resNum).setLibraryRotamers(Strand.WildType).addWildTypeRotamers();
+			}
+
+			confSpace = new SimpleConfSpace.Builder()
+				.addStrand(strand)
+				.build();
+
+			ffparams = new ForcefieldParams();
+
+			try (EnergyCalculator ecalc = new EnergyCalculator.Builder(confSpace, ffparams)
+				.setParallelism(Parallelism.makeCpu(Parallelism.getMaxNumCPUs()))
+				.build()
+			) {
+				ConfEnergyCalculator confEcalc = new ConfEnergyCalculator.Builder(confSpace, ecalc).build();
+				emat = new SimplerEnergyMatrixCalculator.Builder(confEcalc)
+					.build()
+					.calcEnergyMatrix();
+			}
+		}
+	}
+
+	/**
+	 * The chain A conf space from the 2RL0 design, at the wild-type conformation.
+	 */
+	public static class Compiled {
+
+		public final ConfSpace confSpace;
+		public final int[] conf;
+		public final List<PosInter> inters;
+
+		private Compiled() {
+
+			confSpace = ConfSpace.fromBytes(FileTools.readResourceBytes("/confSpaces/2RL0.A.ccsx"));
+
+			// get the wild type conformation, if possible
+			conf = Arrays.stream(confSpace.positions)
+				.mapToInt(pos ->
+					Arrays.stream(pos.confs)
+						.filter(c -> c.id.startsWith("wt-"))
+						.mapToInt(c -> c.index)
+						.findFirst()
+						.orElse(0) // otherwise, pick an arbitrary conformation
+				)
+				.toArray();
+
+			inters = PosInterDist.all(confSpace, conf);
+		}
+	}
+
+	private static Classic classic = null;
+	private static Compiled compiled = null;
+
+	public static synchronized Classic classic() {
+		if (classic == null) {
+			classic = new Classic();
+		}
+		return classic;
+	}
+
+	public static synchronized Compiled compiled() {
+		if (compiled == null) {
+			compiled = new Compiled();
+		}
+		return compiled;
+	}
+}
@@ -0,0 +1,47 @@
+package edu.duke.cs.osprey.jmh;
+
+import edu.duke.cs.osprey.confspace.ParametricMolecule;
+import edu.duke.cs.osprey.confspace.RCTuple;
+import edu.duke.cs.osprey.energy.EnergyPartition;
+import edu.duke.cs.osprey.energy.ResidueInteractions;
+import edu.duke.cs.osprey.energy.forcefield.ResPairCache;
+import edu.duke.cs.osprey.energy.forcefield.ResidueForcefieldEnergy;
+import edu.duke.cs.osprey.structure.AtomConnectivity;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Measures {@link ResidueForcefieldEnergy#getEnergy()} on a full conformation of the classic fixture.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ForcefieldBenchmark {
+
+	private ResidueForcefieldEnergy efunc;
+
+	@Setup
+	public void setup() {
+
+		Fixtures.Classic classic = Fixtures.classic();
+
+		// use the first conformation, with all the interactions between the design positions
+		int[] conf = new int[classic.confSpace.positions.size()];
+		ParametricMolecule pmol = classic.confSpace.makeMolecule(conf);
+		ResidueInteractions inters = EnergyPartition.Traditional.makeTuple(classic.confSpace, null, false, new RCTuple(conf));
+
+		AtomConnectivity connectivity = new AtomConnectivity.Builder().build();
+		ResPairCache resPairCache = new ResPairCache(classic.ffparams, connectivity);
+		efunc = new ResidueForcefieldEnergy(resPairCache, inters, pmol.mol);
+	}
+
+	@Benchmark
+	public double getEnergy() {
+		return efunc.getEnergy();
+	}
+}
@@ -0,0 +1,107 @@
+package edu.duke.cs.osprey.jmh;
+
+import edu.duke.cs.osprey.astar.conf.ConfAStarTree;
+import edu.duke.cs.osprey.confspace.SimpleConfSpace;
+import edu.duke.cs.osprey.ematrix.EnergyMatrix;
+import edu.duke.cs.osprey.ematrix.SimplerEnergyMatrixCalculator;
+import edu.duke.cs.osprey.energy.ConfEnergyCalculator;
+import edu.duke.cs.osprey.energy.EnergyCalculator;
+import edu.duke.cs.osprey.kstar.KStar;
+import edu.duke.cs.osprey.kstar.TestKStar;
+import edu.duke.cs.osprey.kstar.pfunc.GradientDescentPfunc;
+import edu.duke.cs.osprey.parallelism.Parallelism;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Measures a whole K* run on the 2RL0 design, with different numbers of partition functions in flight.
+ *
+ * Every run does exactly the same work, so any drop in time with more partition functions in flight
+ * comes from keeping the task executor busier, see {@link KStar.Settings.Builder#setNumPfuncsInFlight}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class KStarBenchmark {
+
+	@Param({ "1", "2", "4" })
+	public int numPfuncsInFlight;
+
+	private TestKStar.ConfSpaces confSpaces;
+	private EnergyCalculator ecalc;
+	private ConfEnergyCalculator[] confEcalcs;
+	private EnergyMatrix[] emats;
+
+	@Setup
+	public void setup() {
+
+		confSpaces = TestKStar.make2RL0();
+		ecalc = new EnergyCalculator.Builder(confSpaces.complex, confSpaces.ffparams)
+			.setParallelism(Parallelism.makeCpu(Parallelism.getMaxNumCPUs()))
+			.build();
+
+		// compute the energy matrices just once, so the benchmark only measures the partition functions
+		List<SimpleConfSpace> list = confSpaces.asList();
+		confEcalcs = new ConfEnergyCalculator[list.size()];
+		emats = new EnergyMatrix[list.size()];
+		for (int i=0; i<list.size(); i++) {
+			SimpleConfSpace confSpace = list.get(i);
+			confEcalcs[i] = new ConfEnergyCalculator.Builder(confSpace, ecalc)
+				.setReferenceEnergies(new SimplerEnergyMatrixCalculator.Builder(confSpace, ecalc)
+					.build()
+					.calcReferenceEnergies()
+				)
+				.build();
+			emats[i] = new SimplerEnergyMatrixCalculator.Builder(confEcalcs[i])
+				.build()
+				.calcEnergyMatrix();
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		ecalc.close();
+	}
+
+	@Benchmark
+	public List<KStar.ScoredSequence> run() {
+
+		KStar.Settings settings = new KStar.Settings.Builder()
+			.setEpsilon(0.95)
+			.setStabilityThreshold(null)
+			.setNumPfuncsInFlight(numPfuncsInFlight)
+			.build();
+		KStar kstar = new KStar(confSpaces.protein, confSpaces.ligand, confSpaces.complex, settings);
+
+		int i = 0;
+		for (KStar.ConfSpaceInfo info : kstar.confSpaceInfos()) {
+			ConfEnergyCalculator confEcalc = confEcalcs[i];
+			EnergyMatrix emat = emats[i];
+			info.confEcalc = confEcalc;
+			info.confDBFile = null;
+			info.pfuncFactory = (rcs) -> {
+				GradientDescentPfunc pfunc = new GradientDescentPfunc(
+					confEcalc,
+					new ConfAStarTree.Builder(emat, rcs)
+						.setTraditional()
+						.build(),
+					new ConfAStarTree.Builder(emat, rcs)
+						.setTraditional()
+						.build(),
+					rcs.getNumConformations()
+				);
+				pfunc.setPreciseBcalc(false);
+				return pfunc;
+			};
+			i++;
+		}
+
+		return kstar.run(ecalc.tasks);
+	}
+}
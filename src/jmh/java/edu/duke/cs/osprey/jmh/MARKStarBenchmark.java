@@ -0,0 +1,87 @@
+package edu.duke.cs.osprey.jmh;
+
+import edu.duke.cs.osprey.astar.conf.RCs;
+import edu.duke.cs.osprey.confspace.SimpleConfSpace;
+import edu.duke.cs.osprey.ematrix.EnergyMatrix;
+import edu.duke.cs.osprey.ematrix.SimplerEnergyMatrixCalculator;
+import edu.duke.cs.osprey.ematrix.UpdatingEnergyMatrix;
+import edu.duke.cs.osprey.energy.ConfEnergyCalculator;
+import edu.duke.cs.osprey.energy.EnergyCalculator;
+import edu.duke.cs.osprey.kstar.TestKStar;
+import edu.duke.cs.osprey.kstar.pfunc.PartitionFunction;
+import edu.duke.cs.osprey.markstar.framework.MARKStarBound;
+import edu.duke.cs.osprey.parallelism.Parallelism;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Measures how a MARK* partition function for the 2RL0 complex, at the wild-type sequence, scales with the number of threads.
+ *
+ * The energy matrices are computed once per thread count, so the benchmark only measures the bound itself.
+ * Compare the times across thread counts to see the scaling, eg near-linear scaling would halve the time
+ * each time the threads double.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class MARKStarBenchmark {
+
+	@Param({ "1", "2", "4", "8", "16", "32" })
+	public int numThreads;
+
+	private SimpleConfSpace confSpace;
+	private EnergyCalculator ecalc;
+	private ConfEnergyCalculator confEcalc;
+	private EnergyMatrix ematMinimized;
+	private EnergyMatrix ematRigid;
+	private RCs rcs;
+
+	@Setup
+	public void setup() {
+
+		TestKStar.ConfSpaces confSpaces = TestKStar.make2RL0();
+		confSpace = confSpaces.complex;
+		ecalc = new EnergyCalculator.Builder(confSpace, confSpaces.ffparams)
+			.setParallelism(Parallelism.makeCpu(numThreads))
+			.build();
+
+		confEcalc = new ConfEnergyCalculator.Builder(confSpace, ecalc)
+			.setReferenceEnergies(new SimplerEnergyMatrixCalculator.Builder(confSpace, ecalc)
+				.build()
+				.calcReferenceEnergies()
+			)
+			.build();
+		ematMinimized = new SimplerEnergyMatrixCalculator.Builder(confEcalc)
+			.build()
+			.calcEnergyMatrix();
+
+		// MARK* needs rigid energies too
+		EnergyCalculator ecalcRigid = new EnergyCalculator.SharedBuilder(ecalc)
+			.setIsMinimizing(false)
+			.build();
+		ematRigid = new SimplerEnergyMatrixCalculator.Builder(new ConfEnergyCalculator(confEcalc, ecalcRigid))
+			.build()
+			.calcEnergyMatrix();
+
+		rcs = confSpace.makeWildTypeSequence().makeRCs(confSpace);
+	}
+
+	@TearDown
+	public void tearDown() {
+		ecalc.close();
+	}
+
+	@Benchmark
+	public PartitionFunction.Values run() {
+		MARKStarBound pfunc = new MARKStarBound(confSpace, ematRigid, ematMinimized, confEcalc, rcs, ecalc.parallelism);
+		pfunc.setCorrections(new UpdatingEnergyMatrix(confSpace, ematMinimized, confEcalc));
+		pfunc.init(0.68);
+		pfunc.compute();
+		return pfunc.getValues();
+	}
+}
@@ -37,6 +37,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import edu.duke.cs.osprey.astar.AStarProgress;
+import edu.duke.cs.osprey.astar.conf.compact.CompactConfAStarFactory;
 import edu.duke.cs.osprey.astar.conf.linked.LinkedConfAStarFactory;
 import edu.duke.cs.osprey.astar.conf.order.*;
 import edu.duke.cs.osprey.astar.conf.pruning.AStarPruner;
@@ -86,6 +87,7 @@ public class ConfAStarTree implements ConfSearch {
 		private ConfAStarFactory factory = new LinkedConfAStarFactory();
 		private AStarPruner pruner = null;
 		private Long maxNumNodes = null;
+		private Long maxNumBytes = null;
 
 		public Builder(EnergyMatrix emat, SimpleConfSpace confSpace) {
 			this(emat, new RCs(confSpace));
@@ -130,7 +132,7 @@ public class ConfAStarTree implements ConfSearch {
 		 * Just like setTraditional, but allow maximization or minimization
 		 */
 		public Builder setTraditionalOpt(MathTools.Optimizer optimizer) {
-			if (maxNumNodes == null) {
+			if (!isBounded()) {
 				// A* works best with dynamic orders
 				this.order = new DynamicHMeanAStarOrder(optimizer);
 			} else {
@@ -191,7 +193,7 @@ public class ConfAStarTree implements ConfSearch {
 		public Builder useExternalMemory() {
 
 			// just in case...
-			if (maxNumNodes != null) {
+			if (isBounded()) {
 				throw new IllegalArgumentException("external memory is incompatible with bounded memory");
 			}
 
@@ -200,6 +202,24 @@ public class ConfAStarTree implements ConfSearch {
 			return this;
 		}
 		
+		/**
+		 * Store queued A* nodes as packed primitives instead of objects.
+		 * Uses several times less internal memory per node than the default queue,
+		 * so much larger A* searches fit in internal memory, at a small cost in speed.
+		 *
+		 * See {@link edu.duke.cs.osprey.astar.conf.compact.CompactConfAStarQueue} for details.
+		 */
+		public Builder useCompactMemory() {
+
+			// just in case...
+			if (isBounded()) {
+				throw new IllegalArgumentException("compact memory is incompatible with bounded memory");
+			}
+
+			factory = new CompactConfAStarFactory();
+			return this;
+		}
+		
 		public Builder setShowProgress(boolean val) {
 			showProgress = val;
 			return this;
@@ -224,6 +244,29 @@ public class ConfAStarTree implements ConfSearch {
 		public Builder setMaxNumNodes(int val) {
 			return setMaxNumNodes(Long.valueOf(val));
 		}
+
+		/**
+		 * Like {@link #setMaxNumNodes}, but bounds the memory used by SMA* in bytes instead.
+		 * The node limit is derived from a conservative estimate of the memory needed per node.
+		 */
+		public Builder setMaxNumBytes(Long val) {
+
+			// just in case...
+			if (val != null && factory instanceof EMConfAStarFactory) {
+				throw new IllegalArgumentException("bounded memory is incompatible with external memory");
+			}
+
+			maxNumBytes = val;
+			return this;
+		}
+
+		public Builder setMaxNumBytes(long val) {
+			return setMaxNumBytes(Long.valueOf(val));
+		}
+
+		private boolean isBounded() {
+			return maxNumNodes != null || maxNumBytes != null;
+		}
 		
 		public ConfAStarTree build() {
 			ConfAStarTree tree = new ConfAStarTree(
@@ -234,7 +277,8 @@ public class ConfAStarTree implements ConfSearch {
 				rcs,
 				factory,
 				pruner,
-				maxNumNodes
+				maxNumNodes,
+				maxNumBytes
 			);
 			if (showProgress) {
 				tree.initProgress();
@@ -328,7 +372,7 @@ public class ConfAStarTree implements ConfSearch {
 	private TaskExecutor tasks;
 	private ObjectPool<ScoreContext> contexts;
 	
-	private ConfAStarTree(AStarOrder order, AStarScorer gscorer, AStarScorer hscorer, MathTools.Optimizer optimizer, RCs rcs, ConfAStarFactory factory, AStarPruner pruner, Long maxNumNodes) {
+	private ConfAStarTree(AStarOrder order, AStarScorer gscorer, AStarScorer hscorer, MathTools.Optimizer optimizer, RCs rcs, ConfAStarFactory factory, AStarPruner pruner, Long maxNumNodes, Long maxNumBytes) {
 		this.order = order;
 		this.gscorer = gscorer;
 		this.hscorer = hscorer;
@@ -337,7 +381,9 @@ public class ConfAStarTree implements ConfSearch {
 		this.factory = factory;
 		this.pruner = pruner;
 
-		if (maxNumNodes != null) {
+		if (maxNumBytes != null) {
+			this.impl = new SimplifiedBoundedImpl(smaStarBytesToNodes(rcs, maxNumBytes));
+		} else if (maxNumNodes != null) {
 			this.impl = new SimplifiedBoundedImpl(maxNumNodes);
 		} else {
 			this.impl = new UnboundedImpl();
@@ -359,6 +405,17 @@ public class ConfAStarTree implements ConfSearch {
 		setParallelism(null);
 	}
 	
+	private static long smaStarBytesToNodes(RCs rcs, long maxNumBytes) {
+
+		// assume every node has as many children as the widest position
+		int maxNumChildren = 0;
+		for (int pos=0; pos<rcs.getNumPos(); pos++) {
+			maxNumChildren = Math.max(maxNumChildren, rcs.getNum(pos));
+		}
+
+		return maxNumBytes/ConfSMAStarNode.estimateBytes(maxNumChildren);
+	}
+
 	public void initProgress() {
 		progress = new AStarProgress(rcs.getNumPos());
 	}
@@ -546,7 +603,7 @@ public class ConfAStarTree implements ConfSearch {
 				assert (confIndex.isUndefined(nextPos));
 
 				// score child nodes with tasks (possibly in parallel)
-				List<ConfAStarNode> children = new ArrayList<>();
+				List<TaskExecutor.Task<ConfAStarNode>> childTasks = new ArrayList<>();
 				for (int nextRc : rcs.get(nextPos)) {
 
 					// if this child was pruned by the pruning matrix, then skip it
@@ -559,7 +616,7 @@ public class ConfAStarTree implements ConfSearch {
 						continue;
 					}
 
-					tasks.submit(() -> {
+					childTasks.add(() -> {
 
 						try (Checkout<ScoreContext> checkout = contexts.autoCheckout()) {
 							ScoreContext context = checkout.get();
@@ -571,15 +628,18 @@ public class ConfAStarTree implements ConfSearch {
 							child.setHScore(context.hscorer.calcDifferential(context.index, rcs, nextPos, nextRc), optimizer);
 							return child;
 						}
-
-					}, (ConfAStarNode child) -> {
-
-						// collect the possible children
-						if (Double.isFinite(child.getScore())) {
-							children.add(child);
-						}
 					});
 				}
+
+				// submit the children all at once, so executors that can batch them will
+				List<ConfAStarNode> children = new ArrayList<>();
+				tasks.submitAll(childTasks, (ConfAStarNode child) -> {
+
+					// collect the possible children
+					if (Double.isFinite(child.getScore())) {
+						children.add(child);
+					}
+				});
 				tasks.waitForFinish();
 				numChildren += children.size();
 				queue.pushAll(children);
@@ -596,6 +656,10 @@ public class ConfAStarTree implements ConfSearch {
 	 * {@cite Russell1992 Stuart S. Russell, 1992.
 	 * Effcient memory-bounded search methods.
 	 * ECAI-1992, Vienna, Austria.}.
+	 *
+	 * All the children of a node are scored at once (possibly in parallel) the first time
+	 * the node is expanded, and the scores are cached in the node, so forgotten children
+	 * can be re-spawned without re-scoring them.
 	 */
 	private class SimplifiedBoundedImpl implements AStarImpl {
 
@@ -609,7 +673,9 @@ public class ConfAStarTree implements ConfSearch {
 
 			// check preconditions
 			if (maxNumNodes <= rcs.getNumPos()) {
-				throw new IllegalArgumentException(String.format("SMA* needs space for at least %d nodes for this problem (i.e., numPos + 1)", rcs.getNumPos() + 1));
+				throw new IllegalArgumentException(String.format("SMA* needs space for at least %d nodes for this problem (i.e., numPos + 1), but only has space for %d",
+					rcs.getNumPos() + 1, maxNumNodes
+				));
 			}
 			if (order.isDynamic()) {
 				throw new IllegalArgumentException(
@@ -626,9 +692,6 @@ public class ConfAStarTree implements ConfSearch {
 			numNodes++;
 		}
 
-		// TODO: progress reporting?
-		// TODO: parallelism?
-
 		@Override
 		public ScoredConf nextConf() {
 
@@ -674,6 +737,11 @@ public class ConfAStarTree implements ConfSearch {
 					numNodes -= node.parent.finishChild(node, q);
 
 					if (conf != null) {
+
+						if (progress != null) {
+							progress.reportLeafNode(node.getGScore(optimizer), numNodes);
+						}
+
 						return new ScoredConf(conf, node.getGScore(optimizer));
 					} else {
 						continue;
@@ -689,10 +757,15 @@ public class ConfAStarTree implements ConfSearch {
 				int index = node.getNextChildIndex(rcs.getNum(pos));
 				int rc = rcs.get(pos)[index];
 
-				// score the child
+				// score all the children the first time we expand this node
+				if (!node.hasChildScores()) {
+					scoreChildren(node, pos);
+				}
+
+				// spawn the child using the cached scores
 				ConfSMAStarNode child = node.spawnChild(pos, rc, index);
-				child.setGScore(gscorer.calcDifferential(confIndex, rcs, pos, rc), optimizer);
-				child.setHScore(hscorer.calcDifferential(confIndex, rcs, pos, rc), optimizer);
+				child.setGScore(node.getChildGScore(index), optimizer);
+				child.setHScore(node.getChildHScore(index), optimizer);
 
 				// don't let the fscore go past the parent though
 				child.setScore(optimizer.reverse().opt(node.getScore(optimizer), child.getGScore(optimizer) + child.getHScore(optimizer)), optimizer);
@@ -729,5 +802,42 @@ public class ConfAStarTree implements ConfSearch {
 				q.add(child);
 			}
 		}
+
+		private void scoreChildren(ConfSMAStarNode node, int pos) {
+
+			int[] posRCs = rcs.get(pos);
+			double[] gscores = new double[posRCs.length];
+			double[] hscores = new double[posRCs.length];
+
+			// score child nodes with tasks (possibly in parallel)
+			for (int i=0; i<posRCs.length; i++) {
+				final int index = i;
+				final int rc = posRCs[i];
+				tasks.submit(() -> {
+
+					try (Checkout<ScoreContext> checkout = contexts.autoCheckout()) {
+						ScoreContext context = checkout.get();
+
+						// score the child node differentially against the parent node
+						node.index(context.index);
+						return new double[] {
+							context.gscorer.calcDifferential(context.index, rcs, pos, rc),
+							context.hscorer.calcDifferential(context.index, rcs, pos, rc)
+						};
+					}
+
+				}, (double[] scores) -> {
+					gscores[index] = scores[0];
+					hscores[index] = scores[1];
+				});
+			}
+			tasks.waitForFinish();
+
+			node.setChildScores(gscores, hscores);
+
+			if (progress != null) {
+				progress.reportInternalNode(node.depth, node.getGScore(optimizer), node.getHScore(optimizer), numNodes, posRCs.length);
+			}
+		}
 	}
 }
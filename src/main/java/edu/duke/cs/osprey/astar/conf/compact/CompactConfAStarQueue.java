@@ -0,0 +1,297 @@
+/*
+** This file is part of OSPREY 3.0
+** 
+** OSPREY Protein Redesign Software Version 3.0
+** Copyright (C) 2001-2018 Bruce Donald Lab, Duke University
+** 
+** OSPREY is free software: you can redistribute it and/or modify
+** it under the terms of the GNU General Public License version 2
+** as published by the Free Software Foundation.
+** 
+** You should have received a copy of the GNU General Public License
+** along with OSPREY.  If not, see <http://www.gnu.org/licenses/>.
+** 
+** OSPREY relies on grants for its development, and since visibility
+** in the scientific literature is essential for our success, we
+** ask that users of OSPREY cite our papers. See the CITING_OSPREY
+** document in this distribution for more information.
+** 
+** Contact Info:
+**    Bruce Donald
+**    Duke University
+**    Department of Computer Science
+**    Levine Science Research Center (LSRC)
+**    Durham
+**    NC 27708-0129
+**    USA
+**    e-mail: www.cs.duke.edu/brd/
+** 
+** <signature of Bruce Donald>, Mar 1, 2018
+** Bruce Donald, Professor of Computer Science
+*/
+
+package edu.duke.cs.osprey.astar.conf.compact;
+
+import java.util.Arrays;
+
+import edu.duke.cs.osprey.astar.conf.ConfAStarNode;
+import edu.duke.cs.osprey.astar.conf.RCs;
+import edu.duke.cs.osprey.externalMemory.EMConfAStarNode;
+import edu.duke.cs.osprey.externalMemory.Queue;
+
+/**
+ * A min-heap of A* nodes stored as a struct of primitive arrays.
+ *
+ * Each node is stored as its g score (as a double, since g scorers compute child g scores
+ * differentially from the parent g score), its h score (as a float), and its assignments
+ * bit-packed into longs. There are no per-node objects, object headers, or parent links.
+ *
+ * For a typical design with a few dozen RCs at each of ~10 positions,
+ * that's 20 bytes per node, compared to ~70 bytes per node for {@link edu.duke.cs.osprey.astar.conf.linked.LinkedConfAStarFactory}.
+ *
+ * Not thread-safe.
+ */
+public class CompactConfAStarQueue implements Queue<ConfAStarNode> {
+
+	private static final int InitialCapacity = 1024;
+
+	public final RCs rcs;
+	public final int numPos;
+	public final int bitsPerRC;
+	public final int rcsPerWord;
+	public final int wordsPerNode;
+
+	private final long rcMask;
+
+	private double[] gscores;
+	private float[] hscores;
+	private long[] assignments;
+	private int size = 0;
+
+	private ConfAStarNode peeked = null;
+
+	public CompactConfAStarQueue(RCs rcs) {
+
+		this.rcs = rcs;
+		this.numPos = rcs.getNumPos();
+
+		// get the fewest bits needed to encode the biggest RC at any position,
+		// shifted up by one so zero can mean unassigned
+		int maxVal = 0;
+		for (int pos=0; pos<numPos; pos++) {
+			for (int val : rcs.get(pos)) {
+				maxVal = Math.max(maxVal, val);
+			}
+		}
+		bitsPerRC = Math.max(1, Integer.SIZE - Integer.numberOfLeadingZeros(maxVal + 1));
+		rcsPerWord = Long.SIZE/bitsPerRC;
+		wordsPerNode = Math.max(1, (numPos + rcsPerWord - 1)/rcsPerWord);
+		rcMask = (1L << bitsPerRC) - 1;
+
+		gscores = new double[InitialCapacity];
+		hscores = new float[InitialCapacity];
+		assignments = new long[InitialCapacity*wordsPerNode];
+	}
+
+	/** Returns the number of bytes used to store each node in the queue. */
+	public int getBytesPerNode() {
+		return Double.BYTES + Float.BYTES + wordsPerNode*Long.BYTES;
+	}
+
+	/** Returns the number of bytes currently allocated for the queue. */
+	public long getNumBytes() {
+		return (long)gscores.length*getBytesPerNode();
+	}
+
+	@Override
+	public void push(ConfAStarNode node) {
+
+		if (size == gscores.length) {
+			grow();
+		}
+
+		// pack the node at the end of the heap
+		int i = size++;
+		gscores[i] = node.getGScore();
+		hscores[i] = packHScore(node.getHScore());
+		packAssignments(node, i);
+
+		siftUp(i);
+
+		peeked = null;
+	}
+
+	@Override
+	public ConfAStarNode peek() {
+
+		if (size == 0) {
+			return null;
+		}
+
+		if (peeked == null) {
+			peeked = unpack(0);
+		}
+		return peeked;
+	}
+
+	@Override
+	public void pop() {
+
+		if (size == 0) {
+			throw new IllegalStateException("queue is empty");
+		}
+
+		peeked = null;
+
+		size--;
+		if (size > 0) {
+			move(size, 0);
+			siftDown(0);
+		}
+	}
+
+	@Override
+	public long size() {
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	private void grow() {
+
+		// grow by 50%, like ArrayList
+		long newCapacity = (long)gscores.length*3/2;
+		if (newCapacity*wordsPerNode > Integer.MAX_VALUE - 8) {
+			newCapacity = (Integer.MAX_VALUE - 8)/wordsPerNode;
+			if (newCapacity <= gscores.length) {
+				throw new OutOfMemoryError("A* queue has reached its maximum size of " + gscores.length + " nodes");
+			}
+		}
+
+		gscores = Arrays.copyOf(gscores, (int)newCapacity);
+		hscores = Arrays.copyOf(hscores, (int)newCapacity);
+		assignments = Arrays.copyOf(assignments, (int)newCapacity*wordsPerNode);
+	}
+
+	private static float packHScore(double hscore) {
+
+		// round down, so the h score stays optimistic
+		// (the pq is always a min-heap, optimizer has already been applied to the scores)
+		float f = (float)hscore;
+		if (f > hscore) {
+			f = Math.nextDown(f);
+		}
+		return f;
+	}
+
+	private void packAssignments(ConfAStarNode node, int i) {
+
+		int[] conf;
+		if (node instanceof EMConfAStarNode) {
+			conf = ((EMConfAStarNode)node).getConf();
+		} else {
+			conf = node.makeConf(numPos);
+		}
+
+		int offset = i*wordsPerNode;
+		for (int w=0; w<wordsPerNode; w++) {
+			long word = 0;
+			int start = w*rcsPerWord;
+			int stop = Math.min(start + rcsPerWord, numPos);
+			for (int pos=start; pos<stop; pos++) {
+				long val = conf[pos] + 1; // unassigned (-1) becomes 0
+				word |= val << ((pos - start)*bitsPerRC);
+			}
+			assignments[offset + w] = word;
+		}
+	}
+
+	private EMConfAStarNode unpack(int i) {
+
+		EMConfAStarNode node = new EMConfAStarNode(numPos);
+		int[] conf = node.getConf();
+		int level = 0;
+
+		int offset = i*wordsPerNode;
+		for (int w=0; w<wordsPerNode; w++) {
+			long word = assignments[offset + w];
+			int start = w*rcsPerWord;
+			int stop = Math.min(start + rcsPerWord, numPos);
+			for (int pos=start; pos<stop; pos++) {
+				int val = (int)(word & rcMask);
+				word >>>= bitsPerRC;
+				conf[pos] = val - 1;
+				if (val != 0) {
+					level++;
+				}
+			}
+		}
+
+		node.setLevel(level);
+		node.setGScore(gscores[i]);
+		node.setHScore(hscores[i]);
+		return node;
+	}
+
+	private double score(int i) {
+		return gscores[i] + hscores[i];
+	}
+
+	private void move(int src, int dst) {
+		gscores[dst] = gscores[src];
+		hscores[dst] = hscores[src];
+		System.arraycopy(assignments, src*wordsPerNode, assignments, dst*wordsPerNode, wordsPerNode);
+	}
+
+	private void swap(int a, int b) {
+
+		double g = gscores[a];
+		gscores[a] = gscores[b];
+		gscores[b] = g;
+
+		float h = hscores[a];
+		hscores[a] = hscores[b];
+		hscores[b] = h;
+
+		int aoffset = a*wordsPerNode;
+		int boffset = b*wordsPerNode;
+		for (int w=0; w<wordsPerNode; w++) {
+			long word = assignments[aoffset + w];
+			assignments[aoffset + w] = assignments[boffset + w];
+			assignments[boffset + w] = word;
+		}
+	}
+
+	private void siftUp(int i) {
+		double score = score(i);
+		while (i > 0) {
+			int parent = (i - 1)/2;
+			if (score(parent) <= score) {
+				break;
+			}
+			swap(i, parent);
+			i = parent;
+		}
+	}
+
+	private void siftDown(int i) {
+		double score = score(i);
+		while (true) {
+			int child = i*2 + 1;
+			if (child >= size) {
+				break;
+			}
+			if (child + 1 < size && score(child + 1) < score(child)) {
+				child++;
+			}
+			if (score <= score(child)) {
+				break;
+			}
+			swap(i, child);
+			i = child;
+		}
+	}
+}
@@ -65,8 +65,22 @@ public class ConfSMAStarNode implements ConfAStarNode {
 
 		the SMA* queue uses roughly 250 bytes per node also
 		only a portion of the nodes are in the queue at any one time though
+
+		caching the child g,h scores adds another 16 bytes per child
 	*/
 
+	private static final long NodeBytes = 160;
+	private static final long QueueBytes = 250;
+	private static final long ChildBytes = 24 + 16;
+
+	/**
+	 * A conservative estimate of the memory used by one node with the given number of children,
+	 * including its queue entry, assuming every node is in the queue.
+	 */
+	public static long estimateBytes(int numChildren) {
+		return NodeBytes + QueueBytes + ChildBytes*numChildren;
+	}
+
 	public final ConfSMAStarNode parent;
 	public final int index;
 	public final int depth;
@@ -80,6 +94,8 @@ public class ConfSMAStarNode implements ConfAStarNode {
 	private ConfSMAStarNode[] spawnedChildren = null;
 	private State[] childStates = null;
 	private double[] forgottenScores = null;
+	private double[] childGScores = null;
+	private double[] childHScores = null;
 
 
 	/** make the root node */
@@ -203,6 +219,29 @@ public class ConfSMAStarNode implements ConfAStarNode {
 		throw new Error("No more children to spawn");
 	}
 
+	/** ie, have the g,h scores of the children been computed yet? */
+	public boolean hasChildScores() {
+		return childGScores != null;
+	}
+
+	/**
+	 * Caches the g,h scores of all the children (indexed by child index),
+	 * so forgotten children can be re-spawned without scoring them again.
+	 */
+	public void setChildScores(double[] gscores, double[] hscores) {
+		assert (gscores.length == hscores.length);
+		childGScores = gscores;
+		childHScores = hscores;
+	}
+
+	public double getChildGScore(int index) {
+		return childGScores[index];
+	}
+
+	public double getChildHScore(int index) {
+		return childHScores[index];
+	}
+
 	@Override
 	public ConfAStarNode assign(int pos, int rc) {
 		throw new UnsupportedOperationException("need the child index, call spawnChild instead");
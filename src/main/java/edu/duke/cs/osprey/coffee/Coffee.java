@@ -67,6 +67,12 @@ public class Coffee {
 		/** Amount of memory (RAM, in bytes) to use for the calculation. This memory will be pre-allocated. */
 		private long nodedbMemBytes = 2*1024*1024; // 2 MiB
 
+		/**
+		 * Number of independently-locked shards per state in the Node Database.
+		 * Zero serializes all Node Database accesses through one thread, which is fine for up to about 48 threads.
+		 */
+		private int nodedbShards = 0;
+
 		/** Path to the file for the Sequence Database, if any. If no file is given, the sequence info will be stored in RAM. */
 		private File seqdbFile = null;
 
@@ -183,6 +189,11 @@ public class Coffee {
 			return this;
 		}
 
+		public Builder setNodeDBShards(int val) {
+			nodedbShards = val;
+			return this;
+		}
+
 		public Builder setSeqDBFile(File file) {
 			seqdbFile = file;
 			return this;
@@ -249,7 +260,7 @@ public class Coffee {
 
 			return new Coffee(
 				confSpace, stateConfigs, cluster, parallelism, precision,
-				nodedbFile, nodedbFileBytes, nodedbMemBytes,
+				nodedbFile, nodedbFileBytes, nodedbMemBytes, nodedbShards,
 				seqdbFile, seqdbMathContext, includeStaticStatic, tripleCorrectionThreshold,
 				conditions, nodeScoringLog, nodeStatsReportingInterval
 			);
@@ -323,6 +334,7 @@ public class Coffee {
 	public final File dbFile;
 	public final long dbFileBytes;
 	public final long dbMemBytes;
+	public final int dbShards;
 	public final File seqdbFile;
 	public final MathContext seqdbMathContext;
 	public final boolean includeStaticStatic;
@@ -337,7 +349,7 @@ public class Coffee {
 
 	private Coffee(
 		MultiStateConfSpace confSpace, StateConfig[] stateConfigs, Cluster cluster, Parallelism parallelism, Structs.Precision precision,
-		File dbFile, long dbFileBytes, long dbMemBytes,
+		File dbFile, long dbFileBytes, long dbMemBytes, int dbShards,
 		File seqdbFile, MathContext seqdbMathContext, boolean includeStaticStatic, Double tripleCorrectionThreshold,
 		BoltzmannCalculator.Conditions conditions, File nodeScoringLog, Duration nodeStatsReportingInterval
 	) {
@@ -350,6 +362,7 @@ public class Coffee {
 		this.dbFile = dbFile;
 		this.dbFileBytes = dbFileBytes;
 		this.dbMemBytes = dbMemBytes;
+		this.dbShards = dbShards;
 		this.seqdbFile = seqdbFile;
 		this.seqdbMathContext = seqdbMathContext;
 		this.includeStaticStatic = includeStaticStatic;
@@ -388,6 +401,7 @@ public class Coffee {
 					try (var nodedb = new NodeDB.Builder(confSpace, member)
 						.setFile(dbFile, dbFileBytes)
 						.setMem(dbMemBytes)
+						.setNumShards(dbShards)
 						.setScoringLog(nodeScoringLog)
 						.build()
 					) {
@@ -497,6 +511,7 @@ public class Coffee {
 				try (var nodedb = new NodeDB.Builder(confSpace, member)
 					.setFile(dbFile, dbFileBytes)
 					.setMem(dbMemBytes)
+					.setNumShards(dbShards)
 					.setScoringLog(nodeScoringLog)
 					.build()
 				) {
@@ -13,20 +13,29 @@ import java.util.Deque;
 
 /**
  * A fixed-size storage space divided into blocks, with a very simple memory allocator
+ *
+ * By default, the memory may only be accessed by the thread that created the store.
+ * Shared stores may be accessed by any thread, but the allocator is still not thread-safe,
+ * so callers must synchronize accesses themselves.
  */
 public class BlockStore implements AutoCloseable {
 
 	private static final int DefaultBlockShift = 14; // makes a 16 KiB block
 
+	/** The block size of stores made with the default block shift, eg by {@link #shared} */
+	public static final int DefaultBlockSize = 1 << DefaultBlockShift;
+
 	public final File file;
+	public final long fileOffset;
 	public final long bytes;
 	public final int blockShift;
 	public final int blockSize;
+	public final boolean isShared;
 
 	public final long numBlocks;
 
 	private final MemorySegment mem;
-	private final ResourceScope confinedScope = ResourceScope.newConfinedScope();
+	private final ResourceScope scope;
 	private final Deque<Long> freeBlockids = new ArrayDeque<>();
 
 	private long nextBlockid = 0;
@@ -36,10 +45,25 @@ public class BlockStore implements AutoCloseable {
 	}
 
 	public BlockStore(File file, long bytes, int blockShift) {
+		this(file, 0, bytes, blockShift, false);
+	}
+
+	/**
+	 * Makes a store that can be accessed from any thread.
+	 * If a file is given, the store maps the region of the file starting at the given offset,
+	 * so several stores can share one file.
+	 */
+	public static BlockStore shared(File file, long fileOffset, long bytes) {
+		return new BlockStore(file, fileOffset, bytes, DefaultBlockShift, true);
+	}
+
+	public BlockStore(File file, long fileOffset, long bytes, int blockShift, boolean isShared) {
 
 		this.file = file;
+		this.fileOffset = fileOffset;
 		this.bytes = bytes;
 		this.blockShift = blockShift;
+		this.isShared = isShared;
 
 		// how many blocks can we have?
 		blockSize = 1 << blockShift;
@@ -48,24 +72,30 @@ public class BlockStore implements AutoCloseable {
 			throw new IllegalArgumentException("need at least " + blockSize + " bytes for BlockStore, but only requested " + bytes);
 		}
 
+		if (isShared) {
+			scope = ResourceScope.newSharedScope();
+		} else {
+			scope = ResourceScope.newConfinedScope();
+		}
+
 		// allocate the memory, either in memory, or in storage
 		if (file != null) {
 			try {
 				if (!file.exists()) {
 					file.createNewFile();
 				}
-				mem = MemorySegment.mapFile(file.toPath(), 0, bytes, FileChannel.MapMode.READ_WRITE, confinedScope);
+				mem = MemorySegment.mapFile(file.toPath(), fileOffset, bytes, FileChannel.MapMode.READ_WRITE, scope);
 			} catch (IOException ex) {
 				throw new RuntimeException("can't map path: " + file, ex);
 			}
 		} else {
-			mem = MemorySegment.allocateNative(bytes, confinedScope);
+			mem = MemorySegment.allocateNative(bytes, scope);
 		}
 	}
 
 	@Override
 	public void close() {
-		confinedScope.close();
+		scope.close();
 	}
 
 	public long numUsedBlocks() {
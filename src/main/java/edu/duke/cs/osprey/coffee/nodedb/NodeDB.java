@@ -29,12 +29,17 @@ public class NodeDB implements AutoCloseable {
 		private long memBytes = 0;
 		private long broadcastNs = 1_000_000_000L; // 1 second
 		private File scoringLog;
+		private int numShards = 0;
 
 		public Builder(MultiStateConfSpace confSpace, ClusterMember member) {
 			this.confSpace = confSpace;
 			this.member = member;
 		}
 
+		/**
+		 * Spill nodes that don't fit in memory to a memory-mapped file,
+		 * rather than dropping them.
+		 */
 		public Builder setFile(File file, long bytes) {
 			this.file = file;
 			this.fileBytes = bytes;
@@ -56,6 +61,17 @@ public class NodeDB implements AutoCloseable {
 			return this;
 		}
 
+		/**
+		 * Split each state's nodes into this many independently-locked shards,
+		 * so many threads can access the database at once.
+		 * Zero (the default) serializes all accesses through a single thread instead.
+		 * If there isn't enough space for this many shards, fewer are used, see {@link NodeShards}.
+		 */
+		public Builder setNumShards(int val) {
+			numShards = val;
+			return this;
+		}
+
 		public NodeDB build() {
 			return new NodeDB(
 				confSpace,
@@ -63,7 +79,8 @@ public class NodeDB implements AutoCloseable {
 				file, fileBytes,
 				memBytes,
 				broadcastNs,
-				scoringLog
+				scoringLog,
+				numShards
 			);
 		}
 	}
@@ -84,6 +101,7 @@ public class NodeDB implements AutoCloseable {
 	public final long memBytes;
 	public final long broadcastNs;
 	public final File scoringLog;
+	public final int numShards;
 
 	public final NodePerformance perf;
 
@@ -95,13 +113,17 @@ public class NodeDB implements AutoCloseable {
 	 * This could eventually end up being too slow,
 	 * but profiling shows the performance isn't too bad yet,
 	 * even on 48 threads.
+	 *
+	 * For more threads than that, use the sharded indices instead,
+	 * which need no bottleneck thread. Exactly one of (thread, indices) or shards is non-null.
 	 */
 	private final BottleneckThread thread;
 	private final NodeIndices indices;
+	private final NodeShards shards;
 	private final RateLimitedThread broadcaster;
 	private final Neighbors neighbors;
 
-	private NodeDB(MultiStateConfSpace confSpace, ClusterMember member, File file, long fileBytes, long memBytes, long broadcastNs, File scoringLog) {
+	private NodeDB(MultiStateConfSpace confSpace, ClusterMember member, File file, long fileBytes, long memBytes, long broadcastNs, File scoringLog, int numShards) {
 
 		this.confSpace = confSpace;
 		this.member = member;
@@ -110,20 +132,32 @@ public class NodeDB implements AutoCloseable {
 		this.memBytes = memBytes;
 		this.broadcastNs = broadcastNs;
 		this.scoringLog = scoringLog;
+		this.numShards = numShards;
 
-		// TODO: implement memory-buffered disk-backed options?
-		// TEMP
-		if (file != null || fileBytes > 0) {
-			throw new Error("implement me");
+		if (file != null && fileBytes <= 0) {
+			throw new IllegalArgumentException("NodeDB file needs a positive size, not " + fileBytes + " bytes");
+		} else if (file == null && fileBytes > 0) {
+			throw new IllegalArgumentException("NodeDB file size given, but no file");
 		}
 
 		perf = new NodePerformance(confSpace);
 		perf.setLog(scoringLog);
 
-		// the node indices aren't thread-safe, and can only be accessed by their creating thread
-		// so make a thread to handle all the accesses
-		thread = new BottleneckThread(ThreadName);
-		indices = thread.get(() -> new NodeIndices(confSpace, memBytes));
+		if (numShards > 0) {
+
+			// the shards do their own locking
+			thread = null;
+			indices = null;
+			shards = new NodeShards(confSpace, memBytes, file, fileBytes, numShards);
+
+		} else {
+
+			// the node indices aren't thread-safe, and can only be accessed by their creating thread
+			// so make a thread to handle all the accesses
+			thread = new BottleneckThread(ThreadName);
+			indices = thread.get(() -> new NodeIndices(confSpace, memBytes, file, fileBytes));
+			shards = null;
+		}
 
 		// make another thread to periodically keep the cluster members up-to-date
 		broadcaster = new RateLimitedThread("NodeDB-bcast", broadcastNs, TimeUnit.NANOSECONDS, () -> broadcast());
@@ -142,19 +176,31 @@ public class NodeDB implements AutoCloseable {
 	/**
 	 * Set a function to call when dropped nodes need to be processed.
 	 * Called from the NodeDB thread, not the caller thread!
+	 * Or, if the NodeDB is sharded, called from whichever thread caused the drop.
 	 **/
 	public void setDropHandler(Consumer<Stream<NodeIndex.Node>> dropHandler) {
-		thread.exec(() -> indices.dropHandler = dropHandler);
+		if (shards != null) {
+			shards.dropHandler = dropHandler;
+		} else {
+			thread.exec(() -> indices.dropHandler = dropHandler);
+		}
 	}
 
 	@Override
 	public void close() {
 		broadcaster.close();
-		thread.exec(() -> indices.close());
-		thread.close();
+		if (shards != null) {
+			shards.close();
+		} else {
+			thread.exec(() -> indices.close());
+			thread.close();
+		}
 	}
 
 	public long size(int statei) {
+		if (shards != null) {
+			return shards.size(statei);
+		}
 		return thread.get(() -> indices.size(statei));
 	}
 
@@ -163,7 +209,12 @@ public class NodeDB implements AutoCloseable {
 		checkSocketIOThread();
 
 		// get info from the indices
-		var info = thread.get(() -> indices.getBroadcastInfo());
+		NodeIndices.BroadcastInfo info;
+		if (shards != null) {
+			info = shards.getBroadcastInfo();
+		} else {
+			info = thread.get(() -> indices.getBroadcastInfo());
+		}
 
 		// broadcast
 		member.sendToOthers(() -> new BroadcastOperation(info, perf));
@@ -186,11 +237,17 @@ public class NodeDB implements AutoCloseable {
 	}
 
 	public void clearLocal(int statei) {
-		thread.exec(() -> {
+		if (shards != null) {
 			perf.clear();
-			indices.clear(statei);
+			shards.clear(statei);
 			broadcaster.request();
-		});
+		} else {
+			thread.exec(() -> {
+				perf.clear();
+				indices.clear(statei);
+				broadcaster.request();
+			});
+		}
 	}
 
 	/**
@@ -202,7 +259,12 @@ public class NodeDB implements AutoCloseable {
 	public void add(int statei, List<NodeIndex.Node> nodes) {
 
 		// prefer local storage first
-		boolean wasAdded = thread.get(() -> indices.tryAdd(statei, nodes));
+		boolean wasAdded;
+		if (shards != null) {
+			wasAdded = shards.tryAdd(statei, nodes);
+		} else {
+			wasAdded = thread.get(() -> indices.tryAdd(statei, nodes));
+		}
 		if (wasAdded) {
 			broadcaster.request();
 			return;
@@ -216,7 +278,11 @@ public class NodeDB implements AutoCloseable {
 		}
 
 		// finally, force local storage
-		thread.exec(() -> indices.add(statei, nodes));
+		if (shards != null) {
+			shards.add(statei, nodes);
+		} else {
+			thread.exec(() -> indices.add(statei, nodes));
+		}
 		broadcaster.request();
 	}
 
@@ -232,10 +298,15 @@ public class NodeDB implements AutoCloseable {
 	 * Add nodes to the local store
 	 */
 	public void addLocal(int statei, List<NodeIndex.Node> nodes) {
-		thread.exec(() -> {
-			indices.add(statei, nodes);
+		if (shards != null) {
+			shards.add(statei, nodes);
 			broadcaster.request();
-		});
+		} else {
+			thread.exec(() -> {
+				indices.add(statei, nodes);
+				broadcaster.request();
+			});
+		}
 	}
 
 	/**
@@ -250,10 +321,15 @@ public class NodeDB implements AutoCloseable {
 	 * Removes the highest node from the local index.
 	 */
 	public void removeHighestLocal(int statei, int count, List<NodeIndex.Node> nodes) {
-		thread.exec(() -> {
-			indices.removeHighest(statei, count, nodes);
+		if (shards != null) {
+			shards.removeHighest(statei, count, nodes);
 			broadcaster.request();
-		});
+		} else {
+			thread.exec(() -> {
+				indices.removeHighest(statei, count, nodes);
+				broadcaster.request();
+			});
+		}
 	}
 
 	/**
@@ -274,6 +350,12 @@ public class NodeDB implements AutoCloseable {
 	 * but they should be pretty high.
 	 */
 	public void removeHigh(int statei, int count, List<NodeIndex.Node> nodes) {
+
+		if (shards != null) {
+			removeHighSharded(statei, count, nodes);
+			return;
+		}
+
 		var neighbor = thread.get(() -> {
 
 			// compare the local scores with the highest neighbor to figure out where the best nodes are
@@ -298,6 +380,25 @@ public class NodeDB implements AutoCloseable {
 		// otherwise, there are no nodes anywhere
 	}
 
+	private void removeHighSharded(int statei, int count, List<NodeIndex.Node> nodes) {
+
+		// compare the local scores with the highest neighbor to figure out where the best nodes are
+		var highestNeighbor = neighbors.findHighestNodes(statei);
+		BigExp localMaxScore = shards.highestScore(statei);
+
+		// if the local nodes the best, get those
+		if (localMaxScore != null && (highestNeighbor == null || localMaxScore.compareTo(highestNeighbor.item) > 0)) {
+			shards.removeHighest(statei, count, nodes);
+			broadcaster.request();
+
+		// if the neighbor's nodes are the best, get those
+		} else if (highestNeighbor != null) {
+			neighbors.removeHighestNodes(highestNeighbor.addr, statei, count, nodes);
+		}
+
+		// otherwise, there are no nodes anywhere
+	}
+
 	/**
 	 * Conveience method to remove a single node.
 	 * The batched version is preferred, for speed.
@@ -309,11 +410,17 @@ public class NodeDB implements AutoCloseable {
 	}
 
 	public long freeSpaceLocal(int statei) {
+		if (shards != null) {
+			return shards.freeSpace(statei);
+		}
 		return thread.get(() -> indices.freeSpace(statei));
 	}
 
 	public long nodesPerBlock(int statei) {
 		// constant lookup, don't need to synchronize
+		if (shards != null) {
+			return shards.nodesPerBlock(statei);
+		}
 		return indices.nodesPerBlock(statei);
 	}
 
@@ -321,9 +428,12 @@ public class NodeDB implements AutoCloseable {
 	 * Returns the ratio of used space to total space.
 	 */
 	public float usage() {
-		return neighbors.usage(
-			thread.get(() -> indices.numUsedBytes()),
-			memBytes
-		);
+		long usedBytes;
+		if (shards != null) {
+			usedBytes = shards.numUsedBytes();
+		} else {
+			usedBytes = thread.get(() -> indices.numUsedBytes());
+		}
+		return neighbors.usage(usedBytes, memBytes + fileBytes);
 	}
 }
@@ -6,12 +6,19 @@ import edu.duke.cs.osprey.confspace.MultiStateConfSpace;
 import edu.duke.cs.osprey.tools.BigExp;
 import edu.duke.cs.osprey.tools.HashCalculator;
 
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.Deque;
 
 
 /**
  * A specialization of FixedIndex for COFFEE nodes.
+ *
+ * Optionally, the index can be tiered across two block stores:
+ * the highest-scoring nodes are kept in the (fast) memory store,
+ * and lower-scoring nodes are demoted to the (large) disk store
+ * instead of being dropped. Nodes are promoted back into memory
+ * when space frees up there. Nodes are only dropped when both tiers are full.
  */
 public class NodeIndex {
 
@@ -72,16 +79,36 @@ public class NodeIndex {
 	}
 
 	public final BlockStore store;
+	public final BlockStore diskStore;
 	public final MultiStateConfSpace.State state;
 
 	private final FixedIndex<BigExp,Node> index;
+	private final FixedIndex<BigExp,Node> diskIndex;
+	private final Deque<Node> dropped;
 
 	public NodeIndex(BlockStore store, MultiStateConfSpace.State state) {
+		this(store, null, state);
+	}
+
+	public NodeIndex(BlockStore store, BlockStore diskStore, MultiStateConfSpace.State state) {
 
 		this.store = store;
+		this.diskStore = diskStore;
 		this.state = state;
 
 		index = new PriorityDequeFixedIndex<>(store, Serializers.indexNode(state));
+
+		if (diskStore != null) {
+			diskIndex = new PriorityDequeFixedIndex<>(diskStore, Serializers.indexNode(state));
+			dropped = new ArrayDeque<>(index.blockCapacity());
+		} else {
+			diskIndex = null;
+			dropped = index.dropped();
+		}
+	}
+
+	public boolean isTiered() {
+		return diskIndex != null;
 	}
 
 	protected int nodesPerBlock() {
@@ -89,35 +116,174 @@ public class NodeIndex {
 	}
 
 	public long size() {
+		long size = index.size();
+		if (diskIndex != null) {
+			size += diskIndex.size();
+		}
+		return size;
+	}
+
+	/** Returns the number of nodes stored in the memory tier. */
+	public long sizeMem() {
 		return index.size();
 	}
 
+	/** Returns the number of nodes stored in the disk tier. */
+	public long sizeDisk() {
+		if (diskIndex == null) {
+			return 0;
+		}
+		return diskIndex.size();
+	}
+
 	public long freeSpace() {
-		return index.freeSpace();
+		long freeSpace = index.freeSpace();
+		if (diskIndex != null) {
+			freeSpace += diskIndex.freeSpace();
+		}
+		return freeSpace;
 	}
 
 	public boolean add(Node node) {
 		assert (node.statei == state.index);
-		return index.add(node);
+
+		if (diskIndex == null) {
+			return index.add(node);
+		}
+
+		// prefer the memory tier
+		if (index.add(node)) {
+			// adding may have evicted our lowest memory block, so send it to disk
+			demote();
+			return true;
+		}
+
+		// memory is full, and none of the full blocks are ours to demote, so go straight to disk
+		return addDisk(node);
+	}
+
+	private boolean addDisk(Node node) {
+
+		boolean wasAdded = diskIndex.add(node);
+
+		// anything the disk tier dropped is gone for good
+		collectDiskDropped();
+
+		return wasAdded;
+	}
+
+	private void collectDiskDropped() {
+		var diskDropped = diskIndex.dropped();
+		if (!diskDropped.isEmpty()) {
+			dropped.addAll(diskDropped);
+			diskDropped.clear();
+		}
+	}
+
+	/** Moves nodes evicted from the memory tier into the disk tier. */
+	private void demote() {
+		var memDropped = index.dropped();
+		while (!memDropped.isEmpty()) {
+			var node = memDropped.poll();
+			if (!addDisk(node)) {
+				dropped.add(node);
+			}
+		}
+	}
+
+	/**
+	 * Moves the highest-scoring nodes from the disk tier into the memory tier, if there's room.
+	 * Always leaves one block of free space in memory, so the next add doesn't immediately demote.
+	 * Promotes at most one block of nodes per call, to keep the cost of any single operation bounded.
+	 */
+	private void promote() {
+		int blockCapacity = index.blockCapacity();
+		for (int i=0; i<blockCapacity; i++) {
+
+			if (diskIndex.size() <= 0 || index.freeSpace() <= blockCapacity) {
+				break;
+			}
+
+			var node = diskIndex.removeHighest();
+			collectDiskDropped();
+			if (node == null) {
+				break;
+			}
+
+			if (!index.add(node)) {
+				// shouldn't happen since we checked for space, but don't lose the node if it does
+				if (!addDisk(node)) {
+					dropped.add(node);
+				}
+				break;
+			}
+			demote();
+		}
 	}
 
 	public BigExp highestScore() {
-		return index.highestScore();
+
+		BigExp memScore = index.highestScore();
+		if (diskIndex == null) {
+			return memScore;
+		}
+
+		BigExp diskScore = diskIndex.highestScore();
+		if (memScore == null) {
+			return diskScore;
+		} else if (diskScore == null) {
+			return memScore;
+		} else if (diskScore.compareTo(memScore) > 0) {
+			return diskScore;
+		} else {
+			return memScore;
+		}
 	}
 
 	public Node removeHighest() {
-		return index.removeHighest();
+
+		if (diskIndex == null) {
+			return index.removeHighest();
+		}
+
+		// take the highest node from whichever tier has it
+		Node node;
+		BigExp memScore = index.highestScore();
+		BigExp diskScore = diskIndex.highestScore();
+		if (diskScore != null && (memScore == null || diskScore.compareTo(memScore) > 0)) {
+			node = diskIndex.removeHighest();
+			collectDiskDropped();
+		} else {
+			node = index.removeHighest();
+			demote();
+		}
+
+		// refill memory from the disk tier, if there's room now
+		promote();
+
+		return node;
 	}
 
 	public void freeUpSpace() {
-		index.freeUpSpace();
+		if (diskIndex == null) {
+			index.freeUpSpace();
+		} else {
+			// in tiered mode, only the disk tier ever needs to make space for other states,
+			// since nodes that don't fit in memory go to disk instead
+			diskIndex.freeUpSpace();
+			collectDiskDropped();
+		}
 	}
 
 	public Deque<Node> dropped() {
-		return index.dropped();
+		return dropped;
 	}
 
 	public void clear() {
 		index.clear();
+		if (diskIndex != null) {
+			diskIndex.clear();
+			dropped.clear();
+		}
 	}
 }
@@ -4,6 +4,7 @@ import edu.duke.cs.osprey.confspace.MultiStateConfSpace;
 import edu.duke.cs.osprey.tools.BigExp;
 import edu.duke.cs.osprey.tools.Streams;
 
+import java.io.File;
 import java.util.Arrays;
 import java.util.List;
 import java.util.function.Consumer;
@@ -31,37 +32,65 @@ public class NodeIndices implements AutoCloseable {
 
 	public final MultiStateConfSpace confSpace;
 	public final long memBytes;
+	public final File file;
+	public final long fileBytes;
 
 	public Consumer<Stream<NodeIndex.Node>> dropHandler = null;
 
 	private final BlockStore store;
+	private final BlockStore diskStore;
 	private final NodeIndex[] indices;
 
 	public NodeIndices(MultiStateConfSpace confSpace, long memBytes) {
+		this(confSpace, memBytes, null, 0);
+	}
+
+	/**
+	 * If a file is given, the nodes are tiered across memory and the file:
+	 * the highest-scoring nodes of each state stay in memory,
+	 * and lower-scoring nodes are demoted to the memory-mapped file rather than dropped.
+	 */
+	public NodeIndices(MultiStateConfSpace confSpace, long memBytes, File file, long fileBytes) {
 
 		this.confSpace = confSpace;
 		this.memBytes = memBytes;
+		this.file = file;
+		this.fileBytes = fileBytes;
 
-		// allocate the block store
+		// allocate the block stores
 		store = new BlockStore(null, memBytes);
-
-		// make sure there's at least 2 blocks for each index
-		long minBytes = store.blockSize*confSpace.states.size()*2;
-		if (memBytes < minBytes) {
-			throw new IllegalArgumentException(String.format("NodeDB should have at least %d bytes for %d states",
-				minBytes, confSpace.states.size()
-			));
+		checkMinBytes(store, "memory");
+		if (file != null) {
+			diskStore = new BlockStore(file, fileBytes);
+			checkMinBytes(diskStore, "file");
+		} else {
+			diskStore = null;
 		}
 
 		// init the state indices and metadata
 		indices = confSpace.states.stream()
-			.map(state -> new NodeIndex(store, state))
+			.map(state -> new NodeIndex(store, diskStore, state))
 			.toArray(NodeIndex[]::new);
 	}
 
+	private void checkMinBytes(BlockStore store, String name) {
+
+		// make sure there's at least 2 blocks for each index
+		long minBytes = store.blockSize*confSpace.states.size()*2;
+		if (store.bytes < minBytes) {
+			store.close();
+			throw new IllegalArgumentException(String.format("NodeDB %s should have at least %d bytes for %d states",
+				name, minBytes, confSpace.states.size()
+			));
+		}
+	}
+
 	@Override
 	public void close() {
 		store.close();
+		if (diskStore != null) {
+			diskStore.close();
+		}
 	}
 
 	public long size(int statei) {
@@ -79,8 +108,8 @@ public class NodeIndices implements AutoCloseable {
 			out.freeSpaces[i] = index.freeSpace();
 			out.maxScores[i] = index.highestScore();
 		}
-		out.usedBytes = store.numUsedBytes();
-		out.totalBytes = store.bytes;
+		out.usedBytes = numUsedBytes();
+		out.totalBytes = numTotalBytes();
 		return out;
 	}
 
@@ -195,6 +224,18 @@ public class NodeIndices implements AutoCloseable {
 	}
 
 	public long numUsedBytes() {
-		return store.numUsedBytes();
+		long bytes = store.numUsedBytes();
+		if (diskStore != null) {
+			bytes += diskStore.numUsedBytes();
+		}
+		return bytes;
+	}
+
+	public long numTotalBytes() {
+		long bytes = store.bytes;
+		if (diskStore != null) {
+			bytes += diskStore.bytes;
+		}
+		return bytes;
 	}
 }
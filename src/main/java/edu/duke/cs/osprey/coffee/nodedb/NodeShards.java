@@ -0,0 +1,422 @@
+package edu.duke.cs.osprey.coffee.nodedb;
+
+import edu.duke.cs.osprey.confspace.MultiStateConfSpace;
+import edu.duke.cs.osprey.tools.BigExp;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+
+/**
+ * A thread-safe alternative to NodeIndices.
+ *
+ * Each state's nodes are split across several shards, and each shard
+ * has its own block store (and hence its own allocator) and its own lock,
+ * so many threads can add and remove nodes at once without
+ * serializing through a single thread.
+ *
+ * Since the shards don't share memory, each shard can only drop its own nodes to make space.
+ * So each shard gets at least {@link #MinBlocksPerShard} blocks, and when there isn't enough space
+ * for the requested number of shards, the number of shards per state is reduced to fit.
+ *
+ * Removals take nodes from the shard with the highest score, so removed nodes
+ * are the highest in the state, up to races with other concurrent removals.
+ */
+public class NodeShards implements AutoCloseable {
+
+	private class Shard {
+
+		final ReentrantLock lock = new ReentrantLock(false);
+		final BlockStore store;
+		final BlockStore diskStore;
+		final NodeIndex index;
+
+		// cached stats, so readers don't need the lock
+		volatile BigExp highestScore = null;
+		volatile long size = 0;
+		volatile long freeSpace;
+		volatile long usedBytes = 0;
+
+		Shard(MultiStateConfSpace.State state, long memBytes, File file, long fileOffset, long fileBytes) {
+
+			store = BlockStore.shared(null, 0, memBytes);
+			checkMinBytes(store, "memory");
+			if (file != null) {
+				diskStore = BlockStore.shared(file, fileOffset, fileBytes);
+				checkMinBytes(diskStore, "file");
+			} else {
+				diskStore = null;
+			}
+
+			index = new NodeIndex(store, diskStore, state);
+			freeSpace = index.freeSpace();
+		}
+
+		/** call only while holding the lock */
+		void updateStats() {
+			highestScore = index.highestScore();
+			size = index.size();
+			freeSpace = index.freeSpace();
+			long bytes = store.numUsedBytes();
+			if (diskStore != null) {
+				bytes += diskStore.numUsedBytes();
+			}
+			usedBytes = bytes;
+		}
+
+		/** call only while holding the lock */
+		void collectDropped(List<NodeIndex.Node> dropped) {
+			var nodes = index.dropped();
+			if (!nodes.isEmpty()) {
+				dropped.addAll(nodes);
+				nodes.clear();
+			}
+		}
+
+		void close() {
+			lock.lock();
+			try {
+				store.close();
+				if (diskStore != null) {
+					diskStore.close();
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/** Shards smaller than this fill up too quickly to be useful, since they can't borrow space from each other */
+	public static final int MinBlocksPerShard = 8;
+
+	public final MultiStateConfSpace confSpace;
+	public final long memBytes;
+	public final File file;
+	public final long fileBytes;
+	public final int numShardsPerStateRequested;
+
+	/** Can be less than the requested number of shards if there isn't enough space */
+	public final int numShardsPerState;
+
+	/** Called from the thread that caused the drop, not from any special thread. */
+	public volatile Consumer<Stream<NodeIndex.Node>> dropHandler = null;
+
+	private final Shard[][] shards;
+
+	public NodeShards(MultiStateConfSpace confSpace, long memBytes, File file, long fileBytes, int numShardsPerState) {
+
+		if (numShardsPerState <= 0) {
+			throw new IllegalArgumentException("need at least one shard per state, not " + numShardsPerState);
+		}
+
+		this.confSpace = confSpace;
+		this.memBytes = memBytes;
+		this.file = file;
+		this.fileBytes = fileBytes;
+		this.numShardsPerStateRequested = numShardsPerState;
+
+		// use fewer shards if there isn't enough space for all of them
+		numShardsPerState = Math.min(numShardsPerState, maxShardsPerState(confSpace.states.size(), memBytes));
+		if (file != null) {
+			numShardsPerState = Math.min(numShardsPerState, maxShardsPerState(confSpace.states.size(), fileBytes));
+		}
+		this.numShardsPerState = numShardsPerState;
+
+		// split the space evenly among all the shards
+		int numShards = confSpace.states.size()*numShardsPerState;
+		long shardMemBytes = memBytes/numShards;
+		long shardFileBytes = fileBytes/numShards;
+
+		shards = new Shard[confSpace.states.size()][numShardsPerState];
+		for (var state : confSpace.states) {
+			for (int i=0; i<numShardsPerState; i++) {
+				long fileOffset = (state.index*numShardsPerState + i)*shardFileBytes;
+				shards[state.index][i] = new Shard(state, shardMemBytes, file, fileOffset, shardFileBytes);
+			}
+		}
+	}
+
+	/**
+	 * Returns the most shards per state that still give each shard at least {@link #MinBlocksPerShard} blocks,
+	 * but always at least one shard per state.
+	 */
+	public static int maxShardsPerState(int numStates, long bytes) {
+		long minShardBytes = (long)BlockStore.DefaultBlockSize*MinBlocksPerShard;
+		return (int)Math.max(1, Math.min(Integer.MAX_VALUE, bytes/minShardBytes/numStates));
+	}
+
+	private void checkMinBytes(BlockStore store, String name) {
+
+		// make sure there's at least 2 blocks for each shard
+		long minBytes = store.blockSize*2L;
+		if (store.bytes < minBytes) {
+			store.close();
+			throw new IllegalArgumentException(String.format("NodeDB %s should have at least %d bytes for each of %d shards in %d states",
+				name, minBytes, numShardsPerState, confSpace.states.size()
+			));
+		}
+	}
+
+	@Override
+	public void close() {
+		for (var stateShards : shards) {
+			for (var shard : stateShards) {
+				shard.close();
+			}
+		}
+	}
+
+	public long size(int statei) {
+		long size = 0;
+		for (var shard : shards[statei]) {
+			size += shard.size;
+		}
+		return size;
+	}
+
+	public void clear(int statei) {
+		for (var shard : shards[statei]) {
+			shard.lock.lock();
+			try {
+				shard.index.clear();
+				shard.updateStats();
+			} finally {
+				shard.lock.unlock();
+			}
+		}
+	}
+
+	public NodeIndices.BroadcastInfo getBroadcastInfo() {
+		var out = new NodeIndices.BroadcastInfo(shards.length);
+		for (int i=0; i<shards.length; i++) {
+			out.freeSpaces[i] = freeSpace(i);
+			out.maxScores[i] = highestScore(i);
+		}
+		out.usedBytes = numUsedBytes();
+		out.totalBytes = numTotalBytes();
+		return out;
+	}
+
+	private void handleDropped(List<NodeIndex.Node> dropped) {
+
+		if (dropped.isEmpty()) {
+			return;
+		}
+
+		// call the drop handler if possible
+		var handler = dropHandler;
+		if (handler != null) {
+			handler.accept(dropped.stream());
+		}
+	}
+
+	public BigExp highestScore(int statei) {
+		BigExp highest = null;
+		for (var shard : shards[statei]) {
+			var score = shard.highestScore;
+			if (score != null && (highest == null || score.compareTo(highest) > 0)) {
+				highest = score;
+			}
+		}
+		return highest;
+	}
+
+	/**
+	 * Locks a shard for adding nodes.
+	 * Starts at a random shard to spread out the threads, and prefers uncontended shards.
+	 */
+	private Shard lockForAdd(int statei, long minFreeSpace) {
+
+		var stateShards = shards[statei];
+		int start = ThreadLocalRandom.current().nextInt(stateShards.length);
+
+		// look for an uncontended shard with enough space
+		for (int i=0; i<stateShards.length; i++) {
+			var shard = stateShards[(start + i) % stateShards.length];
+			if (shard.freeSpace >= minFreeSpace && shard.lock.tryLock()) {
+				return shard;
+			}
+		}
+
+		// look for any shard with enough space
+		for (int i=0; i<stateShards.length; i++) {
+			var shard = stateShards[(start + i) % stateShards.length];
+			if (shard.freeSpace >= minFreeSpace) {
+				shard.lock.lock();
+				return shard;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Adds the nodes, but only if some shard has space for all of them.
+	 * Returns true if the nodes were added.
+	 */
+	public boolean tryAdd(int statei, List<NodeIndex.Node> nodes) {
+
+		var shard = lockForAdd(statei, nodes.size());
+		if (shard == null) {
+			return false;
+		}
+
+		try {
+
+			// the space may have changed since we last looked
+			if (nodes.size() > shard.index.freeSpace()) {
+				return false;
+			}
+
+			for (var node : nodes) {
+				boolean wasAdded = shard.index.add(node);
+				assert (wasAdded);
+			}
+
+		} finally {
+			shard.updateStats();
+			shard.lock.unlock();
+		}
+
+		return true;
+	}
+
+	/**
+	 * Adds the nodes, dropping low-scoring nodes from the chosen shard to make space, if needed.
+	 */
+	public void add(int statei, List<NodeIndex.Node> nodes) {
+
+		var dropped = new ArrayList<NodeIndex.Node>();
+
+		var shard = lockForAdd(statei, 0);
+		assert (shard != null);
+		try {
+
+			for (var node : nodes) {
+
+				// the shard owns all the blocks in its store, so it can always make space for itself
+				boolean wasAdded = shard.index.add(node);
+				if (!wasAdded) {
+					shard.index.freeUpSpace();
+					shard.collectDropped(dropped);
+					wasAdded = shard.index.add(node);
+					if (!wasAdded) {
+						throw new Error("Couldn't find/make space for a new node in the local shard. This is a bug.");
+					}
+				}
+
+				shard.collectDropped(dropped);
+			}
+
+		} finally {
+			shard.updateStats();
+			shard.lock.unlock();
+		}
+
+		// call the drop handler outside of the lock
+		handleDropped(dropped);
+	}
+
+	private Shard findHighestShard(int statei, Shard except) {
+		Shard highest = null;
+		for (var shard : shards[statei]) {
+			if (shard == except) {
+				continue;
+			}
+			var score = shard.highestScore;
+			if (score != null && (highest == null || score.compareTo(highest.highestScore) > 0)) {
+				highest = shard;
+			}
+		}
+		return highest;
+	}
+
+	public void removeHighest(int statei, int count, List<NodeIndex.Node> nodes) {
+
+		var dropped = new ArrayList<NodeIndex.Node>();
+
+		int numRemoved = 0;
+		while (numRemoved < count) {
+
+			var shard = findHighestShard(statei, null);
+			if (shard == null) {
+				break;
+			}
+
+			// take nodes from this shard until the next-highest shard beats it
+			var nextShard = findHighestShard(statei, shard);
+			shard.lock.lock();
+			try {
+				while (numRemoved < count) {
+
+					var nextScore = nextShard != null ? nextShard.highestScore : null;
+					var score = shard.index.highestScore();
+					if (score == null || (nextScore != null && nextScore.compareTo(score) > 0)) {
+						break;
+					}
+
+					var node = shard.index.removeHighest();
+
+					// remove highest can drop nodes too, so handle them
+					shard.collectDropped(dropped);
+
+					if (node == null) {
+						break;
+					}
+					nodes.add(node);
+					numRemoved += 1;
+				}
+			} finally {
+				shard.updateStats();
+				shard.lock.unlock();
+			}
+
+			// is the whole state empty?
+			if (size(statei) <= 0) {
+				break;
+			}
+		}
+
+		handleDropped(dropped);
+	}
+
+	public long freeSpace(int statei) {
+		long freeSpace = 0;
+		for (var shard : shards[statei]) {
+			freeSpace += shard.freeSpace;
+		}
+		return freeSpace;
+	}
+
+	public long nodesPerBlock(int statei) {
+		return shards[statei][0].index.nodesPerBlock();
+	}
+
+	public long numUsedBytes() {
+		long bytes = 0;
+		for (var stateShards : shards) {
+			for (var shard : stateShards) {
+				bytes += shard.usedBytes;
+			}
+		}
+		return bytes;
+	}
+
+	public long numTotalBytes() {
+		long bytes = 0;
+		for (var stateShards : shards) {
+			for (var shard : stateShards) {
+				bytes += shard.store.bytes;
+				if (shard.diskStore != null) {
+					bytes += shard.diskStore.bytes;
+				}
+			}
+		}
+		return bytes;
+	}
+}
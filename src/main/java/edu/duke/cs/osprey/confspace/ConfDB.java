@@ -41,6 +41,11 @@ import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -48,14 +53,27 @@ import java.util.stream.IntStream;
 
 public class ConfDB implements AutoCleanable {
 
+	/** In write-behind mode, the background thread writes pending bounds at least this often */
+	public static final long WriteBehindFlushIntervalMs = 100;
+
+	/** In write-behind mode, the background thread wakes up early after this many writes */
+	public static final int WriteBehindBatchSize = 1024;
+
+	/** In write-behind mode, written bounds are committed to the write-ahead log at least this often */
+	public static final long WriteBehindCommitIntervalMs = 1000;
+
 	public static ConfDB makeIfNeeded(ConfSpaceIteration confSpace, File file) {
+		return makeIfNeeded(confSpace, file, false);
+	}
+
+	public static ConfDB makeIfNeeded(ConfSpaceIteration confSpace, File file, boolean writeBehind) {
 
 		// no file? confdb not needed
 		if (file == null) {
 			return null;
 		}
 
-		return new ConfDB(confSpace, file);
+		return new ConfDB(confSpace, file, writeBehind);
 	}
 
 	public static class DBs implements AutoCleanable {
@@ -168,6 +186,35 @@ public class ConfDB implements AutoCleanable {
 			this.upperTimestampNs = upperTimestampNs;
 		}
 
+		public static ConfInfo lower(double energy, long timestampNs) {
+			return new ConfInfo(energy, timestampNs, 0.0, 0L);
+		}
+
+		public static ConfInfo upper(double energy, long timestampNs) {
+			return new ConfInfo(0.0, 0L, energy, timestampNs);
+		}
+
+		/**
+		 * Returns a new info with the bounds of the update (if any)
+		 * replacing the bounds of the base (if any).
+		 */
+		public static ConfInfo overlay(ConfInfo base, ConfInfo update) {
+			ConfInfo out = base == null ? new ConfInfo() : new ConfInfo(base.lowerEnergy, base.lowerTimestampNs, base.upperEnergy, base.upperTimestampNs);
+			if (update.lowerTimestampNs != 0L) {
+				out.lowerEnergy = update.lowerEnergy;
+				out.lowerTimestampNs = update.lowerTimestampNs;
+			}
+			if (update.upperTimestampNs != 0L) {
+				out.upperEnergy = update.upperEnergy;
+				out.upperTimestampNs = update.upperTimestampNs;
+			}
+			return out;
+		}
+
+		public boolean hasBothBounds() {
+			return lowerTimestampNs != 0L && upperTimestampNs != 0L;
+		}
+
 		public Conf.Bound makeLowerBound() {
 			return makeBound(lowerEnergy, lowerTimestampNs);
 		}
@@ -296,6 +343,11 @@ public class ConfDB implements AutoCleanable {
 		private final EnergyIndex lowerIndex;
 		private final EnergyIndex upperIndex;
 
+		// in write-behind mode, bounds that haven't been written to the btree yet,
+		// in the same order as the btree, so the background thread writes them in sorted batches
+		// NOTE: values are never modified after they're added, so the writer can tell when they get replaced
+		private final ConcurrentSkipListMap<int[],ConfInfo> pending;
+
 		public ConfTable(String id) {
 
 			this.id = id;
@@ -332,6 +384,13 @@ public class ConfDB implements AutoCleanable {
 
 			this.lowerIndex = new EnergyIndex(id + "-lowerEnergy");
 			this.upperIndex = new EnergyIndex(id + "-upperEnergy");
+
+			if (writeBehind != null) {
+				pending = new ConcurrentSkipListMap<>(Arrays::compare);
+				writeBehind.tables.add(this);
+			} else {
+				pending = null;
+			}
 		}
 
 		@Override
@@ -344,62 +403,101 @@ public class ConfDB implements AutoCleanable {
 		}
 
 		public void setBounds(int[] assignments, double lowerEnergy, double upperEnergy, long timestampNs) {
-			ConfInfo info = btree.get(assignments);
-			if (info == null) {
-				info = new ConfInfo();
-			} else {
-				// remove old energy index entries if needed
-				if (info.lowerTimestampNs != 0L) {
-					lowerIndex.remove(info.lowerEnergy, assignments);
-				}
-				if (info.upperTimestampNs != 0L) {
-					upperIndex.remove(info.upperEnergy, assignments);
-				}
-			}
-			info.lowerEnergy = lowerEnergy;
-			info.lowerTimestampNs = timestampNs;
-			info.upperEnergy = upperEnergy;
-			info.upperTimestampNs = timestampNs;
-			btree.put(assignments, info);
-			lowerIndex.add(lowerEnergy, assignments);
-			upperIndex.add(upperEnergy, assignments);
+			update(assignments, new ConfInfo(lowerEnergy, timestampNs, upperEnergy, timestampNs));
 		}
 
 		public void setLowerBound(int[] assignments, double energy, long timestampNs) {
+			update(assignments, ConfInfo.lower(energy, timestampNs));
+		}
+
+		public void setUpperBound(int[] assignments, double energy, long timestampNs) {
+			update(assignments, ConfInfo.upper(energy, timestampNs));
+		}
+
+		private void update(int[] assignments, ConfInfo update) {
+
+			if (writeBehind == null) {
+				write(assignments, update);
+				return;
+			}
+
+			// buffer the update for the background thread
+			// NOTE: copy the assignments, since the caller could change them after we return
+			pending.merge(assignments.clone(), update, ConfInfo::overlay);
+			writeBehind.onWrite();
+		}
+
+		/** writes the bounds of the update to the btree and energy indices */
+		private void write(int[] assignments, ConfInfo update) {
+
 			ConfInfo info = btree.get(assignments);
 			if (info == null) {
 				info = new ConfInfo();
-			} else {
-				// remove old energy index entries if needed
-				if (info.lowerTimestampNs != 0L) {
-					lowerIndex.remove(info.lowerEnergy, assignments);
-				}
 			}
-			info.lowerEnergy = energy;
-			info.lowerTimestampNs = timestampNs;
+
+			// remove old energy index entries if needed
+			if (update.lowerTimestampNs != 0L && info.lowerTimestampNs != 0L) {
+				lowerIndex.remove(info.lowerEnergy, assignments);
+			}
+			if (update.upperTimestampNs != 0L && info.upperTimestampNs != 0L) {
+				upperIndex.remove(info.upperEnergy, assignments);
+			}
+
+			info = ConfInfo.overlay(info, update);
 			btree.put(assignments, info);
-			lowerIndex.add(energy, assignments);
+			if (update.lowerTimestampNs != 0L) {
+				lowerIndex.add(info.lowerEnergy, assignments);
+			}
+			if (update.upperTimestampNs != 0L) {
+				upperIndex.add(info.upperEnergy, assignments);
+			}
 		}
 
-		public void setUpperBound(int[] assignments, double energy, long timestampNs) {
-			ConfInfo info = btree.get(assignments);
-			if (info == null) {
-				info = new ConfInfo();
+		/**
+		 * Writes all the pending bounds to the btree, in sorted order.
+		 * Call only while holding the write-behind lock.
+		 * Returns true if anything was written.
+		 */
+		private boolean writePending() {
+			boolean wroteAny = false;
+			for (Map.Entry<int[],ConfInfo> entry : pending.entrySet()) {
+				write(entry.getKey(), entry.getValue());
+				// if another thread updated the bounds while we were writing, leave the new bounds for next time
+				pending.remove(entry.getKey(), entry.getValue());
+				wroteAny = true;
+			}
+			return wroteAny;
+		}
+
+		/** Reads the bounds, including any that haven't been written to the btree yet */
+		private ConfInfo read(int[] assignments) {
+
+			if (writeBehind == null) {
+				return btree.get(assignments);
+			}
+
+			// NOTE: check the pending bounds first, since the background thread
+			// always writes the btree before it removes pending bounds
+			ConfInfo update = pending.get(assignments);
+			if (update == null) {
+				return btree.get(assignments);
+			} else if (update.hasBothBounds()) {
+				return update;
 			} else {
-				// remove old energy index entries if needed
-				if (info.upperTimestampNs != 0L) {
-					upperIndex.remove(info.upperEnergy, assignments);
-				}
+				return ConfInfo.overlay(btree.get(assignments), update);
+			}
+		}
+
+		/** Iterating the btree or the energy indices only sees written bounds, so write the pending ones first */
+		private void writePendingNow() {
+			if (writeBehind != null) {
+				writeBehind.write(this);
 			}
-			info.upperEnergy = energy;
-			info.upperTimestampNs = timestampNs;
-			btree.put(assignments, info);
-			upperIndex.add(energy, assignments);
 		}
 
 		public Conf get(int[] assignments) {
 
-			ConfInfo info = btree.get(assignments);
+			ConfInfo info = read(assignments);
 			if (info == null) {
 				return null;
 			}
@@ -409,7 +507,7 @@ public class ConfDB implements AutoCleanable {
 
 		public ConfSearch.ScoredConf getScored(int[] assignments) {
 
-			ConfInfo info = btree.get(assignments);
+			ConfInfo info = read(assignments);
 			if (info == null) {
 				return null;
 			}
@@ -422,7 +520,7 @@ public class ConfDB implements AutoCleanable {
 
 		public ConfSearch.EnergiedConf getEnergied(ConfSearch.ScoredConf conf) {
 
-			ConfInfo info = btree.get(conf.getAssignments());
+			ConfInfo info = read(conf.getAssignments());
 			if (info == null || info.upperTimestampNs == 0L) {
 				return null;
 			}
@@ -432,7 +530,7 @@ public class ConfDB implements AutoCleanable {
 
 		public ConfSearch.EnergiedConf getEnergied(int[] assignments) {
 
-			ConfInfo info = btree.get(assignments);
+			ConfInfo info = read(assignments);
 			if (info == null) {
 				return null;
 			}
@@ -445,6 +543,7 @@ public class ConfDB implements AutoCleanable {
 		}
 
 		public void remove(int[] assignments) {
+			writePendingNow();
 			ConfInfo info = btree.get(assignments);
 			if (info != null) {
 				if (info.lowerTimestampNs != 0L) {
@@ -459,6 +558,7 @@ public class ConfDB implements AutoCleanable {
 
 		@Override
 		public Iterator<Conf> iterator() {
+			writePendingNow();
 			return Streams.of(btree.entryIterator())
 				.map((entry) -> new Conf(
 						entry.getKey(),
@@ -469,6 +569,7 @@ public class ConfDB implements AutoCleanable {
 		}
 
 		public Iterable<ConfSearch.ScoredConf> scoredConfs(SortOrder sort) {
+			writePendingNow();
 			switch (sort) {
 
 				case Assignment:
@@ -493,6 +594,7 @@ public class ConfDB implements AutoCleanable {
 		}
 
 		public Iterable<ConfSearch.EnergiedConf> energiedConfs(SortOrder sort) {
+			writePendingNow();
 			switch (sort) {
 
 				case Assignment:
@@ -518,14 +620,17 @@ public class ConfDB implements AutoCleanable {
 		}
 
 		public Iterable<Double> lowerBounds() {
+			writePendingNow();
 			return () -> lowerIndex.btree.keyIterator();
 		}
 
 		public Iterable<Double> upperBounds() {
+			writePendingNow();
 			return () -> upperIndex.btree.keyIterator();
 		}
 
 		public List<Conf> getConfsByLowerBound(double energy) {
+			writePendingNow();
 			List<int[]> multiAssignments = lowerIndex.get(energy);
 			if (multiAssignments == null) {
 				return null;
@@ -536,6 +641,7 @@ public class ConfDB implements AutoCleanable {
 		}
 
 		public List<Conf> getConfsByUpperBound(double energy) {
+			writePendingNow();
 			List<int[]> multiAssignments = upperIndex.get(energy);
 			if (multiAssignments == null) {
 				return null;
@@ -546,11 +652,21 @@ public class ConfDB implements AutoCleanable {
 		}
 
 		public long size() {
+			writePendingNow();
 			return btree.sizeLong();
 		}
 
+		/**
+		 * Commits the bounds to the database.
+		 * In write-behind mode, writes this table's buffered bounds first.
+		 * Call ConfDB.flush() to commit the buffered bounds of all the tables.
+		 */
 		public void flush() {
-			ConfDB.this.flush();
+			if (writeBehind != null) {
+				writeBehind.commit(this);
+			} else {
+				ConfDB.this.flush();
+			}
 		}
 	}
 
@@ -692,6 +808,121 @@ public class ConfDB implements AutoCleanable {
 		}
 	}
 
+	/**
+	 * Writes buffered bounds to the database on a background thread,
+	 * so threads setting bounds don't have to wait for each other to update the btrees.
+	 */
+	private class WriteBehind {
+
+		final List<ConfTable> tables = new CopyOnWriteArrayList<>();
+		final ReentrantLock lock = new ReentrantLock(false);
+		final AtomicInteger numWrites = new AtomicInteger(0);
+		final Thread thread;
+
+		volatile boolean isRunning = true;
+		volatile Throwable error = null;
+
+		// guarded by the lock
+		boolean hasUncommittedWrites = false;
+		long lastCommitNs = System.nanoTime();
+
+		WriteBehind() {
+			thread = new Thread(() -> {
+				try {
+					while (isRunning) {
+						synchronized (this) {
+							if (isRunning && numWrites.get() < WriteBehindBatchSize) {
+								this.wait(WriteBehindFlushIntervalMs);
+							}
+						}
+						write(false);
+					}
+				} catch (InterruptedException ex) {
+					// time to stop
+				} catch (Throwable t) {
+					error = t;
+				}
+			});
+			thread.setName("ConfDB-WriteBehind");
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		void checkError() {
+			if (error != null) {
+				throw new RuntimeException("ConfDB background writer failed, recent bounds were not saved", error);
+			}
+		}
+
+		void onWrite() {
+			checkError();
+			if (numWrites.incrementAndGet() == WriteBehindBatchSize) {
+				synchronized (this) {
+					this.notifyAll();
+				}
+			}
+		}
+
+		/** Writes the pending bounds of all the tables, and commits if needed. */
+		void write(boolean forceCommit) {
+			lock.lock();
+			try {
+
+				numWrites.set(0);
+				for (ConfTable table : tables) {
+					hasUncommittedWrites |= table.writePending();
+				}
+
+				long nowNs = System.nanoTime();
+				if (forceCommit || (hasUncommittedWrites && nowNs - lastCommitNs >= TimeUnit.MILLISECONDS.toNanos(WriteBehindCommitIntervalMs))) {
+					db.commit();
+					hasUncommittedWrites = false;
+					lastCommitNs = nowNs;
+				}
+
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		/** Writes the pending bounds of just one table, but doesn't commit. */
+		void write(ConfTable table) {
+			checkError();
+			lock.lock();
+			try {
+				hasUncommittedWrites |= table.writePending();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		/** Writes the pending bounds of just one table, and commits. */
+		void commit(ConfTable table) {
+			checkError();
+			lock.lock();
+			try {
+				table.writePending();
+				db.commit();
+				hasUncommittedWrites = false;
+				lastCommitNs = System.nanoTime();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		void stop() {
+			isRunning = false;
+			synchronized (this) {
+				this.notifyAll();
+			}
+			try {
+				thread.join();
+			} catch (InterruptedException ex) {
+				throw new RuntimeException(ex);
+			}
+		}
+	}
+
 	public final ConfSpaceIteration confSpace;
 	public final File file;
 
@@ -700,12 +931,24 @@ public class ConfDB implements AutoCleanable {
 	private final HTreeMap<Sequence,SequenceInfo> sequences;
 	private final Map<Sequence,SequenceDB> sequenceDBs;
 	private final IntEncoding assignmentEncoding;
+	private final WriteBehind writeBehind;
 
 	public ConfDB(ConfSpaceIteration confSpace) {
 		this(confSpace, null);
 	}
 
 	public ConfDB(ConfSpaceIteration confSpace, File file) {
+		this(confSpace, file, false);
+	}
+
+	/**
+	 * @param writeBehind If true, bounds are buffered in memory and written to the database
+	 *                    in sorted batches by a background thread. Reads see buffered bounds immediately.
+	 *                    Buffered bounds are committed at least every {@link #WriteBehindCommitIntervalMs} ms,
+	 *                    so a crash loses at most that much recent work.
+	 *                    Use when many threads share one database, since writes no longer wait for each other.
+	 */
+	public ConfDB(ConfSpaceIteration confSpace, File file, boolean writeBehind) {
 
 		this.confSpace = confSpace;
 		this.file = file;
@@ -754,6 +997,12 @@ public class ConfDB implements AutoCleanable {
 			.valueSerializer(infoSerializer)
 			.createOrOpen();
 		sequenceDBs = new HashMap<>();
+
+		this.writeBehind = writeBehind ? new WriteBehind() : null;
+	}
+
+	public boolean isWriteBehind() {
+		return writeBehind != null;
 	}
 
 	public ConfTable get(Key key) {
@@ -812,6 +1061,13 @@ public class ConfDB implements AutoCleanable {
 	}
 
 	public void flush() {
+
+		if (writeBehind != null) {
+			writeBehind.checkError();
+			writeBehind.write(true);
+			return;
+		}
+
 		// In write-ahead mode, we don't actually have any transactions,
 		// so there's nothing to commit in the traditional sense.
 		// So in this case, "commit" flushes write caches to disk
@@ -819,16 +1075,29 @@ public class ConfDB implements AutoCleanable {
 	}
 
 	public void close() {
-		flush();
-		for (ConfTable table : tables.values()) {
-			table.close();
+		try {
+			if (writeBehind != null) {
+				writeBehind.stop();
+				writeBehind.write(true);
+			} else {
+				flush();
+			}
+		} finally {
+			for (ConfTable table : tables.values()) {
+				table.close();
+			}
+			tables.clear();
+			for (SequenceDB sdb : sequenceDBs.values()) {
+				sdb.close();
+			}
+			sequenceDBs.clear();
+			db.close();
 		}
-		tables.clear();
-		for (SequenceDB sdb : sequenceDBs.values()) {
-			sdb.close();
+
+		// if the background writer failed before we stopped it, some bounds were lost
+		if (writeBehind != null) {
+			writeBehind.checkError();
 		}
-		sequenceDBs.clear();
-		db.close();
 	}
 
 	@Override
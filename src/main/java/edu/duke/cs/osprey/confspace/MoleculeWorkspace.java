@@ -0,0 +1,193 @@
+/*
+** This file is part of OSPREY 3.0
+** 
+** OSPREY Protein Redesign Software Version 3.0
+** Copyright (C) 2001-2018 Bruce Donald Lab, Duke University
+** 
+** OSPREY is free software: you can redistribute it and/or modify
+** it under the terms of the GNU General Public License version 2
+** as published by the Free Software Foundation.
+** 
+** You should have received a copy of the GNU General Public License
+** along with OSPREY.  If not, see <http://www.gnu.org/licenses/>.
+** 
+** OSPREY relies on grants for its development, and since visibility
+** in the scientific literature is essential for our success, we
+** ask that users of OSPREY cite our papers. See the CITING_OSPREY
+** document in this distribution for more information.
+** 
+** Contact Info:
+**    Bruce Donald
+**    Duke University
+**    Department of Computer Science
+**    Levine Science Research Center (LSRC)
+**    Durham
+**    NC 27708-0129
+**    USA
+**    e-mail: www.cs.duke.edu/brd/
+** 
+** <signature of Bruce Donald>, Mar 1, 2018
+** Bruce Donald, Professor of Computer Science
+*/
+
+package edu.duke.cs.osprey.confspace;
+
+import edu.duke.cs.osprey.dof.DegreeOfFreedom;
+import edu.duke.cs.osprey.dof.FreeDihedral;
+import edu.duke.cs.osprey.minimization.ObjectiveFunction.DofBounds;
+import edu.duke.cs.osprey.structure.Residue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+
+/**
+ * Keeps a posed molecule for a {@link SimpleConfSpace} around, so consecutive conformations can re-use it
+ * instead of copying the whole template molecule and re-making all the DOFs for every conformation.
+ *
+ * Conformations from a conf search usually differ at only a few positions, and always share a sequence
+ * when computing a partition function. So when the next conformation assigns the same positions with the
+ * same residue types, the workspace only resets the coordinates of the assigned residues to the cached pose
+ * for each RC, and keeps all the residues and DOFs. Any other conformation gets a new molecule, made by
+ * {@link SimpleConfSpace#makeMolecule(RCTuple)}.
+ *
+ * The cached poses are copied from molecules made by {@link SimpleConfSpace#makeMolecule(RCTuple)},
+ * so a re-used molecule is exactly the same as a new one, and no roundoff error accumulates between conformations.
+ *
+ * Molecules returned by a workspace are only valid until the next call to {@link #makeMolecule(RCTuple)}.
+ * Workspaces aren't thread-safe, so each thread needs its own.
+ */
+public class MoleculeWorkspace {
+
+	public final SimpleConfSpace confSpace;
+
+	/** the pose of each RC, indexed by pos, then RC, lazily filled by new molecules */
+	private final double[][][] poses;
+
+	private RCTuple conf = null;
+	private ParametricMolecule pmol = null;
+	private Residue[] residues = null;
+	private HashMap<String,Integer> dofIndices = null;
+
+	public MoleculeWorkspace(SimpleConfSpace confSpace) {
+		this.confSpace = confSpace;
+		poses = new double[confSpace.positions.size()][][];
+		for (SimpleConfSpace.Position pos : confSpace.positions) {
+			poses[pos.index] = new double[pos.resConfs.size()][];
+		}
+	}
+
+	/**
+	 * Same as {@link SimpleConfSpace#makeMolecule(RCTuple)}, but re-uses the last molecule if possible.
+	 */
+	public ParametricMolecule makeMolecule(RCTuple conf) {
+
+		if (canReuse(conf)) {
+			return reuse(conf);
+		}
+
+		// make a new molecule
+		ParametricMolecule pmol = confSpace.makeMolecule(conf);
+
+		// we can only reset poses if the DOFs just move the conformation residues, one residue per DOF
+		// (strand DOFs like DEEPer and CATS move lots of residues, and other DOFs track their own state)
+		Residue[] residues = new Residue[conf.size()];
+		for (int i=0; i<conf.size(); i++) {
+			residues[i] = pmol.mol.getResByPDBResNumber(confSpace.positions.get(conf.pos.get(i)).resNum);
+		}
+		for (DegreeOfFreedom dof : pmol.dofs) {
+			if (!(dof instanceof FreeDihedral)) {
+				forget();
+				return pmol;
+			}
+		}
+
+		// save the poses before anyone moves the DOFs
+		for (int i=0; i<conf.size(); i++) {
+			poses[conf.pos.get(i)][conf.RCs.get(i)] = residues[i].coords.clone();
+		}
+
+		this.conf = new RCTuple(new ArrayList<>(conf.pos), new ArrayList<>(conf.RCs));
+		this.pmol = pmol;
+		this.residues = residues;
+		this.dofIndices = DegreeOfFreedom.nameToIndexMap(pmol.dofs);
+
+		return pmol;
+	}
+
+	/** drops the last molecule, but keeps the cached poses */
+	public void forget() {
+		conf = null;
+		pmol = null;
+		residues = null;
+		dofIndices = null;
+	}
+
+	private boolean canReuse(RCTuple conf) {
+
+		if (this.conf == null || !this.conf.pos.equals(conf.pos)) {
+			return false;
+		}
+
+		for (int i=0; i<conf.size(); i++) {
+			int posi = conf.pos.get(i);
+			int rc = conf.RCs.get(i);
+			SimpleConfSpace.ResidueConf resConf = confSpace.positions.get(posi).resConfs.get(rc);
+
+			// need a pose for the RC
+			if (poses[posi][rc] == null) {
+				return false;
+			}
+
+			// changing RCs can only change coordinates, not the residue type
+			// prolines have pucker state in the residue too, so don't try to re-use those
+			if (rc != this.conf.RCs.get(i)) {
+				SimpleConfSpace.ResidueConf oldResConf = confSpace.positions.get(posi).resConfs.get(this.conf.RCs.get(i));
+				if (resConf.template != oldResConf.template
+					|| resConf.postTemplateModifier != null
+					|| oldResConf.postTemplateModifier != null) {
+					return false;
+				}
+			}
+		}
+
+		return true;
+	}
+
+	private ParametricMolecule reuse(RCTuple conf) {
+
+		// reset the residues to the RC poses
+		// this also undoes any minimization of the last conformation
+		for (int i=0; i<conf.size(); i++) {
+			double[] pose = poses[conf.pos.get(i)][conf.RCs.get(i)];
+			System.arraycopy(pose, 0, residues[i].coords, 0, pose.length);
+		}
+
+		// update the DOF bounds the same way SimpleConfSpace.makeMolecule() does, but skip applying the DOFs,
+		// since the poses already have the DOFs applied
+		DofBounds dofBounds = new DofBounds(pmol.dofs.size());
+		HashSet<String> dofsAdded = new HashSet<>();
+		for (int i=0; i<conf.size(); i++) {
+			SimpleConfSpace.ResidueConf resConf = confSpace.positions.get(conf.pos.get(i)).resConfs.get(conf.RCs.get(i));
+			for (String dofName : resConf.dofBounds.keySet()) {
+				int dofIndex = dofIndices.get(dofName);
+				double[] bounds = resConf.dofBounds.get(dofName);
+				if (dofsAdded.contains(dofName)) {
+					if (Math.abs(dofBounds.getMax(dofIndex) - bounds[1]) > 1e-10
+							|| Math.abs(dofBounds.getMin(dofIndex) - bounds[0]) > 1e-10) {
+						throw new RuntimeException("ERROR: Conformation has inconsistent DOF bounds"
+							+ " between different positions' RCs");
+					}
+				} else {
+					dofBounds.set(dofIndex, bounds[0], bounds[1]);
+					dofsAdded.add(dofName);
+				}
+			}
+		}
+
+		this.conf = new RCTuple(new ArrayList<>(conf.pos), new ArrayList<>(conf.RCs));
+		pmol = new ParametricMolecule(pmol.mol, pmol.dofs, dofBounds);
+		return pmol;
+	}
+}
@@ -8,13 +8,30 @@ import edu.duke.cs.osprey.confspace.compiled.motions.TranslationRotation;
 import edu.duke.cs.osprey.energy.compiled.AmberEnergyCalculator;
 import edu.duke.cs.osprey.energy.compiled.EEF1EnergyCalculator;
 import edu.duke.cs.osprey.energy.compiled.EnergyCalculator;
+import edu.duke.cs.osprey.tools.ByteBufferInputStream;
+import edu.duke.cs.osprey.tools.FileTools;
 import edu.duke.cs.osprey.tools.LZMA2;
+import edu.duke.cs.osprey.tools.MathTools;
+import jdk.incubator.foreign.MemorySegment;
+import jdk.incubator.foreign.ResourceScope;
 import org.joml.Vector3d;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.DataInput;
 import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -178,24 +195,30 @@ public class ConfSpace implements ConfSpaceIteration {
 
 	public class IndicesStatic {
 
-		/** indexed by param, [0=atomi1, 1=atomi2, 2=parami] */
-		private final int[][] indices;
+		/** indexed by param*3 + [0=atomi1, 1=atomi2, 2=parami] */
+		private final IntBuffer indices;
+		private final int size;
 
 		public IndicesStatic(int[][] indices) {
+			this(flattenIndices(indices));
+		}
+
+		IndicesStatic(IntBuffer indices) {
 			this.indices = indices;
+			this.size = indices.limit()/3;
 		}
 
 		public int size() {
-			return indices.length;
+			return size;
 		}
 		public int getStaticAtom1Index(int i) {
-			return indices[i][0];
+			return indices.get(i*3);
 		}
 		public int getStaticAtom2Index(int i) {
-			return indices[i][1];
+			return indices.get(i*3 + 1);
 		}
 		public int getParamsIndex(int i) {
-			return indices[i][2];
+			return indices.get(i*3 + 2);
 		}
 	}
 
@@ -204,41 +227,45 @@ public class ConfSpace implements ConfSpaceIteration {
 
 	public class IndicesSingle {
 
-		/** indexed by param, [0=confAtom1i, 1=confAtom2i, 2=parami] */
-		private final int[][] internals;
+		/** indexed by param*3 + [0=confAtom1i, 1=confAtom2i, 2=parami] */
+		private final IntBuffer internals;
+		private final int sizeInternals;
 
-		/** indexed by param, [0=confAtomi, 1=staticAtomi, 2=parami] */
-		private final int[][] statics;
+		/** indexed by param*3 + [0=confAtomi, 1=staticAtomi, 2=parami] */
+		private final IntBuffer statics;
+		private final int sizeStatics;
 
-		IndicesSingle(int[][] internals, int[][] statics) {
+		IndicesSingle(IntBuffer internals, IntBuffer statics) {
 			this.internals = internals;
+			this.sizeInternals = internals.limit()/3;
 			this.statics = statics;
+			this.sizeStatics = statics.limit()/3;
 		}
 
 		public int sizeInternals() {
-			return internals.length;
+			return sizeInternals;
 		}
 		public int getInternalConfAtom1Index(int i) {
-			return internals[i][0];
+			return internals.get(i*3);
 		}
 		public int getInternalConfAtom2Index(int i) {
-			return internals[i][1];
+			return internals.get(i*3 + 1);
 		}
 		public int getInternalParamsIndex(int i) {
-			return internals[i][2];
+			return internals.get(i*3 + 2);
 		}
 
 		public int sizeStatics() {
-			return statics.length;
+			return sizeStatics;
 		}
 		public int getStaticConfAtomIndex(int i) {
-			return statics[i][0];
+			return statics.get(i*3);
 		}
 		public int getStaticStaticAtomIndex(int i) {
-			return statics[i][1];
+			return statics.get(i*3 + 1);
 		}
 		public int getStaticParamsIndex(int i) {
-			return statics[i][2];
+			return statics.get(i*3 + 2);
 		}
 	}
 
@@ -247,30 +274,49 @@ public class ConfSpace implements ConfSpaceIteration {
 
 	public class IndicesPair {
 
-		/** indexed by param, [0=conf1Atomi, 1=conf2Atomi, 2=parami] */
-		private final int[][] indices;
+		/** indexed by param*3 + [0=conf1Atomi, 1=conf2Atomi, 2=parami] */
+		private final IntBuffer indices;
+		private final int size;
 
 		public IndicesPair(int[][] indices) {
+			this(flattenIndices(indices));
+		}
+
+		IndicesPair(IntBuffer indices) {
 			this.indices = indices;
+			this.size = indices.limit()/3;
 		}
 
 		public int size() {
-			return indices.length;
+			return size;
 		}
 		public int getConfAtom1Index(int i) {
-			return indices[i][0];
+			return indices.get(i*3);
 		}
 		public int getConfAtom2Index(int i) {
-			return indices[i][1];
+			return indices.get(i*3 + 1);
 		}
 		public int getParamsIndex(int i) {
-			return indices[i][2];
+			return indices.get(i*3 + 2);
 		}
 	}
 
 	/** indexed by ff, pos1:pos2, frag1, frag2 */
 	private final IndicesPair[][][][] indicesPairs;
 
+	/**
+	 * The forcefield index tables of a memory-mapped conf space, or null if the tables were read into the heap.
+	 * When mapped, the indices arrays above are filled lazily from the tables, see {@link #writeMapped}.
+	 */
+	private final MemorySegment tables;
+
+	/** the (offset, size) of each table in the mapped tables, or null */
+	private final LongBuffer tablesDirectory;
+
+	/** the first table in the directory for each position, and each position pair */
+	private final int[] singlesTablesByPos;
+	private final int[] pairsTablesByPosPair;
+
 
 	/**
 	 * Stores the actual forcefield parameters.
@@ -287,6 +333,61 @@ public class ConfSpace implements ConfSpaceIteration {
 		// compute the hash code from the raw bytes
 		int hash = Arrays.hashCode(bytes);
 
+		bytes = decompress(bytes);
+
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+			return read(hash, in, MemorySegment.ofArray(bytes));
+		} catch (IOException ex) {
+			throw new RuntimeException("can't read compiled conformation space", ex);
+		}
+	}
+
+	/**
+	 * Loads a compiled conformation space from a file.
+	 *
+	 * Conformation spaces written by {@link #writeMapped} are memory-mapped rather than read into the heap,
+	 * so the forcefield index tables are only paged in when the energy calculators ask for them.
+	 * Any other conformation space is read with {@link #fromBytes}.
+	 */
+	public static ConfSpace fromFile(File file) {
+
+		// peek at the header to see if the file can be mapped
+		long tablesOffset = -1;
+		try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+			byte[] magic = new byte[Magic.length];
+			if (in.read(magic) == magic.length && Arrays.equals(magic, Magic) && in.readInt() == 2) {
+				in.readInt(); // hash
+				tablesOffset = in.readLong();
+			}
+		} catch (EOFException ex) {
+			// too short to be a mapped conf space
+		} catch (IOException ex) {
+			throw new RuntimeException("can't read compiled conformation space: " + file.getAbsolutePath(), ex);
+		}
+
+		if (tablesOffset < 0) {
+			return fromBytes(FileTools.readFileBytes(file));
+		}
+
+		// map the whole file, the mapping stays open for as long as the conf space is reachable
+		MemorySegment mem;
+		try {
+			mem = MemorySegment.mapFile(file.toPath(), 0, file.length(), FileChannel.MapMode.READ_ONLY, ResourceScope.newImplicitScope());
+		} catch (IOException ex) {
+			throw new RuntimeException("can't map compiled conformation space: " + file.getAbsolutePath(), ex);
+		}
+
+		// the hash code is in the header, so it doesn't matter what we pass here
+		ByteBuffer buf = mem.asSlice(0, tablesOffset).asByteBuffer();
+		try (DataInputStream in = new DataInputStream(new ByteBufferInputStream(buf))) {
+			return read(0, in, mem);
+		} catch (IOException ex) {
+			throw new RuntimeException("can't read compiled conformation space: " + file.getAbsolutePath(), ex);
+		}
+	}
+
+	private static byte[] decompress(byte[] bytes) {
+
 		// is the compiled conformation space compressed?
 		// look for XZ magic bytes to see if this conf space is compressed or not
 		// see XZ file spec, 2.1.1.1. Header Magic Bytes:
@@ -305,11 +406,55 @@ public class ConfSpace implements ConfSpaceIteration {
 			bytes = LZMA2.decompressBytes(bytes);
 		}
 
-		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+		return bytes;
+	}
 
-			// look for the compiled conf space magic bytes "_ospccs_"
-			boolean startValid =
-				in.read() == '_'
+	/** the compiled conf space magic bytes "_ospccs_" */
+	private static final byte[] Magic = { '_', 'o', 's', 'p', 'c', 'c', 's', '_' };
+
+	/**
+	 * @param mem the whole (uncompressed) conf space, for the versions that keep their tables outside of the stream
+	 */
+	private static ConfSpace read(int hash, DataInputStream in, MemorySegment mem)
+	throws IOException {
+
+		// look for the compiled conf space magic bytes "_ospccs_"
+		boolean startValid =
+			in.read() == '_'
+			&& in.read() == 'o'
+			&& in.read() == 's'
+			&& in.read() == 'p'
+			&& in.read() == 'c'
+			&& in.read() == 'c'
+			&& in.read() == 's'
+			&& in.read() == '_';
+		if (!startValid) {
+			throw new IllegalArgumentException("unrecognized compiled conformation space format");
+		}
+
+		// read the version and call the appropriate constructor
+		int version = in.readInt();
+		ConfSpace confSpace;
+		switch (version) {
+			case 1: confSpace = new ConfSpace(hash, in); break;
+			case 2: {
+				// version 2 keeps the hash of the conf space it was made from, so conf DBs et al. still match
+				hash = in.readInt();
+				long tablesOffset = in.readLong();
+				confSpace = new ConfSpace(hash, in, mem.asSlice(tablesOffset));
+			} break;
+			// if we need more versions in the future:
+			// case 3: confSpace = new ConfSpace(hash, in, 0); break;
+			// case 4: confSpace = new ConfSpace(hash, in, 0, 0); break;
+			// etc ...
+			// tragically Java doesn't have named constructors, and static constructor functions don't mix well with final fields
+			default: throw new IllegalArgumentException("unrecognized compiled conformation space version: " + version);
+		}
+
+		// we should see more magic bytes at the end
+		// if not, something got corrupted, or there's a bug
+		boolean endValid =
+			in.read() == '_'
 				&& in.read() == 'o'
 				&& in.read() == 's'
 				&& in.read() == 'p'
@@ -317,42 +462,90 @@ public class ConfSpace implements ConfSpaceIteration {
 				&& in.read() == 'c'
 				&& in.read() == 's'
 				&& in.read() == '_';
-			if (!startValid) {
-				throw new IllegalArgumentException("unrecognized compiled conformation space format");
-			}
+		if (!endValid) {
+			throw new IllegalArgumentException("compiled conformation space has been corrupted");
+		}
 
-			// read the version and call the appropriate constructor
-			int version = in.readInt();
-			ConfSpace confSpace;
-			switch (version) {
-				case 1: confSpace = new ConfSpace(hash, in); break;
-				// if we need more versions in the future:
-				// case 2: confSpace = new ConfSpace(hash, in, 0); break;
-				// case 3: confSpace = new ConfSpace(hash, in, 0, 0); break;
-				// etc ...
-				// tragically Java doesn't have named constructors, and static constructor functions don't mix well with final fields
-				default: throw new IllegalArgumentException("unrecognized compiled conformation space version: " + version);
-			}
+		return confSpace;
+	}
+
+	/**
+	 * Writes a compiled conformation space in a format that {@link #fromFile} can memory-map.
+	 *
+	 * The conformation space is uncompressed, and the forcefield index tables (by far the biggest part)
+	 * are moved out of the stream into a page-aligned region at the end of the file, in native (little-endian) int order.
+	 * Everything else is copied verbatim from the version 1 stream.
+	 *
+	 * Layout (version 2):
+	 * <pre>
+	 * magic "_ospccs_", int version=2, int hash of the original bytes, long tablesOffset
+	 * the version 1 stream, minus the index tables
+	 * zero padding, up to tablesOffset (a multiple of 4096)
+	 * the tables directory: for each table, long byte offset (relative to tablesOffset), long number of index triples
+	 * the tables: for each table, the (int,int,int) index triples
+	 * </pre>
+	 * The tables appear in the same order as in the version 1 stream.
+	 */
+	public static void writeMapped(byte[] bytes, File file) {
 
-			// we should see more magic bytes at the end
-			// if not, something got corrupted, or there's a bug
-			boolean endValid =
-				in.read() == '_'
-					&& in.read() == 'o'
-					&& in.read() == 's'
-					&& in.read() == 'p'
-					&& in.read() == 'c'
-					&& in.read() == 'c'
-					&& in.read() == 's'
-					&& in.read() == '_';
-			if (!endValid) {
-				throw new IllegalArgumentException("compiled conformation space has been corrupted");
+		int hash = Arrays.hashCode(bytes);
+		ConfSpace confSpace = fromBytes(bytes);
+		if (confSpace.tables != null) {
+			throw new IllegalArgumentException("compiled conformation space is already in the mapped format");
+		}
+		byte[] raw = decompress(bytes);
+
+		List<IntBuffer> tables = confSpace.indexTables();
+
+		// find the index tables in the version 1 stream, by working backwards from the end
+		long tablesSize = tables.stream()
+			.mapToLong(table -> Integer.BYTES + (long)table.limit()*Integer.BYTES)
+			.sum();
+		long paramsSize = Arrays.stream(confSpace.ffparams)
+			.mapToLong(params -> Integer.BYTES + Arrays.stream(params)
+				.mapToLong(p -> Integer.BYTES + (long)p.length*Double.BYTES)
+				.sum()
+			)
+			.sum();
+		int headerSize = Magic.length + Integer.BYTES;
+		int paramsStart = raw.length - Magic.length - (int)paramsSize;
+		int metaStart = headerSize;
+		int metaStop = paramsStart - (int)tablesSize;
+		if (metaStop < metaStart) {
+			throw new IllegalStateException("can't find the index tables in the compiled conformation space");
+		}
+
+		int streamSize = headerSize + Integer.BYTES + Long.BYTES + (metaStop - metaStart) + (raw.length - paramsStart);
+		long tablesOffset = MathTools.roundUpToMultiple(streamSize, 4096);
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64*1024))) {
+
+			// write the header and the stream
+			out.write(Magic);
+			out.writeInt(2);
+			out.writeInt(hash);
+			out.writeLong(tablesOffset);
+			out.write(raw, metaStart, metaStop - metaStart);
+			out.write(raw, paramsStart, raw.length - paramsStart);
+			for (long i=streamSize; i<tablesOffset; i++) {
+				out.writeByte(0);
 			}
 
-			return confSpace;
+			// write the tables directory, then the tables themselves, in little-endian order
+			long offset = (long)tables.size()*Long.BYTES*2;
+			for (IntBuffer table : tables) {
+				out.writeLong(Long.reverseBytes(offset));
+				out.writeLong(Long.reverseBytes(table.limit()/3));
+				offset += (long)table.limit()*Integer.BYTES;
+			}
+			for (IntBuffer table : tables) {
+				for (int i=0; i<table.limit(); i++) {
+					out.writeInt(Integer.reverseBytes(table.get(i)));
+				}
+			}
 
 		} catch (IOException ex) {
-			throw new RuntimeException("can't read compiled conformation space", ex);
+			throw new RuntimeException("can't write compiled conformation space: " + file.getAbsolutePath(), ex);
 		}
 	}
 
@@ -360,10 +553,19 @@ public class ConfSpace implements ConfSpaceIteration {
 	 * version 1 constructor
 	 */
 	private ConfSpace(int hash, DataInput in)
+	throws IOException {
+		this(hash, in, null);
+	}
+
+	/**
+	 * version 2 constructor: same as version 1, except the index tables are read lazily from the mapped tables
+	 */
+	private ConfSpace(int hash, DataInput in, MemorySegment tables)
 	throws IOException {
 
 		// save the hash
 		this.hash = hash;
+		this.tables = tables;
 
 		// read the name
 		name = in.readUTF();
@@ -565,48 +767,35 @@ public class ConfSpace implements ConfSpaceIteration {
 		}
 		this.maxNumConfAtoms = maxNumConfAtoms;
 
+		// NOTE: mapped conf spaces don't have the forcefield params indices in the stream,
+		// the indices accessors read them from the tables on demand
+
 		// read the static forcefield params
 		indicesStatic = new IndicesStatic[forcefieldIds.length];
-		for (int ffi=0; ffi<forcefieldIds.length; ffi++) {
-
-			int num = in.readInt();
-			int[][] indices = new int[num][3];
-			for (int i=0; i<num; i++) {
-				indices[i][0] = in.readInt(); // atomi1
-				indices[i][1] = in.readInt(); // atomi2
-				indices[i][2] = in.readInt(); // parami
+		if (tables == null) {
+			for (int ffi=0; ffi<forcefieldIds.length; ffi++) {
+				// [atomi1, atomi2, parami]
+				indicesStatic[ffi] = new IndicesStatic(readIndices(in));
 			}
-
-			indicesStatic[ffi] = new IndicesStatic(indices);
 		}
 
 		// read pos and pos-static forcefield params
-		for (int posi=0; posi<numPositions; posi++) {
-			Pos pos = positions[posi];
+		if (tables == null) {
+			for (int posi=0; posi<numPositions; posi++) {
+				Pos pos = positions[posi];
 
-			for (int fragi=0; fragi<pos.numFrags; fragi++) {
+				for (int fragi=0; fragi<pos.numFrags; fragi++) {
 
-				for (int ffi=0; ffi<forcefieldIds.length; ffi++) {
+					for (int ffi=0; ffi<forcefieldIds.length; ffi++) {
 
-					// read the pos internal forcefield params
-					int numSingles = in.readInt();
-					int[][] singles = new int[numSingles][3];
-					for (int i=0; i<numSingles; i++) {
-						singles[i][0] = in.readInt(); // atomi1
-						singles[i][1] = in.readInt(); // atomi2
-						singles[i][2] = in.readInt(); // parami
-					}
+						// read the pos internal forcefield params: [atomi1, atomi2, parami]
+						IntBuffer singles = readIndices(in);
 
-					// read the pos-static forcefield params
-					int numStatics = in.readInt();
-					int[][] statics = new int[numStatics][3];
-					for (int i=0; i<numStatics; i++) {
-						statics[i][0] = in.readInt(); // atomi
-						statics[i][1] = in.readInt(); // statici
-						statics[i][2] = in.readInt(); // parami
-					}
+						// read the pos-static forcefield params: [atomi, statici, parami]
+						IntBuffer statics = readIndices(in);
 
-					indicesSingles[ffi][posi][fragi] = new IndicesSingle(singles, statics);
+						indicesSingles[ffi][posi][fragi] = new IndicesSingle(singles, statics);
+					}
 				}
 			}
 		}
@@ -626,6 +815,10 @@ public class ConfSpace implements ConfSpaceIteration {
 					indicesPairs[ffi][posPairIndex] = new IndicesPair[pos1.confs.length][pos2.confs.length];
 				}
 
+				if (tables != null) {
+					continue;
+				}
+
 				// for each fragment pair ...
 				for (int fragi1=0; fragi1<pos1.numFrags; fragi1++) {
 					for (int fragi2=0; fragi2<pos2.numFrags; fragi2++) {
@@ -633,22 +826,43 @@ public class ConfSpace implements ConfSpaceIteration {
 						// for each forcefield ...
 						for (int ffi=0; ffi<forcefieldIds.length; ffi++) {
 
-							// read the atom pairs
-							int numPairs = in.readInt();
-							int[][] indicesPair = new int[numPairs][3];
-							for (int i=0; i<numPairs; i++) {
-								indicesPair[i][0] = in.readInt(); // atomi1
-								indicesPair[i][1] = in.readInt(); // atomi2
-								indicesPair[i][2] = in.readInt(); // parami
-							}
-
-							indicesPairs[ffi][posPairIndex][fragi1][fragi2] = new IndicesPair(indicesPair);
+							// read the atom pairs: [atomi1, atomi2, parami]
+							indicesPairs[ffi][posPairIndex][fragi1][fragi2] = new IndicesPair(readIndices(in));
 						}
 					}
 				}
 			}
 		}
 
+		// find the index tables in the mapped tables directory, if needed
+		if (tables != null) {
+
+			// the tables are in the same order as the version 1 stream
+			int tablei = numForcefields;
+			singlesTablesByPos = new int[numPositions];
+			for (Pos pos : positions) {
+				singlesTablesByPos[pos.index] = tablei;
+				tablei += pos.numFrags*numForcefields*2;
+			}
+			pairsTablesByPosPair = new int[numPosPairs];
+			for (int posi1=0; posi1<numPositions; posi1++) {
+				for (int posi2=0; posi2<posi1; posi2++) {
+					pairsTablesByPosPair[posPairIndex(posi1, posi2)] = tablei;
+					tablei += positions[posi1].numFrags*positions[posi2].numFrags*numForcefields;
+				}
+			}
+
+			tablesDirectory = tables.asSlice(0, (long)tablei*Long.BYTES*2)
+				.asByteBuffer()
+				.order(ByteOrder.LITTLE_ENDIAN)
+				.asLongBuffer();
+
+		} else {
+			singlesTablesByPos = null;
+			pairsTablesByPosPair = null;
+			tablesDirectory = null;
+		}
+
 		// finally, read the forcefield parameters themselves
 		ffparams = new double[forcefieldIds.length][][];
 		for (int ffi=0; ffi<forcefieldIds.length; ffi++) {
@@ -687,6 +901,73 @@ public class ConfSpace implements ConfSpaceIteration {
 		seqSpace = new SeqSpace(this);
 	}
 
+	private static IntBuffer readIndices(DataInput in)
+	throws IOException {
+		int num = in.readInt();
+		int[] indices = new int[num*3];
+		for (int i=0; i<indices.length; i++) {
+			indices[i] = in.readInt();
+		}
+		return IntBuffer.wrap(indices);
+	}
+
+	private static IntBuffer flattenIndices(int[][] indices) {
+		int[] flat = new int[indices.length*3];
+		for (int i=0; i<indices.length; i++) {
+			System.arraycopy(indices[i], 0, flat, i*3, 3);
+		}
+		return IntBuffer.wrap(flat);
+	}
+
+	/**
+	 * Makes a view of an index table in a mapped conf space.
+	 */
+	private IntBuffer mappedIndices(int tablei) {
+		long offset = tablesDirectory.get(tablei*2);
+		long num = tablesDirectory.get(tablei*2 + 1);
+		return tables.asSlice(offset, num*3*Integer.BYTES)
+			.asByteBuffer()
+			.order(ByteOrder.LITTLE_ENDIAN)
+			.asIntBuffer();
+	}
+
+	/**
+	 * Returns all the index tables, in the same order as the version 1 stream.
+	 */
+	private List<IntBuffer> indexTables() {
+
+		List<IntBuffer> out = new ArrayList<>();
+
+		for (int ffi=0; ffi<forcefieldIds.length; ffi++) {
+			out.add(indicesStatic(ffi).indices);
+		}
+
+		for (Pos pos : positions) {
+			for (int fragi=0; fragi<pos.numFrags; fragi++) {
+				for (int ffi=0; ffi<forcefieldIds.length; ffi++) {
+					IndicesSingle indices = indicesSinglesByFrag(ffi, pos.index, fragi);
+					out.add(indices.internals);
+					out.add(indices.statics);
+				}
+			}
+		}
+
+		for (Pos pos1 : positions) {
+			for (int posi2=0; posi2<pos1.index; posi2++) {
+				Pos pos2 = positions[posi2];
+				for (int fragi1=0; fragi1<pos1.numFrags; fragi1++) {
+					for (int fragi2=0; fragi2<pos2.numFrags; fragi2++) {
+						for (int ffi=0; ffi<forcefieldIds.length; ffi++) {
+							out.add(indicesPairsByFrags(ffi, pos1.index, fragi1, pos2.index, fragi2).indices);
+						}
+					}
+				}
+			}
+		}
+
+		return out;
+	}
+
 	private static DihedralAngle.Description readDihedralAngle(DataInput in)
 	throws IOException {
 		double minDegrees = in.readDouble();
@@ -721,12 +1002,12 @@ public class ConfSpace implements ConfSpaceIteration {
 	}
 
 	/*
-	 * If we need a version 2 constructor in the future, it would look like this:
+	 * If we need a version 3 constructor in the future, it would look like this:
 	 *
 	 * private ConfSpace(DataInput in, int a)
 	 * throws IOException { }
 	 *
-	 * version 3 would look like:
+	 * version 4 would look like:
 	 *
 	 * private ConfSpace(DataInput in, int a, int b)
 	 * throws IOException { }
@@ -751,8 +1032,19 @@ public class ConfSpace implements ConfSpaceIteration {
 		return posi1*(posi1 - 1)/2 + posi2;
 	}
 
+	/*
+	 * NOTE: In mapped conf spaces, the index views are made on first use and cached.
+	 * Threads racing to make the same view can make redundant copies, but the views are immutable,
+	 * and have only final fields, so it's harmless.
+	 */
+
 	public IndicesStatic indicesStatic(int ffi) {
-		return indicesStatic[ffi];
+		IndicesStatic indices = indicesStatic[ffi];
+		if (indices == null) {
+			indices = new IndicesStatic(mappedIndices(ffi));
+			indicesStatic[ffi] = indices;
+		}
+		return indices;
 	}
 
 	public IndicesSingle indicesSingles(int ffi, int posi, int confi) {
@@ -764,7 +1056,13 @@ public class ConfSpace implements ConfSpaceIteration {
 	}
 
 	public IndicesSingle indicesSinglesByFrag(int ffi, int posi, int fragi) {
-		return indicesSingles[ffi][posi][fragi];
+		IndicesSingle indices = indicesSingles[ffi][posi][fragi];
+		if (indices == null) {
+			int tablei = singlesTablesByPos[posi] + (fragi*forcefieldIds.length + ffi)*2;
+			indices = new IndicesSingle(mappedIndices(tablei), mappedIndices(tablei + 1));
+			indicesSingles[ffi][posi][fragi] = indices;
+		}
+		return indices;
 	}
 
 	public IndicesPair indicesPairs(int ffi, int posi1, int confi1, int posi2, int confi2) {
@@ -777,7 +1075,14 @@ public class ConfSpace implements ConfSpaceIteration {
 	}
 
 	public IndicesPair indicesPairsByFrags(int ffi, int posi1, int fragi1, int posi2, int fragi2) {
-		return indicesPairs[ffi][posPairIndex(posi1, posi2)][fragi1][fragi2];
+		int posPairIndex = posPairIndex(posi1, posi2);
+		IndicesPair indices = indicesPairs[ffi][posPairIndex][fragi1][fragi2];
+		if (indices == null) {
+			int tablei = pairsTablesByPosPair[posPairIndex] + (fragi1*positions[posi2].numFrags + fragi2)*forcefieldIds.length + ffi;
+			indices = new IndicesPair(mappedIndices(tablei));
+			indicesPairs[ffi][posPairIndex][fragi1][fragi2] = indices;
+		}
+		return indices;
 	}
 
 	public int getStaticAtomIndex(int atomi) {
@@ -871,6 +1176,10 @@ public class ConfSpace implements ConfSpaceIteration {
 		return ffparams[ffi][paramsi];
 	}
 
+	public int numParams(int ffi) {
+		return ffparams[ffi].length;
+	}
+
 	@Override
 	public int countSingles() {
 		int count = 0;
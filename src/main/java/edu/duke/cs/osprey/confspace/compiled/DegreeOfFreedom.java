@@ -22,5 +22,13 @@ public interface DegreeOfFreedom {
 	/** which design positions are modified by this DoF? */
 	Set<Integer> modifiedPosIndices();
 
+	/**
+	 * Can this DoF change the energy of the position interaction?
+	 * By default, any interaction involving a modified position can change.
+	 */
+	default boolean affects(PosInter inter) {
+		return inter.isIncludedIn(modifiedPosIndices());
+	}
+
 	double initialStepSize();
 }
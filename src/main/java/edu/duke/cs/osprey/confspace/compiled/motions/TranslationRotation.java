@@ -13,10 +13,6 @@ import java.util.Set;
 
 public class TranslationRotation implements ContinuousMotion {
 
-	// TODO: can optimize by skipping translation,rotation DoFs during minimization
-	//  when they don't effect the energy at all
-	//  eg, when we're only minimizing a single molecule
-
 	public static class Description implements ContinuousMotion.MolDescription {
 
 		public final double maxDistance;
@@ -50,6 +46,9 @@ public class TranslationRotation implements ContinuousMotion {
 	public final List<Integer> atomIndices = new ArrayList<>();
 	public final Set<Integer> modifiedPosIndices = new HashSet<>();
 
+	/** positions whose atoms are all moved by this motion, so their internal geometry doesn't change */
+	public final Set<Integer> rigidPosIndices = new HashSet<>();
+
 	public final Dof dofPsi;
 	public final Dof dofTheta;
 	public final Dof dofPhi;
@@ -66,12 +65,17 @@ public class TranslationRotation implements ContinuousMotion {
 		this.coords = coords;
 
 		// collect all the static indices for our molecule
+		int numStaticAtoms = 0;
 		for (int atomi=0; atomi<coords.confSpace.numStaticAtoms; atomi++) {
 			if (coords.confSpace.staticMolInfoIndices[atomi] == molInfoIndex) {
 				atomIndices.add(coords.getStaticIndex(atomi));
 				modifiedPosIndices.add(PosInter.StaticPos);
+				numStaticAtoms++;
 			}
 		}
+		if (numStaticAtoms > 0 && numStaticAtoms == coords.confSpace.numStaticAtoms) {
+			rigidPosIndices.add(PosInter.StaticPos);
+		}
 
 		// collect all the conformation indices for our molecule
 		for (int posi=0; posi<coords.confSpace.numPos(); posi++) {
@@ -83,12 +87,17 @@ public class TranslationRotation implements ContinuousMotion {
 			}
 			ConfSpace.Conf conf = coords.confSpace.positions[posi].confs[confi];
 
+			int numConfAtoms = 0;
 			for (int atomi=0; atomi<conf.numAtoms; atomi++) {
 				if (conf.atomMolInfoIndices[atomi] == molInfoIndex) {
 					atomIndices.add(coords.getConfIndex(posi, atomi));
 					modifiedPosIndices.add(posi);
+					numConfAtoms++;
 				}
 			}
+			if (numConfAtoms > 0 && numConfAtoms == conf.numAtoms) {
+				rigidPosIndices.add(posi);
+			}
 		}
 
 		// init state to the identity transformation
@@ -190,6 +199,15 @@ public class TranslationRotation implements ContinuousMotion {
 			return modifiedPosIndices;
 		}
 
+		@Override
+		public boolean affects(PosInter inter) {
+
+			// rigid motions don't change distances between atoms that move together,
+			// so only interactions that span across the molecule boundary can change
+			return inter.isIncludedIn(modifiedPosIndices)
+				&& !(rigidPosIndices.contains(inter.posi1) && rigidPosIndices.contains(inter.posi2));
+		}
+
 		@Override
 		public double initialStepSize() {
 			return step;
@@ -33,8 +33,14 @@
 package edu.duke.cs.osprey.ematrix;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
+import java.util.Objects;
 
 import edu.duke.cs.osprey.confspace.ConfSpaceIteration;
 import edu.duke.cs.osprey.confspace.RCTuple;
@@ -94,6 +100,16 @@ public class SimplerEnergyMatrixCalculator {
 
 		private boolean calcConstantTerm = false;
 
+		/**
+		 * How often (in seconds) to save partial results while computing the energy matrix.
+		 *
+		 * @note Only used when a cache file is set. Partial results are saved next to the cache file,
+		 * and if the computation is interrupted, the next Osprey run will resume from the last
+		 * saved results instead of starting over. Partial results are deleted once the energy
+		 * matrix is finished.
+		 */
+		private int checkpointIntervalS = 5*60; // 5 minutes
+
 		/**
 		 * This builder is probably not what you want, because it doesn't copy over the reference energies or other properties of an ecalc.
 		 * @param confSpace
@@ -128,8 +144,13 @@ public class SimplerEnergyMatrixCalculator {
 			return this;
 		}
 
+		public Builder setCheckpointIntervalS(int val) {
+			checkpointIntervalS = val;
+			return this;
+		}
+
 		public SimplerEnergyMatrixCalculator build() {
-			return new SimplerEnergyMatrixCalculator(confEcalc, cacheFile, tripleCorrectionThreshold, quadCorrectionThreshold, calcConstantTerm);
+			return new SimplerEnergyMatrixCalculator(confEcalc, cacheFile, tripleCorrectionThreshold, quadCorrectionThreshold, calcConstantTerm, checkpointIntervalS);
 		}
 	}
 
@@ -138,14 +159,16 @@ public class SimplerEnergyMatrixCalculator {
 	public final Double tripleCorrectionThreshold;
 	public final Double quadCorrectionThreshold;
 	public final boolean calcConstantTerm;
+	public final int checkpointIntervalS;
 
-	private SimplerEnergyMatrixCalculator(ConfEnergyCalculator confEcalc, File cacheFile, Double tripleCorrectionThreshold, Double quadCorrectionThreshold, boolean calcConstantTerm) {
+	private SimplerEnergyMatrixCalculator(ConfEnergyCalculator confEcalc, File cacheFile, Double tripleCorrectionThreshold, Double quadCorrectionThreshold, boolean calcConstantTerm, int checkpointIntervalS) {
 
 		this.confEcalc = confEcalc;
 		this.cacheFile = cacheFile;
 		this.tripleCorrectionThreshold = tripleCorrectionThreshold;
 		this.quadCorrectionThreshold = quadCorrectionThreshold;
 		this.calcConstantTerm = calcConstantTerm;
+		this.checkpointIntervalS = checkpointIntervalS;
 	}
 	
 	/**
@@ -176,63 +199,259 @@ public class SimplerEnergyMatrixCalculator {
 			}
 		}
 	}
-	
+
+	/**
+	 * Partial results of an energy matrix calculation, so an interrupted calculation can resume.
+	 */
+	private static class Checkpoint implements Serializable {
+
+		private static final long serialVersionUID = -2917146034876592512L;
+
+		static final int PhaseSinglesPairs = 0;
+		static final int PhaseCorrections = 1;
+
+		final EnergyMatrix emat;
+		final boolean calcConstantTerm;
+		final Double tripleCorrectionThreshold;
+		final Double quadCorrectionThreshold;
+
+		int phase = PhaseSinglesPairs;
+		BitSet finishedBatches = new BitSet();
+		int numCorrections = 0;
+
+		transient long lastSaveNs = System.nanoTime();
+
+		Checkpoint(EnergyMatrix emat, boolean calcConstantTerm, Double tripleCorrectionThreshold, Double quadCorrectionThreshold) {
+			this.emat = emat;
+			this.calcConstantTerm = calcConstantTerm;
+			this.tripleCorrectionThreshold = tripleCorrectionThreshold;
+			this.quadCorrectionThreshold = quadCorrectionThreshold;
+		}
+
+		void nextPhase() {
+			phase++;
+			finishedBatches = new BitSet();
+		}
+	}
+
+	private File checkpointFile() {
+		if (cacheFile == null) {
+			return null;
+		}
+		return new File(cacheFile.getPath() + ".checkpoint");
+	}
+
+	private Checkpoint readCheckpoint() {
+
+		File file = checkpointFile();
+		if (file == null) {
+			return null;
+		}
+
+		try {
+
+			Checkpoint checkpoint = ObjectIO.read(file, Checkpoint.class);
+			if (checkpoint == null) {
+				return null;
+			}
+
+			// make sure the checkpoint is for this calculation
+			if (!checkpoint.emat.matches(confEcalc.confSpaceIteration())
+				|| checkpoint.calcConstantTerm != calcConstantTerm
+				|| !Objects.equals(checkpoint.tripleCorrectionThreshold, tripleCorrectionThreshold)
+				|| !Objects.equals(checkpoint.quadCorrectionThreshold, quadCorrectionThreshold)) {
+				log("WARNING: energy matrix checkpoint is for a different calculation, will start over");
+				return null;
+			}
+
+			log("resuming energy matrix calculation from checkpoint: %s", file.getAbsolutePath());
+			checkpoint.lastSaveNs = System.nanoTime();
+			return checkpoint;
+
+		} catch (ObjectIO.BadFileException ex) {
+			ex.printStackTrace(System.out);
+			log("WARNING: can't read energy matrix checkpoint, will start over");
+			return null;
+		}
+	}
+
+	private void saveCheckpoint(Checkpoint checkpoint) {
+
+		File file = checkpointFile();
+		if (file == null) {
+			return;
+		}
+
+		// write to a temp file first, so an interruption can't leave a half-written checkpoint
+		File tempFile = new File(file.getPath() + ".tmp");
+		try {
+			ObjectIO.write(checkpoint, tempFile);
+			Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (ObjectIO.CantWriteException | IOException ex) {
+			// not fatal, we just won't be able to resume from here
+			ex.printStackTrace(System.out);
+			log("WARNING: can't save energy matrix checkpoint");
+		}
+
+		checkpoint.lastSaveNs = System.nanoTime();
+	}
+
+	private void saveCheckpointIfNeeded(Checkpoint checkpoint) {
+		if (System.nanoTime() - checkpoint.lastSaveNs >= checkpointIntervalS*1_000_000_000L) {
+			saveCheckpoint(checkpoint);
+		}
+	}
+
+	private void deleteCheckpoint() {
+		File file = checkpointFile();
+		if (file != null) {
+			file.delete();
+		}
+	}
+
 	private EnergyMatrix reallyCalcEnergyMatrix() {
 
-		// allocate the new matrix
-		EnergyMatrix emat = new EnergyMatrix(confEcalc.confSpaceIteration());
+		// resume from a checkpoint if we have one, otherwise allocate the new matrix
+		Checkpoint checkpoint = readCheckpoint();
+		if (checkpoint == null) {
+			checkpoint = new Checkpoint(
+				new EnergyMatrix(confEcalc.confSpaceIteration()),
+				calcConstantTerm,
+				tripleCorrectionThreshold,
+				quadCorrectionThreshold
+			);
+		}
+		EnergyMatrix emat = checkpoint.emat;
 
-		// count how much work there is to do (roughly based on number of residue pairs)
-		final int constCost = confEcalc.makeShellInters().size();
-		final int singleCost;
-		if (emat.getNumPos() <= 0) {
-			singleCost = 0;
-		} else {
-			singleCost = confEcalc.makeSingleInters(0, 0).size();
+		if (checkpoint.phase == Checkpoint.PhaseSinglesPairs) {
+			calcSinglesAndPairs(checkpoint);
+			checkpoint.nextPhase();
+			saveCheckpoint(checkpoint);
 		}
-		final int pairCost;
-		if (emat.getNumPos() <= 0) {
-			pairCost = 0;
-		} else {
-			pairCost = confEcalc.makePairInters(0, 0, 0, 0).size();
+
+		// calc corrections if needed (but only use the highest-order corrections chosen)
+		if (quadCorrectionThreshold != null) {
+			calcQuadCorrections(checkpoint);
+		} else if (tripleCorrectionThreshold != null) {
+			calcTripleCorrections(checkpoint);
 		}
-		final int numConst = calcConstantTerm ? 1 : 0;
-		final int numSingles = confEcalc.confSpaceIteration().countSingles();
-		final int numPairs = confEcalc.confSpaceIteration().countPairs();
-		Progress progress = new Progress(numSingles*singleCost + numPairs*pairCost);
-		
-		// some fragments can be big and some can be small
-		// try minimize thread sync overhead by not sending a bunch of small fragments in all separate tasks
-		// ie, try to batch fragments together
-		class Batch {
-			
-			List<RCTuple> fragments = new ArrayList<>();
-			int cost = 0;
-
-			void addConst() {
-				fragments.add(new RCTuple());
-				cost += constCost;
+
+		// the calculation is done, so we don't need the partial results anymore
+		deleteCheckpoint();
+
+		return emat;
+	}
+
+	// some fragments can be big and some can be small
+	// try minimize thread sync overhead by not sending a bunch of small fragments in all separate tasks
+	// ie, try to batch fragments together
+	private static final int CostThreshold = 100;
+
+	private static class Batch {
+
+		final int index;
+		final List<RCTuple> fragments = new ArrayList<>();
+		final List<Double> offsets = new ArrayList<>();
+		int cost = 0;
+
+		Batch(int index) {
+			this.index = index;
+		}
+	}
+
+	/**
+	 * Groups fragments into batches and sends them to the task executor.
+	 *
+	 * Batches are numbered in the order they're made, so batches that already finished
+	 * before a checkpoint can be skipped when resuming.
+	 * Results are written into the energy matrix as soon as they come back, while holding the checkpoint's lock.
+	 */
+	private class Batcher {
+
+		final Checkpoint checkpoint;
+		final Progress progress;
+		final boolean isCorrections;
+
+		int nextIndex = 0;
+		Batch batch = null;
+
+		Batcher(Checkpoint checkpoint, Progress progress, boolean isCorrections) {
+			this.checkpoint = checkpoint;
+			this.progress = progress;
+			this.isCorrections = isCorrections;
+		}
+
+		Batch getBatch() {
+			if (batch == null) {
+				batch = new Batch(nextIndex++);
 			}
+			return batch;
+		}
+
+		void add(RCTuple frag, int cost) {
+			getBatch().fragments.add(frag);
+			getBatch().cost += cost;
+			submitIfFull();
+		}
 
-			void addSingle(int pos, int rc) {
-				fragments.add(new RCTuple(pos, rc));
-				cost += singleCost;
+		void addCorrection(RCTuple frag, double energyOffset, int cost) {
+			getBatch().offsets.add(energyOffset);
+			add(frag, cost);
+		}
+
+		void submitIfFull() {
+			if (batch != null && batch.cost >= CostThreshold) {
+				submit();
 			}
-			
-			void addPair(int pos1, int rc1, int pos2, int rc2) {
-				fragments.add(new RCTuple(pos1, rc1, pos2, rc2));
-				cost += pairCost;
+		}
+
+		void submit() {
+
+			if (batch == null) {
+				return;
 			}
+			Batch batch = this.batch;
+			this.batch = null;
+
+			// corrections count progress by tuple, singles and pairs count by cost
+			int work = isCorrections ? batch.fragments.size() : batch.cost;
+
+			// skip batches we finished before the checkpoint
+			boolean isFinished;
+			synchronized (checkpoint) {
+				isFinished = checkpoint.finishedBatches.get(batch.index);
+			}
+			if (isFinished) {
+				synchronized (progress) {
+					progress.incrementProgress(work);
+				}
+				return;
+			}
+
+			confEcalc.tasks.submit(
+				new BatchTask(batch.fragments, isCorrections),
+				(List<Double> energies) -> {
+
+					// some task executors call listeners from more than one thread,
+					// so guard the energy matrix and the checkpoint state
+					synchronized (checkpoint) {
 
-			void submitTask() {
-				confEcalc.tasks.submit(
-					new BatchTask(fragments),
-					(List<Double> energies) -> {
-						
 						// update the energy matrix
-						for (int i=0; i<fragments.size(); i++) {
-							RCTuple frag = fragments.get(i);
-							if (frag.size() == 0) {
+						EnergyMatrix emat = checkpoint.emat;
+						for (int i=0; i<batch.fragments.size(); i++) {
+							RCTuple frag = batch.fragments.get(i);
+							if (isCorrections) {
+
+								// convert the tuple energy into a correction
+								double correction = energies.get(i) - batch.offsets.get(i);
+
+								// save the correction only if it's an improvement
+								if (correction > 0) {
+									emat.setTuple(frag, correction);
+									checkpoint.numCorrections++;
+								}
+
+							} else if (frag.size() == 0) {
 								emat.setConstTerm(energies.get(i));
 							} else if (frag.size() == 1) {
 								emat.setOneBody(frag.pos.get(0), frag.RCs.get(0), energies.get(i));
@@ -242,76 +461,67 @@ public class SimplerEnergyMatrixCalculator {
 								emat.setTuple(frag, energies.get(i));
 							}
 						}
-						
-						progress.incrementProgress(cost);
+
+						checkpoint.finishedBatches.set(batch.index);
+						saveCheckpointIfNeeded(checkpoint);
+					}
+
+					synchronized (progress) {
+						progress.incrementProgress(work);
 					}
-				);
-			}
-		}
-		
-		final int CostThreshold = 100;
-		
-		class Batcher {
-			
-			Batch batch = null;
-			
-			Batch getBatch() {
-				if (batch == null) {
-					batch = new Batch();
-				}
-				return batch;
-			}
-			
-			void submitIfFull() {
-				if (batch != null && batch.cost >= CostThreshold) {
-					submit();
-				}
-			}
-			
-			void submit() {
-				if (batch != null) {
-					batch.submitTask();
-					batch = null;
 				}
-			}
+			);
 		}
-		Batcher batcher = new Batcher();
-		
+	}
+
+	private void calcSinglesAndPairs(Checkpoint checkpoint) {
+
+		EnergyMatrix emat = checkpoint.emat;
+
+		// count how much work there is to do (roughly based on number of residue pairs)
+		final int constCost = confEcalc.makeShellInters().size();
+		final int singleCost;
+		if (emat.getNumPos() <= 0) {
+			singleCost = 0;
+		} else {
+			singleCost = confEcalc.makeSingleInters(0, 0).size();
+		}
+		final int pairCost;
+		if (emat.getNumPos() <= 0) {
+			pairCost = 0;
+		} else {
+			pairCost = confEcalc.makePairInters(0, 0, 0, 0).size();
+		}
+		final int numConst = calcConstantTerm ? 1 : 0;
+		final int numSingles = confEcalc.confSpaceIteration().countSingles();
+		final int numPairs = confEcalc.confSpaceIteration().countPairs();
+		Progress progress = new Progress(numConst*constCost + numSingles*singleCost + numPairs*pairCost);
+
+		Batcher batcher = new Batcher(checkpoint, progress, false);
+
 		// convert the workload into tasks for the task executor
 		log("Calculating energy matrix with %d entries", numConst + numSingles + numPairs);
 		if (calcConstantTerm) {
-			batcher.getBatch().addConst();
-			batcher.submitIfFull();
+			batcher.add(new RCTuple(), constCost);
 		}
 		for (int pos1=0; pos1<emat.getNumPos(); pos1++) {
 			for (int rc1=0; rc1<emat.getNumConfAtPos(pos1); rc1++) {
-				
+
 				// single
-				batcher.getBatch().addSingle(pos1, rc1);
-				batcher.submitIfFull();
-				
+				batcher.add(new RCTuple(pos1, rc1), singleCost);
+
 				for (int pos2=0; pos2<pos1; pos2++) {
 					for (int rc2=0; rc2<emat.getNumConfAtPos(pos2); rc2++) {
 
 						// pair
-						batcher.getBatch().addPair(pos1, rc1, pos2, rc2);
-						batcher.submitIfFull();
+						batcher.add(new RCTuple(pos1, rc1, pos2, rc2), pairCost);
 					}
 				}
 			}
 		}
-		
+
 		batcher.submit();
 		confEcalc.tasks.waitForFinish();
-
-		// calc corrections if needed (but only use the highest-order corrections chosen)
-		if (quadCorrectionThreshold != null) {
-			calcQuadCorrections(emat);
-		} else if (tripleCorrectionThreshold != null) {
-			calcTripleCorrections(emat);
-		}
-
-		return emat;
 	}
 
 	private static class BatchTask extends Cluster.Task<List<Double>,BatchTask.Context> {
@@ -326,10 +536,12 @@ public class SimplerEnergyMatrixCalculator {
 		}
 
 		List<RCTuple> fragments;
+		boolean isCorrections;
 
-		BatchTask(List<RCTuple> fragments) {
+		BatchTask(List<RCTuple> fragments, boolean isCorrections) {
 			super(0);
 			this.fragments = fragments;
+			this.isCorrections = isCorrections;
 		}
 
 		@Override
@@ -347,6 +559,11 @@ public class SimplerEnergyMatrixCalculator {
 					// yup, give this frag an infinite energy so we never choose it
 					energy = Double.POSITIVE_INFINITY;
 
+				} else if (isCorrections) {
+
+					// calculate the energy of the whole tuple, for a correction
+					energy = ctx.confEcalc.calcEnergy(frag, makeCorrectionInters(ctx.confEcalc, frag)).energy;
+
 				} else {
 
 					// nope, calculate the usual fragment energy
@@ -371,15 +588,38 @@ public class SimplerEnergyMatrixCalculator {
 
 			return energies;
 		}
+
+		private static ResidueInteractions makeCorrectionInters(ConfEnergyCalculator confEcalc, RCTuple frag) {
+			// NOTE: correction tuples are stored with the positions in reverse order
+			switch (frag.size()) {
+				case 3: return confEcalc.makeTripleCorrectionInters(
+					frag.pos.get(2), frag.RCs.get(2),
+					frag.pos.get(1), frag.RCs.get(1),
+					frag.pos.get(0), frag.RCs.get(0)
+				);
+				case 4: return confEcalc.makeQuadCorrectionInters(
+					frag.pos.get(3), frag.RCs.get(3),
+					frag.pos.get(2), frag.RCs.get(2),
+					frag.pos.get(1), frag.RCs.get(1),
+					frag.pos.get(0), frag.RCs.get(0)
+				);
+				default: throw new IllegalArgumentException("corrections are only supported for triples and quads, not " + frag);
+			}
+		}
 	}
 
 	// TODO: improve progress bar performance by pre-counting the tuples that pass the threshold
 
-	private void calcTripleCorrections(EnergyMatrix emat) {
+	private void calcTripleCorrections(Checkpoint checkpoint) {
+
+		EnergyMatrix emat = checkpoint.emat;
 
 		Progress progress = new Progress(confEcalc.confSpace.getNumResConfTriples());
 		log("calculating triple corrections for up to %d triples", progress.getTotalWork());
-		int[] numCorrections = { 0 };
+
+		// roughly, a triple correction costs as much as its three pairs
+		final int tripleCost = 3*calcPairCost(emat);
+		Batcher batcher = new Batcher(checkpoint, progress, true);
 
 		for (int pos1=0; pos1<emat.getNumPos(); pos1++) {
 			for (int rc1=0; rc1<emat.getNumConfAtPos(pos1); rc1++) {
@@ -412,28 +652,10 @@ public class SimplerEnergyMatrixCalculator {
 									continue;
 								}
 
-								ResidueInteractions inters = confEcalc.makeTripleCorrectionInters(pos1, rc1, pos2, rc2, pos3, rc3);
 								double tripleEnergyOffset = confEcalc.epart.offsetTripleEnergy(pos1, rc1, pos2, rc2, pos3, rc3, emat);
 
 								// calc the energy
-								confEcalc.tasks.submit(
-									() -> confEcalc.calcEnergy(triple, inters).energy,
-									(tripleEnergy) -> {
-
-										// convert the triple energy into a correction
-										double correction = tripleEnergy - tripleEnergyOffset;
-
-										// save the correction only if it's an improvement
-										if (correction > 0) {
-											emat.setTuple(triple, correction);
-											numCorrections[0]++;
-										}
-
-										synchronized (progress) {
-											progress.incrementProgress();
-										}
-									}
-								);
+								batcher.addCorrection(triple, tripleEnergyOffset, tripleCost);
 							}
 						}
 					}
@@ -441,16 +663,22 @@ public class SimplerEnergyMatrixCalculator {
 			}
 		}
 
+		batcher.submit();
 		confEcalc.tasks.waitForFinish();
 
-		log("calculated %d/%d useful triple corrections", numCorrections[0], progress.getTotalWork());
+		log("calculated %d/%d useful triple corrections", checkpoint.numCorrections, progress.getTotalWork());
 	}
 
-	private void calcQuadCorrections(EnergyMatrix emat) {
+	private void calcQuadCorrections(Checkpoint checkpoint) {
+
+		EnergyMatrix emat = checkpoint.emat;
 
 		Progress progress = new Progress(confEcalc.confSpace.getNumResConfQuads());
 		log("calculating quad corrections for up to %d quads", progress.getTotalWork());
-		int[] numCorrections = { 0 };
+
+		// roughly, a quad correction costs as much as its six pairs
+		final int quadCost = 6*calcPairCost(emat);
+		Batcher batcher = new Batcher(checkpoint, progress, true);
 
 		// TODO: this indentation is ridiculous...
 		for (int pos1=0; pos1<emat.getNumPos(); pos1++) {
@@ -491,28 +719,10 @@ public class SimplerEnergyMatrixCalculator {
 											continue;
 										}
 
-										ResidueInteractions inters = confEcalc.makeQuadCorrectionInters(pos1, rc1, pos2, rc2, pos3, rc3, pos4, rc4);
 										double quadEnergyOffset = confEcalc.epart.offsetQuadEnergy(pos1, rc1, pos2, rc2, pos3, rc3, pos4, rc4, emat);
 
 										// calc the energy
-										confEcalc.tasks.submit(
-											() -> confEcalc.calcEnergy(quad, inters).energy,
-											(quadEnergy) -> {
-
-												// convert the quad energy into a correction
-												double correction = quadEnergy - quadEnergyOffset;
-
-												// save the correction only if it's an improvement
-												if (correction > 0) {
-													emat.setTuple(quad, correction);
-													numCorrections[0]++;
-												}
-
-												synchronized (progress) {
-													progress.incrementProgress();
-												}
-											}
-										);
+										batcher.addCorrection(quad, quadEnergyOffset, quadCost);
 									}
 								}
 							}
@@ -522,9 +732,17 @@ public class SimplerEnergyMatrixCalculator {
 			}
 		}
 
+		batcher.submit();
 		confEcalc.tasks.waitForFinish();
 
-		log("calculated %d/%d useful quad corrections", numCorrections[0], progress.getTotalWork());
+		log("calculated %d/%d useful quad corrections", checkpoint.numCorrections, progress.getTotalWork());
+	}
+
+	private int calcPairCost(EnergyMatrix emat) {
+		if (emat.getNumPos() <= 0) {
+			return 1;
+		}
+		return Math.max(1, confEcalc.makePairInters(0, 0, 0, 0).size());
 	}
 
 	/**
@@ -38,6 +38,9 @@ import edu.duke.cs.osprey.energy.ConfEnergyCalculator;
 import edu.duke.cs.osprey.confspace.TupE;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 public class UpdatingEnergyMatrix extends ProxyEnergyMatrix {
@@ -204,11 +207,15 @@ public class UpdatingEnergyMatrix extends ProxyEnergyMatrix {
         corrections.insert(new TupE(orderedTup, val));
     }
 
+    /**
+     * Safe to read and insert from many threads at once without locking,
+     * so conf searches can keep scoring nodes while new corrections arrive.
+     */
     public static class TupleTrie {
         public final static int WILDCARD_RC = -123;
         TupleTrieNode root;
         List<SimpleConfSpace.Position> positions;
-        private int numCorrections;
+        private final AtomicInteger numCorrections = new AtomicInteger(0);
         public TupleTrie(List<SimpleConfSpace.Position> positions)
         {
             this.positions = positions;
@@ -224,7 +231,7 @@ public class UpdatingEnergyMatrix extends ProxyEnergyMatrix {
             if(debug)
                 checkRCTuple(correction.tup);
             root.insert(correction, 0);
-            numCorrections++;
+            numCorrections.incrementAndGet();
         }
 
         private void checkRCTuple(RCTuple tup) {
@@ -250,7 +257,7 @@ public class UpdatingEnergyMatrix extends ProxyEnergyMatrix {
         }
 
         public int size() {
-            return numCorrections;
+            return numCorrections.get();
         }
 
 
@@ -260,8 +267,8 @@ public class UpdatingEnergyMatrix extends ProxyEnergyMatrix {
             int positionIndex = -1;
             int position = -1;
             List<SimpleConfSpace.Position> positions;
-            List<TupE> corrections = new ArrayList<>();
-            Map<Integer, TupleTrieNode> children = new HashMap<>();
+            List<TupE> corrections = new CopyOnWriteArrayList<>();
+            Map<Integer, TupleTrieNode> children = new ConcurrentHashMap<>();
 
             private TupleTrieNode(List<SimpleConfSpace.Position> positions, int positionIndex) {
                 this.positions = positions;
@@ -348,13 +355,12 @@ public class UpdatingEnergyMatrix extends ProxyEnergyMatrix {
                 }
                 else
                 {
-                    if(!children.containsKey(childRC)) {
+                    children.computeIfAbsent(childRC, key -> {
                         TupleTrieNode newChild = new TupleTrieNode(positions, positionIndex+1);
                         newChild.rc = childRC;
-                        children.put(childRC, newChild);
                         debugPrint("Added child "+newChild+" to "+this);
-                    }
-                    children.get(childRC).insert(correction, tupIndex+1);
+                        return newChild;
+                    }).insert(correction, tupIndex+1);
                 }
 
             }
@@ -392,9 +398,8 @@ public class UpdatingEnergyMatrix extends ProxyEnergyMatrix {
                 if(position + 1 == currentPos && children.containsKey(currentRC))
                     children.get(currentRC).populateCorrections(query, output, nextIndex);
                 // Also branch on wildcard.
-                if(!children.containsKey(WILDCARD_RC))
-                    children.put(WILDCARD_RC, new TupleTrieNode(positions, positionIndex+1));
-                children.get(WILDCARD_RC).populateCorrections(query, output, nextIndex);
+                children.computeIfAbsent(WILDCARD_RC, key -> new TupleTrieNode(positions, positionIndex+1))
+                    .populateCorrections(query, output, nextIndex);
             }
         }
 
@@ -78,6 +78,17 @@ public class ConfEnergyCalculator {
 		private double approximationErrorBudget = 1e-2;
 
 		private boolean addShellInters = false;
+
+		/**
+		 * Re-use the molecule from the last energy calculation on each thread, if the next conformation
+		 * has the same positions and residue types, instead of making a new molecule for each conformation.
+		 * Only the assigned residues get re-posed, so this is much faster for minimizations
+		 * with large conformation spaces, where copying the molecule is a big part of the work.
+		 *
+		 * The molecules in returned {@link EnergyCalculator.EnergiedParametricMolecule}s are only valid
+		 * until the next energy calculation on the same thread, so don't turn this on if you keep the molecules around.
+		 */
+		private boolean reuseMolecules = false;
 		
 		public Builder(SimpleConfSpace confSpace, EnergyCalculator ecalc) {
 			this.confSpace  = confSpace;
@@ -114,8 +125,13 @@ public class ConfEnergyCalculator {
 			return this;
 		}
 		
+		public Builder setReuseMolecules(boolean val) {
+			this.reuseMolecules = val;
+			return this;
+		}
+		
 		public ConfEnergyCalculator build() {
-			return new ConfEnergyCalculator(confSpace, ecalc, epart, eref, addResEntropy, amat, approximationErrorBudget, addShellInters);
+			return new ConfEnergyCalculator(confSpace, ecalc, epart, eref, addResEntropy, amat, approximationErrorBudget, addShellInters, reuseMolecules);
 		}
 	}
 	
@@ -127,12 +143,20 @@ public class ConfEnergyCalculator {
 	public final ApproximatorMatrix amat;
 	public final double approximationErrorBudget;
 	public final boolean addShellInters;
+	public final boolean reuseMolecules;
 
 	public final TaskExecutor tasks;
 
 	protected final AtomicLong numCalculations = new AtomicLong(0L);
 	protected final AtomicLong numConfDBReads = new AtomicLong(0L);
 
+	// NOTE: confSpace isn't assigned yet in field initializers, so make the workspaces in a method
+	private final ThreadLocal<MoleculeWorkspace> workspaces = ThreadLocal.withInitial(this::makeWorkspace);
+
+	private MoleculeWorkspace makeWorkspace() {
+		return new MoleculeWorkspace(confSpace);
+	}
+
 	protected ConfEnergyCalculator(SimpleConfSpace confSpace, TaskExecutor tasks) {
 		this.confSpace = confSpace;
 		this.ecalc = null;
@@ -142,10 +166,15 @@ public class ConfEnergyCalculator {
 		this.amat = null;
 		this.approximationErrorBudget = Double.NaN;
 		this.addShellInters = false;
+		this.reuseMolecules = false;
 		this.tasks = tasks;
 	}
 
 	protected ConfEnergyCalculator(SimpleConfSpace confSpace, EnergyCalculator ecalc, EnergyPartition epart, SimpleReferenceEnergies eref, boolean addResEntropy, ApproximatorMatrix amat, double approximationErrorBudget, boolean addShellInters) {
+		this(confSpace, ecalc, epart, eref, addResEntropy, amat, approximationErrorBudget, addShellInters, false);
+	}
+
+	protected ConfEnergyCalculator(SimpleConfSpace confSpace, EnergyCalculator ecalc, EnergyPartition epart, SimpleReferenceEnergies eref, boolean addResEntropy, ApproximatorMatrix amat, double approximationErrorBudget, boolean addShellInters, boolean reuseMolecules) {
 		this.confSpace = confSpace;
 		this.ecalc = ecalc;
 		this.epart = epart;
@@ -154,6 +183,7 @@ public class ConfEnergyCalculator {
 		this.amat = amat;
 		this.approximationErrorBudget = approximationErrorBudget;
 		this.addShellInters = addShellInters;
+		this.reuseMolecules = reuseMolecules;
 		this.tasks = ecalc.tasks;
 	}
 
@@ -162,7 +192,7 @@ public class ConfEnergyCalculator {
 	}
 
 	public ConfEnergyCalculator(ConfEnergyCalculator other, EnergyCalculator ecalc) {
-		this(other.confSpace, ecalc, other.epart, other.eref, other.addResEntropy, other.amat, other.approximationErrorBudget, other.addShellInters);
+		this(other.confSpace, ecalc, other.epart, other.eref, other.addResEntropy, other.amat, other.approximationErrorBudget, other.addShellInters, other.reuseMolecules);
 	}
 
 	/**
@@ -180,6 +210,7 @@ public class ConfEnergyCalculator {
 		this.amat = null;
 		this.approximationErrorBudget = 0.0;
 		this.addShellInters = addShellInters;
+		this.reuseMolecules = false;
 		this.tasks = tasks;
 	}
 
@@ -296,7 +327,7 @@ public class ConfEnergyCalculator {
 	public EnergyCalculator.EnergiedParametricMolecule calcEnergy(RCTuple frag, ResidueInteractions inters) {
 
 		numCalculations.incrementAndGet();
-		ParametricMolecule pmol = confSpace.makeMolecule(frag);
+		ParametricMolecule pmol = makeMolecule(frag);
 
 		ResidueInteractionsApproximator approximator = null;
 		if (amat != null) {
@@ -306,6 +337,16 @@ public class ConfEnergyCalculator {
 		return ecalc.calcEnergy(pmol, inters, approximator);
 	}
 
+	private ParametricMolecule makeMolecule(RCTuple frag) {
+
+		// the approximator reads the DOF values, which aren't current on re-used molecules until they get minimized
+		if (reuseMolecules && (amat == null || ecalc.isMinimizing)) {
+			return workspaces.get().makeMolecule(frag);
+		}
+
+		return confSpace.makeMolecule(frag);
+	}
+
 	/**
 	 * Asynchronous version of {@link #calcEnergy(RCTuple,ResidueInteractions)}.
 	 * 
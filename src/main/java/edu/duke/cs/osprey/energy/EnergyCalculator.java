@@ -32,6 +32,7 @@
 
 package edu.duke.cs.osprey.energy;
 
+import java.io.File;
 import java.util.List;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
@@ -112,6 +113,19 @@ public class EnergyCalculator implements AutoCleanable {
 		private AtomConnectivity.Builder atomConnectivityBuilder = new AtomConnectivity.Builder();
 		private ResPairCache resPairCache;
 
+		/**
+		 * Evict the least-recently-used residue pair forcefield parameters
+		 * when the cache gets bigger than this many bytes.
+		 */
+		private long resPairCacheMaxBytes = Long.MAX_VALUE;
+
+		/**
+		 * If set, residue pair forcefield parameters are read from this file,
+		 * and saved back to it when the energy calculator is cleaned up,
+		 * so later designs with the same templates and forcefield can skip computing them.
+		 */
+		private File resPairCacheFile = null;
+
 		/** True to minimize continuous degrees of freedom in conformations. False to use only rigid structures. */
 		private boolean isMinimizing = true;
 
@@ -206,6 +220,16 @@ public class EnergyCalculator implements AutoCleanable {
 			return this;
 		}
 
+		public Builder setResPairCacheMaxBytes(long val) {
+			resPairCacheMaxBytes = val;
+			return this;
+		}
+
+		public Builder setResPairCacheFile(File val) {
+			resPairCacheFile = val;
+			return this;
+		}
+
 		public Builder setIsMinimizing(boolean val) {
 			this.isMinimizing = val;
 			return this;
@@ -234,7 +258,7 @@ public class EnergyCalculator implements AutoCleanable {
 			
 			// make a res pair cache if needed
 			if (resPairCache == null) {
-				resPairCache = new ResPairCache(ffparams, atomConnectivityBuilder.build());
+				resPairCache = new ResPairCache(ffparams, atomConnectivityBuilder.build(), resPairCacheMaxBytes, resPairCacheFile);
 			}
 			
 			return new EnergyCalculator(parallelism, cluster, type, resPairCache, isMinimizing, infiniteWellEnergy, alwaysResolveClashesEnergy);
@@ -598,6 +622,10 @@ public class EnergyCalculator implements AutoCleanable {
 	public void clean() {
 		context.cleanup();
 		tasks.clean();
+
+		if (resPairCache.file != null) {
+			resPairCache.save();
+		}
 	}
 
 	/**
@@ -4,12 +4,14 @@ import cern.colt.matrix.DoubleFactory1D;
 import cern.colt.matrix.DoubleMatrix1D;
 import edu.duke.cs.osprey.confspace.compiled.AssignedCoords;
 import edu.duke.cs.osprey.confspace.compiled.ConfSpace;
+import edu.duke.cs.osprey.confspace.compiled.DegreeOfFreedom;
 import edu.duke.cs.osprey.confspace.compiled.PosInter;
 import edu.duke.cs.osprey.gpu.Structs;
 import edu.duke.cs.osprey.minimization.Minimizer;
 import edu.duke.cs.osprey.minimization.ObjectiveFunction;
 import edu.duke.cs.osprey.minimization.SimpleCCDMinimizer;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
 
@@ -62,10 +64,7 @@ public class CPUConfEnergyCalculator implements ConfEnergyCalculator {
 		double energy = 0.0;
 
 		for (PosInter inter : inters) {
-			for (EnergyCalculator ecalc : confSpace.ecalcs) {
-				energy += ecalc.calcEnergy(coords, inter);
-			}
-			energy += inter.weight*inter.offset;
+			energy += calcEnergy(coords, inter);
 		}
 
 		return energy;
@@ -77,79 +76,168 @@ public class CPUConfEnergyCalculator implements ConfEnergyCalculator {
 
 		for (PosInter inter : inters) {
 			if (inter.isIncludedIn(posIndices)) {
-				for (EnergyCalculator ecalc : confSpace.ecalcs) {
-					energy += ecalc.calcEnergy(coords, inter);
-				}
-				energy += inter.weight*inter.offset;
+				energy += calcEnergy(coords, inter);
 			}
 		}
 
 		return energy;
 	}
 
-	@Override
-	public EnergiedCoords minimize(int[] conf, List<PosInter> inters) {
+	/** calculate the energy of just the given position interaction, including the weighted offset */
+	public double calcEnergy(AssignedCoords coords, PosInter inter) {
 
-		// build the conformation coords
-		AssignedCoords coords = confSpace.makeCoords(conf);
+		double energy = 0.0;
 
-		// TODO: can optimize by not including molecule rotation,translation DoFs
-		//  unless interactions span across molecules
+		for (EnergyCalculator ecalc : confSpace.ecalcs) {
+			energy += ecalc.calcEnergy(coords, inter);
+		}
+		energy += inter.weight*inter.offset;
 
-		// create an objective function for minimization
-		ObjectiveFunction f = new ObjectiveFunction() {
+		return energy;
+	}
 
-			@Override
-			public int getNumDOFs() {
-				return coords.dofs.size();
-			}
+	/**
+	 * An objective function for one conformation that only minimizes over DoFs that can change the energy.
+	 *
+	 * The interactions affected by each DoF are found once up front,
+	 * so the line searches don't have to re-scan all the interactions for every step.
+	 */
+	private static class Minimization implements ObjectiveFunction {
+
+		private static final long serialVersionUID = 4710852937205163128L;
+
+		final CPUConfEnergyCalculator ecalc;
+		final AssignedCoords coords;
+		final PosInter[] inters;
+
+		/** indices into coords.dofs */
+		final int[] dofIndices;
+
+		/** indices into inters, for each DoF */
+		final int[][] dofInters;
+
+		Minimization(CPUConfEnergyCalculator ecalc, AssignedCoords coords, List<PosInter> inters) {
+
+			this.ecalc = ecalc;
+			this.coords = coords;
+			this.inters = inters.toArray(new PosInter[0]);
+
+			int numDofs = coords.dofs.size();
+			int[] dofIndices = new int[numDofs];
+			int[][] dofInters = new int[numDofs][];
+			int[] buf = new int[this.inters.length];
+			int n = 0;
+			for (int d=0; d<numDofs; d++) {
+				DegreeOfFreedom dof = coords.dofs.get(d);
+
+				// find the interactions affected by this DoF
+				int numInters = 0;
+				for (int i=0; i<this.inters.length; i++) {
+					if (dof.affects(this.inters[i])) {
+						buf[numInters++] = i;
+					}
+				}
 
-			@Override
-			public DoubleMatrix1D[] getConstraints() {
-				int n = coords.dofs.size();
-				DoubleMatrix1D mins = DoubleFactory1D.dense.make(n);
-				DoubleMatrix1D maxs = DoubleFactory1D.dense.make(n);
-				for (int d=0; d<n; d++) {
-					mins.set(d, coords.dofs.get(d).min());
-					maxs.set(d, coords.dofs.get(d).max());
+				if (numInters > 0) {
+					dofIndices[n] = d;
+					dofInters[n] = Arrays.copyOf(buf, numInters);
+					n++;
+				} else {
+
+					// this DoF can't change the energy, so skip it during minimization,
+					// but still put it where the minimizer would have
+					dof.set((dof.min() + dof.max())/2);
 				}
-				return new DoubleMatrix1D[] { mins, maxs };
 			}
+			this.dofIndices = Arrays.copyOf(dofIndices, n);
+			this.dofInters = Arrays.copyOf(dofInters, n);
+		}
 
-			@Override
-			public void setDOFs(DoubleMatrix1D x) {
-				int n = coords.dofs.size();
-				for (int d=0; d<n; d++) {
-					coords.dofs.get(d).set(x.get(d));
-				}
+		DegreeOfFreedom dof(int d) {
+			return coords.dofs.get(dofIndices[d]);
+		}
+
+		@Override
+		public int getNumDOFs() {
+			return dofIndices.length;
+		}
+
+		@Override
+		public DoubleMatrix1D[] getConstraints() {
+			int n = getNumDOFs();
+			DoubleMatrix1D mins = DoubleFactory1D.dense.make(n);
+			DoubleMatrix1D maxs = DoubleFactory1D.dense.make(n);
+			for (int d=0; d<n; d++) {
+				mins.set(d, dof(d).min());
+				maxs.set(d, dof(d).max());
 			}
+			return new DoubleMatrix1D[] { mins, maxs };
+		}
 
-			@Override
-			public void setDOF(int dof, double val) {
-				coords.dofs.get(dof).set(val);
+		@Override
+		public void setDOFs(DoubleMatrix1D x) {
+			int n = getNumDOFs();
+			for (int d=0; d<n; d++) {
+				dof(d).set(x.get(d));
 			}
+		}
 
-			@Override
-			public double getValue(DoubleMatrix1D x) {
-				setDOFs(x);
-				return calcEnergy(coords, inters);
+		@Override
+		public void setDOF(int dof, double val) {
+			dof(dof).set(val);
+		}
+
+		@Override
+		public double getValue(DoubleMatrix1D x) {
+			setDOFs(x);
+			double energy = 0.0;
+			for (PosInter inter : inters) {
+				energy += ecalc.calcEnergy(coords, inter);
 			}
+			return energy;
+		}
 
-			@Override
-			public double getValForDOF(int dof, double val) {
-				setDOF(dof, val);
-				return calcSubEnergy(coords, inters, coords.dofs.get(dof).modifiedPosIndices());
+		@Override
+		public double getValForDOF(int dof, double val) {
+			setDOF(dof, val);
+			double energy = 0.0;
+			for (int i : dofInters[dof]) {
+				energy += ecalc.calcEnergy(coords, inters[i]);
 			}
+			return energy;
+		}
 
-			@Override
-			public double getInitStepSize(int dof) {
-				return coords.dofs.get(dof).initialStepSize();
+		@Override
+		public double getInitStepSize(int dof) {
+			return dof(dof).initialStepSize();
+		}
+
+		/** expands minimized DoF values to include the skipped DoFs too, so they line up with coords.dofs */
+		DoubleMatrix1D allDofValues(DoubleMatrix1D x) {
+			int n = coords.dofs.size();
+			DoubleMatrix1D out = DoubleFactory1D.dense.make(n);
+			for (int d=0; d<n; d++) {
+				out.set(d, coords.dofs.get(d).get());
+			}
+			for (int d=0; d<dofIndices.length; d++) {
+				out.set(dofIndices[d], x.get(d));
 			}
-		};
+			return out;
+		}
+	}
+
+	@Override
+	public EnergiedCoords minimize(int[] conf, List<PosInter> inters) {
+
+		// build the conformation coords
+		AssignedCoords coords = confSpace.makeCoords(conf);
+
+		// create an objective function for minimization
+		Minimization f = new Minimization(this, coords, inters);
 
 		// minimize it!
 		Minimizer.Result result = new SimpleCCDMinimizer(f).minimizeFromCenter();
 
-		return new EnergiedCoords(coords, result.energy, result.dofValues);
+		return new EnergiedCoords(coords, result.energy, f.allDofValues(result.dofValues));
 	}
 }
@@ -143,7 +143,13 @@ public interface ConfEnergyCalculator extends AutoCloseable {
 		// TODO: prefer intel if the hardware suitably matched?
 
 		// prefer the native ecalc, over the Java one
-		return new NativeConfEnergyCalculator(confSpace, precision);
+		if (NativeConfEnergyCalculator.isSupported()) {
+			return new NativeConfEnergyCalculator(confSpace, precision);
+		}
+
+		// no native library? the vectorized Java ecalc is the next best thing
+		// NOTE: it only supports Float64 precision
+		return new VectorConfEnergyCalculator(confSpace);
 	}
 
 	/**
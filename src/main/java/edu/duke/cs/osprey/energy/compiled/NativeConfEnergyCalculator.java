@@ -511,6 +511,19 @@ public class NativeConfEnergyCalculator implements ConfEnergyCalculator {
 	private final STranslationRotation transRotStruct = new STranslationRotation();
 	private static final int transRotId = 1;
 
+	/**
+	 * Returns true if the native library can be loaded on this machine.
+	 */
+	public static boolean isSupported() {
+		try {
+			NativeLib.version_major();
+			return true;
+		} catch (LinkageError err) {
+			// the native library is missing, or can't be loaded
+			return false;
+		}
+	}
+
 	public NativeConfEnergyCalculator(ConfSpace confSpace, Precision precision) {
 
 		this.confSpace = confSpace;
@@ -0,0 +1,44 @@
+package edu.duke.cs.osprey.energy.compiled;
+
+import edu.duke.cs.osprey.confspace.compiled.AssignedCoords;
+import edu.duke.cs.osprey.confspace.compiled.ConfSpace;
+import edu.duke.cs.osprey.confspace.compiled.PosInter;
+
+import java.util.Arrays;
+
+
+/**
+ * A conformation energy calculator written in pure Java, but that uses SIMD instructions
+ * via the Java Vector API to evaluate the forcefields.
+ *
+ * Much faster than the {@link CPUConfEnergyCalculator}, and doesn't need any native libraries,
+ * so it's a good fallback when the {@link NativeConfEnergyCalculator} isn't available.
+ *
+ * NOTE: needs the jdk.incubator.vector module, so add this JVM flag if needed:
+ * --add-modules=jdk.incubator.vector
+ */
+public class VectorConfEnergyCalculator extends CPUConfEnergyCalculator {
+
+	private final VectorEnergyCalculator[] vecalcs;
+
+	public VectorConfEnergyCalculator(ConfSpace confSpace) {
+		super(confSpace);
+
+		vecalcs = Arrays.stream(confSpace.ecalcs)
+			.map(ecalc -> VectorEnergyCalculator.of(confSpace, ecalc))
+			.toArray(VectorEnergyCalculator[]::new);
+	}
+
+	@Override
+	public double calcEnergy(AssignedCoords coords, PosInter inter) {
+
+		double energy = 0.0;
+
+		for (VectorEnergyCalculator vecalc : vecalcs) {
+			energy += vecalc.calcEnergy(coords, inter);
+		}
+		energy += inter.weight*inter.offset;
+
+		return energy;
+	}
+}
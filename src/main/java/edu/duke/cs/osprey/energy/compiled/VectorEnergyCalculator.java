@@ -0,0 +1,324 @@
+package edu.duke.cs.osprey.energy.compiled;
+
+import edu.duke.cs.osprey.confspace.compiled.AssignedCoords;
+import edu.duke.cs.osprey.confspace.compiled.ConfSpace;
+import edu.duke.cs.osprey.confspace.compiled.CoordsList;
+import edu.duke.cs.osprey.confspace.compiled.PosInter;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+
+/**
+ * Calculates the same energies as an {@link EnergyCalculator}, but evaluates many atom pairs at once
+ * using SIMD instructions via the Java Vector API.
+ *
+ * Atom pairs are gathered into struct-of-arrays lanes, one lane per atom pair, then the distances
+ * and the forcefield energies are computed for all the lanes at once.
+ * The forcefield parameters are also rearranged into struct-of-arrays form,
+ * so each parameter can be gathered into lanes directly.
+ *
+ * NOTE: needs the jdk.incubator.vector module, so add this JVM flag if needed:
+ * --add-modules=jdk.incubator.vector
+ */
+public abstract class VectorEnergyCalculator {
+
+	protected static final VectorSpecies<Double> species = DoubleVector.SPECIES_PREFERRED;
+
+	/**
+	 * Makes a vectorized implementation of the energy calculator, if one exists.
+	 */
+	public static VectorEnergyCalculator of(ConfSpace confSpace, EnergyCalculator ecalc) {
+		return switch (ecalc.type()) {
+			case Amber -> new Amber(confSpace, (AmberEnergyCalculator)ecalc);
+			case EEF1 -> new EEF1(confSpace, (EEF1EnergyCalculator)ecalc);
+		};
+	}
+
+	public final ConfSpace confSpace;
+	public final EnergyCalculator ecalc;
+
+	protected VectorEnergyCalculator(ConfSpace confSpace, EnergyCalculator ecalc) {
+		this.confSpace = confSpace;
+		this.ecalc = ecalc;
+	}
+
+	/**
+	 * Rearranges the forcefield parameters into struct-of-arrays form.
+	 * Indexed by param number, then by parami.
+	 */
+	protected static double[][] paramsSoA(ConfSpace confSpace, int ffi, int numParams) {
+
+		int size = confSpace.numParams(ffi);
+		double[][] out = new double[numParams][size];
+		for (int parami=0; parami<size; parami++) {
+			double[] params = confSpace.ffparams(ffi, parami);
+			for (int p=0; p<numParams; p++) {
+				out[p][parami] = params[p];
+			}
+		}
+		return out;
+	}
+
+	/** calculate the energies of all the atom pairs in the lanes */
+	protected abstract DoubleVector calcEnergies(DoubleVector r, DoubleVector r2, int[] paramsi);
+
+	/**
+	 * Struct-of-arrays storage for a chunk of atom pairs, and the running energy sum.
+	 */
+	private class Lanes {
+
+		final double[] x1 = new double[species.length()];
+		final double[] y1 = new double[species.length()];
+		final double[] z1 = new double[species.length()];
+		final double[] x2 = new double[species.length()];
+		final double[] y2 = new double[species.length()];
+		final double[] z2 = new double[species.length()];
+		final int[] paramsi = new int[species.length()];
+
+		int size = 0;
+		DoubleVector energy = DoubleVector.zero(species);
+
+		void add(CoordsList coords, int coordsi1, int coordsi2, int paramsi) {
+
+			x1[size] = coords.x(coordsi1);
+			y1[size] = coords.y(coordsi1);
+			z1[size] = coords.z(coordsi1);
+			x2[size] = coords.x(coordsi2);
+			y2[size] = coords.y(coordsi2);
+			z2[size] = coords.z(coordsi2);
+			this.paramsi[size] = paramsi;
+			size++;
+
+			if (size == species.length()) {
+				flush(species.maskAll(true));
+			}
+		}
+
+		void flush(VectorMask<Double> mask) {
+
+			// compute the distances
+			DoubleVector dx = DoubleVector.fromArray(species, x1, 0).sub(DoubleVector.fromArray(species, x2, 0));
+			DoubleVector dy = DoubleVector.fromArray(species, y1, 0).sub(DoubleVector.fromArray(species, y2, 0));
+			DoubleVector dz = DoubleVector.fromArray(species, z1, 0).sub(DoubleVector.fromArray(species, z2, 0));
+			DoubleVector r2 = dx.mul(dx).add(dy.mul(dy)).add(dz.mul(dz));
+			DoubleVector r = r2.lanewise(VectorOperators.SQRT);
+
+			// NOTE: unused lanes hold stale atom pairs, so mask them out of the sum
+			energy = energy.add(calcEnergies(r, r2, paramsi), mask);
+			size = 0;
+		}
+
+		double sum() {
+			if (size > 0) {
+				flush(species.indexInRange(0, size));
+			}
+			return energy.reduceLanes(VectorOperators.ADD);
+		}
+	}
+
+	/** get the internal energy of the static atoms */
+	public double calcEnergyStatic(AssignedCoords coords) {
+
+		int ffi = ecalc.ffi();
+		Lanes lanes = new Lanes();
+
+		ConfSpace.IndicesStatic indices = coords.getIndices(ffi);
+		for (int i=0; i<indices.size(); i++) {
+			lanes.add(
+				coords.coords,
+				coords.getStaticIndex(indices.getStaticAtom1Index(i)),
+				coords.getStaticIndex(indices.getStaticAtom2Index(i)),
+				indices.getParamsIndex(i)
+			);
+		}
+
+		return coords.getStaticEnergy(ffi) + lanes.sum();
+	}
+
+	/** calculate the single energy of position i */
+	public double calcEnergySingle(AssignedCoords coords, int posi) {
+
+		int ffi = ecalc.ffi();
+		Lanes lanes = new Lanes();
+
+		ConfSpace.IndicesSingle indices = coords.getIndices(ffi, posi);
+		for (int i=0; i<indices.sizeInternals(); i++) {
+			lanes.add(
+				coords.coords,
+				coords.getConfIndex(posi, indices.getInternalConfAtom1Index(i)),
+				coords.getConfIndex(posi, indices.getInternalConfAtom2Index(i)),
+				indices.getInternalParamsIndex(i)
+			);
+		}
+
+		return coords.getInternalEnergy(ffi, posi) + lanes.sum();
+	}
+
+	/** calculate the pair energy between position i and the static atoms */
+	public double calcEnergyStatic(AssignedCoords coords, int posi) {
+
+		int ffi = ecalc.ffi();
+		Lanes lanes = new Lanes();
+
+		ConfSpace.IndicesSingle indices = coords.getIndices(ffi, posi);
+		for (int i=0; i<indices.sizeStatics(); i++) {
+			lanes.add(
+				coords.coords,
+				coords.getConfIndex(posi, indices.getStaticConfAtomIndex(i)),
+				coords.getStaticIndex(indices.getStaticStaticAtomIndex(i)),
+				indices.getStaticParamsIndex(i)
+			);
+		}
+
+		return lanes.sum();
+	}
+
+	/** calculate the pair energy between position i1 and position i2 */
+	public double calcEnergyPair(AssignedCoords coords, int posi1, int posi2) {
+
+		int ffi = ecalc.ffi();
+		Lanes lanes = new Lanes();
+
+		ConfSpace.IndicesPair indices = coords.getIndices(ffi, posi1, posi2);
+		for (int i=0; i<indices.size(); i++) {
+			lanes.add(
+				coords.coords,
+				coords.getConfIndex(posi1, indices.getConfAtom1Index(i)),
+				coords.getConfIndex(posi2, indices.getConfAtom2Index(i)),
+				indices.getParamsIndex(i)
+			);
+		}
+
+		return lanes.sum();
+	}
+
+	/** calculate the energy of just the given position interaction */
+	public double calcEnergy(AssignedCoords coords, PosInter inter) {
+
+		double energy;
+		if (inter.posi1 == inter.posi2) {
+			if (inter.posi1 == PosInter.StaticPos) {
+
+				// static energy
+				energy = calcEnergyStatic(coords);
+
+			} else {
+
+				// pos single energy
+				energy = calcEnergySingle(coords, inter.posi1);
+			}
+		} else if (inter.posi1 == PosInter.StaticPos) {
+
+			// pos-static energy
+			energy = calcEnergyStatic(coords, inter.posi2);
+
+		} else if (inter.posi2 == PosInter.StaticPos) {
+
+			// pos-static energy
+			energy = calcEnergyStatic(coords, inter.posi1);
+
+		} else {
+
+			// pos-pos pair energy
+			energy = calcEnergyPair(coords, inter.posi1, inter.posi2);
+		}
+
+		// apply weight (but not the offset)
+		return inter.weight*energy;
+	}
+
+
+	/**
+	 * Vectorized version of {@link AmberEnergyCalculator#calcEnergy(double, double, double[])}
+	 */
+	public static class Amber extends VectorEnergyCalculator {
+
+		private final boolean distanceDependentDielectric;
+		private final double[] esQ;
+		private final double[] vdwA;
+		private final double[] vdwB;
+
+		public Amber(ConfSpace confSpace, AmberEnergyCalculator ecalc) {
+			super(confSpace, ecalc);
+
+			distanceDependentDielectric = ecalc.settings.distanceDependentDielectric;
+
+			double[][] params = paramsSoA(confSpace, ecalc.ffi, 3);
+			esQ = params[0];
+			vdwA = params[1];
+			vdwB = params[2];
+		}
+
+		@Override
+		protected DoubleVector calcEnergies(DoubleVector r, DoubleVector r2, int[] paramsi) {
+
+			DoubleVector esQ = DoubleVector.fromArray(species, this.esQ, 0, paramsi, 0);
+			DoubleVector vdwA = DoubleVector.fromArray(species, this.vdwA, 0, paramsi, 0);
+			DoubleVector vdwB = DoubleVector.fromArray(species, this.vdwB, 0, paramsi, 0);
+
+			// calculate the electrostatics energy
+			DoubleVector es;
+			if (distanceDependentDielectric) {
+				es = esQ.div(r2);
+			} else {
+				es = esQ.div(r);
+			}
+
+			// calculate the van der Waals energy
+			DoubleVector r6 = r2.mul(r2).mul(r2);
+			DoubleVector r12 = r6.mul(r6);
+			DoubleVector vdw = vdwA.div(r12).sub(vdwB.div(r6));
+
+			return es.add(vdw);
+		}
+	}
+
+
+	/**
+	 * Vectorized version of {@link EEF1EnergyCalculator#calcEnergy(double, double, double[])}
+	 */
+	public static class EEF1 extends VectorEnergyCalculator {
+
+		private final double[] vdwRadius1;
+		private final double[] lambda1;
+		private final double[] vdwRadius2;
+		private final double[] lambda2;
+		private final double[] alpha1;
+		private final double[] alpha2;
+
+		public EEF1(ConfSpace confSpace, EEF1EnergyCalculator ecalc) {
+			super(confSpace, ecalc);
+
+			double[][] params = paramsSoA(confSpace, ecalc.ffi, 6);
+			vdwRadius1 = params[0];
+			lambda1 = params[1];
+			vdwRadius2 = params[2];
+			lambda2 = params[3];
+			alpha1 = params[4];
+			alpha2 = params[5];
+		}
+
+		@Override
+		protected DoubleVector calcEnergies(DoubleVector r, DoubleVector r2, int[] paramsi) {
+
+			DoubleVector vdwRadius1 = DoubleVector.fromArray(species, this.vdwRadius1, 0, paramsi, 0);
+			DoubleVector lambda1 = DoubleVector.fromArray(species, this.lambda1, 0, paramsi, 0);
+			DoubleVector vdwRadius2 = DoubleVector.fromArray(species, this.vdwRadius2, 0, paramsi, 0);
+			DoubleVector lambda2 = DoubleVector.fromArray(species, this.lambda2, 0, paramsi, 0);
+			DoubleVector alpha1 = DoubleVector.fromArray(species, this.alpha1, 0, paramsi, 0);
+			DoubleVector alpha2 = DoubleVector.fromArray(species, this.alpha2, 0, paramsi, 0);
+
+			DoubleVector Xij = r.sub(vdwRadius1).div(lambda1);
+			DoubleVector Xji = r.sub(vdwRadius2).div(lambda2);
+			DoubleVector energy = alpha1.mul(Xij.mul(Xij).neg().lanewise(VectorOperators.EXP))
+				.add(alpha2.mul(Xji.mul(Xji).neg().lanewise(VectorOperators.EXP)))
+				.div(r2)
+				.neg();
+
+			// only count interactions within the cutoff
+			return DoubleVector.zero(species).blend(energy, r.compare(VectorOperators.LE, EEF1EnergyCalculator.cutoff));
+		}
+	}
+}
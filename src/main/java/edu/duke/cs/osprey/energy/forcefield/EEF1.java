@@ -33,6 +33,8 @@
 package edu.duke.cs.osprey.energy.forcefield;
 
 import java.io.BufferedReader;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Serializable;
 import java.util.HashMap;
@@ -86,6 +88,22 @@ public class EEF1 implements Serializable {
             
 	}
 	
+	//Writes the parsed solvation parameters, so caches of precomputed parameters
+	//		can tell when eef1parm.dat has changed
+	void writeParams(DataOutput out) throws IOException {
+		for (int i=0; i<numAtTypesEEF1; i++) {
+			out.writeUTF(String.valueOf(groupEEF1names[i]));
+			out.writeUTF(String.valueOf(atTypeEEF1names[i]));
+			out.writeDouble(atEEF1Vol[i]);
+			out.writeDouble(dGiRef[i]);
+			out.writeDouble(dGiFree[i]);
+			out.writeDouble(dHiRef[i]);
+			out.writeDouble(dCpiRef[i]);
+			out.writeDouble(lambdai[i]);
+			out.writeDouble(vdWri[i]);
+		}
+	}
+	
 	//Reads the solvation parameters for EEF1 from the file eef1parm.dat;
 	//If a different versio of the paramater file is used, some changes to the
 	//		current function may be necessary
@@ -42,10 +42,12 @@ import one.util.streamex.EntryStream;
 import one.util.streamex.IntStreamEx;
 import one.util.streamex.StreamEx;
 
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeSet;
 
 import static edu.duke.cs.osprey.tools.Log.log;
 
@@ -555,6 +557,35 @@ public class ForcefieldParams implements Serializable {
 		}
 	}
 	
+	/**
+	 * Writes the parsed parameters that go into the pairwise van der Waals and solvation terms,
+	 * so caches of precomputed parameters can tell when the parameter files have changed.
+	 */
+	void writeNonBondedParams(DataOutput out) throws IOException {
+
+		out.writeUTF(String.valueOf(forcefld));
+		if (forcefld != null) {
+			out.writeDouble(forcefld.Aij14Factor);
+			out.writeDouble(forcefld.Bij14Factor);
+		}
+		out.writeDouble(vdwMultiplier);
+
+		// sort the atom types, so the order doesn't depend on the hash map
+		for (String type : new TreeSet<>(vanDerWaalsMap.keySet())) {
+			VanDerWaalsRadius radius = vanDerWaalsMap.get(type);
+			out.writeUTF(type);
+			out.writeDouble(radius.R());
+			out.writeDouble(radius.EDEP());
+		}
+
+		out.writeUTF(String.valueOf(solvationForcefield));
+		out.writeDouble(solvScale);
+		out.writeBoolean(eef1parms != null);
+		if (eef1parms != null) {
+			eef1parms.writeParams(out);
+		}
+	}
+	
 	public VdwParams getVdwParams(Atom atom1, Atom atom2, AtomNeighbors.Type neighborType) {
 		
 		// calc vdW params
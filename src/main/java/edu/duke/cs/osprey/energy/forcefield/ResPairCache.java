@@ -32,9 +32,25 @@
 
 package edu.duke.cs.osprey.energy.forcefield;
 
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import edu.duke.cs.osprey.energy.ResidueInteractions;
 import edu.duke.cs.osprey.energy.forcefield.ForcefieldParams.SolvationForcefield;
@@ -45,7 +61,21 @@ import edu.duke.cs.osprey.structure.AtomConnectivity.AtomPairs;
 import edu.duke.cs.osprey.structure.AtomNeighbors;
 import edu.duke.cs.osprey.structure.Residue;
 import edu.duke.cs.osprey.structure.Residues;
+import edu.duke.cs.osprey.tools.ObjectIO;
 
+import static edu.duke.cs.osprey.tools.Log.log;
+
+
+/**
+ * Caches the precomputed forcefield parameters for residue pairs, so energy functions
+ * for the same residue templates don't have to recompute them.
+ *
+ * Thread-safe, so one cache can be shared by many energy calculators and threads.
+ *
+ * The cache can be bounded in size, in which case the least-recently-used parameters are evicted.
+ * The cache can also be saved to a file, so later designs using the same templates
+ * and forcefield can skip computing the parameters again.
+ */
 public class ResPairCache {
 	
 	public static class ResPair {
@@ -84,7 +114,9 @@ public class ResPairCache {
 		}
 	}
 	
-	public static class AtomPairInfo {
+	public static class AtomPairInfo implements Serializable {
+
+		private static final long serialVersionUID = 6138229734912857121L;
 		
 		public final int numAtomPairs;
 		
@@ -153,17 +185,174 @@ public class ResPairCache {
 		}
 	}
 	
+	private static class Entry {
+
+		final AtomPairInfo info;
+		final long numBytes;
+		volatile long lastUsed;
+
+		// the key to save the info under, or null if the cache isn't saved
+		final Key key;
+
+		// true when the info is already in the file
+		volatile boolean isSaved;
+
+		Entry(AtomPairInfo info, Key key, boolean isSaved) {
+			this.info = info;
+			this.numBytes = (long)info.flags.length*Long.BYTES + (long)info.precomputed.length*Double.BYTES;
+			this.key = key;
+			this.isSaved = isSaved;
+		}
+	}
+
+	/**
+	 * Identifies the atom pair parameters across runs,
+	 * since the atom pairs and templates themselves won't be the same instances.
+	 *
+	 * The digest covers everything that goes into the parameters,
+	 * the rest is there to check a hit against the saved info itself.
+	 */
+	private static class Key implements Serializable {
+
+		private static final long serialVersionUID = -3404788587618045717L;
+
+		final String templateName1;
+		final String templateName2;
+		final int numAtomPairs;
+		final int numPrecomputedPerAtomPair;
+		final byte[] digest;
+
+		Key(Residue res1, Residue res2, AtomPairs atomPairs, SolvationForcefield.ResiduesInfo solvInfo) {
+
+			this.templateName1 = res1.template.name;
+			this.templateName2 = res2.template.name;
+			this.numAtomPairs = atomPairs.getNumPairs(AtomNeighbors.Type.BONDED14) + atomPairs.getNumPairs(AtomNeighbors.Type.NONBONDED);
+			this.numPrecomputedPerAtomPair = 1 + 2 + (solvInfo != null ? solvInfo.getNumPrecomputedPerAtomPair() : 0);
+
+			MessageDigest digest = makeDigest();
+			try (DataOutputStream out = new DataOutputStream(new DigestOutputStream(OutputStream.nullOutputStream(), digest))) {
+				for (Residue res : Arrays.asList(res1, res2)) {
+					out.writeUTF(res.template.name);
+					out.writeInt(res.atoms.size());
+					for (Atom atom : res.atoms) {
+						out.writeUTF(atom.name);
+						out.writeUTF(String.valueOf(atom.forceFieldType));
+						out.writeDouble(atom.charge);
+					}
+				}
+				for (AtomNeighbors.Type type : AtomNeighbors.Type.values()) {
+					out.writeInt(atomPairs.getNumPairs(type));
+					for (int[] atomPair : atomPairs.getPairs(type)) {
+						out.writeInt(atomPair[0]);
+						out.writeInt(atomPair[1]);
+					}
+				}
+				out.writeInt(numPrecomputedPerAtomPair);
+			} catch (IOException ex) {
+				throw new RuntimeException(ex);
+			}
+			this.digest = digest.digest();
+		}
+
+		boolean matches(AtomPairInfo info) {
+			return info.numAtomPairs == numAtomPairs
+				&& info.numPrecomputedPerAtomPair == numPrecomputedPerAtomPair
+				&& info.flags.length == numAtomPairs
+				&& info.precomputed.length == numAtomPairs*numPrecomputedPerAtomPair;
+		}
+
+		@Override
+		public int hashCode() {
+			return Arrays.hashCode(digest);
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof Key && equals((Key)other);
+		}
+
+		public boolean equals(Key other) {
+			return this.templateName1.equals(other.templateName1)
+				&& this.templateName2.equals(other.templateName2)
+				&& this.numAtomPairs == other.numAtomPairs
+				&& this.numPrecomputedPerAtomPair == other.numPrecomputedPerAtomPair
+				&& Arrays.equals(this.digest, other.digest);
+		}
+	}
+
+	private static MessageDigest makeDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException ex) {
+			// every JVM has to support SHA-256
+			throw new Error(ex);
+		}
+	}
+
+	private static class Saved implements Serializable {
+
+		private static final long serialVersionUID = -5930167316366541734L;
+
+		final String ffparamsSignature;
+		final HashMap<Key,AtomPairInfo> infos;
+
+		Saved(String ffparamsSignature, HashMap<Key,AtomPairInfo> infos) {
+			this.ffparamsSignature = ffparamsSignature;
+			this.infos = infos;
+		}
+	}
+
 	public final ForcefieldParams ffparams;
 	public final AtomConnectivity connectivity;
-	
-	private Map<AtomPairs,AtomPairInfo> infos;
-	
+
+	/** evict least-recently-used parameters when the cache gets bigger than this */
+	public final long maxBytes;
+
+	/** where to save the cache, or null to not save */
+	public final File file;
+
+	// NOTE: AtomPairs doesn't override equals() and hashCode(), so this map uses identity keys
+	private final Map<AtomPairs,Entry> entries = new ConcurrentHashMap<>();
+	private final AtomicLong clock = new AtomicLong(0);
+	private final AtomicLong numBytes = new AtomicLong(0);
+
+	// when saving, every entry is also here, along with the entries read from the file
+	private final Map<Key,Entry> savedEntries = new ConcurrentHashMap<>();
+
+	private String ffparamsSignature = null;
+
 	public ResPairCache(ForcefieldParams ffparams, AtomConnectivity connectivity) {
+		this(ffparams, connectivity, Long.MAX_VALUE, null);
+	}
+
+	public ResPairCache(ForcefieldParams ffparams, AtomConnectivity connectivity, long maxBytes, File file) {
+
 		this.ffparams = ffparams;
 		this.connectivity = connectivity;
-		this.infos = new IdentityHashMap<>();
+		this.maxBytes = maxBytes;
+		this.file = file;
+
+		if (file != null) {
+			load();
+		}
 	}
-	
+
+	/** the number of residue pairs in the cache */
+	public int size() {
+		return entries.size();
+	}
+
+	/** the approximate size of the cached parameters, including any read from the file */
+	public long getNumBytes() {
+		return numBytes.get();
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+		savedEntries.clear();
+		numBytes.set(0);
+	}
+
 	public ResPair get(Residues residues, ResidueInteractions.Pair pair, SolvationForcefield.ResiduesInfo solvInfo) {
 		
 		// lookup the residues
@@ -179,27 +368,212 @@ public class ResPairCache {
 		}
 		
 		// look in the cache
-		AtomPairInfo info = infos.get(atomPairs);
-		if (info == null) {
-			
-			// cache miss!
-			info = new AtomPairInfo(
-				res1, res2,
-				ffparams,
-				atomPairs,
-				solvInfo
-			);
-			
-			infos.put(atomPairs, info);
+		Entry entry = entries.get(atomPairs);
+		if (entry == null) {
+
+			// cache miss! compute the info, but only once, even if other threads miss too
+			boolean[] wasAdded = { false };
+			entry = entries.computeIfAbsent(atomPairs, key -> makeEntry(res1, res2, atomPairs, solvInfo, wasAdded));
+			if (wasAdded[0]) {
+				if (numBytes.addAndGet(entry.numBytes) > maxBytes) {
+					evict();
+				}
+			}
 		}
+		entry.lastUsed = clock.incrementAndGet();
 	
 		return new ResPair(
 			indxe1, index2,
 			res1, res2,
 			pair.weight, pair.offset,
-			info,
+			entry.info,
 			solvInfo,
 			ffparams.solvScale
 		);
 	}
+
+	private Entry makeEntry(Residue res1, Residue res2, AtomPairs atomPairs, SolvationForcefield.ResiduesInfo solvInfo, boolean[] wasAdded) {
+
+		if (file == null) {
+			wasAdded[0] = true;
+			return new Entry(makeInfo(res1, res2, atomPairs, solvInfo), null, false);
+		}
+
+		// check the saved entries first
+		Key key = new Key(res1, res2, atomPairs, solvInfo);
+		Entry entry = savedEntries.get(key);
+		if (entry != null) {
+			if (key.matches(entry.info)) {
+				return entry;
+			}
+			log("WARNING: saved residue pair parameters for %s:%s don't match the atom pairs, will recompute",
+				res1.fullName, res2.fullName
+			);
+		}
+
+		wasAdded[0] = true;
+		entry = new Entry(makeInfo(res1, res2, atomPairs, solvInfo), key, false);
+		Entry oldEntry = savedEntries.put(key, entry);
+		if (oldEntry != null) {
+			numBytes.addAndGet(-oldEntry.numBytes);
+		}
+		return entry;
+	}
+
+	private AtomPairInfo makeInfo(Residue res1, Residue res2, AtomPairs atomPairs, SolvationForcefield.ResiduesInfo solvInfo) {
+		return new AtomPairInfo(
+			res1, res2,
+			ffparams,
+			atomPairs,
+			solvInfo
+		);
+	}
+
+	private synchronized void evict() {
+
+		// another thread may have evicted already
+		if (numBytes.get() <= maxBytes) {
+			return;
+		}
+
+		// evict the least-recently-used entries, down to a low-water mark so we don't evict on every miss
+		// when saving, the saved entries include all the other entries, and the ones read from the file
+		long targetBytes = maxBytes - maxBytes/4;
+		List<Entry> sorted = new ArrayList<>(file != null ? savedEntries.values() : entries.values());
+		sorted.sort(Comparator.comparingLong(entry -> entry.lastUsed));
+		Set<Entry> evicted = Collections.newSetFromMap(new IdentityHashMap<>());
+		long evictedBytes = 0;
+		for (Entry entry : sorted) {
+			if (numBytes.get() - evictedBytes <= targetBytes) {
+				break;
+			}
+			evicted.add(entry);
+			evictedBytes += entry.numBytes;
+		}
+
+		// when saving, don't lose parameters we computed this run, write them out before dropping them
+		// otherwise, just drop them
+		if (file != null && evicted.stream().anyMatch(entry -> !entry.isSaved)) {
+			save();
+		}
+
+		entries.values().removeIf(evicted::contains);
+		savedEntries.values().removeIf(evicted::contains);
+		numBytes.addAndGet(-evictedBytes);
+	}
+
+	/** describes the forcefield settings and parameters that affect the atom pair parameters */
+	private String ffparamsSignature() {
+
+		if (ffparamsSignature == null) {
+
+			MessageDigest digest = makeDigest();
+			try (DataOutputStream out = new DataOutputStream(new DigestOutputStream(OutputStream.nullOutputStream(), digest))) {
+				ffparams.writeNonBondedParams(out);
+			} catch (IOException ex) {
+				throw new RuntimeException(ex);
+			}
+
+			StringBuilder buf = new StringBuilder();
+			for (byte b : digest.digest()) {
+				buf.append(String.format("%02x", b));
+			}
+			ffparamsSignature = String.join(",",
+				String.valueOf(ffparams.forcefld),
+				String.valueOf(ffparams.solvationForcefield),
+				Double.toString(ffparams.solvScale),
+				Double.toString(ffparams.vdwMultiplier),
+				buf.toString()
+			);
+		}
+
+		return ffparamsSignature;
+	}
+
+	/**
+	 * writes the cached parameters to the file,
+	 * along with any parameters already in the file that aren't in the cache anymore
+	 */
+	public synchronized void save() {
+
+		if (file == null) {
+			throw new IllegalStateException("no file configured for the res pair cache");
+		}
+
+		// start with what's already in the file, since evicted entries are only in there now
+		HashMap<Key,AtomPairInfo> infos = new HashMap<>();
+		Saved saved = read();
+		if (saved != null) {
+			infos.putAll(saved.infos);
+		}
+
+		// add the entries we have now
+		List<Entry> entries = new ArrayList<>(savedEntries.values());
+		for (Entry entry : entries) {
+			infos.put(entry.key, entry.info);
+		}
+
+		try {
+			ObjectIO.write(new Saved(ffparamsSignature(), infos), file);
+		} catch (ObjectIO.CantWriteException ex) {
+			log("WARNING: can't save residue pair cache: %s", ex.getMessage());
+			return;
+		}
+
+		for (Entry entry : entries) {
+			entry.isSaved = true;
+		}
+	}
+
+	/** reads the file, or returns null if there's nothing we can use in it */
+	private Saved read() {
+
+		Saved saved;
+		try {
+			saved = ObjectIO.read(file, Saved.class);
+		} catch (ObjectIO.BadFileException ex) {
+			log("WARNING: can't read residue pair cache, will recompute: %s", ex.getMessage());
+			return null;
+		}
+		if (saved == null) {
+			return null;
+		}
+
+		// the parameters are useless if the forcefield changed
+		if (!saved.ffparamsSignature.equals(ffparamsSignature())) {
+			log("WARNING: residue pair cache was saved with a different forcefield, will recompute");
+			return null;
+		}
+
+		return saved;
+	}
+
+	private void load() {
+
+		Saved saved = read();
+		if (saved == null) {
+			return;
+		}
+
+		// read only as many parameters as fit in the cache, the rest stay in the file
+		int numSkipped = 0;
+		for (Map.Entry<Key,AtomPairInfo> e : saved.infos.entrySet()) {
+			Entry entry = new Entry(e.getValue(), e.getKey(), true);
+			if (!e.getKey().matches(entry.info)) {
+				numSkipped++;
+				continue;
+			}
+			if (numBytes.get() + entry.numBytes > maxBytes) {
+				numSkipped++;
+				continue;
+			}
+			savedEntries.put(e.getKey(), entry);
+			numBytes.addAndGet(entry.numBytes);
+		}
+		if (numSkipped > 0) {
+			log("read %d of %d saved residue pair parameters, the rest will be recomputed if needed",
+				savedEntries.size(), saved.infos.size()
+			);
+		}
+	}
 }
@@ -40,6 +40,7 @@ import edu.duke.cs.osprey.energy.ConfEnergyCalculator;
 import edu.duke.cs.osprey.energy.EnergyCalculator;
 import edu.duke.cs.osprey.externalMemory.Queue;
 import edu.duke.cs.osprey.gmec.ConfAnalyzer;
+import edu.duke.cs.osprey.kstar.BBKStar;
 import edu.duke.cs.osprey.kstar.KStar;
 import edu.duke.cs.osprey.kstar.pfunc.BoltzmannCalculator;
 import edu.duke.cs.osprey.kstar.pfunc.PartitionFunction;
@@ -622,13 +623,7 @@ public class EWAKStarBBKStar {
                         MultiSequenceNode msnode = (MultiSequenceNode) node;
 
                         // partial sequence, expand children
-                        // TODO: parallelize the multi-sequence node scoring here?
-                        for (Node child : msnode.makeChildren()) {
-                            child.estimateScore();
-                            if (!child.isUnboundUnstable) {
-                                tree.add(child);
-                            }
-                        }
+                        scoreChildren(msnode.makeChildren(), tree);
                     }
                 }
             } else {
@@ -671,13 +666,7 @@ public class EWAKStarBBKStar {
                         MultiSequenceNode msnode = (MultiSequenceNode) node;
 
                         // partial sequence, expand children
-                        // TODO: parallelize the multi-sequence node scoring here?
-                        for (Node child : msnode.makeChildren()) {
-                            child.estimateScore();
-                            if (!child.isUnboundUnstable) {
-                                tree.add(child);
-                            }
-                        }
+                        scoreChildren(msnode.makeChildren(), tree);
                     }
                 }
             }
@@ -699,6 +688,21 @@ public class EWAKStarBBKStar {
         return scoredSequences;
     }
 
+    /**
+     * Scores the children of a multi-sequence node, then adds them to the tree in the order they were made,
+     * so the tree doesn't depend on which scoring task finishes first.
+     */
+    private void scoreChildren(List<Node> children, PriorityQueue<Node> tree) {
+
+        BBKStar.scoreChildren(children, complex.confEcalcMinimized.tasks, child -> child instanceof MultiSequenceNode, Node::estimateScore);
+
+        for (Node child : children) {
+            if (!child.isUnboundUnstable) {
+                tree.add(child);
+            }
+        }
+    }
+
     private void reportSequence(SingleSequenceNode ssnode, List<Sequence> scoredSequences) {
 
         EWAKStarScore kstarScore = ssnode.makeKStarScore();
@@ -156,6 +156,7 @@ public abstract class AssignmentsSerializer {
 	public final RCs rcs;
 	public final Encoding encoding;
 	public final EntrySize entrySize;
+	public final int numBytes;
 
 	protected AssignmentsSerializer(RCs rcs, int numBytes) {
 		this.rcs = rcs;
@@ -168,12 +169,21 @@ public abstract class AssignmentsSerializer {
 			}
 		}
 		encoding = Encoding.pickBest(maxVal);
-		entrySize = EntrySize.findBigEnoughSizeFor(rcs.getNumPos()*encoding.numBytes + numBytes);
+		this.numBytes = rcs.getNumPos()*encoding.numBytes + numBytes;
+		entrySize = EntrySize.findBigEnoughSizeFor(this.numBytes);
 	}
 	
 	public EntrySize getEntrySize() {
 		return entrySize;
 	}
+
+	/**
+	 * Returns the exact number of bytes needed for an entry,
+	 * rather than the power of two TPIE rounds up to.
+	 */
+	public int getNumBytes() {
+		return numBytes;
+	}
 	
 	protected void writeAssignments(int[] assignments, ByteBuffer buf) {
 
@@ -37,7 +37,6 @@ import java.nio.ByteBuffer;
 import edu.duke.cs.osprey.astar.conf.ConfAStarFactory;
 import edu.duke.cs.osprey.astar.conf.ConfAStarNode;
 import edu.duke.cs.osprey.astar.conf.RCs;
-import edu.duke.cs.tpie.serialization.SerializingDoublePriorityQueue;
 
 public class EMConfAStarFactory implements ConfAStarFactory {
 
@@ -58,7 +57,7 @@ public class EMConfAStarFactory implements ConfAStarFactory {
 		return new EMConfAStarNode(numPos);
 	}
 	
-	private static class NodeSerializer extends AssignmentsSerializer implements SerializingDoublePriorityQueue.Serializer<EMConfAStarNode> {
+	private static class NodeSerializer extends AssignmentsSerializer implements ExternalPriorityQueue.Serializer<EMConfAStarNode> {
 
 		public NodeSerializer(RCs rcs) {
 			super(rcs, Double.BYTES*2 + Integer.BYTES);
@@ -36,9 +36,8 @@ import java.nio.ByteBuffer;
 
 import edu.duke.cs.osprey.astar.conf.RCs;
 import edu.duke.cs.osprey.confspace.ConfSearch.EnergiedConf;
-import edu.duke.cs.tpie.serialization.SerializingDoublePriorityQueue;
 
-public class EnergiedConfPrioritySerializer extends AssignmentsSerializer implements SerializingDoublePriorityQueue.Serializer<EnergiedConf> {
+public class EnergiedConfPrioritySerializer extends AssignmentsSerializer implements ExternalPriorityQueue.Serializer<EnergiedConf> {
 	
 	public EnergiedConfPrioritySerializer(RCs rcs) {
 		super(rcs, Double.BYTES);
@@ -36,11 +36,25 @@ import edu.duke.cs.osprey.tools.MathTools;
 import edu.duke.cs.tpie.TPIE;
 
 import java.io.File;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class ExternalMemory {
+
+	public static enum Backend {
+
+		/** The native TPIE library */
+		TPIE,
+
+		/** Pure Java implementations, eg {@link ExternalPriorityQueue} */
+		Java
+	}
 	
 	private static boolean limitSet = false;
 	private static File tempDir = null;
+	private static Backend backend = Backend.TPIE;
+	private static long internalLimitBytes = 0;
+	private static final AtomicLong javaExternalBytes = new AtomicLong(0);
+	private static final AtomicLong javaInternalBytes = new AtomicLong(0);
 
 	/**
 	 * Set the maximum amount of internal memory (eg, RAM) to use for
@@ -51,11 +65,31 @@ public class ExternalMemory {
 	 * @param mib maximum amount of internal memory to use, in MiB
 	 */
 	public static void setInternalLimit(int mib) {
+		setInternalLimit(mib, Backend.TPIE);
+	}
+
+	/**
+	 * Set the maximum amount of internal memory (eg, RAM) to use for
+	 * large data structures, and pick the external memory implementation.
+	 *
+	 * The {@link Backend#Java} backend doesn't need the native TPIE library,
+	 * but only supports priority queues whose serializers implement {@link ExternalPriorityQueue.Serializer},
+	 * eg the queues used by {@link edu.duke.cs.osprey.astar.conf.ConfAStarTree.Builder#useExternalMemory()}.
+	 * All the Java queues share the internal memory limit.
+	 *
+	 * @param mib maximum amount of internal memory to use, in MiB
+	 * @param backend the external memory implementation
+	 */
+	public static void setInternalLimit(int mib, Backend backend) {
 		if (limitSet) {
 			System.err.println("WARNING: Internal memory limit already set, ignoring additional request.");
 			return;
 		}
-		TPIE.start(mib);
+		if (backend == Backend.TPIE) {
+			TPIE.start(mib);
+		}
+		ExternalMemory.backend = backend;
+		internalLimitBytes = mib*1024L*1024L;
 		limitSet = true;
 		setDefaultTempDir();
 	}
@@ -103,7 +137,9 @@ public class ExternalMemory {
 		}
 
 		tempDir = new File(dir);
-		TPIE.setTempDir(dir);
+		if (backend == Backend.TPIE) {
+			TPIE.setTempDir(dir);
+		}
 	}
 	
 	/**
@@ -120,8 +156,13 @@ public class ExternalMemory {
 			dirFile.mkdirs();
 		}
 
-		tempDir = new File(dir);
-		TPIE.setTempDir(dir, subdir);
+		if (backend == Backend.TPIE) {
+			tempDir = new File(dir);
+			TPIE.setTempDir(dir, subdir);
+		} else {
+			tempDir = new File(dir, subdir);
+			tempDir.mkdirs();
+		}
 	}
 	
 	/**
@@ -131,6 +172,24 @@ public class ExternalMemory {
 	public static boolean isInternalLimitSet() {
 		return limitSet;
 	}
+
+	public static Backend getBackend() {
+		return backend;
+	}
+
+	/**
+	 * Return the internal memory limit in bytes, or 0 if the limit hasn't been set.
+	 */
+	public static long getInternalLimitBytes() {
+		return internalLimitBytes;
+	}
+
+	/**
+	 * Return the temporary directory for external memory, or null if the limit hasn't been set.
+	 */
+	public static File getTempDir() {
+		return tempDir;
+	}
 	
 	/**
 	 * Return the number of bytes currently used in external memory. (ie, written to the temporary directory)
@@ -139,7 +198,56 @@ public class ExternalMemory {
 		if (!limitSet) {
 			return 0;
 		}
-		return TPIE.getExternalBytes();
+		switch (backend) {
+			case TPIE: return TPIE.getExternalBytes();
+			case Java: return javaExternalBytes.get();
+			default: throw new Error("unknown backend: " + backend);
+		}
+	}
+
+	/** Called by the pure Java data structures when they write or delete external memory. */
+	static void trackExternalBytes(long delta) {
+		javaExternalBytes.addAndGet(delta);
+	}
+
+	/**
+	 * Return the number of bytes of internal memory currently reserved by the pure Java data structures.
+	 */
+	public static long getInternalBytes() {
+		return javaInternalBytes.get();
+	}
+
+	/** Return true if the pure Java data structures have reserved more than the internal memory limit. */
+	static boolean isInternalLimitExceeded() {
+		return javaInternalBytes.get() > internalLimitBytes;
+	}
+
+	/**
+	 * Called by the pure Java data structures to reserve internal memory from the shared limit.
+	 * Returns false, and reserves nothing, if there isn't enough left.
+	 */
+	static boolean tryReserveInternalBytes(long bytes) {
+		while (true) {
+			long reservedBytes = javaInternalBytes.get();
+			if (reservedBytes + bytes > internalLimitBytes) {
+				return false;
+			}
+			if (javaInternalBytes.compareAndSet(reservedBytes, reservedBytes + bytes)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Like {@link #tryReserveInternalBytes(long)}, but always reserves, even past the limit.
+	 * For the little bit of memory a data structure needs to make any progress at all.
+	 */
+	static void reserveInternalBytes(long bytes) {
+		javaInternalBytes.addAndGet(bytes);
+	}
+
+	static void releaseInternalBytes(long bytes) {
+		javaInternalBytes.addAndGet(-bytes);
 	}
 
 	public static String getUsageReport() {
@@ -163,9 +271,20 @@ public class ExternalMemory {
 	 * and you won't have to call it manually.
 	 */
 	public static void cleanup() {
-		TPIE.stop();
+		if (backend == Backend.TPIE) {
+			TPIE.stop();
+		}
+		reset();
+	}
+
+	private static void reset() {
+		if (backend == Backend.Java) {
+			ExternalPriorityQueue.closeAll();
+		}
 		limitSet = false;
 		tempDir = null;
+		backend = Backend.TPIE;
+		internalLimitBytes = 0;
 	}
 	
 	/**
@@ -176,15 +295,43 @@ public class ExternalMemory {
 	 * @param block A block of code to run using external memory.
 	 */
 	public static void use(int internalMiB, TPIE.Block block) {
+		use(internalMiB, Backend.TPIE, block);
+	}
+
+	/**
+	 * Convenience method to initialize the external memory system, run a block of code,
+	 * and then make sure the external memory gets cleaned up before returning.
+	 *
+	 * @param internalMiB maximum amount of internal memory to use, in MiB
+	 * @param backend the external memory implementation
+	 * @param block A block of code to run using external memory.
+	 */
+	public static void use(int internalMiB, Backend backend, TPIE.Block block) {
 		limitSet = true;
+		ExternalMemory.backend = backend;
+		internalLimitBytes = internalMiB*1024L*1024L;
 		try {
-			TPIE.use(internalMiB, () -> {
-				setDefaultTempDir();
-				block.run();
-			});
+			switch (backend) {
+				case TPIE:
+					TPIE.use(internalMiB, () -> {
+						setDefaultTempDir();
+						block.run();
+					});
+				break;
+				case Java:
+					setDefaultTempDir();
+					try {
+						block.run();
+					} catch (RuntimeException ex) {
+						throw ex;
+					} catch (Exception ex) {
+						// same as TPIE.use()
+						throw new RuntimeException(ex);
+					}
+				break;
+			}
 		} finally {
-			limitSet = false;
-			tempDir = null;
+			reset();
 		}
 	}
 }
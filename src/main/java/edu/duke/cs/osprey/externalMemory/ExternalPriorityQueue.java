@@ -0,0 +1,569 @@
+package edu.duke.cs.osprey.externalMemory;
+
+import edu.duke.cs.tpie.Cleaner;
+import edu.duke.cs.tpie.serialization.SerializingDoublePriorityQueue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+
+/**
+ * A pure-Java external-memory min-priority queue, so external memory doesn't need the native TPIE library.
+ *
+ * Items are stored in serialized form, both in internal memory and in external memory.
+ * New items go into an internal heap of packed records. When the heap fills up,
+ * it's sorted and spilled to disk as a run. The queue returns the lowest-scoring item
+ * among the internal heap and the heads of all the runs, which are read sequentially
+ * through small buffers. When there are too many runs to buffer in internal memory,
+ * all the runs are merged into a single run.
+ *
+ * Up to half of the internal memory limit is used for the heap, and the other half for the run buffers.
+ * All the queues reserve their internal memory from the shared limit in {@link ExternalMemory},
+ * and the heap grows only while there's internal memory left to reserve.
+ * Queues free their run files and reservations when they're closed, when they're garbage collected,
+ * or when the external memory system is cleaned up.
+ *
+ * Not thread-safe.
+ */
+public class ExternalPriorityQueue<T> implements Queue<T>, AutoCloseable, Cleaner.GarbageDetectable {
+
+	/**
+	 * Compatible with TPIE serializers, so the same serializer can be used with either implementation.
+	 */
+	public interface Serializer<T> extends SerializingDoublePriorityQueue.Serializer<T> {
+
+		/** Returns the exact number of bytes needed to serialize an item. */
+		default int getNumBytes() {
+			return getEntrySize().numBytes;
+		}
+	}
+
+	private static final int RunBufferBytes = 64*1024; // 64 KiB
+	private static final int HeapBytesPerRecord = Double.BYTES + Integer.BYTES*2; // score, heap slot, free slot
+	private static final int InitialHeapCapacity = 1024;
+
+	/** a run file on disk, and the channel to it, if any */
+	private static class RunFile {
+
+		final File file;
+		FileChannel channel = null;
+		long numBytes = 0;
+
+		RunFile(File file) {
+			this.file = file;
+		}
+
+		void close() {
+			try {
+				if (channel != null) {
+					channel.close();
+					channel = null;
+				}
+			} catch (IOException ex) {
+				throw new RuntimeException("can't close run file: " + file, ex);
+			} finally {
+				file.delete();
+				ExternalMemory.trackExternalBytes(-numBytes);
+				numBytes = 0;
+			}
+		}
+	}
+
+	/**
+	 * Everything a queue holds outside of the Java heap, ie run files and internal memory reservations.
+	 * Doesn't refer back to the queue, so the cleaner can free it after the queue is garbage.
+	 */
+	private static class Resources implements Cleaner.Cleanable {
+
+		private final Set<RunFile> runFiles = new LinkedHashSet<>();
+		private long reservedBytes = 0;
+
+		Resources() {
+			liveResources.add(this);
+		}
+
+		synchronized RunFile createRunFile(File tempDir) {
+			RunFile runFile;
+			try {
+				runFile = new RunFile(File.createTempFile("osprey-pq-", ".run", tempDir));
+			} catch (IOException ex) {
+				throw new RuntimeException("can't create run file in " + tempDir, ex);
+			}
+			runFiles.add(runFile);
+			return runFile;
+		}
+
+		synchronized void closeRunFile(RunFile runFile) {
+			runFiles.remove(runFile);
+			runFile.close();
+		}
+
+		synchronized boolean tryReserve(long bytes) {
+			if (!ExternalMemory.tryReserveInternalBytes(bytes)) {
+				return false;
+			}
+			reservedBytes += bytes;
+			return true;
+		}
+
+		/** like {@link #tryReserve(long)}, but always reserves, even past the internal memory limit */
+		synchronized void reserve(long bytes) {
+			ExternalMemory.reserveInternalBytes(bytes);
+			reservedBytes += bytes;
+		}
+
+		synchronized void release(long bytes) {
+			ExternalMemory.releaseInternalBytes(bytes);
+			reservedBytes -= bytes;
+		}
+
+		@Override
+		public synchronized void clean() {
+			for (RunFile runFile : runFiles) {
+				runFile.close();
+			}
+			runFiles.clear();
+			release(reservedBytes);
+			liveResources.remove(this);
+		}
+	}
+
+	// the resources of all the queues that haven't been cleaned up yet
+	private static final Set<Resources> liveResources = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+
+	static {
+		// delete the run files of any live queues when the JVM exits, rather than adding every file to deleteOnExit()
+		Runtime.getRuntime().addShutdownHook(new Thread(ExternalPriorityQueue::closeAll));
+	}
+
+	/**
+	 * Frees the resources of all the queues, eg when the external memory system is cleaned up.
+	 * The queues can't be used after this.
+	 */
+	static void closeAll() {
+		List<Resources> resources;
+		synchronized (liveResources) {
+			resources = new ArrayList<>(liveResources);
+		}
+		for (Resources r : resources) {
+			r.clean();
+		}
+	}
+
+	private class RunWriter {
+
+		final RunFile runFile;
+		final ByteBuffer buf;
+		long numRecords = 0;
+
+		RunWriter() {
+			runFile = resources.createRunFile(tempDir);
+			try {
+				runFile.channel = FileChannel.open(runFile.file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+			} catch (IOException ex) {
+				throw new RuntimeException("can't open run file: " + runFile.file, ex);
+			}
+			resources.reserve(runBufferBytes);
+			buf = ByteBuffer.allocateDirect(runBufferBytes);
+		}
+
+		void write(double score, ByteBuffer payload) {
+			if (buf.remaining() < recordBytes) {
+				flush();
+			}
+			int start = buf.position();
+			buf.putDouble(score);
+			buf.put(payload);
+			buf.position(start + recordBytes);
+			numRecords++;
+		}
+
+		void flush() {
+			buf.flip();
+			try {
+				while (buf.hasRemaining()) {
+					runFile.channel.write(buf);
+				}
+			} catch (IOException ex) {
+				throw new RuntimeException("can't write run file: " + runFile.file, ex);
+			}
+			buf.clear();
+		}
+
+		Run finish() {
+			flush();
+			try {
+				runFile.channel.close();
+				runFile.channel = null;
+			} catch (IOException ex) {
+				throw new RuntimeException("can't close run file: " + runFile.file, ex);
+			}
+			resources.release(runBufferBytes);
+			long bytes = numRecords*recordBytes;
+			runFile.numBytes = bytes;
+			externalBytes += bytes;
+			ExternalMemory.trackExternalBytes(bytes);
+			return new Run(runFile, numRecords);
+		}
+	}
+
+	private class Run {
+
+		final RunFile runFile;
+		final ByteBuffer buf;
+		long numRemaining;
+		double headScore;
+
+		Run(RunFile runFile, long numRecords) {
+			this.runFile = runFile;
+			try {
+				runFile.channel = FileChannel.open(runFile.file.toPath(), StandardOpenOption.READ);
+			} catch (IOException ex) {
+				throw new RuntimeException("can't open run file: " + runFile.file, ex);
+			}
+			resources.reserve(runBufferBytes);
+			buf = ByteBuffer.allocateDirect(runBufferBytes);
+			buf.limit(0);
+			numRemaining = numRecords;
+			readHead();
+		}
+
+		private void fill() {
+			buf.compact();
+			try {
+				while (buf.hasRemaining()) {
+					if (runFile.channel.read(buf) < 0) {
+						break;
+					}
+				}
+			} catch (IOException ex) {
+				throw new RuntimeException("can't read run file: " + runFile.file, ex);
+			}
+			buf.flip();
+		}
+
+		private void readHead() {
+			if (numRemaining <= 0) {
+				return;
+			}
+			if (buf.remaining() < recordBytes) {
+				fill();
+			}
+			headScore = buf.getDouble(buf.position());
+		}
+
+		ByteBuffer headPayload() {
+			return buf.slice(buf.position() + Double.BYTES, payloadBytes);
+		}
+
+		/** returns true if the run has more records */
+		boolean advance() {
+			buf.position(buf.position() + recordBytes);
+			numRemaining--;
+			readHead();
+			return numRemaining > 0;
+		}
+
+		void close() {
+			externalBytes -= runFile.numBytes;
+			resources.closeRunFile(runFile);
+			resources.release(runBufferBytes);
+		}
+	}
+
+	public final Serializer<T> serializer;
+	public final long internalLimitBytes;
+	public final File tempDir;
+
+	private final int payloadBytes;
+	private final int recordBytes;
+	private final int runBufferBytes;
+	private final int maxNumRuns;
+	private final Resources resources;
+
+	// the internal heap of packed records, grown as needed
+	private final int maxHeapCapacity;
+	private int heapCapacity = 0;
+	private ByteBuffer mem = null;
+	private double[] heapScores = new double[0];
+	private int[] heapSlots = new int[0];
+	private int[] freeSlots = new int[0];
+	private int heapSize = 0;
+	private int numFreeSlots = 0;
+
+	// the external runs, sorted by head score
+	private final PriorityQueue<Run> runs = new PriorityQueue<>(Comparator.comparingDouble((Run run) -> run.headScore));
+	private long runsSize = 0;
+	private long externalBytes = 0;
+
+	private T peeked = null;
+
+	/**
+	 * @param internalLimitBytes the most internal memory this queue can use,
+	 * if the shared limit in {@link ExternalMemory} isn't reached first
+	 */
+	public ExternalPriorityQueue(Serializer<T> serializer, long internalLimitBytes, File tempDir) {
+
+		this.serializer = serializer;
+		this.internalLimitBytes = internalLimitBytes;
+		this.tempDir = tempDir;
+
+		payloadBytes = serializer.getNumBytes();
+		recordBytes = Double.BYTES + payloadBytes;
+		runBufferBytes = Math.max(1, RunBufferBytes/recordBytes)*recordBytes;
+
+		// split the internal memory between the heap and the run buffers
+		long heapBytes = internalLimitBytes/2;
+		long runsBytes = internalLimitBytes - heapBytes;
+		maxHeapCapacity = (int)Math.min(Integer.MAX_VALUE/payloadBytes, heapBytes/(payloadBytes + HeapBytesPerRecord));
+		if (maxHeapCapacity < 2) {
+			throw new IllegalArgumentException("internal memory limit of " + internalLimitBytes + " bytes is too small for " + recordBytes + "-byte records");
+		}
+		// NOTE: merging runs needs one extra buffer for the output
+		maxNumRuns = (int)Math.max(2, runsBytes/runBufferBytes - 1);
+
+		resources = Cleaner.addCleaner(this, new Resources());
+
+		// start with a small heap, so queues that stay small don't take memory from the others
+		int capacity = Math.min(maxHeapCapacity, InitialHeapCapacity);
+		resources.reserve(heapBytes(capacity));
+		growHeap(capacity);
+	}
+
+	private long heapBytes(int capacity) {
+		return (long)capacity*(payloadBytes + HeapBytesPerRecord);
+	}
+
+	/** Grows the heap, keeping the records already in it. The memory must already be reserved. */
+	private void growHeap(int capacity) {
+
+		ByteBuffer newMem = ByteBuffer.allocateDirect(capacity*payloadBytes);
+		if (mem != null) {
+			newMem.put(0, mem, 0, heapCapacity*payloadBytes);
+		}
+		mem = newMem;
+		heapScores = Arrays.copyOf(heapScores, capacity);
+		heapSlots = Arrays.copyOf(heapSlots, capacity);
+		freeSlots = Arrays.copyOf(freeSlots, capacity);
+
+		// add the new slots to the free list, lowest slots on top
+		int numNewSlots = capacity - heapCapacity;
+		for (int i=0; i<numNewSlots; i++) {
+			freeSlots[numFreeSlots++] = capacity - i - 1;
+		}
+		heapCapacity = capacity;
+	}
+
+	/** Returns true if the heap could grow, false if it's at its max size or there's no more internal memory to reserve. */
+	private boolean tryGrowHeap() {
+		int capacity = (int)Math.min(maxHeapCapacity, 2L*heapCapacity);
+		if (capacity <= heapCapacity || !resources.tryReserve(heapBytes(capacity) - heapBytes(heapCapacity))) {
+			return false;
+		}
+		growHeap(capacity);
+		return true;
+	}
+
+	/**
+	 * Deletes the run files and releases the internal memory reserved by this queue.
+	 * The queue can't be used after this.
+	 *
+	 * Queues that aren't closed get cleaned up when they're garbage collected,
+	 * or when the external memory system is cleaned up.
+	 */
+	@Override
+	public void close() {
+		resources.clean();
+		runs.clear();
+		runsSize = 0;
+		externalBytes = 0;
+		heapSize = 0;
+		mem = null;
+	}
+
+	public long getExternalBytes() {
+		return externalBytes;
+	}
+
+	public int getNumRuns() {
+		return runs.size();
+	}
+
+	private ByteBuffer slot(int slot) {
+		return mem.slice(slot*payloadBytes, payloadBytes);
+	}
+
+	@Override
+	public void push(T val) {
+
+		if (heapSize == heapCapacity && !tryGrowHeap()) {
+			spill();
+		}
+
+		// pack the item into a free slot
+		int slot = freeSlots[--numFreeSlots];
+		double score = serializer.serialize(val, slot(slot));
+
+		// add it to the heap
+		int i = heapSize++;
+		heapScores[i] = score;
+		heapSlots[i] = slot;
+		siftUp(i);
+
+		peeked = null;
+	}
+
+	private boolean isHeapNext() {
+		if (heapSize == 0) {
+			return false;
+		}
+		Run run = runs.peek();
+		return run == null || heapScores[0] <= run.headScore;
+	}
+
+	@Override
+	public T peek() {
+
+		if (peeked == null) {
+			if (isHeapNext()) {
+				peeked = serializer.deserialize(heapScores[0], slot(heapSlots[0]));
+			} else {
+				Run run = runs.peek();
+				if (run != null) {
+					peeked = serializer.deserialize(run.headScore, run.headPayload());
+				}
+			}
+		}
+
+		return peeked;
+	}
+
+	@Override
+	public void pop() {
+
+		peeked = null;
+
+		if (isHeapNext()) {
+			removeHeapTop();
+			return;
+		}
+
+		Run run = runs.poll();
+		if (run == null) {
+			throw new IllegalStateException("queue is empty");
+		}
+		runsSize--;
+		if (run.advance()) {
+			runs.add(run);
+		} else {
+			run.close();
+		}
+	}
+
+	@Override
+	public long size() {
+		return heapSize + runsSize;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	private void removeHeapTop() {
+		freeSlots[numFreeSlots++] = heapSlots[0];
+		heapSize--;
+		if (heapSize > 0) {
+			heapScores[0] = heapScores[heapSize];
+			heapSlots[0] = heapSlots[heapSize];
+			siftDown(0);
+		}
+	}
+
+	private void siftUp(int i) {
+		double score = heapScores[i];
+		int slot = heapSlots[i];
+		while (i > 0) {
+			int parent = (i - 1)/2;
+			if (heapScores[parent] <= score) {
+				break;
+			}
+			heapScores[i] = heapScores[parent];
+			heapSlots[i] = heapSlots[parent];
+			i = parent;
+		}
+		heapScores[i] = score;
+		heapSlots[i] = slot;
+	}
+
+	private void siftDown(int i) {
+		double score = heapScores[i];
+		int slot = heapSlots[i];
+		while (true) {
+			int child = i*2 + 1;
+			if (child >= heapSize) {
+				break;
+			}
+			if (child + 1 < heapSize && heapScores[child + 1] < heapScores[child]) {
+				child++;
+			}
+			if (score <= heapScores[child]) {
+				break;
+			}
+			heapScores[i] = heapScores[child];
+			heapSlots[i] = heapSlots[child];
+			i = child;
+		}
+		heapScores[i] = score;
+		heapSlots[i] = slot;
+	}
+
+	/** Writes the whole heap to external memory as a sorted run. */
+	private void spill() {
+
+		RunWriter writer = new RunWriter();
+		long numRecords = heapSize;
+		while (heapSize > 0) {
+			writer.write(heapScores[0], slot(heapSlots[0]));
+			removeHeapTop();
+		}
+		runs.add(writer.finish());
+		runsSize += numRecords;
+
+		// too many runs to buffer, or out of internal memory? merge them all
+		if (runs.size() > maxNumRuns || (runs.size() > 1 && ExternalMemory.isInternalLimitExceeded())) {
+			mergeRuns();
+		}
+	}
+
+	private void mergeRuns() {
+
+		RunWriter writer = new RunWriter();
+		List<Run> finished = new ArrayList<>();
+		while (!runs.isEmpty()) {
+			Run run = runs.poll();
+			writer.write(run.headScore, run.headPayload());
+			if (run.advance()) {
+				runs.add(run);
+			} else {
+				finished.add(run);
+			}
+		}
+		for (Run run : finished) {
+			run.close();
+		}
+		runs.add(writer.finish());
+	}
+}
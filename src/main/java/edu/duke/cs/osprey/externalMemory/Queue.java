@@ -277,6 +277,11 @@ public interface Queue<T> {
 		
 		@SafeVarargs
 		public static <T> Queue.FIFO<T> of(SerializingFIFOQueue.Serializer<T> serializer, T ... vals) {
+
+			if (ExternalMemory.getBackend() != ExternalMemory.Backend.TPIE) {
+				throw new UnsupportedOperationException("external FIFO queues need the TPIE external memory backend");
+			}
+
 			return new Queue.FIFO<T>() {
 				
 				private SerializingFIFOQueue<T> q;
@@ -333,6 +338,26 @@ public interface Queue<T> {
 		
 		@SafeVarargs
 		public static <T> Queue<T> of(SerializingDoublePriorityQueue.Serializer<T> serializer, T ... vals) {
+
+			// use the pure Java queue if needed
+			if (ExternalMemory.getBackend() == ExternalMemory.Backend.Java) {
+				if (!(serializer instanceof ExternalPriorityQueue.Serializer)) {
+					throw new UnsupportedOperationException("the Java external memory backend needs a "
+						+ ExternalPriorityQueue.Serializer.class.getName() + ", not a " + serializer.getClass().getName());
+				}
+				@SuppressWarnings("unchecked")
+				ExternalPriorityQueue.Serializer<T> javaSerializer = (ExternalPriorityQueue.Serializer<T>)serializer;
+				Queue<T> q = new ExternalPriorityQueue<>(
+					javaSerializer,
+					ExternalMemory.getInternalLimitBytes(),
+					ExternalMemory.getTempDir()
+				);
+				for (T val : vals) {
+					q.push(val);
+				}
+				return q;
+			}
+
 			return new Queue<T>() {
 				
 				private SerializingDoublePriorityQueue<T> q;
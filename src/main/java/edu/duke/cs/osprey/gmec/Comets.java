@@ -215,19 +215,94 @@ public class Comets {
 	 */
 	private class SeqHScorer implements SeqAStarScorer {
 
+		/**
+		 * Pre-computed weighted energies for one conf space position of one state.
+		 *
+		 * The RCs at the position are grouped by res type (in the order of the sequence space position),
+		 * and the pair energies with each lower position are minimized over the RCs of each res type there,
+		 * so the scorer only has to pick a row minimum for each pair, instead of looping over all the RCs again.
+		 */
+		class StatePos {
+
+			final SimpleConfSpace.Position pos;
+
+			/** the sequence space position, or -1 if the position is immutable */
+			final int seqPosIndex;
+
+			/** the sequence space positions of the lower positions, or -1 for immutable positions */
+			final int[] lowerSeqPosIndices;
+
+			/** the RC indices for each res type, immutable positions have one group of all the RCs */
+			final int[][] rcsByRT;
+
+			/** weighted single energies, indexed by RC */
+			final double[] singles;
+
+			/** min weighted pair energies, indexed by RC, then lower position, then res type at the lower position */
+			final double[][][] pairsByRT;
+
+			/** min weighted pair energies, indexed by RC, then lower position, over all the res types at the lower position */
+			final double[][] pairs;
+
+			StatePos(WeightedState wstate, SimpleConfSpace.Position pos) {
+
+				this.pos = pos;
+
+				SeqSpace.Position seqPos = seqSpace.getPosition(pos.resNum);
+				seqPosIndex = seqPos != null ? seqPos.index : -1;
+				rcsByRT = getRCsByRT(pos);
+
+				lowerSeqPosIndices = new int[pos.index];
+				int[][][] lowerRCsByRT = new int[pos.index][][];
+				for (int i2=0; i2<pos.index; i2++) {
+					SimpleConfSpace.Position pos2 = wstate.state.confSpace.positions.get(i2);
+					SeqSpace.Position seqPos2 = seqSpace.getPosition(pos2.resNum);
+					lowerSeqPosIndices[i2] = seqPos2 != null ? seqPos2.index : -1;
+					lowerRCsByRT[i2] = getRCsByRT(pos2);
+				}
+
+				int numRCs = pos.resConfs.size();
+				singles = new double[numRCs];
+				pairsByRT = new double[numRCs][pos.index][];
+				pairs = new double[numRCs][pos.index];
+
+				for (int[] rc1s : rcsByRT) {
+					for (int rc1 : rc1s) {
+
+						singles[rc1] = wstate.getSingleEnergy(pos.index, rc1);
+
+						for (int i2=0; i2<pos.index; i2++) {
+							int[][] rc2sByRT = lowerRCsByRT[i2];
+
+							// min over RCs at (pos2,rt2,state)
+							double[] bestRC2Energies = new double[rc2sByRT.length];
+							double bestRT2Energy = opt.initDouble();
+							for (int rt2=0; rt2<rc2sByRT.length; rt2++) {
+								double bestRC2Energy = opt.initDouble();
+								for (int rc2 : rc2sByRT[rt2]) {
+									bestRC2Energy = opt.opt(bestRC2Energy, wstate.getPairEnergy(pos.index, rc1, i2, rc2));
+								}
+								bestRC2Energies[rt2] = bestRC2Energy;
+								bestRT2Energy = opt.opt(bestRT2Energy, bestRC2Energy);
+							}
+
+							pairsByRT[rc1][i2] = bestRC2Energies;
+							pairs[rc1][i2] = bestRT2Energy;
+						}
+					}
+				}
+			}
+		}
+
 		MathTools.Optimizer opt = MathTools.Optimizer.Minimize;
 
 		// collect conf space positions from all states
-		List<SimpleConfSpace.Position> allPositions = new ArrayList<>();
-
-		// the states associated with each position
-		List<WeightedState> statesByAllPosition = new ArrayList<>();
+		List<StatePos> allPositions = new ArrayList<>();
 
 		SeqHScorer() {
 			for (WeightedState wstate : objective.states) {
 				for (SimpleConfSpace.Position pos : wstate.state.confSpace.positions) {
-					allPositions.add(pos);
-					statesByAllPosition.add(wstate);
+					allPositions.add(new StatePos(wstate, pos));
 				}
 			}
 		}
@@ -235,56 +310,47 @@ public class Comets {
 		@Override
 		public double calc(SeqAStarNode.Assignments assignments) {
 
-			// TODO: if inner loops are independent of assignments, pre-compute them somehow?
+			// look up the assignments once, rather than for every pair
+			int[] assignedRTs = new int[seqSpace.positions.size()];
+			Arrays.fill(assignedRTs, -1);
+			for (int i=0; i<assignments.numAssigned; i++) {
+				assignedRTs[assignments.assignedPos[i]] = assignments.assignedRTs[i];
+			}
 
 			// sum over all positions
 			double score = objective.offset;
 			for (int i1=0; i1<allPositions.size(); i1++) {
-				SimpleConfSpace.Position pos1 = allPositions.get(i1);
+				StatePos pos1 = allPositions.get(i1);
 
 				// optimize over res types at pos1
+				int assignedRT1 = pos1.seqPosIndex >= 0 ? assignedRTs[pos1.seqPosIndex] : -1;
 				double bestPos1Energy = opt.initDouble();
-				for (SeqSpace.ResType rt1 : getRTs(pos1, assignments)) {
-
-					// sum over states (always just 1, due to how we build allPositions)
-					WeightedState wstate = statesByAllPosition.get(i1);
+				for (int rt1=0; rt1<pos1.rcsByRT.length; rt1++) {
+					if (assignedRT1 >= 0 && rt1 != assignedRT1) {
+						continue;
+					}
 
 					// min over RCs at (pos1,rt1,state)
-					double bestRC1Energy = opt.initDouble();
-					for (SimpleConfSpace.ResidueConf rc1 : getRCs(pos1, rt1, wstate.state)) {
+					for (int rc1 : pos1.rcsByRT[rt1]) {
 
 						double rc1Energy = 0.0;
 
 						// singles
-						rc1Energy += wstate.getSingleEnergy(pos1.index, rc1.index);
-
-						// pairs
-						for (int i2=0; i2<pos1.index; i2++) {
-							SimpleConfSpace.Position pos2 = wstate.state.confSpace.positions.get(i2);
-
-							// min over RTs at pos2
-							double bestRT2Energy = opt.initDouble();
-							for (SeqSpace.ResType rt2 : getRTs(pos2, assignments)) {
-
-								// min over RCs at (pos2,rt2,state)
-								double bestRC2Energy = opt.initDouble();
-								for (SimpleConfSpace.ResidueConf rc2 : getRCs(pos2, rt2, wstate.state)) {
-
-									double rc2Energy = wstate.getPairEnergy(pos1.index, rc1.index, pos2.index, rc2.index);
-
-									bestRC2Energy = opt.opt(bestRC2Energy, rc2Energy);
-								}
-
-								bestRT2Energy = opt.opt(bestRT2Energy, bestRC2Energy);
+						rc1Energy += pos1.singles[rc1];
+
+						// pairs, min over RTs at pos2
+						for (int i2=0; i2<pos1.pos.index; i2++) {
+							int seqPos2 = pos1.lowerSeqPosIndices[i2];
+							int assignedRT2 = seqPos2 >= 0 ? assignedRTs[seqPos2] : -1;
+							if (assignedRT2 >= 0) {
+								rc1Energy += pos1.pairsByRT[rc1][i2][assignedRT2];
+							} else {
+								rc1Energy += pos1.pairs[rc1][i2];
 							}
-
-							rc1Energy += bestRT2Energy;
 						}
 
-						bestRC1Energy = opt.opt(bestRC1Energy, rc1Energy);
+						bestPos1Energy = opt.opt(bestPos1Energy, rc1Energy);
 					}
-
-					bestPos1Energy = opt.opt(bestPos1Energy, bestRC1Energy);
 				}
 
 				score += bestPos1Energy;
@@ -293,43 +359,30 @@ public class Comets {
 			return score;
 		}
 
-		List<SeqSpace.ResType> getRTs(SimpleConfSpace.Position confPos, SeqAStarNode.Assignments assignments) {
-
-			// TODO: pre-compute this somehow?
+		int[][] getRCsByRT(SimpleConfSpace.Position confPos) {
 
 			// map the conf pos to a sequence pos
 			SeqSpace.Position seqPos = seqSpace.getPosition(confPos.resNum);
 			if (seqPos != null) {
 
-				Integer assignedRT = assignments.getAssignment(seqPos.index);
-				if (assignedRT != null) {
-					// use just the assigned res type
-					return Collections.singletonList(seqPos.resTypes.get(assignedRT));
-				} else {
-					// use all the res types at the pos
-					return seqPos.resTypes;
+				// mutable pos, group the RCs by RT
+				int[][] rcsByRT = new int[seqPos.resTypes.size()][];
+				for (SeqSpace.ResType rt : seqPos.resTypes) {
+					rcsByRT[rt.index] = confPos.resConfs.stream()
+						.filter(rc -> rc.template.name.equals(rt.name))
+						.mapToInt(rc -> rc.index)
+						.toArray();
 				}
+				return rcsByRT;
 
 			} else {
 
-				// immutable position, use all the res types (should just be one)
-				assert (confPos.resTypes.size() == 1);
-
-				// use the null value to signal there's no res type here
-				return Collections.singletonList(null);
-			}
-		}
-
-		List<SimpleConfSpace.ResidueConf> getRCs(SimpleConfSpace.Position pos, SeqSpace.ResType rt, State state) {
-			// TODO: pre-compute this somehow?
-			if (rt != null) {
-				// mutable pos, grab the RCs that match the RT
-				return pos.resConfs.stream()
-					.filter(rc -> rc.template.name.equals(rt.name))
-					.collect(Collectors.toList());
-			} else {
-				// immutable pos, use all the RCs
-				return pos.resConfs;
+				// immutable position, use all the RCs
+				return new int[][] {
+					confPos.resConfs.stream()
+						.mapToInt(rc -> rc.index)
+						.toArray()
+				};
 			}
 		}
 	}
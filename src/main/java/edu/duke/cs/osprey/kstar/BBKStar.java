@@ -46,6 +46,8 @@ import edu.duke.cs.osprey.tools.MathTools;
 import java.io.File;
 import java.math.BigDecimal;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 
 /**
@@ -77,6 +79,15 @@ public class BBKStar {
 			 */
 			private int numConfsPerBatch = 8;
 
+			/**
+			 * The number of most recently used partition functions (and their A* trees) to keep in memory.
+			 *
+			 * Less recently used partition functions are kept only while there's enough free heap space,
+			 * and are re-computed when needed again. Conformation energies for re-computed partition functions
+			 * come from the conformation database, if one is used. Set to null to keep all partition functions in memory.
+			 */
+			private Integer pfuncCacheCapacity = 100;
+
 			public Builder setNumBestSequences(int val) {
 				numBestSequences = val;
 				return this;
@@ -87,17 +98,28 @@ public class BBKStar {
 				return this;
 			}
 
+			public Builder setPfuncCacheCapacity(Integer val) {
+				pfuncCacheCapacity = val;
+				return this;
+			}
+
 			public Settings build() {
-				return new Settings(numBestSequences, numConfsPerBatch);
+				return new Settings(numBestSequences, numConfsPerBatch, pfuncCacheCapacity);
 			}
 		}
 
 		public final int numBestSequences;
 		public final int numConfsPerBatch;
+		public final Integer pfuncCacheCapacity;
 
 		public Settings(int numBestSequences, int numConfsPerBatch) {
+			this(numBestSequences, numConfsPerBatch, null);
+		}
+
+		public Settings(int numBestSequences, int numConfsPerBatch, Integer pfuncCacheCapacity) {
 			this.numBestSequences = numBestSequences;
 			this.numConfsPerBatch = numConfsPerBatch;
+			this.pfuncCacheCapacity = pfuncCacheCapacity;
 		}
 	}
 
@@ -180,7 +202,7 @@ public class BBKStar {
 				if (!kstarSettings.resume) {
 					confDBFile.delete();
 				}
-				confDB = new ConfDB(confSpace, confDBFile);
+				confDB = new ConfDB(confSpace, confDBFile, kstarSettings.confDBWriteBehind);
 			}
 			return () -> {
 				if (confDB != null) {
@@ -240,7 +262,8 @@ public class BBKStar {
 				.orElseThrow(() -> new IllegalStateException("no design positions left to choose"));
 
 			// get the possible assignments
-			Set<SeqSpace.ResType> resTypes = new HashSet<>(assignPos.resTypes);
+			// NOTE: keep the order of the res types, so the children are always made in the same order
+			Set<SeqSpace.ResType> resTypes = new LinkedHashSet<>(assignPos.resTypes);
 
 			// add wild-type option if mutations are limited
 			if (kstarSettings.maxSimultaneousMutations < positions.size()) {
@@ -401,13 +424,13 @@ public class BBKStar {
 			this.complex = makePfunc(complexPfuncs, BBKStar.this.complex);
 		}
 
-		private PartitionFunction makePfunc(Map<Sequence,PartitionFunction> pfuncCache, ConfSpaceInfo info) {
+		private PartitionFunction makePfunc(Map<Sequence,PartitionFunction> pfuncs, ConfSpaceInfo info) {
 
 			// filter the global sequence to this conf space
 			Sequence sequence = this.sequence.filter(info.confSpace.seqSpace());
 
 			// first check the cache
-			PartitionFunction pfunc = pfuncCache.get(sequence);
+			PartitionFunction pfunc = pfuncs.get(sequence);
 			if (pfunc != null) {
 				return pfunc;
 			}
@@ -415,10 +438,11 @@ public class BBKStar {
 			// cache miss, need to compute the partition function
 
 			// make the partition function
-			pfunc = info.makePfunc(sequence);
+			// (and let the cache forget and re-make it when memory is low)
+			pfunc = pfuncCache.make(() -> info.makePfunc(sequence));
 
 			// update the cache
-			pfuncCache.put(sequence, pfunc);
+			pfuncs.put(sequence, pfunc);
 			return pfunc;
 		}
 
@@ -536,7 +560,8 @@ public class BBKStar {
 	/** Optional and overridable settings for BBK* */
 	public final Settings bbkstarSettings;
 
-	// TODO: caching these will keep lots of A* trees in memory. is that a problem? (oh yes, it definitely is)
+	// NOTE: these hold pfunc cache entries, so the A* trees can be garbage collected when memory is low
+	private final PfuncCache pfuncCache;
 	private final Map<Sequence,PartitionFunction> proteinPfuncs;
 	private final Map<Sequence,PartitionFunction> ligandPfuncs;
 	private final Map<Sequence,PartitionFunction> complexPfuncs;
@@ -559,6 +584,7 @@ public class BBKStar {
 		this.ligand = new ConfSpaceInfo(ligand, KStar.ConfSpaceType.Ligand);
 		this.complex = new ConfSpaceInfo(complex, KStar.ConfSpaceType.Complex);
 
+		pfuncCache = new PfuncCache(bbkstarSettings.pfuncCacheCapacity);
 		proteinPfuncs = new HashMap<>();
 		ligandPfuncs = new HashMap<>();
 		complexPfuncs = new HashMap<>();
@@ -619,6 +645,7 @@ public class BBKStar {
 				complex.check();
 
 				// clear any previous state
+				pfuncCache.clear();
 				proteinPfuncs.clear();
 				ligandPfuncs.clear();
 				complexPfuncs.clear();
@@ -689,13 +716,7 @@ public class BBKStar {
 						MultiSequenceNode msnode = (MultiSequenceNode)node;
 
 						// partial sequence, expand children
-						// TODO: parallelize the multi-sequence node scoring here?
-						for (Node child : msnode.makeChildren()) {
-							child.estimateScore();
-							if (!child.isUnboundUnstable) {
-								tree.add(child);
-							}
-						}
+						scoreChildren(msnode.makeChildren(), tasks, tree);
 					}
 				}
 
@@ -714,6 +735,51 @@ public class BBKStar {
 		}
 	}
 
+	/**
+	 * Scores the children of a multi-sequence node, then adds them to the tree in the order they were made,
+	 * so the tree doesn't depend on which scoring task finishes first.
+	 */
+	private void scoreChildren(List<Node> children, TaskExecutor tasks, PriorityQueue<Node> tree) {
+
+		scoreChildren(children, tasks, child -> child instanceof MultiSequenceNode, Node::estimateScore);
+
+		for (Node child : children) {
+			if (!child.isUnboundUnstable) {
+				tree.add(child);
+			}
+		}
+	}
+
+	/**
+	 * Scores the children of a multi-sequence node, for BBK* and its variants.
+	 *
+	 * Multi-sequence children only need independent A* bounds, so they're scored in parallel on the local threads, if any.
+	 * Single-sequence children refine partition functions, which already use the tasks for energy calculations,
+	 * so they're scored serially.
+	 */
+	public static <N> void scoreChildren(List<N> children, TaskExecutor tasks, Predicate<N> isMultiSequence, Consumer<N> estimateScore) {
+
+		// only use local threads, cluster tasks would need to send the whole BBK* tree to the members
+		boolean isParallel = !(tasks instanceof Cluster.Client) && tasks.getParallelism() > 1;
+
+		for (N child : children) {
+			if (isParallel && isMultiSequence.test(child)) {
+				tasks.submit(
+					() -> {
+						estimateScore.accept(child);
+						return null;
+					},
+					(ignored) -> {}
+				);
+			} else {
+				estimateScore.accept(child);
+			}
+		}
+		if (isParallel) {
+			tasks.waitForFinish();
+		}
+	}
+
 	private void reportSequence(SingleSequenceNode ssnode, List<KStar.ScoredSequence> scoredSequences) {
 
 		KStarScore kstarScore = ssnode.makeKStarScore();
@@ -114,6 +114,13 @@ public class KStar {
 			 */
 			private String confDBPattern = "%s.confdb";
 
+			/**
+			 * True to buffer conformation database writes in memory and write them on a background thread.
+			 * Avoids making minimization threads wait on each other to write the databases,
+			 * but a crash can lose the last second or so of energies.
+			 */
+			private boolean confDBWriteBehind = false;
+
 			/**
 			 * True to attempt to resume a previous design using the conformation databases.
 			 * False to delete any existing conformation databases and start the design from scratch.
@@ -131,6 +138,25 @@ public class KStar {
 			 */
 			private Duration pfuncTimeout = null;
 
+			/**
+			 * The number of partition functions to compute at once, for different sequences.
+			 *
+			 * When more than one, each partition function in flight is stepped by its own thread,
+			 * and all of them share the task executor, so energy calculations from the other partition functions
+			 * keep the cores busy while one partition function waits for its last few energies.
+			 * Partition functions furthest from the target epsilon are stepped first,
+			 * and unbound partition functions shared by many sequences are only computed once.
+			 * Scores are still reported in sequence order.
+			 *
+			 * Each partition function in flight needs its own conformation trees, so more partition functions
+			 * in flight need more memory. No more than this many partition functions are ever started at once,
+			 * any others wait their turn.
+			 *
+			 * The {@link #pfuncTimeout} counts each partition function's share of the task executor,
+			 * rather than wall time, so partition functions in flight don't time out any sooner than they would one at a time.
+			 */
+			private int numPfuncsInFlight = 1;
+
 			public Builder setEpsilon(double val) {
 				epsilon = val;
 				return this;
@@ -185,6 +211,11 @@ public class KStar {
 				return this;
 			}
 
+			public Builder setConfDBWriteBehind(boolean val) {
+				confDBWriteBehind = val;
+				return this;
+			}
+
 			public Builder setMaxNumConf(int val) {
 				this.maxNumberConfs = val;
 				return this;
@@ -200,8 +231,16 @@ public class KStar {
 				return this;
 			}
 
+			public Builder setNumPfuncsInFlight(int val) {
+				if (val < 1) {
+					throw new IllegalArgumentException("need at least one partition function in flight");
+				}
+				numPfuncsInFlight = val;
+				return this;
+			}
+
 			public Settings build() {
-				return new Settings(epsilon, stabilityThreshold, maxSimultaneousMutations, scoreWriters, showPfuncProgress, useExternalMemory, confDBPattern, resume, maxNumberConfs, pfuncTimeout);
+				return new Settings(epsilon, stabilityThreshold, maxSimultaneousMutations, scoreWriters, showPfuncProgress, useExternalMemory, confDBPattern, confDBWriteBehind, resume, maxNumberConfs, pfuncTimeout, numPfuncsInFlight);
 			}
 		}
 
@@ -212,10 +251,20 @@ public class KStar {
 		public final boolean showPfuncProgress;
 		public final boolean useExternalMemory;
 		public final String confDBPattern;
+		public final boolean confDBWriteBehind;
 		public final boolean resume;
 		public final Duration pfuncTimeout;
+		public final int numPfuncsInFlight;
 
 		public Settings(double epsilon, Double stabilityThreshold, int maxSimultaneousMutations, KStarScoreWriter.Writers scoreWriters, boolean dumpPfuncConfs, boolean useExternalMemory, String confDBPattern, boolean resume, int maxNumberConfs, Duration pfuncTimeout) {
+			this(epsilon, stabilityThreshold, maxSimultaneousMutations, scoreWriters, dumpPfuncConfs, useExternalMemory, confDBPattern, false, resume, maxNumberConfs, pfuncTimeout);
+		}
+
+		public Settings(double epsilon, Double stabilityThreshold, int maxSimultaneousMutations, KStarScoreWriter.Writers scoreWriters, boolean dumpPfuncConfs, boolean useExternalMemory, String confDBPattern, boolean confDBWriteBehind, boolean resume, int maxNumberConfs, Duration pfuncTimeout) {
+			this(epsilon, stabilityThreshold, maxSimultaneousMutations, scoreWriters, dumpPfuncConfs, useExternalMemory, confDBPattern, confDBWriteBehind, resume, maxNumberConfs, pfuncTimeout, 1);
+		}
+
+		public Settings(double epsilon, Double stabilityThreshold, int maxSimultaneousMutations, KStarScoreWriter.Writers scoreWriters, boolean dumpPfuncConfs, boolean useExternalMemory, String confDBPattern, boolean confDBWriteBehind, boolean resume, int maxNumberConfs, Duration pfuncTimeout, int numPfuncsInFlight) {
 			this.epsilon = epsilon;
 			this.stabilityThreshold = stabilityThreshold;
 			this.maxSimultaneousMutations = maxSimultaneousMutations;
@@ -223,9 +272,11 @@ public class KStar {
 			this.showPfuncProgress = dumpPfuncConfs;
 			this.useExternalMemory = useExternalMemory;
 			this.confDBPattern = confDBPattern;
+			this.confDBWriteBehind = confDBWriteBehind;
 			this.resume = resume;
 			this.maxNumConfs = maxNumberConfs;
 			this.pfuncTimeout = pfuncTimeout;
+			this.numPfuncsInFlight = numPfuncsInFlight;
 		}
 	}
 
@@ -302,7 +353,7 @@ public class KStar {
 				if (!settings.resume) {
 					confDBFile.delete();
 				}
-				confDB = new ConfDB(confSpace, confDBFile);
+				confDB = new ConfDB(confSpace, confDBFile, settings.confDBWriteBehind);
 			}
 			return () -> {
 				if (confDB != null) {
@@ -389,6 +440,328 @@ public class KStar {
 		KStarScore score(int sequenceNumber, PartitionFunction.Result proteinResult, PartitionFunction.Result ligandResult, PartitionFunction.Result complexResult);
 	}
 
+	/**
+	 * Computes the partition functions for many sequences at once, see {@link Settings.Builder#numPfuncsInFlight}.
+	 *
+	 * Partition functions are computed in steps, by a few threads that pick the waiting partition function
+	 * furthest from the target epsilon for each step. Sequences move through the protein, ligand, and complex
+	 * partition functions (with the same short circuits as the serial loop) as the steps finish,
+	 * and new sequences are started whenever there's room for another partition function in flight.
+	 */
+	private class Pipeline {
+
+		/** the partition function for one state and sequence, shared by all the sequences waiting on it */
+		private class PfuncJob {
+
+			final ConfSpaceInfo info;
+			final Sequence sequence;
+			final BigDecimal stabilityThreshold;
+			final int sequenceNumber;
+			final List<SequenceJob> waiters = new ArrayList<>();
+
+			PartitionFunction pfunc = null;
+			long elapsedNs = 0;
+			long stepStartNs = 0;
+
+			PfuncJob(ConfSpaceInfo info, Sequence sequence, BigDecimal stabilityThreshold, int sequenceNumber) {
+				this.info = info;
+				this.sequence = sequence;
+				this.stabilityThreshold = stabilityThreshold;
+				this.sequenceNumber = sequenceNumber;
+			}
+
+			double getGap() {
+				return pfunc.getValues().getEffectiveEpsilon() - settings.epsilon;
+			}
+
+			/** returns true if the pfunc is done */
+			boolean step() {
+
+				int numConfsBefore = pfunc.getNumConfsEvaluated();
+				int numConfs = Math.min(pfunc.getParallelism(), settings.maxNumConfs - numConfsBefore);
+
+				pfunc.compute(numConfs);
+
+				return !pfunc.getStatus().canContinue()
+					|| pfunc.getNumConfsEvaluated() >= settings.maxNumConfs
+					|| pfunc.getNumConfsEvaluated() == numConfsBefore; // no progress, don't spin
+			}
+
+			boolean isTimedOut() {
+				return settings.pfuncTimeout != null && elapsedNs >= settings.pfuncTimeout.toNanos();
+			}
+		}
+
+		private class SequenceJob {
+
+			final int sequenceNumber;
+			final Sequence sequence;
+			final PartitionFunction.Result[] results = new PartitionFunction.Result[ConfSpaceType.values().length];
+
+			SequenceJob(int sequenceNumber) {
+				this.sequenceNumber = sequenceNumber;
+				this.sequence = sequences.get(sequenceNumber);
+			}
+
+			PartitionFunction.Result get(ConfSpaceInfo info) {
+				return results[info.type.ordinal()];
+			}
+
+			void set(ConfSpaceInfo info, PartitionFunction.Result result) {
+				results[info.type.ordinal()] = result;
+			}
+		}
+
+		private final TaskExecutor.ContextGroup ctxGroup;
+		private final Scorer scorer;
+		private final int numSequences;
+		private final BigDecimal proteinStabilityThreshold;
+		private final BigDecimal ligandStabilityThreshold;
+
+		// guarded by this
+		private final PriorityQueue<PfuncJob> readyJobs = new PriorityQueue<>(
+			Comparator.comparingDouble((PfuncJob job) -> -job.getGap())
+				.thenComparingInt(job -> job.sequenceNumber)
+		);
+		private final PriorityQueue<PfuncJob> unstartedJobs = new PriorityQueue<>(
+			Comparator.comparingInt((PfuncJob job) -> job.sequenceNumber)
+		);
+		private int numStartedJobs = 0;
+		private final Map<ConfSpaceInfo,Map<Sequence,PfuncJob>> pendingJobs = new IdentityHashMap<>();
+		private final PartitionFunction.Result[][] finishedResults;
+		private int nextSequenceNumber = 1; // the wild type is always done already
+		private int nextScoreNumber = 1;
+		private int numSteppingJobs = 0;
+		private Throwable error = null;
+
+		/**
+		 * A clock that runs slower the more pfuncs are stepping at once,
+		 * since they all share the task executor. Pfunc timeouts are measured against this clock.
+		 */
+		private long sharedClockNs = 0;
+		private long sharedClockUpdatedNs = System.nanoTime();
+
+		Pipeline(TaskExecutor.ContextGroup ctxGroup, Scorer scorer, int numSequences, BigDecimal proteinStabilityThreshold, BigDecimal ligandStabilityThreshold) {
+			this.ctxGroup = ctxGroup;
+			this.scorer = scorer;
+			this.numSequences = numSequences;
+			this.proteinStabilityThreshold = proteinStabilityThreshold;
+			this.ligandStabilityThreshold = ligandStabilityThreshold;
+			for (ConfSpaceInfo info : confSpaceInfos()) {
+				pendingJobs.put(info, new HashMap<>());
+			}
+			finishedResults = new PartitionFunction.Result[numSequences][];
+		}
+
+		void run() {
+
+			List<Thread> threads = new ArrayList<>();
+			for (int i=0; i<settings.numPfuncsInFlight; i++) {
+				Thread thread = new Thread(this::stepJobs);
+				thread.setName("KStar-Pfunc-" + i);
+				thread.setDaemon(true);
+				thread.start();
+				threads.add(thread);
+			}
+
+			for (Thread thread : threads) {
+				try {
+					thread.join();
+				} catch (InterruptedException ex) {
+					throw new RuntimeException(ex);
+				}
+			}
+
+			if (error != null) {
+				throw new RuntimeException("can't compute partition functions", error);
+			}
+		}
+
+		private void stepJobs() {
+			try {
+				while (true) {
+
+					// get the next job, or stop if there's no more work to do
+					PfuncJob job;
+					synchronized (this) {
+						job = nextJob();
+						if (job == null) {
+							return;
+						}
+						updateSharedClock();
+						numSteppingJobs++;
+						job.stepStartNs = sharedClockNs;
+					}
+
+					boolean isDone = job.step();
+
+					synchronized (this) {
+						updateSharedClock();
+						numSteppingJobs--;
+						job.elapsedNs += sharedClockNs - job.stepStartNs;
+						isDone = isDone || job.isTimedOut();
+						if (isDone) {
+							finish(job);
+						} else {
+							readyJobs.add(job);
+						}
+						notifyAll();
+					}
+
+					// see ConfSpaceInfo.calcPfunc() for why we poke the garbage collector here
+					if (isDone) {
+						Runtime.getRuntime().gc();
+					}
+				}
+			} catch (Throwable t) {
+				synchronized (this) {
+					if (error == null) {
+						error = t;
+					}
+					notifyAll();
+				}
+			}
+		}
+
+		// call while synchronized on this
+		private PfuncJob nextJob()
+		throws InterruptedException {
+			while (true) {
+
+				if (error != null) {
+					return null;
+				}
+
+				// start another pfunc, if there's room
+				if (numStartedJobs < settings.numPfuncsInFlight) {
+
+					PfuncJob job = unstartedJobs.poll();
+					if (job != null) {
+						start(job);
+						return job;
+					}
+
+					// no pfuncs waiting to start, start the next sequence
+					if (nextSequenceNumber < numSequences) {
+						advance(new SequenceJob(nextSequenceNumber++));
+						continue;
+					}
+				}
+
+				PfuncJob job = readyJobs.poll();
+				if (job != null) {
+					return job;
+				}
+
+				// jobs still in flight might finish sequences that need more jobs
+				if (numSteppingJobs > 0) {
+					wait();
+					continue;
+				}
+
+				// nothing left to do
+				return null;
+			}
+		}
+
+		// call while synchronized on this
+		private void start(PfuncJob job) {
+
+			// pfuncs share the task contexts, so make them one at a time
+			job.pfunc = job.info.makePfunc(ctxGroup, job.sequence);
+			job.pfunc.setStabilityThreshold(job.stabilityThreshold);
+			numStartedJobs++;
+		}
+
+		// call while synchronized on this
+		private void updateSharedClock() {
+			long nowNs = System.nanoTime();
+			if (numSteppingJobs > 0) {
+				sharedClockNs += (nowNs - sharedClockUpdatedNs)/numSteppingJobs;
+			}
+			sharedClockUpdatedNs = nowNs;
+		}
+
+		// call while synchronized on this
+		private void advance(SequenceJob seqJob) {
+
+			// get the pfuncs, with short circuits as needed, just like the serial loop
+			if (!request(seqJob, protein, proteinStabilityThreshold)) {
+				return;
+			}
+			if (!KStarScore.isLigandComplexUseful(seqJob.get(protein))) {
+				seqJob.set(ligand, PartitionFunction.Result.makeAborted());
+				seqJob.set(complex, PartitionFunction.Result.makeAborted());
+			} else {
+				if (!request(seqJob, ligand, ligandStabilityThreshold)) {
+					return;
+				}
+				if (!KStarScore.isComplexUseful(seqJob.get(protein), seqJob.get(ligand))) {
+					seqJob.set(complex, PartitionFunction.Result.makeAborted());
+				} else if (!request(seqJob, complex, BigDecimal.ZERO)) {
+					return;
+				}
+			}
+
+			// report the scores in sequence order
+			finishedResults[seqJob.sequenceNumber] = seqJob.results;
+			while (nextScoreNumber < numSequences && finishedResults[nextScoreNumber] != null) {
+				PartitionFunction.Result[] results = finishedResults[nextScoreNumber];
+				scorer.score(
+					nextScoreNumber,
+					results[ConfSpaceType.Protein.ordinal()],
+					results[ConfSpaceType.Ligand.ordinal()],
+					results[ConfSpaceType.Complex.ordinal()]
+				);
+				finishedResults[nextScoreNumber] = null;
+				nextScoreNumber++;
+			}
+		}
+
+		/** returns true if the result is ready, or false if the sequence has to wait for it */
+		// call while synchronized on this
+		private boolean request(SequenceJob seqJob, ConfSpaceInfo info, BigDecimal stabilityThreshold) {
+
+			if (seqJob.get(info) != null) {
+				return true;
+			}
+
+			Sequence sequence = seqJob.sequence.filter(info.confSpace.seqSpace());
+
+			// check the cache first
+			PartitionFunction.Result result = info.pfuncResults.get(sequence);
+			if (result != null) {
+				seqJob.set(info, result);
+				return true;
+			}
+
+			// wait for the pfunc, and start it if needed
+			PfuncJob job = pendingJobs.get(info).get(sequence);
+			if (job == null) {
+				job = new PfuncJob(info, sequence, stabilityThreshold, seqJob.sequenceNumber);
+				pendingJobs.get(info).put(sequence, job);
+				unstartedJobs.add(job);
+			}
+			job.waiters.add(seqJob);
+			return false;
+		}
+
+		// call while synchronized on this
+		private void finish(PfuncJob job) {
+
+			PartitionFunction.Result result = job.pfunc.makeResult();
+			job.info.pfuncResults.put(job.sequence, result);
+			pendingJobs.get(job.info).remove(job.sequence);
+			job.pfunc = null;
+			numStartedJobs--;
+
+			for (SequenceJob seqJob : job.waiters) {
+				seqJob.set(job.info, result);
+				advance(seqJob);
+			}
+		}
+	}
+
 	/** A configuration space containing just the protein strand */
 	public final ConfSpaceInfo protein;
 
@@ -427,15 +800,44 @@ public class KStar {
 		}
 	}
 
+	/**
+	 * Opens the conf databases for the protein, ligand, and complex, if needed.
+	 * The returned closer closes all of them, in reverse order.
+	 */
+	private AutoCloseableNoEx openConfDBs() {
+
+		AutoCloseableNoEx proteinCloser = protein.openConfDB();
+		AutoCloseableNoEx ligandCloser;
+		AutoCloseableNoEx complexCloser;
+		try {
+			ligandCloser = ligand.openConfDB();
+			try {
+				complexCloser = complex.openConfDB();
+			} catch (Throwable t) {
+				ligandCloser.close();
+				throw t;
+			}
+		} catch (Throwable t) {
+			proteinCloser.close();
+			throw t;
+		}
+
+		return () -> {
+			// try-with-resources still closes the others if one of them throws
+			try (proteinCloser; ligandCloser; complexCloser) {
+				// nothing else to do
+			}
+		};
+	}
+
 	public ScoredSequence score(Sequence seq, TaskExecutor tasks) {
 
 		// make a context group for the task executor
 		try (TaskExecutor.ContextGroup ctxGroup = tasks.contextGroup()) {
 
 			// open the conf databases if needed
-			try (AutoCloseableNoEx proteinCloser = protein.openConfDB()) {
-			try (AutoCloseableNoEx ligandCloser = ligand.openConfDB()) {
-			try (AutoCloseableNoEx complexCloser = complex.openConfDB()) {
+			AutoCloseableNoEx confDBs = openConfDBs();
+			try (confDBs) {
 
 				// check the conf space infos to make sure we have all the inputs
 				protein.check();
@@ -459,7 +861,7 @@ public class KStar {
 					ligand.calcPfunc(ctxGroup, seq, BigDecimal.ZERO),
 					complex.calcPfunc(ctxGroup, seq, BigDecimal.ZERO)
 				));
-			}}}
+			}
 		}
 	}
 
@@ -536,14 +938,13 @@ public class KStar {
 				PartitionFunction.Result complexResult;
 				PartitionFunction.Result ligandResult;
 
-				try (AutoCloseableNoEx proteinCloser = protein.openConfDB()) {
-				try (AutoCloseableNoEx ligandCloser = ligand.openConfDB()) {
-				try (AutoCloseableNoEx complexCloser = complex.openConfDB()) {
+				AutoCloseableNoEx wildTypeConfDBs = openConfDBs();
+				try (wildTypeConfDBs) {
 					// compute wild type partition functions first (always at pos 0)
 					proteinResult = protein.calcPfunc(ctxGroup, sequences.get(0), BigDecimal.ZERO);
 					ligandResult = ligand.calcPfunc(ctxGroup, sequences.get(0), BigDecimal.ZERO);
 					complexResult = complex.calcPfunc(ctxGroup, sequences.get(0), BigDecimal.ZERO);
-				}}}
+				}
 
 				KStarScore wildTypeScore = scorer.score(
 						0,
@@ -559,11 +960,17 @@ public class KStar {
 				}
 
 				// compute all the partition functions and K* scores for the rest of the sequences
+				if (settings.numPfuncsInFlight > 1 && tasks.getParallelism() > 1) {
+					AutoCloseableNoEx pipelineConfDBs = openConfDBs();
+					try (pipelineConfDBs) {
+						new Pipeline(ctxGroup, scorer, n, proteinStabilityThreshold, ligandStabilityThreshold).run();
+					}
+					return scores;
+				}
 				for (int i=1; i<n; i++) {
 
-					try (AutoCloseableNoEx proteinCloser = protein.openConfDB()) {
-					try (AutoCloseableNoEx ligandCloser = ligand.openConfDB()) {
-					try (AutoCloseableNoEx complexCloser = complex.openConfDB()) {
+					AutoCloseableNoEx confDBs = openConfDBs();
+					try (confDBs) {
 						Sequence seq = sequences.get(i);
 
 						// get the pfuncs, with short circuits as needed
@@ -579,7 +986,7 @@ public class KStar {
 								complexResult = complex.calcPfunc(ctxGroup, seq, BigDecimal.ZERO);
 							}
 						}
-					}}}
+					}
 
 					scorer.score(i, proteinResult, ligandResult, complexResult);
 				}
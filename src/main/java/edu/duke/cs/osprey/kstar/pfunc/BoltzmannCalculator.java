@@ -155,6 +155,23 @@ public class BoltzmannCalculator {
 		}
 	}
 
+	/**
+	 * Like calcPrecise(), but returns a BigExp, which is much cheaper to compute and to accumulate,
+	 * at the cost of having only double precision.
+	 */
+	public BigExp calcBigExp(double e) {
+		double x = -e/RT;
+		if (Double.isNaN(x)) {
+			return new BigExp(Double.NaN);
+		} else if (x == Double.NEGATIVE_INFINITY) {
+			return new BigExp(0.0);
+		} else if (x == Double.POSITIVE_INFINITY) {
+			return new BigExp(Double.POSITIVE_INFINITY);
+		} else {
+			return BigExp.exp(x);
+		}
+	}
+
 	public double freeEnergyPrecise(BigDecimal z) {
 		return -RT*ln(z);
 	}
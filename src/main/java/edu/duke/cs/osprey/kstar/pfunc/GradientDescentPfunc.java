@@ -76,23 +76,11 @@ public class GradientDescentPfunc implements PartitionFunction.WithConfDB, Parti
 		return new BigMath(PartitionFunction.decimalPrecision);
 	}
 
-	private static class State {
+	private static abstract class State {
 
-		BigDecimal numConfs;
-
-		// upper bound (score axis) vars
 		long numScoredConfs = 0;
-		BigDecimal upperScoreWeightSum = BigDecimal.ZERO;
-		BigDecimal minUpperScoreWeight = MathTools.BigPositiveInfinity;
-
-		// lower bound (energy axis) vars
 		long numEnergiedConfs = 0;
-		BigDecimal lowerScoreWeightSum = BigDecimal.ZERO;
-		BigDecimal energyWeightSum = BigDecimal.ZERO;
-		BigDecimal minLowerScoreWeight = MathTools.BigPositiveInfinity;
-		BigDecimal cumulativeZReduction = BigDecimal.ZERO;
 		ArrayList<Integer> minList = new ArrayList<>();
-		BigDecimal firstScoreWeight = BigDecimal.ZERO;
 
 		// estimate of inital rates
 		// (values here aren't super imporant since they get tuned during execution,
@@ -106,10 +94,49 @@ public class GradientDescentPfunc implements PartitionFunction.WithConfDB, Parti
 
 		long lastReportNs = 0;
 
-		State(BigInteger numConfs) {
+		abstract double calcDelta();
+		abstract BigDecimal getNumConfs();
+		abstract BigDecimal getLowerBound();
+		abstract BigDecimal getUpperBound();
+		abstract BigDecimal getUpperBoundNoE();
+		abstract BigDecimal getCumulativeZReduction();
+		abstract BigDecimal getFirstScoreWeight();
+		abstract boolean isStable(BigDecimal stabilityThreshold);
+		abstract boolean hasLowEnergies();
+
+		/** adds the weights for one energied conf */
+		abstract void addEnergy(EnergyTask.Result result);
+
+		/** adds the weights for a batch of scored confs */
+		abstract void addScores(ScoreTask.Result result);
+
+		abstract void printBoundStats();
+
+		boolean epsilonReached(double targetEpsilon) {
+			return calcDelta() <= targetEpsilon;
+		}
+	}
+
+	private static class BigDecimalState extends State {
+
+		BigDecimal numConfs;
+
+		// upper bound (score axis) vars
+		BigDecimal upperScoreWeightSum = BigDecimal.ZERO;
+		BigDecimal minUpperScoreWeight = MathTools.BigPositiveInfinity;
+
+		// lower bound (energy axis) vars
+		BigDecimal lowerScoreWeightSum = BigDecimal.ZERO;
+		BigDecimal energyWeightSum = BigDecimal.ZERO;
+		BigDecimal minLowerScoreWeight = MathTools.BigPositiveInfinity;
+		BigDecimal cumulativeZReduction = BigDecimal.ZERO;
+		BigDecimal firstScoreWeight = BigDecimal.ZERO;
+
+		BigDecimalState(BigInteger numConfs) {
 			this.numConfs = new BigDecimal(numConfs);
 		}
 
+		@Override
 		double calcDelta() {
 			BigDecimal upperBound = getUpperBound();
 			if (MathTools.isZero(upperBound) || MathTools.isInf(upperBound)) {
@@ -123,11 +150,17 @@ public class GradientDescentPfunc implements PartitionFunction.WithConfDB, Parti
 				.doubleValue();
 		}
 
+		@Override
+		public BigDecimal getNumConfs() {
+			return numConfs;
+		}
+
+		@Override
 		public BigDecimal getLowerBound() {
 			return energyWeightSum;
 		}
 
-		@SuppressWarnings("unused")
+		@Override
 		public void printBoundStats() {
             System.out.println("Num confs: " + String.format("%12e",numConfs));
             System.out.println("Num Scored confs: " + String.format("%4d",numScoredConfs));
@@ -141,6 +174,7 @@ public class GradientDescentPfunc implements PartitionFunction.WithConfDB, Parti
             System.out.println("Scored weight bound:"+ upperSumString);
 		}
 
+		@Override
 		public BigDecimal getUpperBound() {
 
 			return bigMath()
@@ -160,6 +194,7 @@ public class GradientDescentPfunc implements PartitionFunction.WithConfDB, Parti
 				.get();
 		}
 
+		@Override
 		public BigDecimal getUpperBoundNoE() {
 
 			return bigMath()
@@ -175,18 +210,65 @@ public class GradientDescentPfunc implements PartitionFunction.WithConfDB, Parti
 				.get();
 		}
 
-		boolean epsilonReached(double targetEpsilon) {
-			return calcDelta() <= targetEpsilon;
+		@Override
+		public BigDecimal getCumulativeZReduction() {
+			return cumulativeZReduction;
 		}
 
+		@Override
+		public BigDecimal getFirstScoreWeight() {
+			return firstScoreWeight;
+		}
+
+		@Override
 		boolean isStable(BigDecimal stabilityThreshold) {
 			return numEnergiedConfs <= 0 || stabilityThreshold == null || MathTools.isGreaterThanOrEqual(getUpperBound(), stabilityThreshold);
 		}
 
+		@Override
 		boolean hasLowEnergies() {
 			return MathTools.isGreaterThan(minLowerScoreWeight,  BigDecimal.ZERO);
 		}
 
+		@Override
+		void addEnergy(EnergyTask.Result result) {
+			energyWeightSum = bigMath()
+				.set(energyWeightSum)
+				.add(result.energyWeight)
+				.get();
+			lowerScoreWeightSum = bigMath()
+				.set(lowerScoreWeightSum)
+				.add(result.scoreWeight)
+				.get();
+			if (MathTools.isLessThan(result.scoreWeight, minLowerScoreWeight)) {
+				minLowerScoreWeight = result.scoreWeight;
+			}
+			cumulativeZReduction = bigMath()
+				.set(cumulativeZReduction)
+				.add(result.scoreWeight)
+				.sub(result.energyWeight)
+				.get();
+		}
+
+		@Override
+		void addScores(ScoreTask.Result result) {
+
+			// If this is the first score, save it to get the first upper bound
+			if (numScoredConfs == 0) {
+				firstScoreWeight = result.scoreWeights.get(0);
+			}
+
+			for (BigDecimal weight : result.scoreWeights) {
+				upperScoreWeightSum = bigMath()
+					.set(upperScoreWeightSum)
+					.add(weight)
+					.get();
+				if (MathTools.isLessThan(weight, minUpperScoreWeight)) {
+					minUpperScoreWeight = weight;
+				}
+			}
+		}
+
 		@Override
 		public String toString() {
 			return String.format("upper: count %d  sum %s  min %s     lower: count %d  score sum %s  energy sum %s",
@@ -196,6 +278,165 @@ public class GradientDescentPfunc implements PartitionFunction.WithConfDB, Parti
 		}
 	}
 
+	/**
+	 * Same bounds as BigDecimalState, but all the arithmetic happens in BigExp,
+	 * and values are only converted to BigDecimal when they're reported.
+	 */
+	private static class BigExpState extends State {
+
+		BigExp numConfs;
+
+		// upper bound (score axis) vars
+		BigExp upperScoreWeightSum = new BigExp(0.0);
+		BigExp minUpperScoreWeight = new BigExp(Double.POSITIVE_INFINITY);
+
+		// lower bound (energy axis) vars
+		BigExp lowerScoreWeightSum = new BigExp(0.0);
+		BigExp energyWeightSum = new BigExp(0.0);
+		BigExp minLowerScoreWeight = new BigExp(Double.POSITIVE_INFINITY);
+		BigExp cumulativeZReduction = new BigExp(0.0);
+		BigExp firstScoreWeight = new BigExp(0.0);
+
+		// cache the stability threshold, so we only convert it once
+		BigDecimal stabilityThreshold = null;
+		BigExp bigExpStabilityThreshold = null;
+
+		BigExpState(BigInteger numConfs) {
+			this.numConfs = new BigExp(numConfs);
+		}
+
+		BigExp calcUpperBoundNoE() {
+
+			// unscored bound
+			BigExp bound = new BigExp(numConfs);
+			bound.subFast(new BigExp(numScoredConfs));
+			if (bound.isPositive()) {
+				bound.mult(minUpperScoreWeight);
+			} else {
+				bound.set(0.0);
+			}
+
+			// with scored bound
+			bound.addFast(upperScoreWeightSum);
+
+			return bound;
+		}
+
+		BigExp calcUpperBound() {
+
+			BigExp bound = calcUpperBoundNoE();
+
+			// but replace weights that have energies
+			bound.subFast(lowerScoreWeightSum);
+			bound.addFast(energyWeightSum);
+
+			// roundoff error in the last few digits could put the upper bound below the lower bound, so don't allow that
+			bound.max(energyWeightSum);
+
+			return bound;
+		}
+
+		@Override
+		double calcDelta() {
+			BigExp upperBound = calcUpperBound();
+			if (upperBound.fp == 0.0 || !upperBound.isFinite()) {
+				return 1.0;
+			}
+			BigExp delta = new BigExp(upperBound);
+			delta.subFast(energyWeightSum);
+			delta.div(upperBound);
+			delta.normalize(true);
+			// delta is in [0,1], so it fits easily in a double
+			return delta.fp*Math.pow(10.0, delta.exp);
+		}
+
+		@Override
+		BigDecimal getNumConfs() {
+			return numConfs.toBigDecimal(PartitionFunction.decimalPrecision);
+		}
+
+		@Override
+		BigDecimal getLowerBound() {
+			return energyWeightSum.toBigDecimal(PartitionFunction.decimalPrecision);
+		}
+
+		@Override
+		BigDecimal getUpperBound() {
+			return calcUpperBound().toBigDecimal(PartitionFunction.decimalPrecision);
+		}
+
+		@Override
+		BigDecimal getUpperBoundNoE() {
+			return calcUpperBoundNoE().toBigDecimal(PartitionFunction.decimalPrecision);
+		}
+
+		@Override
+		BigDecimal getCumulativeZReduction() {
+			return cumulativeZReduction.toBigDecimal(PartitionFunction.decimalPrecision);
+		}
+
+		@Override
+		BigDecimal getFirstScoreWeight() {
+			return firstScoreWeight.toBigDecimal(PartitionFunction.decimalPrecision);
+		}
+
+		@Override
+		boolean isStable(BigDecimal stabilityThreshold) {
+			if (numEnergiedConfs <= 0 || stabilityThreshold == null) {
+				return true;
+			}
+			if (stabilityThreshold != this.stabilityThreshold) {
+				this.stabilityThreshold = stabilityThreshold;
+				this.bigExpStabilityThreshold = new BigExp(stabilityThreshold);
+			}
+			return calcUpperBound().greaterThanOrEqual(bigExpStabilityThreshold);
+		}
+
+		@Override
+		boolean hasLowEnergies() {
+			return minLowerScoreWeight.isPositive();
+		}
+
+		@Override
+		void addEnergy(EnergyTask.Result result) {
+			energyWeightSum.addFast(result.bigExpEnergyWeight);
+			lowerScoreWeightSum.addFast(result.bigExpScoreWeight);
+			minLowerScoreWeight.min(result.bigExpScoreWeight);
+			cumulativeZReduction.addFast(result.bigExpScoreWeight);
+			cumulativeZReduction.subFast(result.bigExpEnergyWeight);
+		}
+
+		@Override
+		void addScores(ScoreTask.Result result) {
+
+			// If this is the first score, save it to get the first upper bound
+			if (numScoredConfs == 0) {
+				firstScoreWeight.set(result.bigExpScoreWeights.get(0));
+			}
+
+			for (BigExp weight : result.bigExpScoreWeights) {
+				upperScoreWeightSum.addFast(weight);
+				minUpperScoreWeight.min(weight);
+			}
+		}
+
+		@Override
+		void printBoundStats() {
+			System.out.println("Num confs: " + numConfs);
+			System.out.println("Num Scored confs: " + String.format("%4d",numScoredConfs));
+			System.out.println("Conf bound: " + minUpperScoreWeight);
+			System.out.println("Scored weight bound:"+ upperScoreWeightSum);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("upper: count %d  sum %s  min %s     lower: count %d  score sum %s  energy sum %s",
+				numScoredConfs, upperScoreWeightSum, minUpperScoreWeight,
+				numEnergiedConfs, lowerScoreWeightSum, energyWeightSum
+			);
+		}
+	}
+
 	private static enum Step {
 		None,
 		Score,
@@ -216,6 +457,7 @@ public class GradientDescentPfunc implements PartitionFunction.WithConfDB, Parti
 
 	private static BoltzmannCalculator bcalc = new BoltzmannCalculator(PartitionFunction.decimalPrecision);
 	private boolean usePreciseBcalc = true;
+	private boolean useBigExp = false;
 
 	private Status status = null;
 	private Values values = null;
@@ -235,8 +477,11 @@ public class GradientDescentPfunc implements PartitionFunction.WithConfDB, Parti
 	private PfuncSurface surf = null;
 	private PfuncSurface.Trace trace = null;
 
+	private final TaskExecutor.Tracker tasks;
+
 	public GradientDescentPfunc(ConfEnergyCalculator ecalc, ConfSearch confSearch, BigInteger numConfsBeforePruning) {
 		this.ecalc = ecalc;
+		this.tasks = ecalc.tasks.tracker();
 		this.scoreConfs = confSearch;
 		this.energyConfs = null;
 		this.numConfsBeforePruning = numConfsBeforePruning;
@@ -244,6 +489,7 @@ public class GradientDescentPfunc implements PartitionFunction.WithConfDB, Parti
 
 	public GradientDescentPfunc(ConfEnergyCalculator ecalc, ConfSearch upperBoundConfs, ConfSearch lowerBoundConfs, BigInteger numConfsBeforePruning) {
 		this.ecalc = ecalc;
+		this.tasks = ecalc.tasks.tracker();
 		this.scoreConfs = upperBoundConfs;
 		this.energyConfs = lowerBoundConfs;
 		this.numConfsBeforePruning = numConfsBeforePruning;
@@ -274,11 +520,26 @@ public class GradientDescentPfunc implements PartitionFunction.WithConfDB, Parti
 		return this;
 	}
 
+	/**
+	 * If true, computes Boltzmann weights and accumulates the pfunc bounds in BigExp rather than BigDecimal.
+	 * BigExp arithmetic is much faster, so score and energy results spend much less time holding the pfunc lock,
+	 * which matters most when many threads are computing energies at once.
+	 * The bounds are only converted to BigDecimal when they're reported,
+	 * but they only have double precision (about 16 significant digits).
+	 * Ignores setPreciseBcalc(), since BigExp weights are always computed directly.
+	 *
+	 * Call before putTaskContexts() and init().
+	 */
+	public GradientDescentPfunc setUseBigExp(boolean val) {
+		useBigExp = val;
+		return this;
+	}
+
 	@Override
 	public void putTaskContexts(TaskExecutor.ContextGroup contexts) {
 		// TODO: how to support conf tables correctly, when the energies are distributed across the cluster?
-		contexts.putContext(instanceIdOrThrow(), EnergyTask.class, new EnergyTask.Context(ecalc, bcalc, usePreciseBcalc, confDB));
-		contexts.putContext(instanceIdOrThrow(), ScoreTask.class, new ScoreTask.Context(bcalc, usePreciseBcalc));
+		contexts.putContext(instanceIdOrThrow(), EnergyTask.class, new EnergyTask.Context(ecalc, bcalc, usePreciseBcalc, useBigExp, confDB));
+		contexts.putContext(instanceIdOrThrow(), ScoreTask.class, new ScoreTask.Context(bcalc, usePreciseBcalc, useBigExp));
 	}
 
 	@Override
@@ -338,7 +599,11 @@ public class GradientDescentPfunc implements PartitionFunction.WithConfDB, Parti
 
 		// init state
 		status = Status.Estimating;
-		state = new State(numConfsBeforePruning);
+		if (useBigExp) {
+			state = new BigExpState(numConfsBeforePruning);
+		} else {
+			state = new BigDecimalState(numConfsBeforePruning);
+		}
 		values = Values.makeFullRange();
 		// don't explicitly check the pruned confs, just lump them together with the un-enumerated confs
 		values.pstar = BigDecimal.ZERO;
@@ -434,9 +699,9 @@ public class GradientDescentPfunc implements PartitionFunction.WithConfDB, Parti
 
 					numConfsEnergied++;
 
-					ecalc.tasks.submit(
+					tasks.submit(
 						new EnergyTask(instanceIdOrThrow(), conf, new Stopwatch().start(), confDBKey),
-						(result) -> onEnergy(result.econf, result.scoreWeight, result.energyWeight, result.stopwatch.getTimeS())
+						(result) -> onEnergy(result)
 					);
 
 					break;
@@ -462,9 +727,9 @@ public class GradientDescentPfunc implements PartitionFunction.WithConfDB, Parti
 					}
 
 					if (!confs.isEmpty()) {
-						ecalc.tasks.submit(
+						tasks.submit(
 								new ScoreTask(instanceIdOrThrow(), confs, new Stopwatch().start()),
-								(result) -> onScores(result.scoreWeights, result.stopwatch.getTimeS())
+								(result) -> onScores(result)
 						);
 					}
 
@@ -479,7 +744,8 @@ public class GradientDescentPfunc implements PartitionFunction.WithConfDB, Parti
 		}
 
 		// wait for all the scores and energies to come in
-		ecalc.tasks.waitForFinish();
+		// NOTE: just wait for our own tasks, other pfuncs could be sharing the task executor
+		tasks.waitForFinish();
 
 		// update the pfunc values from the state
 		values.qstar = state.getLowerBound();
@@ -506,8 +772,8 @@ public class GradientDescentPfunc implements PartitionFunction.WithConfDB, Parti
 		if (state.epsilonReached(targetEpsilon)) {
 			status = Status.Estimated;
 			if (isReportingProgress) {
-				log("Total Z upper bound reduction through minimizations: %12.6e", state.cumulativeZReduction);
-				log("Average Z upper bound reduction per minimizations: %12.6e", bigMath().set(state.cumulativeZReduction).div(state.numEnergiedConfs).get());
+				log("Total Z upper bound reduction through minimizations: %12.6e", state.getCumulativeZReduction());
+				log("Average Z upper bound reduction per minimizations: %12.6e", bigMath().set(state.getCumulativeZReduction()).div(state.numEnergiedConfs).get());
 			}
 		}
 
@@ -523,6 +789,8 @@ public class GradientDescentPfunc implements PartitionFunction.WithConfDB, Parti
 			ConfSearch.EnergiedConf econf;
 			BigDecimal scoreWeight;
 			BigDecimal energyWeight;
+			BigExp bigExpScoreWeight;
+			BigExp bigExpEnergyWeight;
 			Stopwatch stopwatch = new Stopwatch();
 		}
 
@@ -531,12 +799,14 @@ public class GradientDescentPfunc implements PartitionFunction.WithConfDB, Parti
 			ConfEnergyCalculator confEcalc;
 			BoltzmannCalculator bcalc;
 			boolean usePreciseBcalc;
+			boolean useBigExp;
 			ConfDB confDB;
 
-			public Context(ConfEnergyCalculator confEcalc, BoltzmannCalculator bcalc, boolean usePreciseBcalc, ConfDB confDB) {
+			public Context(ConfEnergyCalculator confEcalc, BoltzmannCalculator bcalc, boolean usePreciseBcalc, boolean useBigExp, ConfDB confDB) {
 				this.confEcalc = confEcalc;
 				this.bcalc = bcalc;
 				this.usePreciseBcalc = usePreciseBcalc;
+				this.useBigExp = useBigExp;
 				this.confDB = confDB;
 			}
 
@@ -573,8 +843,13 @@ public class GradientDescentPfunc implements PartitionFunction.WithConfDB, Parti
 			Result result = new Result();
 			result.stopwatch = stopwatch;
 			result.econf = ctx.confEcalc.calcEnergy(conf, ctx.confTable(confDBKey));
-			result.scoreWeight = ctx.bcalc(result.econf.getScore());
-			result.energyWeight = ctx.bcalc(result.econf.getEnergy());
+			if (ctx.useBigExp) {
+				result.bigExpScoreWeight = ctx.bcalc.calcBigExp(result.econf.getScore());
+				result.bigExpEnergyWeight = ctx.bcalc.calcBigExp(result.econf.getEnergy());
+			} else {
+				result.scoreWeight = ctx.bcalc(result.econf.getScore());
+				result.energyWeight = ctx.bcalc(result.econf.getEnergy());
+			}
 			return result;
 		}
 	}
@@ -584,6 +859,7 @@ public class GradientDescentPfunc implements PartitionFunction.WithConfDB, Parti
 		static class Result implements Serializable {
 			List<Double> scores = new ArrayList<>();
 			List<BigDecimal> scoreWeights = new ArrayList<>();
+			List<BigExp> bigExpScoreWeights = new ArrayList<>();
 			Stopwatch stopwatch = new Stopwatch();
 		}
 
@@ -591,10 +867,12 @@ public class GradientDescentPfunc implements PartitionFunction.WithConfDB, Parti
 
 			BoltzmannCalculator bcalc;
 			boolean usePreciseBcalc;
+			boolean useBigExp;
 
-			public Context(BoltzmannCalculator bcalc, boolean usePreciseBcalc) {
+			public Context(BoltzmannCalculator bcalc, boolean usePreciseBcalc, boolean useBigExp) {
 				this.bcalc = bcalc;
 				this.usePreciseBcalc = usePreciseBcalc;
+				this.useBigExp = useBigExp;
 			}
 
 			public BigDecimal bcalc(double e) {
@@ -622,7 +900,11 @@ public class GradientDescentPfunc implements PartitionFunction.WithConfDB, Parti
 			Result result = new Result();
 			result.stopwatch = stopwatch;
 			for (double score : scores) {
-				result.scoreWeights.add(ctx.bcalc(score));
+				if (ctx.useBigExp) {
+					result.bigExpScoreWeights.add(ctx.bcalc.calcBigExp(score));
+				} else {
+					result.scoreWeights.add(ctx.bcalc(score));
+				}
 				result.scores.add(score);
 			}
 
@@ -630,35 +912,22 @@ public class GradientDescentPfunc implements PartitionFunction.WithConfDB, Parti
 		}
 	}
 
-	private void onEnergy(ConfSearch.EnergiedConf econf, BigDecimal scoreWeight, BigDecimal energyWeight, double seconds) {
+	private void onEnergy(EnergyTask.Result result) {
+
+		ConfSearch.EnergiedConf econf = result.econf;
 
 		synchronized (this) { // don't race the main thread
 
 			// update the state
-			state.energyWeightSum = bigMath()
-				.set(state.energyWeightSum)
-				.add(energyWeight)
-				.get();
-			state.lowerScoreWeightSum = bigMath()
-				.set(state.lowerScoreWeightSum)
-				.add(scoreWeight)
-				.get();
+			state.addEnergy(result);
 			state.numEnergiedConfs++;
-			state.energyOps = 1.0/seconds;
-			if (MathTools.isLessThan(scoreWeight, state.minLowerScoreWeight)) {
-				state.minLowerScoreWeight = scoreWeight;
-			}
+			state.energyOps = 1.0/result.stopwatch.getTimeS();
 
 			// set the slope for the energy axis
 			double delta = state.calcDelta();
 			state.dEnergy = calcSlope(delta, state.prevDelta, state.dScore);
 			state.prevDelta = delta;
 
-			state.cumulativeZReduction = bigMath()
-				.set(state.cumulativeZReduction)
-				.add(scoreWeight)
-				.sub(energyWeight)
-				.get();
 			int minimizationSize = econf.getAssignments().length;
 			if (state.minList.size() < minimizationSize) {
 				state.minList.addAll(new ArrayList<>(Collections.nCopies(minimizationSize - state.minList.size(), 0)));
@@ -698,27 +967,14 @@ public class GradientDescentPfunc implements PartitionFunction.WithConfDB, Parti
 		}
 	}
 
-	private void onScores(List<BigDecimal> scoreWeights, double seconds) {
+	private void onScores(ScoreTask.Result result) {
 
 		synchronized (this) { // don't race the main thread
 
-			// If this is the first score, save it to get the first upper bound
-			if (state.numScoredConfs == 0) {
-				state.firstScoreWeight = scoreWeights.get(0);
-			}
-
 			// update the state
-			for (BigDecimal weight : scoreWeights) {
-				state.upperScoreWeightSum = bigMath()
-					.set(state.upperScoreWeightSum)
-					.add(weight)
-					.get();
-				if (MathTools.isLessThan(weight, state.minUpperScoreWeight)) {
-					state.minUpperScoreWeight = weight;
-				}
-			}
-			state.numScoredConfs += scoreWeights.size();
-			state.scoreOps = scoreWeights.size()/seconds;
+			state.addScores(result);
+			state.numScoredConfs += result.scores.size();
+			state.scoreOps = result.scores.size()/result.stopwatch.getTimeS();
 
 			// set the slope for the score axis
 			double delta = state.calcDelta();
@@ -777,11 +1033,11 @@ public class GradientDescentPfunc implements PartitionFunction.WithConfDB, Parti
 		// TODO: all of this seems to have no effect on the result ... should we remove it?
 		//Record original bounds
 		BigDecimal startLowerBound = BigDecimal.ZERO;
-		BigDecimal startUpperBound = state.numConfs.multiply(state.firstScoreWeight);
+		BigDecimal startUpperBound = state.getNumConfs().multiply(state.getFirstScoreWeight());
 		//Record Z reductions
 		BigDecimal lowerFullMin = state.getLowerBound(); //Pfunc lower bound improvement from full minimization
 		BigDecimal lowerConfUpperBound = BigDecimal.ZERO; //Pfunc lower bound improvement from conf upper bounds, K* has none
-		BigDecimal upperFullMin = state.cumulativeZReduction; //Pfunc upper bound improvement from full minimization
+		BigDecimal upperFullMin = state.getCumulativeZReduction(); //Pfunc upper bound improvement from full minimization
 		BigDecimal upperPartialMin = BigDecimal.ZERO; //Pfunc upper bound improvement from partial minimization corrections, K* has none
 
 		// first need to calculate upper bound without energied confs
@@ -0,0 +1,265 @@
+/*
+** This file is part of OSPREY 3.0
+** 
+** OSPREY Protein Redesign Software Version 3.0
+** Copyright (C) 2001-2018 Bruce Donald Lab, Duke University
+** 
+** OSPREY is free software: you can redistribute it and/or modify
+** it under the terms of the GNU General Public License version 2
+** as published by the Free Software Foundation.
+** 
+** You should have received a copy of the GNU General Public License
+** along with OSPREY.  If not, see <http://www.gnu.org/licenses/>.
+** 
+** OSPREY relies on grants for its development, and since visibility
+** in the scientific literature is essential for our success, we
+** ask that users of OSPREY cite our papers. See the CITING_OSPREY
+** document in this distribution for more information.
+** 
+** Contact Info:
+**    Bruce Donald
+**    Duke University
+**    Department of Computer Science
+**    Levine Science Research Center (LSRC)
+**    Durham
+**    NC 27708-0129
+**    USA
+**    e-mail: www.cs.duke.edu/brd/
+** 
+** <signature of Bruce Donald>, Mar 1, 2018
+** Bruce Donald, Professor of Computer Science
+*/
+
+package edu.duke.cs.osprey.kstar.pfunc;
+
+import edu.duke.cs.osprey.parallelism.TaskExecutor;
+
+import java.lang.ref.SoftReference;
+import java.math.BigDecimal;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.function.Supplier;
+
+
+/**
+ * A cache for partition functions (and their A* trees) where the most N recently used
+ * instances are protected by strong references and cannot be garbage
+ * collected. The remaining instances are held by soft references and
+ * will be garbage collected when running low on heap space.
+ *
+ * Collected partition functions will be re-instantiated and computed to their
+ * last known number of evaluated conformations when computed again.
+ * Give the partition functions a {@link edu.duke.cs.osprey.confspace.ConfDB} so
+ * the replayed conformation energies come from the database instead of being minimized again.
+ *
+ * The status and values of collected partition functions are remembered,
+ * so checking them doesn't re-instantiate the partition function.
+ */
+public class PfuncCache {
+
+	public class Entry implements PartitionFunction {
+
+		private final Supplier<PartitionFunction> factory;
+
+		private Status status;
+		private Values values;
+		private int numConfs;
+		private int parallelism;
+		private PartitionFunction strongRef = null;
+		private SoftReference<PartitionFunction> softRef = null;
+
+		private Entry(Supplier<PartitionFunction> factory) {
+			this.factory = factory;
+			PartitionFunction pfunc = factory.get();
+			parallelism = pfunc.getParallelism();
+			update(pfunc);
+			softRef = new SoftReference<>(pfunc);
+			markUsed(pfunc);
+		}
+
+		private void update(PartitionFunction pfunc) {
+			status = pfunc.getStatus();
+			values = pfunc.getValues();
+			numConfs = pfunc.getNumConfsEvaluated();
+		}
+
+		private PartitionFunction getOrMakePfunc() {
+
+			// check the soft ref to see if we still have a pfunc
+			// (it could have been collected by the GC)
+			if (softRef != null) {
+				PartitionFunction pfunc = softRef.get();
+				if (pfunc != null) {
+					markUsed(pfunc);
+					return pfunc;
+				}
+			}
+
+			// don't have a pfunc, make a new one
+			PartitionFunction pfunc = factory.get();
+			numReplays++;
+
+			// and put it back to where it was
+			while (pfunc.getStatus().canContinue()) {
+				int numEvaluated = pfunc.getNumConfsEvaluated();
+				if (numEvaluated >= numConfs) {
+					break;
+				}
+				pfunc.compute(numConfs - numEvaluated);
+				if (pfunc.getNumConfsEvaluated() == numEvaluated) {
+					break;
+				}
+			}
+
+			// recently-used entries are always protected from garbage collection
+			softRef = new SoftReference<>(pfunc);
+			markUsed(pfunc);
+
+			return pfunc;
+		}
+
+		private void markUsed(PartitionFunction pfunc) {
+
+			// protect from garbage collection by holding a strong reference
+			strongRef = pfunc;
+
+			// if capacity restrictions are turned on, manage recency and GC protections
+			if (minCapacity != null) {
+
+				recentEntries.remove(this);
+				recentEntries.add(this);
+
+				// if we're over capacity, expose the least recently used pfuncs to garbage collection
+				if (recentEntries.size() > minCapacity) {
+					Iterator<Entry> iter = recentEntries.iterator();
+
+					// get rid of the strong reference, so we only have the soft reference
+					iter.next().strongRef = null;
+					iter.remove();
+				}
+			}
+		}
+
+		public void clearRefs() {
+			softRef = null;
+			strongRef = null;
+			recentEntries.remove(this);
+		}
+
+		public boolean isProtected() {
+			return strongRef != null;
+		}
+
+		/** Returns true if the partition function is in memory, i.e. computing it won't need a replay. */
+		public boolean isLoaded() {
+			return softRef != null && softRef.get() != null;
+		}
+
+		@Override
+		public void setReportProgress(boolean val) {
+			throw new UnsupportedOperationException("configure the partition function in the cache factory instead");
+		}
+
+		@Override
+		public void setConfListener(ConfListener val) {
+			throw new UnsupportedOperationException("configure the partition function in the cache factory instead");
+		}
+
+		@Override
+		public void init(double targetEpsilon) {
+			throw new UnsupportedOperationException("initialize the partition function in the cache factory instead");
+		}
+
+		@Override
+		public void setStabilityThreshold(BigDecimal stabilityThreshold) {
+			throw new UnsupportedOperationException("configure the partition function in the cache factory instead");
+		}
+
+		@Override
+		public Status getStatus() {
+			return status;
+		}
+
+		@Override
+		public Values getValues() {
+			return values;
+		}
+
+		@Override
+		public int getParallelism() {
+			return parallelism;
+		}
+
+		@Override
+		public int getNumConfsEvaluated() {
+			return numConfs;
+		}
+
+		@Override
+		public void compute(int maxNumConfs) {
+
+			PartitionFunction pfunc = getOrMakePfunc();
+			pfunc.compute(maxNumConfs);
+			update(pfunc);
+
+			// finished pfuncs can't compute any more, so let the GC take them
+			if (!status.canContinue()) {
+				clearRefs();
+			}
+		}
+
+		@Override
+		public Result makeResult() {
+
+			// use the pfunc's result if we still have it, since it might have more info
+			if (softRef != null) {
+				PartitionFunction pfunc = softRef.get();
+				if (pfunc != null) {
+					return pfunc.makeResult();
+				}
+			}
+
+			return new Result(status, values, numConfs);
+		}
+
+		@Override
+		public void putTaskContexts(TaskExecutor.ContextGroup contexts) {
+			getOrMakePfunc().putTaskContexts(contexts);
+		}
+	}
+
+
+	public final Integer minCapacity;
+
+	private final LinkedHashSet<Entry> recentEntries = new LinkedHashSet<>();
+	private long numReplays = 0;
+
+	/**
+	 * @param minCapacity The number of most recently used partition functions to protect from garbage collection,
+	 *                    or null to protect all of them
+	 */
+	public PfuncCache(Integer minCapacity) {
+		this.minCapacity = minCapacity;
+	}
+
+	/**
+	 * Makes a new cache entry.
+	 * The factory should return a new partition function that's ready to compute, i.e. already initialized.
+	 */
+	public Entry make(Supplier<PartitionFunction> factory) {
+		return new Entry(factory);
+	}
+
+	/** Forgets all the recently-used entries, so their partition functions can be garbage collected. */
+	public void clear() {
+		for (Entry entry : recentEntries) {
+			entry.strongRef = null;
+		}
+		recentEntries.clear();
+	}
+
+	/** Returns the number of times a collected partition function has been re-instantiated and replayed. */
+	public long getNumReplays() {
+		return numReplays;
+	}
+}
@@ -41,8 +41,6 @@ import edu.duke.cs.osprey.parallelism.ThreadPoolTaskExecutor;
 import edu.duke.cs.osprey.pruning.PruningMatrix;
 import edu.duke.cs.osprey.tools.Progress;
 import edu.duke.cs.osprey.tools.Stopwatch;
-import org.apache.commons.math3.exception.DimensionMismatchException;
-import org.apache.commons.math3.linear.*;
 import smile.data.SparseDataset;
 import smile.math.matrix.Matrix;
 import smile.regression.LASSO;
@@ -50,7 +48,7 @@ import smile.regression.LASSO;
 import java.io.File;
 import java.math.BigInteger;
 import java.util.*;
-import java.util.function.Consumer;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 
 import static edu.duke.cs.osprey.tools.Log.formatBig;
@@ -79,33 +77,9 @@ public class LUTE {
 
 				// build the linear model: Ax=b
 				// except conjugate gradient needs square A, so transform to A^tAx = A^tb
-				RealLinearOperator AtA = new RealLinearOperator() {
-
-					@Override
-					public int getRowDimension() {
-						return system.tuples.size();
-					}
-
-					@Override
-					public int getColumnDimension() {
-						return system.tuples.size();
-					}
-
-					@Override
-					public RealVector operate(RealVector vx)
-						throws DimensionMismatchException {
-						double[] x = ((ArrayRealVector)vx).getDataRef();
-						double[] AtAx = system.parallelMultAt(system.parallelMultA(x, tasks), tasks);
-						return new ArrayRealVector(AtAx, false);
-					}
-				};
-
-				RealVector Atb = new ArrayRealVector(system.parallelMultAt(binfo.b, tasks), false);
-
-				RealVector rx0 = new ArrayRealVector(x0, false);
-
-				ConjugateGradient cg = new ConjugateGradient(100000, 1e-6, false);
-				return ((ArrayRealVector)cg.solve(AtA, Atb, rx0)).getDataRef();
+				// A^tA is never instantiated though, it's applied directly from the sampled confs
+				double[] Atb = system.parallelMultAt(binfo.b, tasks);
+				return system.solveNormalEquations(Atb, x0, 100000, 1e-6, tasks);
 			}
 		},
 
@@ -126,11 +100,12 @@ public class LUTE {
 				// explicitly instantiate A (at least it's a sparse and not a dense matrix though)
 				// the LASSO implementation is actually really fast!
 				SparseDataset data = new SparseDataset(system.tuples.size());
-				for (int c=0; c<system.confs.size(); c++) {
-					final int fc = c;
-					system.forEachTupleIn(c, (t) -> {
-						data.set(fc, t, 1.0);
-					});
+				for (LinearSystem.Chunk chunk : system.chunks) {
+					for (int i=0; i<chunk.numConfs; i++) {
+						for (int j=chunk.rowStarts[i]; j<chunk.rowStarts[i + 1]; j++) {
+							data.set(chunk.startC + i, chunk.tupleIndices[j], 1.0);
+						}
+					}
 				}
 				Matrix A = data.toSparseMatrix();
 
@@ -156,6 +131,17 @@ public class LUTE {
 		public abstract double[] fit(LinearSystem system, LinearSystem.BInfo binfo, double[] x0, TaskExecutor tasks);
 	}
 
+	public static class NotConvergedException extends RuntimeException {
+
+		private static final long serialVersionUID = -2384927261304862735L;
+
+		public NotConvergedException(int numIterations, double residual, double maxResidual) {
+			super(String.format("conjugate gradient didn't converge after %d iterations, residual %.3e > %.3e",
+				numIterations, residual, maxResidual
+			));
+		}
+	}
+
 	public static class LinearSystem {
 
 		private class BInfo {
@@ -165,6 +151,62 @@ public class LUTE {
 		}
 
 
+		/**
+		 * A contiguous range of the sampled confs, with the rows of the design matrix A
+		 * compressed into primitive arrays, so the fitter can apply A and A^t without
+		 * re-indexing the tuples of each conf, and without boxing.
+		 */
+		static class Chunk {
+
+			final int startC;
+			final int numConfs;
+			final int[] rowStarts;
+			final int[] tupleIndices;
+
+			Chunk(int startC, int numConfs, int[] rowStarts, int[] tupleIndices) {
+				this.startC = startC;
+				this.numConfs = numConfs;
+				this.rowStarts = rowStarts;
+				this.tupleIndices = tupleIndices;
+			}
+
+			void multA(double[] x, double[] out) {
+				for (int i=0; i<numConfs; i++) {
+					double sum = 0.0;
+					for (int j=rowStarts[i]; j<rowStarts[i + 1]; j++) {
+						sum += x[tupleIndices[j]];
+					}
+					out[startC + i] = sum;
+				}
+			}
+
+			void multAt(double[] x, double[] out) {
+				for (int i=0; i<numConfs; i++) {
+					double xc = x[startC + i];
+					for (int j=rowStarts[i]; j<rowStarts[i + 1]; j++) {
+						out[tupleIndices[j]] += xc;
+					}
+				}
+			}
+
+			/** computes A^tAx, one row at a time, so Ax is never stored */
+			void multAtA(double[] x, double[] out) {
+				for (int i=0; i<numConfs; i++) {
+					int start = rowStarts[i];
+					int stop = rowStarts[i + 1];
+					double sum = 0.0;
+					for (int j=start; j<stop; j++) {
+						sum += x[tupleIndices[j]];
+					}
+					for (int j=start; j<stop; j++) {
+						out[tupleIndices[j]] += sum;
+					}
+				}
+			}
+		}
+
+		private static final int ConfsPerChunk = 1 << 14;
+
 		public final TuplesIndex tuples;
 		public final List<int[]> confs;
 		public final double[] confEnergies;
@@ -174,6 +216,11 @@ public class LUTE {
 
 		public Errors errors = null;
 
+		final Chunk[] chunks;
+
+		// per-thread accumulators for the A^t products, re-used across conjugate gradient iterations
+		private double[][] threadOuts = null;
+
 		public LinearSystem(TuplesIndex tuples, ConfSampler.Samples samples, Map<int[],Double> confEnergies) {
 
 			this.tuples = tuples;
@@ -186,12 +233,33 @@ public class LUTE {
 			for (int c=0; c<confs.size(); c++) {
 				this.confEnergies[c] = confEnergies.get(confs.get(c));
 			}
-		}
 
-		private void forEachTupleIn(int c, Consumer<Integer> callback) {
+			// index the tuples in each conf just once, instead of once per matrix multiply
 			final boolean throwIfMissingSingle = false; // we're not fitting singles
 			final boolean throwIfMissingPair = true; // we always fit to dense pairs, confs shouldn't be using pruned pairs
-			tuples.forEachIn(confs.get(c), throwIfMissingSingle, throwIfMissingPair, callback);
+			int numConfs = confs.size();
+			chunks = new Chunk[(numConfs + ConfsPerChunk - 1)/ConfsPerChunk];
+			for (int chunki=0; chunki<chunks.length; chunki++) {
+
+				int startC = chunki*ConfsPerChunk;
+				int chunkNumConfs = Math.min(ConfsPerChunk, numConfs - startC);
+				int[] rowStarts = new int[chunkNumConfs + 1];
+				int[][] tupleIndices = { new int[chunkNumConfs*8] };
+				int[] size = { 0 };
+
+				for (int i=0; i<chunkNumConfs; i++) {
+					rowStarts[i] = size[0];
+					tuples.forEachIn(confs.get(startC + i), throwIfMissingSingle, throwIfMissingPair, (t) -> {
+						if (size[0] == tupleIndices[0].length) {
+							tupleIndices[0] = Arrays.copyOf(tupleIndices[0], size[0]*2);
+						}
+						tupleIndices[0][size[0]++] = t;
+					});
+				}
+				rowStarts[chunkNumConfs] = size[0];
+
+				chunks[chunki] = new Chunk(startC, chunkNumConfs, rowStarts, Arrays.copyOf(tupleIndices[0], size[0]));
+			}
 		}
 
 		public void fit(Fitter fitter, double[] oldTupleEnergies, TaskExecutor tasks) {
@@ -242,53 +310,15 @@ public class LUTE {
 			calcTupleEnergies(x, binfo, tasks);
 		}
 
-		private double[] multA(double[] x) {
-			double[] out = new double[confs.size()];
-			for (int c=0; c<confs.size(); c++) {
-				final int fc = c;
-				forEachTupleIn(c, (t) -> {
-					out[fc] += x[t];
-				});
-			}
-			return out;
-		}
-
-		private double[] multAt(double[] x) {
-			double[] out = new double[tuples.size()];
-			for (int c=0; c<confs.size(); c++) {
-				double xc = x[c];
-				forEachTupleIn(c, (t) -> {
-					out[t] += xc;
-				});
-			}
-			return out;
-		}
-
 		private double[] parallelMultA(double[] x, TaskExecutor tasks) {
 
-			int numConfs = confs.size();
-			int numThreads = tasks.getParallelism();
-			int partitionSize = numConfs/numThreads;
-
-			double[] out = new double[numConfs];
+			double[] out = new double[confs.size()];
 
-			// partition the confs equally among the threads
-			for (int i=0; i<numThreads; i++) {
-				int startC = i*partitionSize;
-				int stopC;
-				if (i == numThreads - 1) {
-					stopC = numConfs;
-				} else {
-					stopC = (i+1)*partitionSize;
-				}
+			// each chunk writes to its own range of confs, so the threads can share the out array
+			for (Chunk chunk : chunks) {
 				tasks.submit(
 					() -> {
-						for (int c=startC; c<stopC; c++) {
-							final int fc = c;
-							forEachTupleIn(fc, (t) -> {
-								out[fc] += x[t];
-							});
-						}
+						chunk.multA(x, out);
 						return null;
 					},
 					(ignored) -> {}
@@ -300,38 +330,47 @@ public class LUTE {
 		}
 
 		private double[] parallelMultAt(double[] x, TaskExecutor tasks) {
+			return parallelMultAt(x, false, tasks);
+		}
 
-			int numConfs = confs.size();
-			int numThreads = tasks.getParallelism();
-			int partitionSize = numConfs/numThreads;
+		private double[] parallelMultAtA(double[] x, TaskExecutor tasks) {
+			return parallelMultAt(x, true, tasks);
+		}
+
+		private double[] parallelMultAt(double[] x, boolean normal, TaskExecutor tasks) {
 
 			int numTuples = tuples.size();
+			int numThreads = Math.max(1, Math.min(tasks.getParallelism(), chunks.length));
+			if (threadOuts == null || threadOuts.length < numThreads || threadOuts[0].length != numTuples) {
+				threadOuts = new double[numThreads][numTuples];
+			}
+
 			double[] out = new double[numTuples];
 
-			// partition the confs equally among the threads
+			// the threads take chunks as they go, so uneven chunks don't leave threads idle
+			AtomicInteger nextChunki = new AtomicInteger(0);
 			for (int i=0; i<numThreads; i++) {
-				int startC = i*partitionSize;
-				int stopC;
-				if (i == numThreads - 1) {
-					stopC = numConfs;
-				} else {
-					stopC = (i+1)*partitionSize;
-				}
+				double[] threadOut = threadOuts[i];
 				tasks.submit(
 					() -> {
-						double[] threadOut = new double[numTuples];
-						for (int c=startC; c<stopC; c++) {
-							double xc = x[c];
-							forEachTupleIn(c, (t) -> {
-								threadOut[t] += xc;
-							});
+						Arrays.fill(threadOut, 0.0);
+						while (true) {
+							int chunki = nextChunki.getAndIncrement();
+							if (chunki >= chunks.length) {
+								break;
+							}
+							if (normal) {
+								chunks[chunki].multAtA(x, threadOut);
+							} else {
+								chunks[chunki].multAt(x, threadOut);
+							}
 						}
 						return threadOut;
 					},
-					(threadOut) -> {
+					(result) -> {
 						// aggregate thread results to the real out array
 						for (int t=0; t<numTuples; t++) {
-							out[t] += threadOut[t];
+							out[t] += result[t];
 						}
 					}
 				);
@@ -341,6 +380,68 @@ public class LUTE {
 			return out;
 		}
 
+		/**
+		 * Solves A^tAx = A^tb using conjugate gradient, starting from x0.
+		 * Stops when the residual falls to tolerance times the magnitude of A^tb.
+		 *
+		 * @throws NotConvergedException if the residual is still too big after maxIterations,
+		 * like the commons-math ConjugateGradient did, or if the search direction runs out of A's range first
+		 */
+		double[] solveNormalEquations(double[] Atb, double[] x0, int maxIterations, double tolerance, TaskExecutor tasks) {
+
+			int n = Atb.length;
+			double[] x = x0.clone();
+
+			// r = A^tb - A^tAx, p = r
+			double[] r = parallelMultAtA(x, tasks);
+			for (int t=0; t<n; t++) {
+				r[t] = Atb[t] - r[t];
+			}
+			double[] p = r.clone();
+			double rr = dot(r, r);
+
+			double maxResidual = tolerance*Math.sqrt(dot(Atb, Atb));
+			for (int iter=0; iter<maxIterations; iter++) {
+
+				if (Math.sqrt(rr) <= maxResidual) {
+					return x;
+				}
+
+				double[] q = parallelMultAtA(p, tasks);
+				double pq = dot(p, q);
+				if (pq <= 0.0) {
+					// p is in the null space of A, so we can't make any more progress
+					throw new NotConvergedException(iter, Math.sqrt(rr), maxResidual);
+				}
+
+				double alpha = rr/pq;
+				for (int t=0; t<n; t++) {
+					x[t] += alpha*p[t];
+					r[t] -= alpha*q[t];
+				}
+
+				double rrNext = dot(r, r);
+				double beta = rrNext/rr;
+				for (int t=0; t<n; t++) {
+					p[t] = r[t] + beta*p[t];
+				}
+				rr = rrNext;
+			}
+
+			if (Math.sqrt(rr) <= maxResidual) {
+				return x;
+			}
+			throw new NotConvergedException(maxIterations, Math.sqrt(rr), maxResidual);
+		}
+
+		private static double dot(double[] a, double[] b) {
+			double sum = 0.0;
+			for (int i=0; i<a.length; i++) {
+				sum += a[i]*b[i];
+			}
+			return sum;
+		}
+
 		private void calcTupleEnergies(double[] x, BInfo binfo, TaskExecutor tasks) {
 
 			// calculate the tuple energies in un-normalized space
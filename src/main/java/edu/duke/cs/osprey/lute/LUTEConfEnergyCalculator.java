@@ -44,12 +44,14 @@ public class LUTEConfEnergyCalculator extends ConfEnergyCalculator implements Fr
 
 	public final LUTEState state;
 	public final TuplesIndex tuples;
+	public final LUTEEnergyTables tables;
 
 	public LUTEConfEnergyCalculator(SimpleConfSpace confSpace, LUTEState state) {
 		super(confSpace, new TaskExecutor()); // TODO: parallelism?
 
 		this.state = state;
 		this.tuples = new TuplesIndex(confSpace, state.tuples);
+		this.tables = new LUTEEnergyTables(confSpace, state);
 	}
 
 	private static class NotSupportedByLUTEException extends RuntimeException {
@@ -97,16 +99,7 @@ public class LUTEConfEnergyCalculator extends ConfEnergyCalculator implements Fr
 
 		numCalculations.incrementAndGet();
 
-		final boolean throwIfMissingSingle = false; // we're not fitting singles
-		final boolean throwIfMissingPair = true; // we always fit to dense pairs, confs shouldn't be using pruned pairs
-
-		// silly Java... If this were Kotlin, we wouldn't have to use an array to make the energy modifiable
-		// hopefully JVM escape analysis will stack-allocate this?
-		final double[] energy = new double[] { 0.0 };
-		tuples.forEachIn(conf, throwIfMissingSingle, throwIfMissingPair, (t) -> {
-			energy[0] += state.tupleEnergies[t];
-		});
-		return energy[0] + state.tupleEnergyOffset;
+		return tables.calcEnergy(conf);
 	}
 
 	public boolean hasTuple(int pos, int rc) {
@@ -114,7 +107,7 @@ public class LUTEConfEnergyCalculator extends ConfEnergyCalculator implements Fr
 	}
 
 	public boolean hasTuple(int pos1, int rc1, int pos2, int rc2) {
-		return tuples.getIndex(pos1, rc1, pos2, rc2) != null;
+		return tables.hasPair(pos1, rc1, pos2, rc2);
 	}
 
 	public boolean hasTuple(int pos1, int rc1, int pos2, int rc2, int pos3, int rc3) {
@@ -123,22 +116,15 @@ public class LUTEConfEnergyCalculator extends ConfEnergyCalculator implements Fr
 
 	@Override
 	public double getEnergy(int pos, int rc) {
-		return getEnergy(tuples.getIndex(pos, rc));
+		return tables.getSingle(pos, rc);
 	}
 
 	@Override
 	public double getEnergy(int pos1, int rc1, int pos2, int rc2) {
-		return getEnergy(tuples.getIndex(pos1, rc1, pos2, rc2));
+		return tables.getPair(pos1, rc1, pos2, rc2);
 	}
 
 	public double getEnergy(int pos1, int rc1, int pos2, int rc2, int pos3, int rc3) {
-		return getEnergy(tuples.getIndex(pos1, rc1, pos2, rc2, pos3, rc3));
-	}
-
-	private double getEnergy(Integer index) {
-		if (index == null) {
-			return 0.0;
-		}
-		return state.tupleEnergies[index];
+		return tables.getTriple(pos1, rc1, pos2, rc2, pos3, rc3);
 	}
 }
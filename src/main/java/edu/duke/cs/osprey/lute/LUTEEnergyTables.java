@@ -0,0 +1,283 @@
+/*
+** This file is part of OSPREY 3.0
+** 
+** OSPREY Protein Redesign Software Version 3.0
+** Copyright (C) 2001-2018 Bruce Donald Lab, Duke University
+** 
+** OSPREY is free software: you can redistribute it and/or modify
+** it under the terms of the GNU General Public License version 2
+** as published by the Free Software Foundation.
+** 
+** You should have received a copy of the GNU General Public License
+** along with OSPREY.  If not, see <http://www.gnu.org/licenses/>.
+** 
+** OSPREY relies on grants for its development, and since visibility
+** in the scientific literature is essential for our success, we
+** ask that users of OSPREY cite our papers. See the CITING_OSPREY
+** document in this distribution for more information.
+** 
+** Contact Info:
+**    Bruce Donald
+**    Duke University
+**    Department of Computer Science
+**    Levine Science Research Center (LSRC)
+**    Durham
+**    NC 27708-0129
+**    USA
+**    e-mail: www.cs.duke.edu/brd/
+** 
+** <signature of Bruce Donald>, Mar 1, 2018
+** Bruce Donald, Professor of Computer Science
+*/
+
+package edu.duke.cs.osprey.lute;
+
+import edu.duke.cs.osprey.confspace.Conf;
+import edu.duke.cs.osprey.confspace.RCTuple;
+import edu.duke.cs.osprey.confspace.SimpleConfSpace;
+import edu.duke.cs.osprey.confspace.TuplesIndex;
+
+
+/**
+ * LUTE tuple energies compiled into dense arrays of primitives indexed by position and RC,
+ * so energies can be looked up without hashing, boxing, or allocating tuples.
+ *
+ * Tuples that aren't in the LUTE state have zero energy.
+ * Pair tables are allocated for all position pairs, and pair tuples missing from the LUTE state
+ * are marked with sentinels. Triple tables are only allocated for position triples that
+ * have at least one triple tuple, since LUTE usually only fits a few of the possible triples.
+ */
+public class LUTEEnergyTables {
+
+	public final SimpleConfSpace confSpace;
+	public final int numPos;
+	public final double offset;
+
+	private final int[] numRCs;
+	private final double[][] singles; // indexed by pos, rc
+	private final double[][] pairs; // indexed by pos pair, rc pair
+	private final boolean[][] hasPairs; // false where pair tuples are missing
+	private final double[][] triples; // indexed by pos triple, rc triple, null where there are no tuples
+	private final int[][] triplePos3; // for each pos pair, the lower positions that have triple tables
+
+	public LUTEEnergyTables(SimpleConfSpace confSpace, LUTEState state) {
+
+		this.confSpace = confSpace;
+		this.numPos = confSpace.positions.size();
+		this.offset = state.tupleEnergyOffset;
+
+		numRCs = confSpace.getNumResConfsByPos().clone();
+
+		// allocate the singles and pairs
+		singles = new double[numPos][];
+		for (int pos=0; pos<numPos; pos++) {
+			singles[pos] = new double[numRCs[pos]];
+		}
+		pairs = new double[pairIndex(numPos, 0)][];
+		hasPairs = new boolean[pairs.length][];
+		for (int pos1=0; pos1<numPos; pos1++) {
+			for (int pos2=0; pos2<pos1; pos2++) {
+				int i = pairIndex(pos1, pos2);
+				pairs[i] = new double[numRCs[pos1]*numRCs[pos2]];
+				hasPairs[i] = new boolean[numRCs[pos1]*numRCs[pos2]];
+			}
+		}
+		triples = new double[tripleIndex(numPos, 0, 0)][];
+
+		// copy the tuple energies
+		for (int i=0; i<state.tuples.length; i++) {
+			RCTuple tuple = state.tuples[i].sorted();
+			double energy = state.tupleEnergies[i];
+
+			if (tuple.size() == 1) {
+
+				singles[tuple.pos.get(0)][tuple.RCs.get(0)] = energy;
+
+			} else if (tuple.size() == 2) {
+
+				int pos1 = tuple.pos.get(1);
+				int pos2 = tuple.pos.get(0);
+				int rcs = rcPairIndex(pos2, tuple.RCs.get(1), tuple.RCs.get(0));
+				pairs[pairIndex(pos1, pos2)][rcs] = energy;
+				hasPairs[pairIndex(pos1, pos2)][rcs] = true;
+
+			} else if (tuple.size() == 3) {
+
+				int pos1 = tuple.pos.get(2);
+				int pos2 = tuple.pos.get(1);
+				int pos3 = tuple.pos.get(0);
+				int posi = tripleIndex(pos1, pos2, pos3);
+				if (triples[posi] == null) {
+					triples[posi] = new double[numRCs[pos1]*numRCs[pos2]*numRCs[pos3]];
+				}
+				triples[posi][rcTripleIndex(pos2, pos3, tuple.RCs.get(2), tuple.RCs.get(1), tuple.RCs.get(0))] = energy;
+
+			} else {
+				throw new IllegalArgumentException("LUTE only supports tuples up to triples, not " + tuple);
+			}
+		}
+
+		// index the triple tables by pos pair, so we don't have to search for them later
+		triplePos3 = new int[pairs.length][];
+		for (int pos1=0; pos1<numPos; pos1++) {
+			for (int pos2=0; pos2<pos1; pos2++) {
+				int count = 0;
+				for (int pos3=0; pos3<pos2; pos3++) {
+					if (triples[tripleIndex(pos1, pos2, pos3)] != null) {
+						count++;
+					}
+				}
+				int[] pos3s = new int[count];
+				count = 0;
+				for (int pos3=0; pos3<pos2; pos3++) {
+					if (triples[tripleIndex(pos1, pos2, pos3)] != null) {
+						pos3s[count++] = pos3;
+					}
+				}
+				triplePos3[pairIndex(pos1, pos2)] = pos3s;
+			}
+		}
+	}
+
+	/** pos1 > pos2 */
+	private static int pairIndex(int pos1, int pos2) {
+		return pos1*(pos1 - 1)/2 + pos2;
+	}
+
+	/** pos1 > pos2 > pos3 */
+	private static int tripleIndex(int pos1, int pos2, int pos3) {
+		return pos1*(pos1 - 1)*(pos1 - 2)/6 + pos2*(pos2 - 1)/2 + pos3;
+	}
+
+	private int rcPairIndex(int pos2, int rc1, int rc2) {
+		return rc1*numRCs[pos2] + rc2;
+	}
+
+	private int rcTripleIndex(int pos2, int pos3, int rc1, int rc2, int rc3) {
+		return (rc1*numRCs[pos2] + rc2)*numRCs[pos3] + rc3;
+	}
+
+	public int numRCs(int pos) {
+		return numRCs[pos];
+	}
+
+	public double getSingle(int pos, int rc) {
+		return singles[pos][rc];
+	}
+
+	public boolean hasPair(int pos1, int rc1, int pos2, int rc2) {
+		if (pos1 < pos2) {
+			return hasPair(pos2, rc2, pos1, rc1);
+		}
+		return hasPairs[pairIndex(pos1, pos2)][rcPairIndex(pos2, rc1, rc2)];
+	}
+
+	public double getPair(int pos1, int rc1, int pos2, int rc2) {
+		if (pos1 < pos2) {
+			return getPair(pos2, rc2, pos1, rc1);
+		}
+		return pairs[pairIndex(pos1, pos2)][rcPairIndex(pos2, rc1, rc2)];
+	}
+
+	/** true if any triple tuples exist at these positions, in any order */
+	public boolean hasTriples(int pos1, int pos2, int pos3) {
+		return getTripleTable(pos1, pos2, pos3) != null;
+	}
+
+	private double[] getTripleTable(int pos1, int pos2, int pos3) {
+
+		// sort the positions in decreasing order
+		if (pos1 < pos2) {
+			int swap = pos1; pos1 = pos2; pos2 = swap;
+		}
+		if (pos2 < pos3) {
+			int swap = pos2; pos2 = pos3; pos3 = swap;
+		}
+		if (pos1 < pos2) {
+			int swap = pos1; pos1 = pos2; pos2 = swap;
+		}
+
+		return triples[tripleIndex(pos1, pos2, pos3)];
+	}
+
+	/** positions can be in any order */
+	public double getTriple(int pos1, int rc1, int pos2, int rc2, int pos3, int rc3) {
+
+		// sort the positions in decreasing order, with their rcs
+		if (pos1 < pos2) {
+			int swap = pos1; pos1 = pos2; pos2 = swap;
+			swap = rc1; rc1 = rc2; rc2 = swap;
+		}
+		if (pos2 < pos3) {
+			int swap = pos2; pos2 = pos3; pos3 = swap;
+			swap = rc2; rc2 = rc3; rc3 = swap;
+		}
+		if (pos1 < pos2) {
+			int swap = pos1; pos1 = pos2; pos2 = swap;
+			swap = rc1; rc1 = rc2; rc2 = swap;
+		}
+
+		double[] table = triples[tripleIndex(pos1, pos2, pos3)];
+		if (table == null) {
+			return 0.0;
+		}
+		return table[rcTripleIndex(pos2, pos3, rc1, rc2, rc3)];
+	}
+
+	/**
+	 * Returns the triple table for pos1 > pos2 > pos3, indexed by {@link #getTripleIndex},
+	 * or null if there are no triple tuples at these positions.
+	 */
+	public double[] getTripleTableSorted(int pos1, int pos2, int pos3) {
+		return triples[tripleIndex(pos1, pos2, pos3)];
+	}
+
+	/** index into a triple table, for pos1 > pos2 > pos3 */
+	public int getTripleIndex(int pos2, int pos3, int rc1, int rc2, int rc3) {
+		return rcTripleIndex(pos2, pos3, rc1, rc2, rc3);
+	}
+
+	public double calcEnergy(int[] conf) {
+
+		double energy = offset;
+
+		for (int pos1=0; pos1<numPos; pos1++) {
+
+			int rc1 = conf[pos1];
+			if (rc1 == Conf.Unassigned) {
+				continue;
+			}
+
+			// we're not fitting singles, so missing singles are fine
+			energy += singles[pos1][rc1];
+
+			for (int pos2=0; pos2<pos1; pos2++) {
+
+				int rc2 = conf[pos2];
+				if (rc2 == Conf.Unassigned) {
+					continue;
+				}
+
+				// we always fit to dense pairs, confs shouldn't be using pruned pairs
+				int pairi = pairIndex(pos1, pos2);
+				int rcsi = rcPairIndex(pos2, rc1, rc2);
+				if (!hasPairs[pairi][rcsi]) {
+					throw new TuplesIndex.NoSuchTupleException(new RCTuple(pos1, rc1, pos2, rc2), conf);
+				}
+				energy += pairs[pairi][rcsi];
+
+				for (int pos3 : triplePos3[pairi]) {
+
+					int rc3 = conf[pos3];
+					if (rc3 == Conf.Unassigned) {
+						continue;
+					}
+
+					energy += triples[tripleIndex(pos1, pos2, pos3)][rcTripleIndex(pos2, pos3, rc1, rc2, rc3)];
+				}
+			}
+		}
+
+		return energy;
+	}
+}
@@ -32,6 +32,7 @@
 
 package edu.duke.cs.osprey.lute;
 
+import edu.duke.cs.osprey.astar.conf.ConfAStarNode;
 import edu.duke.cs.osprey.astar.conf.ConfIndex;
 import edu.duke.cs.osprey.astar.conf.RCs;
 import edu.duke.cs.osprey.astar.conf.scoring.AStarScorer;
@@ -40,84 +41,266 @@ import edu.duke.cs.osprey.astar.conf.scoring.AStarScorer;
 public class LUTEHScorer implements AStarScorer {
 
 	public final LUTEConfEnergyCalculator ecalc;
+	public final LUTEEnergyTables tables;
+
+	// mins over triples with one undefined position, for the current RCs
+	// indexed by pos1 > pos2 > pos3, then by rc index at pos1, rc index at pos2
+	// null where there are no triples
+	private RCs minsRCs = null;
+	private double[][][][] minTriples = null;
+
+	// energies for the current node
+	private ConfAStarNode cachedNode = null;
+	private double[][] definedEnergies; // indexed by pos, rc index
+	private double[][][] undefinedEnergies; // indexed by pos1 > pos2, then by rc index at pos1, rc index at pos2
 
 	public LUTEHScorer(LUTEConfEnergyCalculator ecalc) {
 		this.ecalc = ecalc;
+		this.tables = ecalc.tables;
 	}
 
 	@Override
 	public AStarScorer make() {
-		return new LUTEHScorer(ecalc);
+		LUTEHScorer other = new LUTEHScorer(ecalc);
+		// the mins don't change after they're computed, so share them
+		if (minsRCs != null) {
+			other.initMins(minsRCs, minTriples);
+		}
+		return other;
 	}
 
+	private void initMins(RCs rcs, double[][][][] minTriples) {
 
-	@Override
-	public double calc(ConfIndex index, RCs rcs) {
+		this.minsRCs = rcs;
+		this.minTriples = minTriples;
+
+		// allocate space for the cache
+		cachedNode = null;
+		int numPos = tables.numPos;
+		definedEnergies = new double[numPos][];
+		undefinedEnergies = new double[numPos][][];
+		for (int pos1=0; pos1<numPos; pos1++) {
+			definedEnergies[pos1] = new double[rcs.getNum(pos1)];
+			undefinedEnergies[pos1] = new double[pos1][];
+			for (int pos2=0; pos2<pos1; pos2++) {
+				undefinedEnergies[pos1][pos2] = new double[rcs.getNum(pos1)*rcs.getNum(pos2)];
+			}
+		}
+	}
+
+	private void updateMins(RCs rcs) {
+
+		if (rcs == minsRCs) {
+			return;
+		}
 
 		// for the moment, LUTE only uses up to triple tuples, so we only need to check up to triples here too
 
-		// TODO: this implementation is very naive... optimize it?
-		// although, design algos without minimization are stupidly fast... we probably don't need to optimize this yet?
+		// pre-compute the mins over the lowest position in each triple
+		int numPos = tables.numPos;
+		double[][][][] minTriples = new double[numPos][][][];
+		for (int pos1=0; pos1<numPos; pos1++) {
+			int[] rcs1 = rcs.get(pos1);
+			minTriples[pos1] = new double[pos1][][];
+			for (int pos2=0; pos2<pos1; pos2++) {
+				int[] rcs2 = rcs.get(pos2);
+				minTriples[pos1][pos2] = new double[pos2][];
+				for (int pos3=0; pos3<pos2; pos3++) {
+					int[] rcs3 = rcs.get(pos3);
 
-		double hscore = 0;
+					// no triples here? then there's nothing to minimize
+					double[] table = tables.getTripleTableSorted(pos1, pos2, pos3);
+					if (table == null) {
+						continue;
+					}
+
+					double[] mins = new double[rcs1.length*rcs2.length];
+					for (int j1=0; j1<rcs1.length; j1++) {
+						for (int j2=0; j2<rcs2.length; j2++) {
+							double minEnergy = Double.POSITIVE_INFINITY;
+							for (int rc3 : rcs3) {
+								minEnergy = Math.min(minEnergy, table[tables.getTripleIndex(pos2, pos3, rcs1[j1], rcs2[j2], rc3)]);
+							}
+							mins[j1*rcs2.length + j2] = minEnergy;
+						}
+					}
+					minTriples[pos1][pos2][pos3] = mins;
+				}
+			}
+		}
+
+		initMins(rcs, minTriples);
+	}
+
+	private void calcCachedEnergies(ConfIndex index, RCs rcs) {
 
-		// get the score for each undefined position
 		for (int i=0; i<index.numUndefined; i++) {
 			int pos1 = index.undefinedPos[i];
+			int[] rcs1 = rcs.get(pos1);
 
-			// min over possible assignments to pos1
-			double pos1Energy = Double.POSITIVE_INFINITY;
-			for (int rc1 : rcs.get(pos1)) {
+			for (int j1=0; j1<rcs1.length; j1++) {
+				int rc1 = rcs1[j1];
 
-				double rc1Energy = ecalc.getEnergy(pos1, rc1);
+				double energy = tables.getSingle(pos1, rc1);
 
 				// interactions with defined residues
 				for (int j=0; j<index.numDefined; j++) {
 					int pos2 = index.definedPos[j];
 					int rc2 = index.definedRCs[j];
 
-					rc1Energy += ecalc.getEnergy(pos1, rc1, pos2, rc2);
+					energy += tables.getPair(pos1, rc1, pos2, rc2);
 
 					for (int k=0; k<j; k++) {
 						int pos3 = index.definedPos[k];
 						int rc3 = index.definedRCs[k];
 
-						rc1Energy += ecalc.getEnergy(pos1, rc1, pos2, rc2, pos3, rc3);
+						energy += tables.getTriple(pos1, rc1, pos2, rc2, pos3, rc3);
 					}
 				}
 
-				// interactions with undefined residues
-				for (int j=0; j<i; j++) {
-					int pos2 = index.undefinedPos[j];
+				definedEnergies[pos1][j1] = energy;
+			}
 
-					// min over possible assignments to pos2
-					double minrc2Energy = Double.POSITIVE_INFINITY;
-					for (int rc2 : rcs.get(pos2)) {
+			// interactions with undefined residues
+			for (int i2=0; i2<i; i2++) {
+				int pos2 = index.undefinedPos[i2];
+				int[] rcs2 = rcs.get(pos2);
+				double[] energies = undefinedEnergies[pos1][pos2];
+
+				for (int j1=0; j1<rcs1.length; j1++) {
+					int rc1 = rcs1[j1];
+					for (int j2=0; j2<rcs2.length; j2++) {
+						int rc2 = rcs2[j2];
 
 						// pair with pos2
-						double rc2Energy = ecalc.getEnergy(pos1, rc1, pos2, rc2);
+						double energy = tables.getPair(pos1, rc1, pos2, rc2);
 
 						// triples with defined positions
 						for (int k=0; k<index.numDefined; k++) {
-							int pos3 = index.definedPos[k];
-							int rc3 = index.definedRCs[k];
-							rc2Energy += ecalc.getEnergy(pos1, rc1, pos2, rc2, pos3, rc3);
+							energy += tables.getTriple(pos1, rc1, pos2, rc2, index.definedPos[k], index.definedRCs[k]);
 						}
 
 						// triples with undefined positions
-						for (int k=0; k<j; k++) {
-							int pos3 = index.undefinedPos[k];
-
-							// min over rcs
-							double minrc3Energy = Double.POSITIVE_INFINITY;
-							for (int rc3 : rcs.get(pos3)) {
-								double rc3Energy = ecalc.getEnergy(pos1, rc1, pos2, rc2, pos3, rc3);
-								minrc3Energy = Math.min(minrc3Energy, rc3Energy);
+						for (int i3=0; i3<i2; i3++) {
+							double[] mins = minTriples[pos1][pos2][index.undefinedPos[i3]];
+							if (mins != null) {
+								energy += mins[j1*rcs2.length + j2];
 							}
-
-							rc2Energy += minrc3Energy;
 						}
 
+						energies[j1*rcs2.length + j2] = energy;
+					}
+				}
+			}
+		}
+	}
+
+	@Override
+	public double calc(ConfIndex index, RCs rcs) {
+
+		updateMins(rcs);
+		calcCachedEnergies(index, rcs);
+		cachedNode = index.node;
+
+		double hscore = 0;
+
+		// get the score for each undefined position
+		for (int i=0; i<index.numUndefined; i++) {
+			int pos1 = index.undefinedPos[i];
+			int[] rcs1 = rcs.get(pos1);
+
+			// min over possible assignments to pos1
+			double pos1Energy = Double.POSITIVE_INFINITY;
+			for (int j1=0; j1<rcs1.length; j1++) {
+
+				double rc1Energy = definedEnergies[pos1][j1];
+
+				// interactions with undefined residues
+				for (int i2=0; i2<i; i2++) {
+					int pos2 = index.undefinedPos[i2];
+					int n2 = rcs.getNum(pos2);
+					double[] energies = undefinedEnergies[pos1][pos2];
+
+					// min over possible assignments to pos2
+					double minrc2Energy = Double.POSITIVE_INFINITY;
+					for (int j2=0; j2<n2; j2++) {
+						minrc2Energy = Math.min(minrc2Energy, energies[j1*n2 + j2]);
+					}
+
+					rc1Energy += minrc2Energy;
+				}
+
+				pos1Energy = Math.min(pos1Energy, rc1Energy);
+			}
+
+			hscore += pos1Energy;
+		}
+
+		return hscore;
+	}
+
+	@Override
+	public double calcDifferential(ConfIndex index, RCs rcs, int nextPos, int nextRc) {
+
+		// OPTIMIZATION: this function gets hit a LOT!
+		// so update the energies cached for the parent node with the next assignment,
+		// instead of computing everything from scratch
+
+		updateMins(rcs);
+		if (index.node == null || cachedNode != index.node) {
+			calcCachedEnergies(index, rcs);
+			cachedNode = index.node;
+		}
+
+		double hscore = 0;
+
+		for (int i=0; i<index.numUndefined; i++) {
+			int pos1 = index.undefinedPos[i];
+
+			// don't score at nextPos, it's defined now
+			if (pos1 == nextPos) {
+				continue;
+			}
+
+			int[] rcs1 = rcs.get(pos1);
+
+			// min over possible assignments to pos1
+			double pos1Energy = Double.POSITIVE_INFINITY;
+			for (int j1=0; j1<rcs1.length; j1++) {
+				int rc1 = rcs1[j1];
+
+				double rc1Energy = definedEnergies[pos1][j1];
+
+				// add interactions with the next assignment
+				rc1Energy += tables.getPair(pos1, rc1, nextPos, nextRc);
+				for (int k=0; k<index.numDefined; k++) {
+					rc1Energy += tables.getTriple(pos1, rc1, nextPos, nextRc, index.definedPos[k], index.definedRCs[k]);
+				}
+
+				// interactions with undefined residues
+				for (int i2=0; i2<i; i2++) {
+					int pos2 = index.undefinedPos[i2];
+					if (pos2 == nextPos) {
+						continue;
+					}
+
+					int[] rcs2 = rcs.get(pos2);
+					double[] energies = undefinedEnergies[pos1][pos2];
+
+					// nextPos moved from the undefined triples to the defined triples
+					boolean hasNextTriples = tables.hasTriples(pos1, pos2, nextPos);
+					double[] mins = nextPos < pos2 ? minTriples[pos1][pos2][nextPos] : null;
+
+					// min over possible assignments to pos2
+					double minrc2Energy = Double.POSITIVE_INFINITY;
+					for (int j2=0; j2<rcs2.length; j2++) {
+						double rc2Energy = energies[j1*rcs2.length + j2];
+						if (hasNextTriples) {
+							rc2Energy += tables.getTriple(pos1, rc1, pos2, rcs2[j2], nextPos, nextRc);
+						}
+						if (mins != null) {
+							rc2Energy -= mins[j1*rcs2.length + j2];
+						}
 						minrc2Energy = Math.min(minrc2Energy, rc2Energy);
 					}
 
@@ -67,6 +67,9 @@ import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.math.MathContext;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.PriorityBlockingQueue;
 
 public class MARKStarBound implements PartitionFunction.WithConfDB {
 
@@ -94,11 +97,16 @@ public class MARKStarBound implements PartitionFunction.WithConfDB {
     public String stateName = String.format("%4f",Math.random());
     private int numPartialMinimizations;
     private ArrayList<Integer> minList;
+    // guards the minimization counts and reductions, which the listeners and the scoring threads both update
+    private final Object statsLock = new Object();
     protected double internalTimeAverage;
     protected double leafTimeAverage;
     private double cleanupTime;
     private boolean nonZeroLower;
-    protected static TaskExecutor loopTasks;
+    // pfuncs running side-by-side (eg, in BBK* or MSK*) share the loop executors, so they don't each keep a thread pool alive,
+    // but each pfunc tracks its own tasks, so they don't wait on each other's tasks
+    private static final Map<List<Object>,TaskExecutor> sharedLoopTasks = new HashMap<>();
+    protected TaskExecutor.Tracker loopTasks;
 
     private ConfDB confDB;
     private ConfDB.Key confDBKey;
@@ -197,7 +205,9 @@ public class MARKStarBound implements PartitionFunction.WithConfDB {
 
     @Override
     public int getNumConfsEvaluated() {
-        return numConfsEnergied;
+        synchronized (statsLock) {
+            return numConfsEnergied;
+        }
     }
 
     public int getNumConfsScored() {
@@ -205,7 +215,9 @@ public class MARKStarBound implements PartitionFunction.WithConfDB {
     }
 
     private int workDone() {
-        return numInternalNodesProcessed + numConfsEnergied + numConfsScored + numPartialMinimizations ;
+        synchronized (statsLock) {
+            return numInternalNodesProcessed + numConfsEnergied + numConfsScored + numPartialMinimizations;
+        }
     }
 
     @Override
@@ -237,6 +249,7 @@ public class MARKStarBound implements PartitionFunction.WithConfDB {
             status = Status.Unstable;
         loopTasks.waitForFinish();
         minimizingEcalc.tasks.waitForFinish();
+        mergeDeltas();
         BigDecimal averageReduction = BigDecimal.ZERO;
         int totalMinimizations = numConfsEnergied + numPartialMinimizations;
         if(totalMinimizations> 0)
@@ -294,7 +307,7 @@ public class MARKStarBound implements PartitionFunction.WithConfDB {
      */
     // We keep track of the root node for computing our K* bounds
     protected MARKStarNode rootNode;
-    // Heap of nodes for recursive expansion
+    // Heap of nodes for recursive expansion, safe to read from the worker threads
     protected final Queue<MARKStarNode> queue;
     protected double epsilonBound = Double.POSITIVE_INFINITY;
     private ConfIndex confIndex;
@@ -328,7 +341,7 @@ public class MARKStarBound implements PartitionFunction.WithConfDB {
     BoltzmannCalculator bc = new BoltzmannCalculator(PartitionFunction.decimalPrecision);
     private boolean computedCorrections = false;
     private long loopPartialTime = 0;
-    private Set<String> correctedTuples = Collections.synchronizedSet(new HashSet<>());
+    private Set<String> correctedTuples = ConcurrentHashMap.newKeySet();
     private BigDecimal stabilityThreshold;
     private double leafTimeSum = 0;
     private double internalTimeSum = 0;
@@ -345,7 +358,7 @@ public class MARKStarBound implements PartitionFunction.WithConfDB {
 
     public MARKStarBound(SimpleConfSpace confSpace, EnergyMatrix rigidEmat, EnergyMatrix minimizingEmat,
                          ConfEnergyCalculator minimizingConfEcalc, RCs rcs, Parallelism parallelism) {
-        this.queue = new PriorityQueue<>();
+        this.queue = new PriorityBlockingQueue<>();
         this.minimizingEcalc = minimizingConfEcalc;
         gscorerFactory = (emats) -> new PairwiseGScorer(emats);
 
@@ -396,6 +409,38 @@ public class MARKStarBound implements PartitionFunction.WithConfDB {
         public AStarScorer negatedhscorer;
         public AStarScorer rigidscorer;
         public ConfEnergyCalculator ecalc;
+        public BoundDeltas deltas = new BoundDeltas();
+    }
+
+    /**
+     * Bound bookkeeping recorded by the worker threads.
+     * Each score context keeps its own deltas, so scoring never contends on shared totals.
+     * The deltas get folded into the totals by {@link #mergeDeltas()} once the workers are idle.
+     */
+    protected static class BoundDeltas {
+        public BigDecimal zCorrection = BigDecimal.ZERO;
+        public int numConfsScored = 0;
+        public double partialTime = 0;
+
+        public void clear() {
+            zCorrection = BigDecimal.ZERO;
+            numConfsScored = 0;
+            partialTime = 0;
+        }
+    }
+
+    protected void mergeDeltas() {
+        // contexts are only returned to the pool when their tasks are done, so all the deltas in the pool are complete
+        synchronized (contexts) {
+            for (ScoreContext context : contexts) {
+                BoundDeltas deltas = context.deltas;
+                cumulativeZCorrection = cumulativeZCorrection.add(deltas.zCorrection);
+                upperReduction_PartialMin = upperReduction_PartialMin.add(deltas.zCorrection);
+                numConfsScored += deltas.numConfsScored;
+                loopPartialTime += deltas.partialTime;
+                deltas.clear();
+            }
+        }
     }
 
 
@@ -408,11 +453,17 @@ public class MARKStarBound implements PartitionFunction.WithConfDB {
 
         parallelism = val;
         //loopTasks = minimizingEcalc.tasks;
-        if(loopTasks == null)
-            loopTasks = parallelism.makeTaskExecutor(1000);
+        loopTasks = getSharedLoopTasks(parallelism).tracker();
         contexts.allocate(parallelism.getParallelism());
     }
 
+    private static synchronized TaskExecutor getSharedLoopTasks(Parallelism parallelism) {
+        return sharedLoopTasks.computeIfAbsent(
+            Arrays.asList(parallelism.getParallelism(), parallelism.workStealing),
+            key -> parallelism.makeTaskExecutor(1000)
+        );
+    }
+
     private void debugEpsilon(double curEpsilon) {
         if(debug && curEpsilon < epsilonBound) {
             System.err.println("Epsilon just got bigger.");
@@ -424,10 +475,19 @@ public class MARKStarBound implements PartitionFunction.WithConfDB {
     }
 
     protected void recordCorrection(double lowerBound, double correction) {
+        BigDecimal reduction = calcCorrectionReduction(lowerBound, correction);
+        cumulativeZCorrection = cumulativeZCorrection.add(reduction);
+        upperReduction_PartialMin = upperReduction_PartialMin.add(reduction);
+    }
+
+    protected void recordCorrection(BoundDeltas deltas, double lowerBound, double correction) {
+        deltas.zCorrection = deltas.zCorrection.add(calcCorrectionReduction(lowerBound, correction));
+    }
+
+    private BigDecimal calcCorrectionReduction(double lowerBound, double correction) {
         BigDecimal upper = bc.calc(lowerBound);
         BigDecimal corrected = bc.calc(lowerBound + correction);
-        cumulativeZCorrection = cumulativeZCorrection.add(upper.subtract(corrected));
-        upperReduction_PartialMin = upperReduction_PartialMin.add(upper.subtract(corrected));
+        return upper.subtract(corrected);
     }
     private void recordReduction(double lowerBound, double upperBound, double energy) {
         BigDecimal lowerBoundWeight = bc.calc(lowerBound);
@@ -479,7 +539,7 @@ public class MARKStarBound implements PartitionFunction.WithConfDB {
         System.out.println(String.format("Current overall error bound: %12.10f, spread of [%12.6e, %12.6e]",epsilonBound, rootNode.getLowerBound(), rootNode.getUpperBound()));
         List<MARKStarNode> internalNodes = new ArrayList<>();
         List<MARKStarNode> leafNodes = new ArrayList<>();
-        List<MARKStarNode> newNodes = Collections.synchronizedList(new ArrayList<>());
+        Queue<MARKStarNode> newNodes = new ConcurrentLinkedQueue<>();
         BigDecimal internalZ = BigDecimal.ONE;
         BigDecimal leafZ = BigDecimal.ONE;
         int numNodes = 0;
@@ -565,7 +625,7 @@ public class MARKStarBound implements PartitionFunction.WithConfDB {
 
 
     boolean isStable(BigDecimal stabilityThreshold) {
-        return numConfsEnergied <= 0 || stabilityThreshold == null
+        return getNumConfsEvaluated() <= 0 || stabilityThreshold == null
                 || MathTools.isGreaterThanOrEqual(rootNode.getUpperBound(), stabilityThreshold);
     }
 
@@ -623,7 +683,7 @@ public class MARKStarBound implements PartitionFunction.WithConfDB {
         queue.addAll(leftoverLeaves);
     }
 
-    protected void loopCleanup(List<MARKStarNode> newNodes, Stopwatch loopWatch, int numNodes) {
+    protected void loopCleanup(Collection<MARKStarNode> newNodes, Stopwatch loopWatch, int numNodes) {
         for(MARKStarNode node: newNodes) {
             if(node != null)
                 queue.add(node);
@@ -644,7 +704,7 @@ public class MARKStarBound implements PartitionFunction.WithConfDB {
         System.out.println(String.format("Loop complete. Bounds are now [%12.6e,%12.6e]",rootNode.getLowerBound(),rootNode.getUpperBound()));
     }
 
-    protected boolean correctedNode(List<MARKStarNode> newNodes, MARKStarNode curNode, Node node) {
+    protected boolean correctedNode(Collection<MARKStarNode> newNodes, MARKStarNode curNode, Node node) {
         assert(curNode != null && node != null);
         double confCorrection = correctionMatrix.confE(node.assignments);
         if((node.getLevel() == RCs.getNumPos() && node.getConfLowerBound()< confCorrection)
@@ -660,7 +720,7 @@ public class MARKStarBound implements PartitionFunction.WithConfDB {
         return false;
     }
 
-    private MARKStarNode drillDown(List<MARKStarNode> newNodes, MARKStarNode curNode, Node node) {
+    private MARKStarNode drillDown(Collection<MARKStarNode> newNodes, MARKStarNode curNode, Node node) {
         try(ObjectPool.Checkout<ScoreContext> checkout = contexts.autoCheckout()) {
             ScoreContext context = checkout.get();
             ConfIndex confIndex = context.index;
@@ -704,7 +764,7 @@ public class MARKStarBound implements PartitionFunction.WithConfDB {
                     double confUpperbound = rigiddiff + maxhdiff;
                     child.computeNumConformations(RCs);
                     if (diff < confCorrection) {
-                        recordCorrection(confLowerBound, confCorrection - diff);
+                        recordCorrection(context.deltas, confLowerBound, confCorrection - diff);
                         confLowerBound = confCorrection + hdiff;
                     }
                     child.setBoundsFromConfLowerAndUpper(confLowerBound, confUpperbound);
@@ -718,18 +778,18 @@ public class MARKStarBound implements PartitionFunction.WithConfDB {
                     double confCorrection = correctionMatrix.confE(child.assignments);
                     double lowerbound = minimizingEmat.confE(child.assignments);
                     if (lowerbound < confCorrection) {
-                        recordCorrection(lowerbound, confCorrection - lowerbound);
+                        recordCorrection(context.deltas, lowerbound, confCorrection - lowerbound);
                     }
                     checkBounds(confCorrection, confRigid);
                     child.setBoundsFromConfLowerAndUpper(confCorrection, confRigid);
                     child.gscore = child.getConfLowerBound();
                     confLowerBound = lowerbound;
                     child.rigidScore = confRigid;
-                    numConfsScored++;
+                    context.deltas.numConfsScored++;
                     progress.reportLeafNode(child.gscore, queue.size(), epsilonBound);
                 }
                 partialTime.stop();
-                loopPartialTime += partialTime.getTimeS();
+                context.deltas.partialTime += partialTime.getTimeS();
 
 
                 if (Double.isNaN(child.rigidScore))
@@ -750,7 +810,7 @@ public class MARKStarBound implements PartitionFunction.WithConfDB {
         }
     }
 
-    protected void boundLowestBoundConfUnderNode(MARKStarNode startNode, List<MARKStarNode> generatedNodes) {
+    protected void boundLowestBoundConfUnderNode(MARKStarNode startNode, Collection<MARKStarNode> generatedNodes) {
         Comparator<MARKStarNode> confBoundComparator = Comparator.comparingDouble(o -> o.getConfSearchNode().getConfLowerBound());
         PriorityQueue<MARKStarNode> drillQueue = new PriorityQueue<>(confBoundComparator);
         drillQueue.add(startNode);
@@ -790,7 +850,7 @@ public class MARKStarBound implements PartitionFunction.WithConfDB {
 
     }
 
-    protected void processPartialConfNode(List<MARKStarNode> newNodes, MARKStarNode curNode, Node node) {
+    protected void processPartialConfNode(Collection<MARKStarNode> newNodes, MARKStarNode curNode, Node node) {
         // which pos to expand next?
         node.index(confIndex);
         int nextPos = order.getNextPos(confIndex, RCs);
@@ -835,7 +895,7 @@ public class MARKStarBound implements PartitionFunction.WithConfDB {
                         child.computeNumConformations(RCs);
                         double lowerbound = minimizingEmat.confE(child.assignments);
                         if(diff < confCorrection) {
-                            recordCorrection(confLowerBound, confCorrection - diff);
+                            recordCorrection(context.deltas, confLowerBound, confCorrection - diff);
                             confLowerBound = confCorrection + hdiff;
                         }
                         child.setBoundsFromConfLowerAndUpper(confLowerBound, confUpperbound);
@@ -850,17 +910,17 @@ public class MARKStarBound implements PartitionFunction.WithConfDB {
                         double lowerbound = minimizingEmat.confE(child.assignments);
 
                         if(lowerbound < confCorrection) {
-                            recordCorrection(lowerbound, confCorrection - lowerbound);
+                            recordCorrection(context.deltas, lowerbound, confCorrection - lowerbound);
                         }
                         checkBounds(confCorrection,confRigid);
                         child.setBoundsFromConfLowerAndUpper(confCorrection, confRigid);
                         child.gscore = confCorrection;
                         child.rigidScore = confRigid;
-                        numConfsScored++;
+                        context.deltas.numConfsScored++;
                         progress.reportLeafNode(child.gscore, queue.size(), epsilonBound);
                     }
                     partialTime.stop();
-                    loopPartialTime+=partialTime.getTimeS();
+                    context.deltas.partialTime+=partialTime.getTimeS();
 
 
                     return child;
@@ -886,7 +946,7 @@ public class MARKStarBound implements PartitionFunction.WithConfDB {
     }
 
 
-    protected void processFullConfNode(List<MARKStarNode> newNodes, MARKStarNode curNode, Node node) {
+    protected void processFullConfNode(Collection<MARKStarNode> newNodes, MARKStarNode curNode, Node node) {
         double confCorrection = correctionMatrix.confE(node.assignments);
         if(node.getConfLowerBound() < confCorrection || node.gscore < confCorrection) {
             double oldg = node.gscore;
@@ -897,6 +957,10 @@ public class MARKStarBound implements PartitionFunction.WithConfDB {
             newNodes.add(curNode);
             return;
         }
+        // Record pre-minimization bounds so we can parse out how much minimization helped for upper and lower bounds
+        double oldConfUpper = node.getConfUpperBound();
+        double oldConfLower = node.getConfLowerBound();
+        double oldgscore = node.gscore;
         loopTasks.submit(() -> {
             try (ObjectPool.Checkout<ScoreContext> checkout = contexts.autoCheckout()) {
                 ScoreContext context = checkout.get();
@@ -919,9 +983,6 @@ public class MARKStarBound implements PartitionFunction.WithConfDB {
                 double energy = analysis.epmol.energy;
                 double newConfUpper = energy;
                 double newConfLower = energy;
-                // Record pre-minimization bounds so we can parse out how much minimization helped for upper and lower bounds
-                double oldConfUpper = node.getConfUpperBound();
-                double oldConfLower = node.getConfLowerBound();
                 checkConfLowerBound(node, energy);
                 if (newConfUpper > oldConfUpper) {
                     System.err.println("Upper bounds got worse after minimization:" + newConfUpper
@@ -932,24 +993,22 @@ public class MARKStarBound implements PartitionFunction.WithConfDB {
                     newConfLower = oldConfUpper;
                 }
                 curNode.setBoundsFromConfLowerAndUpper(newConfLower,newConfUpper);
-                double oldgscore = node.gscore;
                 node.gscore = newConfLower;
                 String out = "Energy = " + String.format("%6.3e", energy) + ", [" + (node.getConfLowerBound()) + "," + (node.getConfUpperBound()) + "]";
                 debugPrint(out);
                 curNode.markUpdated();
-                synchronized(this) {
-                    numConfsEnergied++;
-                    minList.set(conf.getAssignments().length-1,minList.get(conf.getAssignments().length-1)+1);
-                    recordReduction(oldConfLower, oldConfUpper, energy);
-                    printMinimizationOutput(node, newConfLower, oldgscore);
-                }
-
-
+                return energy;
             }
-            return null;
         },
-                // Dummy function. We're not doing anything here.
-                (Node child) -> {
+                // listeners are called one at a time, but the scoring threads count partial minimizations too
+                (Double energy) -> {
+                    synchronized (statsLock) {
+                        numConfsEnergied++;
+                        int confSize = node.assignments.length;
+                        minList.set(confSize-1,minList.get(confSize-1)+1);
+                        recordReduction(oldConfLower, oldConfUpper, energy);
+                    }
+                    printMinimizationOutput(node, node.gscore, oldgscore);
                     progress.reportLeafNode(node.gscore, queue.size(), epsilonBound);
                     if(!node.isMinimized())
                         newNodes.add(curNode);
@@ -1043,11 +1102,15 @@ public class MARKStarBound implements PartitionFunction.WithConfDB {
                 double tupleBounds = rigidEmat.getInternalEnergy(tuple) - minimizingEmat.getInternalEnergy(tuple);
                 if(tupleBounds < triplethreshhold)
                     continue;
-                minList.set(tuple.size()-1,minList.get(tuple.size()-1)+1);
+                synchronized (statsLock) {
+                    minList.set(tuple.size()-1,minList.get(tuple.size()-1)+1);
+                }
                 computeDifference(tuple, minimizingEcalc);
                 localMinimizations++;
             }
-            numPartialMinimizations+=localMinimizations;
+            synchronized (statsLock) {
+                numPartialMinimizations+=localMinimizations;
+            }
             progress.reportPartialMinimization(localMinimizations, epsilonBound);
         }
         correctionTime.stop();
@@ -1059,9 +1122,8 @@ public class MARKStarBound implements PartitionFunction.WithConfDB {
 
     private void computeDifference(RCTuple tuple, ConfEnergyCalculator ecalc) {
         computedCorrections = true;
-        if(correctedTuples.contains(tuple.stringListing()))
+        if(!correctedTuples.add(tuple.stringListing()))
             return;
-        correctedTuples.add(tuple.stringListing());
         if(correctionMatrix.hasHigherOrderTermFor(tuple))
             return;
         minimizingEcalc.calcEnergyAsync(tuple, (minimizedTuple) -> {
@@ -1099,8 +1161,10 @@ public class MARKStarBound implements PartitionFunction.WithConfDB {
             RCTuple confTuple = conf.toTuple();
             if(minimizingEmat.getInternalEnergy(confTuple) == rigidEmat.getInternalEnergy(confTuple))
                 continue;
-            numPartialMinimizations++;
-            minList.set(confTuple.size()-1,minList.get(confTuple.size()-1)+1);
+            synchronized (statsLock) {
+                numPartialMinimizations++;
+                minList.set(confTuple.size()-1,minList.get(confTuple.size()-1)+1);
+            }
             if (confTuple.size() > 2 && confTuple.size() < RCs.getNumPos ()){
                 minimizingEcalc.tasks.submit(() -> {
                     computeTupleCorrection(minimizingEcalc, conf.toTuple());
@@ -1128,10 +1192,9 @@ public class MARKStarBound implements PartitionFunction.WithConfDB {
         double pairwiseLower = minimizingEmat.getInternalEnergy(overlap);
         double partiallyMinimizedLower = ecalc.calcEnergy(overlap).energy;
         progress.reportPartialMinimization(1, epsilonBound);
+        // the correction matrix is safe to update concurrently
         if(partiallyMinimizedLower > pairwiseLower)
-        synchronized (correctionMatrix) {
             correctionMatrix.setHigherOrder(overlap, partiallyMinimizedLower - pairwiseLower);
-        }
         progress.reportPartialMinimization(1, epsilonBound);
     }
 
@@ -1157,6 +1220,7 @@ public class MARKStarBound implements PartitionFunction.WithConfDB {
     }
 
     protected void updateBound() {
+        mergeDeltas();
         double curEpsilon = epsilonBound;
         Stopwatch time = new Stopwatch().start();
         epsilonBound = rootNode.computeEpsilonErrorBounds();
@@ -47,6 +47,7 @@ import edu.duke.cs.osprey.tools.Stopwatch;
 
 import java.math.BigDecimal;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 public class MARKStarBoundFastQueues extends MARKStarBound {
 
@@ -66,7 +67,7 @@ public class MARKStarBoundFastQueues extends MARKStarBound {
         System.out.println(String.format("Current overall error bound: %12.10f, spread of [%12.6e, %12.6e]",epsilonBound, rootNode.getLowerBound(), rootNode.getUpperBound()));
         List<MARKStarNode> internalNodes = new ArrayList<>();
         List<MARKStarNode> leafNodes = new ArrayList<>();
-        List<MARKStarNode> newNodes = Collections.synchronizedList(new ArrayList<>());
+        Queue<MARKStarNode> newNodes = new ConcurrentLinkedQueue<>();
         BigDecimal internalZ = BigDecimal.ONE;
         BigDecimal leafZ = BigDecimal.ONE;
         int numNodes = 0;
@@ -10,10 +10,12 @@ import edu.duke.cs.osprey.tools.Log;
 import org.slf4j.bridge.SLF4JBridgeHandler;
 
 import java.io.Serializable;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 /**
@@ -27,6 +29,12 @@ public class Cluster {
 
 	public static final boolean DefaultClientIsMember = true;
 
+	/**
+	 * How many task results each member can have waiting for the client before member threads block.
+	 * When the client falls behind, members stop taking new tasks until the client catches up.
+	 */
+	private static final int GatherSizePerMember = 256;
+
 	// TODO: configure deserialization protection with a whitelist?
 	// see: https://docs.hazelcast.org/docs/latest/manual/html-single/index.html#untrusted-deserialization-protection
 
@@ -152,7 +160,7 @@ public class Cluster {
 		private final IQueue<TaskResult<?>> gather;
 
 		private int nextContextGroupId = 0;
-		private Cluster.Task<?,Object> deferredTask = null;
+		private final List<Cluster.Task<?,Object>> deferredTasks = new ArrayList<>();
 
 		public Member(Parallelism parallelism) {
 
@@ -164,6 +172,7 @@ public class Cluster {
 			cfg.setClusterName(id);
 			cfg.setInstanceName(name);
 			cfg.getQueueConfig(TasksScatterName).setMaxSize(numMembers()*2);
+			cfg.getQueueConfig(TasksGatherName).setMaxSize(numMembers()*GatherSizePerMember);
 
 			// disable Hazelcast's automatic phone home "feature", which is on by default
 			cfg.setProperty("hazelcast.phone.home.enabled", "false");
@@ -195,8 +204,7 @@ public class Cluster {
 
 		@Override
 		public <T> void submit(TaskExecutor.Task<T> task, TaskListener<T> listener) {
-			// TODO: implement me?
-			//  for stuff like the reference energies
+			// member nodes only pull work from the client, so they never have their own tasks to submit
 			throw new UnsupportedOperationException("Member nodes accept tasks from the Client node, not the TaskExecutor interface");
 		}
 
@@ -204,6 +212,8 @@ public class Cluster {
 
 			private final int contextGroupId = nextContextGroupId++;
 
+			private final AtomicInteger numIdleThreads = new AtomicInteger(parallelism.getParallelism());
+
 			private ActiveId getActiveId() {
 
 				// try to check for the alive flag for a bit
@@ -236,11 +246,12 @@ public class Cluster {
 				try (Threads threads = new Threads(parallelism.getParallelism(), 0)) {
 
 					// handle any deferred tasks from previous groups
-					if (deferredTask != null) {
-						processTask(threads, deferredTask);
-						deferredTask = null;
+					for (Cluster.Task<?,Object> task : deferredTasks) {
+						processTask(threads, task);
 					}
+					deferredTasks.clear();
 
+					List<Cluster.Task<?,Object>> tasks = new ArrayList<>();
 					while (true) {
 
 						// stop processing this group if it's inactive, or another later group has activated
@@ -250,23 +261,32 @@ public class Cluster {
 						}
 
 						// look for tasks in the queue to process
-						Cluster.Task<?,Object> task;
+						// take only as many tasks as we have idle threads, so faster members pull more of the work,
+						// and slower members don't sit on tasks other members could be running
+						tasks.clear();
 						try {
-							task = scatter.poll(1000, TimeUnit.MILLISECONDS);
+							Cluster.Task<?,Object> task = scatter.poll(1000, TimeUnit.MILLISECONDS);
+							if (task != null) {
+								tasks.add(task);
+								int numIdle = numIdleThreads.get();
+								if (numIdle > 1) {
+									scatter.drainTo(tasks, numIdle - 1);
+								}
+							}
 						} catch (InterruptedException ex) {
 							// interrupted, stop looking for new tasks
 							break;
 						}
 
-						// did the group change while we were waiting for this task?
+						// did the group change while we were waiting for these tasks?
 						activeId = getActiveId();
 						if (activeId.id > contextGroupId) {
-							// yup, defer this task until we get to the next context
-							deferredTask = task;
+							// yup, defer these tasks until we get to the next context
+							deferredTasks.addAll(tasks);
 							break;
 						}
 
-						if (task != null) {
+						for (Cluster.Task<?,Object> task : tasks) {
 							processTask(threads, task);
 						}
 					}
@@ -284,6 +304,7 @@ public class Cluster {
 			private void processTask(Threads threads, Cluster.Task<?,Object> task) {
 
 				// process the task on the thread pool
+				numIdleThreads.decrementAndGet();
 				threads.submitLoop(400, TimeUnit.MILLISECONDS, () -> {
 
 					// run the task
@@ -295,7 +316,8 @@ public class Cluster {
 					}
 
 					// send the result back
-					// TODO: what if the queue is full?
+					// if the queue is full, the client is behind, so wait here
+					// this thread stays busy until there's space, so we won't take any more tasks in the meantime
 					try {
 						boolean wasOffered = false;
 						while (!wasOffered) {
@@ -306,6 +328,8 @@ public class Cluster {
 					} catch (Exception ex) {
 						log("ERROR: can't send task result to client node");
 						ex.printStackTrace(System.out);
+					} finally {
+						numIdleThreads.incrementAndGet();
 					}
 				});
 			}
@@ -329,7 +353,8 @@ public class Cluster {
 		private final IQueue<Cluster.Task<?,?>> scatter;
 		private final IQueue<TaskResult<?>> gather;
 
-		private final Map<Long,TaskAndListener<?,?>> tasks = new HashMap<>();
+		// NOTE: tasks are added by the submitting thread, but removed by the listener thread
+		private final Map<Long,TaskAndListener<?,?>> tasks = new ConcurrentHashMap<>();
 		private final AtomicBoolean listenerActive = new AtomicBoolean(true);
 		private final Thread listener;
 
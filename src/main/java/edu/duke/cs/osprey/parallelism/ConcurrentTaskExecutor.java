@@ -45,6 +45,11 @@ public abstract class ConcurrentTaskExecutor extends TaskExecutor {
 		}
 	}
 
+	@Override
+	protected boolean hasException() {
+		return exception.get() != null;
+	}
+
 	public long getNumRunningTasks() {
 		return numTasksStarted.get() - numTasksFinished.get();
 	}
@@ -0,0 +1,203 @@
+package edu.duke.cs.osprey.parallelism;
+
+import edu.duke.cs.tpie.Cleaner;
+import edu.duke.cs.tpie.Cleaner.GarbageDetectable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/**
+ * A task executor backed by a work-stealing {@link ForkJoinPool}, for lots of small tasks.
+ *
+ * Unlike {@link ThreadPoolTaskExecutor}, submitting a task doesn't take a lock, and there's no listener thread.
+ * Finished tasks leave their results in a queue, and whichever worker thread gets there first
+ * calls the waiting listeners in a batch, while the other workers get back to running tasks.
+ * Listeners are still called one at a time, never concurrently, but they can be called on any worker thread.
+ *
+ * Use {@link #submitAll} to submit many tasks at once. The batch gets split recursively among the workers,
+ * and each worker buffers the results of its share of the batch before handing them off to the listeners.
+ */
+public class ForkJoinTaskExecutor extends ConcurrentTaskExecutor implements GarbageDetectable {
+
+	private static class Finished<T> {
+
+		final Task<T> task;
+		final TaskListener<T> listener;
+		final T result;
+
+		Finished(Task<T> task, TaskListener<T> listener, T result) {
+			this.task = task;
+			this.listener = listener;
+			this.result = result;
+		}
+	}
+
+	/**
+	 * Controls how many tasks submit() will buffer beyond the running ones, before it blocks.
+	 * Same idea as {@link ThreadPoolTaskExecutor#queueSize}.
+	 */
+	public final int queueSize;
+
+	private final int numThreads;
+	private final ForkJoinPool pool;
+	private final Semaphore slots;
+	private final ConcurrentLinkedQueue<List<Finished<?>>> finished = new ConcurrentLinkedQueue<>();
+	private final ReentrantLock listenerLock = new ReentrantLock();
+
+	public ForkJoinTaskExecutor(int numThreads, int queueSize) {
+
+		this.numThreads = numThreads;
+		this.queueSize = Math.max(0, queueSize);
+
+		// tasks are never joined by the caller, so use FIFO (async) mode for the worker queues
+		pool = new ForkJoinPool(numThreads, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+		Cleaner.addCleaner(this, (Cleaner.Cleanable)pool::shutdown);
+
+		slots = new Semaphore(numThreads + this.queueSize);
+	}
+
+	@Override
+	public void clean() {
+		pool.shutdown();
+	}
+
+	@Override
+	public int getParallelism() {
+		return numThreads;
+	}
+
+	@Override
+	public <T> void submit(Task<T> task, TaskListener<T> listener) {
+
+		// block until the workers catch up, so callers don't make more tasks than they need
+		while (true) {
+
+			checkException();
+
+			try {
+				if (slots.tryAcquire(400, TimeUnit.MILLISECONDS)) {
+					break;
+				}
+			} catch (InterruptedException ex) {
+				throw new RuntimeException("can't submit task", ex);
+			}
+		}
+
+		startedTask();
+		pool.execute(() -> {
+			Finished<T> result = run(task, listener);
+			slots.release();
+			if (result != null) {
+				callListeners(Collections.singletonList(result));
+			}
+		});
+	}
+
+	/**
+	 * Submits all the tasks at once, without waiting for the workers to catch up.
+	 */
+	@Override
+	public <T> void submitAll(List<? extends Task<T>> tasks, TaskListener<T> listener) {
+
+		if (tasks.isEmpty()) {
+			return;
+		}
+
+		checkException();
+
+		for (int i=0; i<tasks.size(); i++) {
+			startedTask();
+		}
+
+		// give each worker a few shares of the batch, so there's something left to steal
+		int grainSize = Math.max(1, tasks.size()/(numThreads*4));
+		pool.execute(new Batch<>(tasks, 0, tasks.size(), grainSize, listener));
+	}
+
+	private class Batch<T> extends RecursiveAction {
+
+		private static final long serialVersionUID = -2403195713651617285L;
+
+		final List<? extends Task<T>> tasks;
+		final int start;
+		final int stop;
+		final int grainSize;
+		final TaskListener<T> listener;
+
+		Batch(List<? extends Task<T>> tasks, int start, int stop, int grainSize, TaskListener<T> listener) {
+			this.tasks = tasks;
+			this.start = start;
+			this.stop = stop;
+			this.grainSize = grainSize;
+			this.listener = listener;
+		}
+
+		@Override
+		protected void compute() {
+
+			if (stop - start > grainSize) {
+				int mid = (start + stop) >>> 1;
+				invokeAll(
+					new Batch<>(tasks, start, mid, grainSize, listener),
+					new Batch<>(tasks, mid, stop, grainSize, listener)
+				);
+				return;
+			}
+
+			List<Finished<?>> results = new ArrayList<>(stop - start);
+			for (int i=start; i<stop; i++) {
+				Finished<T> result = run(tasks.get(i), listener);
+				if (result != null) {
+					results.add(result);
+				}
+			}
+			callListeners(results);
+		}
+	}
+
+	private <T> Finished<T> run(Task<T> task, TaskListener<T> listener) {
+		try {
+			return new Finished<>(task, listener, runTask(task));
+		} catch (Throwable t) {
+			taskFailure(task, listener, t);
+			return null;
+		}
+	}
+
+	private void callListeners(List<Finished<?>> results) {
+
+		if (results.isEmpty()) {
+			return;
+		}
+
+		finished.add(results);
+
+		// whoever gets the lock calls the listeners for everyone,
+		// everyone else just leaves their results in the queue and goes back to work
+		// NOTE: check the queue again after unlocking, in case someone added results while we held the lock
+		while (!finished.isEmpty() && listenerLock.tryLock()) {
+			try {
+				List<Finished<?>> batch;
+				while ((batch = finished.poll()) != null) {
+					for (Finished<?> result : batch) {
+						callListener(result);
+					}
+				}
+			} finally {
+				listenerLock.unlock();
+			}
+		}
+	}
+
+	private <T> void callListener(Finished<T> result) {
+		taskSuccess(result.task, result.listener, result.result);
+	}
+}
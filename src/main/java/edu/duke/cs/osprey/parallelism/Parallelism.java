@@ -50,6 +50,13 @@ public class Parallelism {
 		/** The number of simultaneous tasks that should be given to each GPU */
 		private int numStreamsPerGpu = 1;
 
+		/**
+		 * Use a work-stealing thread pool for tasks.
+		 * Can be faster than the default thread pool when there are lots of small tasks.
+		 * See {@link ForkJoinTaskExecutor}.
+		 */
+		private boolean workStealing = false;
+
 		public Builder setNumCpus(int val) {
 			numCpus = val;
 			return this;
@@ -65,8 +72,13 @@ public class Parallelism {
 			return this;
 		}
 
+		public Builder setWorkStealing(boolean val) {
+			workStealing = val;
+			return this;
+		}
+
 		public Parallelism build() {
-			return new Parallelism(numCpus, numGpus, numStreamsPerGpu);
+			return new Parallelism(numCpus, numGpus, numStreamsPerGpu, workStealing);
 		}
 	}
 
@@ -121,15 +133,21 @@ public class Parallelism {
 	public final int numThreads;
 	public final int numGpus;
 	public final int numStreamsPerGpu;
+	public final boolean workStealing;
 
 	public final Type type;
 
 	public static final Parallelism SingleThreaded = new Parallelism(1, 0, 0);
 
 	public Parallelism(int numThreads, int numGpus, int numStreamsPerGpu) {
+		this(numThreads, numGpus, numStreamsPerGpu, false);
+	}
+
+	public Parallelism(int numThreads, int numGpus, int numStreamsPerGpu, boolean workStealing) {
 		this.numThreads = numThreads;
 		this.numGpus = numGpus;
 		this.numStreamsPerGpu = numStreamsPerGpu;
+		this.workStealing = workStealing;
 
 		// prefer gpus over threads
 		if (numGpus > 0) {
@@ -160,7 +178,9 @@ public class Parallelism {
 	 *                 null or 0 to only submit a task when a thread is ready (prevents extra tasks)
 	 */
 	public TaskExecutor makeTaskExecutor(Integer queueSize) {
-		if (getParallelism() > 1) {
+		if (getParallelism() > 1 && workStealing) {
+			return new ForkJoinTaskExecutor(getParallelism(), queueSize != null ? queueSize : 0);
+		} else if (getParallelism() > 1) {
 			ThreadPoolTaskExecutor tasks = new ThreadPoolTaskExecutor();
 			if (queueSize != null) {
 				tasks.queueSize = queueSize;
@@ -36,6 +36,7 @@ import edu.duke.cs.osprey.tools.AutoCleanable;
 import edu.duke.cs.osprey.tools.HashCalculator;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class TaskExecutor implements AutoCleanable {
@@ -85,6 +86,14 @@ public class TaskExecutor implements AutoCleanable {
 		}
 	}
 
+	/**
+	 * Receives the result of a task.
+	 *
+	 * An executor calls its listeners one at a time, so listeners of the same executor don't need to lock
+	 * the state only they share. But listeners can be called on any thread, not just the one that submitted the task,
+	 * and they can run at the same time as other tasks, and as listeners of other executors.
+	 * So any state a listener shares with tasks, or with other executors, still needs synchronization.
+	 */
 	public interface TaskListener<T> {
 		void onFinished(T result);
 	}
@@ -153,6 +162,17 @@ public class TaskExecutor implements AutoCleanable {
 		listener.onFinished(runTask(task));
 	}
 
+	/**
+	 * Submits a batch of tasks that all report to the same listener.
+	 * Executors that can schedule the whole batch at once override this,
+	 * otherwise it's the same as calling {@link #submit} for each task.
+	 */
+	public <T> void submitAll(List<? extends Task<T>> tasks, TaskListener<T> listener) {
+		for (Task<T> task : tasks) {
+			submit(task, listener);
+		}
+	}
+
 	protected <T> T runTask(Task<T> task) {
 		if (task instanceof Task.WithContext) {
 			Task.WithContext<T,Object> taskWithContext = (Task.WithContext<T,Object>)task;
@@ -172,6 +192,81 @@ public class TaskExecutor implements AutoCleanable {
 	public void waitForFinish() {
 		// nothing to do
 	}
+
+	/**
+	 * True if a task or listener failed. {@link #waitForFinish()} will throw the failure.
+	 */
+	protected boolean hasException() {
+		return false;
+	}
+
+	/**
+	 * Makes a tracker for a subset of the tasks submitted to this executor.
+	 */
+	public Tracker tracker() {
+		return new Tracker();
+	}
+
+	/**
+	 * Keeps count of the tasks submitted through it, so callers sharing an executor
+	 * can wait for just their own tasks to finish. {@link TaskExecutor#waitForFinish()}
+	 * waits for every task in the executor, no matter who submitted it.
+	 */
+	public class Tracker {
+
+		private int numRunning = 0;
+
+		protected Tracker() {}
+
+		public <T> void submit(Task<T> task, TaskListener<T> listener) {
+
+			synchronized (this) {
+				numRunning++;
+			}
+
+			TaskExecutor.this.submit(task, (result) -> {
+				try {
+					listener.onFinished(result);
+				} finally {
+					finished();
+				}
+			});
+		}
+
+		private synchronized void finished() {
+			numRunning--;
+			notifyAll();
+		}
+
+		public synchronized int getNumRunningTasks() {
+			return numRunning;
+		}
+
+		public void waitForFinish() {
+			while (true) {
+
+				synchronized (this) {
+
+					if (numRunning <= 0) {
+						return;
+					}
+
+					// wait a bit before checking again, unless a task finishes
+					try {
+						wait(100);
+					} catch (InterruptedException ex) {
+						throw new Error(ex);
+					}
+				}
+
+				// failed tasks never call their listeners, so we'd wait forever
+				// let the executor throw the failure instead
+				if (hasException()) {
+					TaskExecutor.this.waitForFinish();
+				}
+			}
+		}
+	}
 	
 	public static class TaskException extends RuntimeException {
 		
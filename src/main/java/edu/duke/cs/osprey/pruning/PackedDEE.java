@@ -0,0 +1,681 @@
+package edu.duke.cs.osprey.pruning;
+
+import edu.duke.cs.osprey.confspace.RCTuple;
+import edu.duke.cs.osprey.confspace.SimpleConfSpace;
+import edu.duke.cs.osprey.ematrix.EnergyMatrix;
+import edu.duke.cs.osprey.parallelism.Parallelism;
+import edu.duke.cs.osprey.parallelism.TaskExecutor;
+import edu.duke.cs.osprey.tools.Progress;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * Goldstein DEE for pairs and triples that works on packed copies of the energy and pruning matrices,
+ * instead of going through the tuple matrix accessors for every energy and every pruning check.
+ *
+ * Pair energies are copied into contiguous rows, in both orientations, so the min over the witness RCs
+ * is a SIMD scan over a few rows. Pruned pairs are stored as bitmasks, one bit per witness RC, so the unpruned
+ * witnesses for a candidate are found a whole word at a time. The masks are built with {@link PruningMatrix#isPairPruned},
+ * which also checks both singles, so a pair with a pruned single is marked pruned too. Pruned singles aren't stored anywhere else.
+ *
+ * The work is split over position pairs (or triples), which are processed in parallel.
+ * Pair prunings are visible to the other tasks as soon as they happen, just like the tuple matrix version,
+ * so with one thread, the pruning results are exactly the same.
+ *
+ * NOTE: needs the jdk.incubator.vector module, so add this JVM flag if needed:
+ * --add-modules=jdk.incubator.vector
+ */
+class PackedDEE {
+
+	private static final VectorSpecies<Double> species = DoubleVector.SPECIES_PREFERRED;
+
+	/**
+	 * Dense copies of the single and pair energies, and the residue types for type-dependent pruning.
+	 *
+	 * These don't change between DEE iterations, so they can be re-used.
+	 */
+	static class Energies {
+
+		final int numPos;
+		final int[] numRCs;
+		final int[] numWords;
+		final double[][] singles; // indexed by pos, rc
+		final double[][] pairs; // indexed by pos1*numPos + pos2, rc1*numRCs[pos2] + rc2
+		final int[][] types; // indexed by pos, rc
+
+		Energies(SimpleConfSpace confSpace, EnergyMatrix emat) {
+
+			numPos = confSpace.positions.size();
+			numRCs = new int[numPos];
+			numWords = new int[numPos];
+			singles = new double[numPos][];
+			types = new int[numPos][];
+			for (int pos=0; pos<numPos; pos++) {
+
+				int n = confSpace.positions.get(pos).resConfs.size();
+				numRCs[pos] = n;
+				numWords[pos] = (n + 63) >>> 6;
+
+				singles[pos] = new double[n];
+				types[pos] = new int[n];
+				Map<String,Integer> typeIds = new HashMap<>();
+				for (int rc=0; rc<n; rc++) {
+					singles[pos][rc] = emat.getOneBody(pos, rc);
+					String type = confSpace.positions.get(pos).resConfs.get(rc).template.name;
+					types[pos][rc] = typeIds.computeIfAbsent(type, key -> typeIds.size());
+				}
+			}
+
+			pairs = new double[numPos*numPos][];
+			for (int pos1=0; pos1<numPos; pos1++) {
+				for (int pos2=0; pos2<pos1; pos2++) {
+					int n1 = numRCs[pos1];
+					int n2 = numRCs[pos2];
+					double[] pairs12 = new double[n1*n2];
+					double[] pairs21 = new double[n2*n1];
+					for (int rc1=0; rc1<n1; rc1++) {
+						for (int rc2=0; rc2<n2; rc2++) {
+							double energy = emat.getPairwise(pos1, rc1, pos2, rc2);
+							pairs12[rc1*n2 + rc2] = energy;
+							pairs21[rc2*n1 + rc1] = energy;
+						}
+					}
+					pairs[pos1*numPos + pos2] = pairs12;
+					pairs[pos2*numPos + pos1] = pairs21;
+				}
+			}
+		}
+
+		double[] pairs(int pos1, int pos2) {
+			return pairs[pos1*numPos + pos2];
+		}
+	}
+
+	/**
+	 * Bitmasks of the pruned pairs, where set bits are pruned.
+	 *
+	 * A pair is marked pruned if {@link PruningMatrix#isPairPruned} says so, ie if the pair or either of its singles is pruned.
+	 * The padding bits at the end of each row are always set, so the complement of a word is exactly its unpruned RCs.
+	 */
+	static class Masks {
+
+		final int numPos;
+		final int[] numWords;
+		final AtomicLongArray[] pairs; // indexed by pos1*numPos + pos2, rc1*numWords[pos2] + wordi
+
+		Masks(PruningMatrix pmat, Energies energies) {
+
+			numPos = energies.numPos;
+			numWords = energies.numWords;
+
+			pairs = new AtomicLongArray[numPos*numPos];
+			for (int pos1=0; pos1<numPos; pos1++) {
+				for (int pos2=0; pos2<numPos; pos2++) {
+
+					if (pos1 == pos2) {
+						continue;
+					}
+
+					int n1 = energies.numRCs[pos1];
+					int n2 = energies.numRCs[pos2];
+					int words2 = numWords[pos2];
+					long[] mask = new long[n1*words2];
+					for (int rc1=0; rc1<n1; rc1++) {
+						for (int rc2=0; rc2<n2; rc2++) {
+							if (pmat.isPairPruned(pos1, rc1, pos2, rc2)) {
+								mask[rc1*words2 + (rc2 >>> 6)] |= 1L << rc2;
+							}
+						}
+
+						// set the padding bits
+						int numPadding = words2*64 - n2;
+						if (numPadding > 0) {
+							mask[rc1*words2 + words2 - 1] |= -1L << (64 - numPadding);
+						}
+					}
+					pairs[pos1*numPos + pos2] = new AtomicLongArray(mask);
+				}
+			}
+		}
+
+		long word(int pos1, int rc1, int pos2, int wordi) {
+			return pairs[pos1*numPos + pos2].get(rc1*numWords[pos2] + wordi);
+		}
+
+		boolean isPairPruned(int pos1, int rc1, int pos2, int rc2) {
+			return (word(pos1, rc1, pos2, rc2 >>> 6) & (1L << rc2)) != 0;
+		}
+
+		void prunePair(int pos1, int rc1, int pos2, int rc2) {
+			pairs[pos1*numPos + pos2].getAndAccumulate(rc1*numWords[pos2] + (rc2 >>> 6), 1L << rc2, (a, b) -> a | b);
+			pairs[pos2*numPos + pos1].getAndAccumulate(rc2*numWords[pos1] + (rc1 >>> 6), 1L << rc1, (a, b) -> a | b);
+		}
+	}
+
+	/** the output of one task: the number of candidates visited, and the pruned candidates */
+	private static class Pruned {
+		long numCandidates = 0;
+		final List<int[]> tuples = new ArrayList<>();
+	}
+
+	public final Energies energies;
+	public final PruningMatrix pmat;
+	public final PruningMatrix competitors;
+
+	PackedDEE(Energies energies, PruningMatrix pmat, PruningMatrix competitors) {
+		this.energies = energies;
+		this.pmat = pmat;
+		this.competitors = competitors;
+	}
+
+	private long countUnprunedPairs(Masks masks) {
+		long count = 0;
+		for (int pos1=1; pos1<energies.numPos; pos1++) {
+			for (int pos2=0; pos2<pos1; pos2++) {
+				for (int rc1=0; rc1<energies.numRCs[pos1]; rc1++) {
+					for (int wordi=0; wordi<energies.numWords[pos2]; wordi++) {
+						count += Long.bitCount(~masks.word(pos1, rc1, pos2, wordi));
+					}
+				}
+			}
+		}
+		return count;
+	}
+
+	public void prunePairsGoldstein(double energyDiffThreshold, boolean typeDependent, Parallelism parallelism) {
+
+		Masks pmasks = new Masks(pmat, energies);
+		Masks cmasks = competitors == pmat ? pmasks : new Masks(competitors, energies);
+
+		// this one can take quite a while, so track progress
+		Progress progress = new Progress(countUnprunedPairs(pmasks));
+
+		List<int[]> prunedPairs = new ArrayList<>();
+		try (TaskExecutor tasks = parallelism.makeTaskExecutor()) {
+			for (int pos1=1; pos1<energies.numPos; pos1++) {
+				for (int pos2=0; pos2<pos1; pos2++) {
+					final int fpos1 = pos1;
+					final int fpos2 = pos2;
+					tasks.submit(
+						() -> prunePairsGoldsteinAt(fpos1, fpos2, energyDiffThreshold, typeDependent, pmasks, cmasks),
+						(pruned) -> {
+							prunedPairs.addAll(pruned.tuples);
+							progress.incrementProgress(pruned.numCandidates);
+						}
+					);
+				}
+			}
+			tasks.waitForFinish();
+		}
+
+		for (int[] pair : prunedPairs) {
+			pmat.prunePair(pair[0], pair[1], pair[2], pair[3]);
+		}
+	}
+
+	private Pruned prunePairsGoldsteinAt(int pos1, int pos2, double energyDiffThreshold, boolean typeDependent, Masks pmasks, Masks cmasks) {
+
+		Pruned pruned = new Pruned();
+
+		int numPos = energies.numPos;
+		int n1 = energies.numRCs[pos1];
+		int n2 = energies.numRCs[pos2];
+		double[] singles1 = energies.singles[pos1];
+		double[] singles2 = energies.singles[pos2];
+		double[] pairs12 = energies.pairs(pos1, pos2);
+		int[] types1 = energies.types[pos1];
+		int[] types2 = energies.types[pos2];
+
+		// buffers for the candidate rows and the unpruned witnesses
+		double[][] candidateRows = new double[numPos][];
+		long[][] unprunedWitnesses = new long[numPos][];
+		for (int witnessPos=0; witnessPos<numPos; witnessPos++) {
+			candidateRows[witnessPos] = new double[energies.numRCs[witnessPos]];
+			unprunedWitnesses[witnessPos] = new long[energies.numWords[witnessPos]];
+		}
+
+		for (int candidateRc1=0; candidateRc1<n1; candidateRc1++) {
+			for (int candidateRc2=0; candidateRc2<n2; candidateRc2++) {
+
+				// skip pruned candidates
+				if (pmasks.isPairPruned(pos1, candidateRc1, pos2, candidateRc2)) {
+					continue;
+				}
+				pruned.numCandidates++;
+
+				// sum the candidate energies and find the unpruned witnesses, for each witness pos
+				for (int witnessPos=0; witnessPos<numPos; witnessPos++) {
+
+					// witness pos can't be candidate pos
+					if (witnessPos == pos1 || witnessPos == pos2) {
+						continue;
+					}
+
+					int nw = energies.numRCs[witnessPos];
+					double[] pairs1w = energies.pairs(pos1, witnessPos);
+					double[] pairs2w = energies.pairs(pos2, witnessPos);
+					double[] row = candidateRows[witnessPos];
+					int offset1 = candidateRc1*nw;
+					int offset2 = candidateRc2*nw;
+					for (int witnessRc=0; witnessRc<nw; witnessRc++) {
+						row[witnessRc] = pairs1w[offset1 + witnessRc] + pairs2w[offset2 + witnessRc];
+					}
+
+					long[] unpruned = unprunedWitnesses[witnessPos];
+					for (int wordi=0; wordi<unpruned.length; wordi++) {
+						unpruned[wordi] = ~(pmasks.word(pos1, candidateRc1, witnessPos, wordi) | pmasks.word(pos2, candidateRc2, witnessPos, wordi));
+					}
+				}
+
+				// can we find a competitor rc that has much lower energy?
+				boolean isPruned = false;
+				for (int competitorRc1=0; competitorRc1<n1 && !isPruned; competitorRc1++) {
+					for (int competitorRc2=0; competitorRc2<n2; competitorRc2++) {
+
+						// skip pruned competitors
+						if (cmasks.isPairPruned(pos1, competitorRc1, pos2, competitorRc2)) {
+							continue;
+						}
+
+						// don't compete against self
+						if (competitorRc1 == candidateRc1 && competitorRc2 == candidateRc2) {
+							continue;
+						}
+
+						// skip unmatched types if needed
+						if (typeDependent) {
+							if (types1[candidateRc1] != types1[competitorRc1] || types2[candidateRc2] != types2[competitorRc2]) {
+								continue;
+							}
+						}
+
+						// start with fragment energy diff
+						double energyDiffSum = 0
+							+ singles1[candidateRc1]
+							+ singles2[candidateRc2]
+							+ pairs12[candidateRc1*n2 + candidateRc2]
+							- singles1[competitorRc1]
+							- singles2[competitorRc2]
+							- pairs12[competitorRc1*n2 + competitorRc2];
+
+						// sum over witness positions
+						for (int witnessPos=0; witnessPos<numPos; witnessPos++) {
+
+							// witness pos can't be candidate pos
+							if (witnessPos == pos1 || witnessPos == pos2) {
+								continue;
+							}
+
+							int nw = energies.numRCs[witnessPos];
+							energyDiffSum += minEnergyDiff(
+								candidateRows[witnessPos],
+								energies.pairs(pos1, witnessPos), competitorRc1*nw,
+								energies.pairs(pos2, witnessPos), competitorRc2*nw,
+								null, 0,
+								unprunedWitnesses[witnessPos], nw
+							);
+							if (energyDiffSum == Double.POSITIVE_INFINITY) {
+								break;
+							}
+						}
+
+						// if we found a suitable competitor, prune the candidate
+						if (energyDiffSum > energyDiffThreshold) {
+							isPruned = true;
+							break;
+						}
+					}
+				}
+
+				if (isPruned) {
+					pmasks.prunePair(pos1, candidateRc1, pos2, candidateRc2);
+					pruned.tuples.add(new int[] { pos1, candidateRc1, pos2, candidateRc2 });
+				}
+			}
+		}
+
+		return pruned;
+	}
+
+	/** counts the triples whose pairs are unpruned, without reading the triples themselves */
+	private long countUnprunedTriplesUpperBound(Masks masks) {
+		long count = 0;
+		for (int pos1=2; pos1<energies.numPos; pos1++) {
+			for (int pos2=1; pos2<pos1; pos2++) {
+				for (int pos3=0; pos3<pos2; pos3++) {
+					for (int rc1=0; rc1<energies.numRCs[pos1]; rc1++) {
+						for (int rc2=0; rc2<energies.numRCs[pos2]; rc2++) {
+							if (masks.isPairPruned(pos1, rc1, pos2, rc2)) {
+								continue;
+							}
+							for (int wordi=0; wordi<energies.numWords[pos3]; wordi++) {
+								count += Long.bitCount(~(masks.word(pos1, rc1, pos3, wordi) | masks.word(pos2, rc2, pos3, wordi)));
+							}
+						}
+					}
+				}
+			}
+		}
+		return count;
+	}
+
+	public void pruneTriplesGoldstein(double energyDiffThreshold, boolean typeDependent, Parallelism parallelism) {
+
+		// triple pruning doesn't change the pair masks, so they can be shared
+		Masks pmasks = new Masks(pmat, energies);
+		Masks cmasks = competitors == pmat ? pmasks : new Masks(competitors, energies);
+
+		// this one can take quite a while, so track progress
+		Progress progress = new Progress(countUnprunedTriplesUpperBound(pmasks));
+
+		// NOTE: the tasks read the triples from the pruning matrices,
+		// so don't prune any triples until all the tasks are done
+		List<int[]> prunedTriples = new ArrayList<>();
+		try (TaskExecutor tasks = parallelism.makeTaskExecutor()) {
+			for (int pos1=2; pos1<energies.numPos; pos1++) {
+				for (int pos2=1; pos2<pos1; pos2++) {
+					for (int pos3=0; pos3<pos2; pos3++) {
+						final int fpos1 = pos1;
+						final int fpos2 = pos2;
+						final int fpos3 = pos3;
+						tasks.submit(
+							() -> pruneTriplesGoldsteinAt(fpos1, fpos2, fpos3, energyDiffThreshold, typeDependent, pmasks, cmasks),
+							(pruned) -> {
+								prunedTriples.addAll(pruned.tuples);
+								progress.incrementProgress(pruned.numCandidates);
+							}
+						);
+					}
+				}
+			}
+			tasks.waitForFinish();
+		}
+
+		for (int[] triple : prunedTriples) {
+			pmat.pruneTriple(triple[0], triple[1], triple[2], triple[3], triple[4], triple[5]);
+		}
+	}
+
+	/**
+	 * Reads the pruned triples at the given positions into a bitmask indexed by (rc1*n2 + rc2)*n3 + rc3.
+	 */
+	private long[] readTriples(PruningMatrix pmat, Masks masks, int pos1, int pos2, int pos3) {
+
+		int n1 = energies.numRCs[pos1];
+		int n2 = energies.numRCs[pos2];
+		int n3 = energies.numRCs[pos3];
+		long[] triples = new long[(n1*n2*n3 + 63) >>> 6];
+
+		if (!pmat.hasHigherOrderTuples()) {
+			return triples;
+		}
+
+		// allocate one tuple for the whole function, but update it at each iteration
+		// positions are in reverse order, so tuple positions are sorted
+		RCTuple tuple = new RCTuple(pos3, 0, pos2, 0, pos1, 0);
+		for (int rc1=0; rc1<n1; rc1++) {
+			tuple.RCs.set(2, rc1);
+			for (int rc2=0; rc2<n2; rc2++) {
+				if (masks.isPairPruned(pos1, rc1, pos2, rc2)) {
+					continue;
+				}
+				tuple.RCs.set(1, rc2);
+				for (int rc3=0; rc3<n3; rc3++) {
+					tuple.RCs.set(0, rc3);
+					if (pmat.getTuple(tuple)) {
+						int i = (rc1*n2 + rc2)*n3 + rc3;
+						triples[i >>> 6] |= 1L << i;
+					}
+				}
+			}
+		}
+
+		return triples;
+	}
+
+	private static boolean isTriplePruned(long[] triples, int i) {
+		return (triples[i >>> 6] & (1L << i)) != 0;
+	}
+
+	private Pruned pruneTriplesGoldsteinAt(int pos1, int pos2, int pos3, double energyDiffThreshold, boolean typeDependent, Masks pmasks, Masks cmasks) {
+
+		Pruned pruned = new Pruned();
+
+		int numPos = energies.numPos;
+		int n1 = energies.numRCs[pos1];
+		int n2 = energies.numRCs[pos2];
+		int n3 = energies.numRCs[pos3];
+		double[] singles1 = energies.singles[pos1];
+		double[] singles2 = energies.singles[pos2];
+		double[] singles3 = energies.singles[pos3];
+		double[] pairs12 = energies.pairs(pos1, pos2);
+		double[] pairs13 = energies.pairs(pos1, pos3);
+		double[] pairs23 = energies.pairs(pos2, pos3);
+		int[] types1 = energies.types[pos1];
+		int[] types2 = energies.types[pos2];
+		int[] types3 = energies.types[pos3];
+
+		long[] ptriples = readTriples(pmat, pmasks, pos1, pos2, pos3);
+		long[] ctriples = competitors == pmat ? ptriples : readTriples(competitors, cmasks, pos1, pos2, pos3);
+
+		// buffers for the candidate rows and the unpruned witnesses
+		double[][] candidateRows = new double[numPos][];
+		long[][] unprunedWitnesses = new long[numPos][];
+		for (int witnessPos=0; witnessPos<numPos; witnessPos++) {
+			candidateRows[witnessPos] = new double[energies.numRCs[witnessPos]];
+			unprunedWitnesses[witnessPos] = new long[energies.numWords[witnessPos]];
+		}
+
+		for (int candidateRc1=0; candidateRc1<n1; candidateRc1++) {
+			for (int candidateRc2=0; candidateRc2<n2; candidateRc2++) {
+
+				// skip pruned candidates
+				if (pmasks.isPairPruned(pos1, candidateRc1, pos2, candidateRc2)) {
+					continue;
+				}
+
+				for (int candidateRc3=0; candidateRc3<n3; candidateRc3++) {
+
+					// skip pruned candidates
+					if (pmasks.isPairPruned(pos1, candidateRc1, pos3, candidateRc3)
+						|| pmasks.isPairPruned(pos2, candidateRc2, pos3, candidateRc3)) {
+						continue;
+					}
+					pruned.numCandidates++;
+					int candidatei = (candidateRc1*n2 + candidateRc2)*n3 + candidateRc3;
+					if (isTriplePruned(ptriples, candidatei)) {
+						continue;
+					}
+
+					// sum the candidate energies and find the unpruned witnesses, for each witness pos
+					for (int witnessPos=0; witnessPos<numPos; witnessPos++) {
+
+						// witness pos can't be candidate pos
+						if (witnessPos == pos1 || witnessPos == pos2 || witnessPos == pos3) {
+							continue;
+						}
+
+						int nw = energies.numRCs[witnessPos];
+						double[] pairs1w = energies.pairs(pos1, witnessPos);
+						double[] pairs2w = energies.pairs(pos2, witnessPos);
+						double[] pairs3w = energies.pairs(pos3, witnessPos);
+						double[] row = candidateRows[witnessPos];
+						int offset1 = candidateRc1*nw;
+						int offset2 = candidateRc2*nw;
+						int offset3 = candidateRc3*nw;
+						for (int witnessRc=0; witnessRc<nw; witnessRc++) {
+							row[witnessRc] = pairs1w[offset1 + witnessRc] + pairs2w[offset2 + witnessRc] + pairs3w[offset3 + witnessRc];
+						}
+
+						long[] unpruned = unprunedWitnesses[witnessPos];
+						for (int wordi=0; wordi<unpruned.length; wordi++) {
+							unpruned[wordi] = ~(
+								pmasks.word(pos1, candidateRc1, witnessPos, wordi)
+								| pmasks.word(pos2, candidateRc2, witnessPos, wordi)
+								| pmasks.word(pos3, candidateRc3, witnessPos, wordi)
+							);
+						}
+					}
+
+					// can we find a competitor rc that has much lower energy?
+					boolean isPruned = false;
+					competitors:
+					for (int competitorRc1=0; competitorRc1<n1; competitorRc1++) {
+						for (int competitorRc2=0; competitorRc2<n2; competitorRc2++) {
+
+							// skip pruned competitors
+							if (cmasks.isPairPruned(pos1, competitorRc1, pos2, competitorRc2)) {
+								continue;
+							}
+
+							for (int competitorRc3=0; competitorRc3<n3; competitorRc3++) {
+
+								// skip pruned competitors
+								if (cmasks.isPairPruned(pos1, competitorRc1, pos3, competitorRc3)
+									|| cmasks.isPairPruned(pos2, competitorRc2, pos3, competitorRc3)
+									|| isTriplePruned(ctriples, (competitorRc1*n2 + competitorRc2)*n3 + competitorRc3)) {
+									continue;
+								}
+
+								// don't compete against self
+								if (competitorRc1 == candidateRc1 && competitorRc2 == candidateRc2 && competitorRc3 == candidateRc3) {
+									continue;
+								}
+
+								// skip unmatched types if needed
+								if (typeDependent) {
+									if (types1[candidateRc1] != types1[competitorRc1]
+										|| types2[candidateRc2] != types2[competitorRc2]
+										|| types3[candidateRc3] != types3[competitorRc3]) {
+										continue;
+									}
+								}
+
+								// start with fragment energy diff
+								double energyDiffSum = 0
+									+ singles1[candidateRc1]
+									+ singles2[candidateRc2]
+									+ singles3[candidateRc3]
+									+ pairs12[candidateRc1*n2 + candidateRc2]
+									+ pairs13[candidateRc1*n3 + candidateRc3]
+									+ pairs23[candidateRc2*n3 + candidateRc3]
+									- singles1[competitorRc1]
+									- singles2[competitorRc2]
+									- singles3[competitorRc3]
+									- pairs12[competitorRc1*n2 + competitorRc2]
+									- pairs13[competitorRc1*n3 + competitorRc3]
+									- pairs23[competitorRc2*n3 + competitorRc3];
+
+								// sum over witness positions
+								for (int witnessPos=0; witnessPos<numPos; witnessPos++) {
+
+									// witness pos can't be candidate pos
+									if (witnessPos == pos1 || witnessPos == pos2 || witnessPos == pos3) {
+										continue;
+									}
+
+									int nw = energies.numRCs[witnessPos];
+									energyDiffSum += minEnergyDiff(
+										candidateRows[witnessPos],
+										energies.pairs(pos1, witnessPos), competitorRc1*nw,
+										energies.pairs(pos2, witnessPos), competitorRc2*nw,
+										energies.pairs(pos3, witnessPos), competitorRc3*nw,
+										unprunedWitnesses[witnessPos], nw
+									);
+									if (energyDiffSum == Double.POSITIVE_INFINITY) {
+										break;
+									}
+								}
+
+								// if we found a suitable competitor, prune the candidate
+								if (energyDiffSum > energyDiffThreshold) {
+									isPruned = true;
+									break competitors;
+								}
+							}
+						}
+					}
+
+					if (isPruned) {
+						ptriples[candidatei >>> 6] |= 1L << candidatei;
+						pruned.tuples.add(new int[] { pos1, candidateRc1, pos2, candidateRc2, pos3, candidateRc3 });
+					}
+				}
+			}
+		}
+
+		return pruned;
+	}
+
+	/**
+	 * Computes the min over the unpruned witness RCs of the energy diff between the candidate and the competitor,
+	 * ie candidate[rc] - competitor1[offset1 + rc] - competitor2[offset2 + rc] - competitor3[offset3 + rc].
+	 * The third competitor row is optional.
+	 *
+	 * Words where all the witnesses are unpruned are scanned with SIMD instructions,
+	 * the rest are scanned one unpruned witness at a time.
+	 */
+	private static double minEnergyDiff(double[] candidate, double[] competitor1, int offset1, double[] competitor2, int offset2, double[] competitor3, int offset3, long[] unpruned, int numRCs) {
+
+		double min = Double.POSITIVE_INFINITY;
+
+		for (int wordi=0; wordi<unpruned.length; wordi++) {
+
+			long word = unpruned[wordi];
+			int start = wordi << 6;
+			int size = Math.min(64, numRCs - start);
+			long full = size == 64 ? -1L : (1L << size) - 1;
+
+			if (word == full) {
+
+				// all the witnesses are unpruned, so scan the contiguous rows
+				int stop = start + size;
+				int i = start;
+				int vstop = start + species.loopBound(size);
+				if (i < vstop) {
+					DoubleVector vmin = DoubleVector.broadcast(species, Double.POSITIVE_INFINITY);
+					for (; i<vstop; i+=species.length()) {
+						DoubleVector diff = DoubleVector.fromArray(species, candidate, i)
+							.sub(DoubleVector.fromArray(species, competitor1, offset1 + i))
+							.sub(DoubleVector.fromArray(species, competitor2, offset2 + i));
+						if (competitor3 != null) {
+							diff = diff.sub(DoubleVector.fromArray(species, competitor3, offset3 + i));
+						}
+						vmin = vmin.min(diff);
+					}
+					min = Math.min(min, vmin.reduceLanes(VectorOperators.MIN));
+				}
+				for (; i<stop; i++) {
+					min = Math.min(min, energyDiff(candidate, competitor1, offset1, competitor2, offset2, competitor3, offset3, i));
+				}
+
+			} else {
+
+				// visit just the unpruned witnesses
+				while (word != 0) {
+					int i = start + Long.numberOfTrailingZeros(word);
+					word &= word - 1;
+					min = Math.min(min, energyDiff(candidate, competitor1, offset1, competitor2, offset2, competitor3, offset3, i));
+				}
+			}
+		}
+
+		return min;
+	}
+
+	private static double energyDiff(double[] candidate, double[] competitor1, int offset1, double[] competitor2, int offset2, double[] competitor3, int offset3, int i) {
+		double diff = candidate[i] - competitor1[offset1 + i] - competitor2[offset2 + i];
+		if (competitor3 != null) {
+			diff -= competitor3[offset3 + i];
+		}
+		return diff;
+	}
+}
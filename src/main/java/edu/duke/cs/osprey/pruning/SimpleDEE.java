@@ -39,11 +39,9 @@ import edu.duke.cs.osprey.parallelism.Parallelism;
 import edu.duke.cs.osprey.parallelism.TaskExecutor;
 import edu.duke.cs.osprey.restypes.ResidueTemplate;
 import edu.duke.cs.osprey.tools.ObjectIO;
-import edu.duke.cs.osprey.tools.Progress;
 
 import java.io.File;
 import java.math.BigInteger;
-import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
 import static edu.duke.cs.osprey.tools.Log.formatBig;
@@ -454,6 +452,9 @@ public class SimpleDEE {
 	public final PruningMatrix pmat;
 	public final PruningMatrix competitors;
 
+	// the energy matrix doesn't change between DEE iterations, so only pack it once
+	private PackedDEE.Energies packedEnergies = null;
+
 	public SimpleDEE(SimpleConfSpace confSpace, EnergyMatrix emat, PruningMatrix pmat) {
 		this(confSpace, emat, pmat, pmat);
 	}
@@ -465,6 +466,13 @@ public class SimpleDEE {
 		this.competitors = competitors;
 	}
 
+	private PackedDEE.Energies getPackedEnergies() {
+		if (packedEnergies == null) {
+			packedEnergies = new PackedDEE.Energies(confSpace, emat);
+		}
+		return packedEnergies;
+	}
+
 	private ResidueTemplate getTemplate(int pos, int rc) {
 		return confSpace.positions.get(pos).resConfs.get(rc).template;
 	}
@@ -567,101 +575,7 @@ public class SimpleDEE {
 	}
 
 	public void prunePairsGoldstein(double energyDiffThreshold, boolean typeDependent, Parallelism parallelism) {
-
-		// this one can take quite a while, so track progress
-		AtomicLong numPairs = new AtomicLong(0);
-		pmat.forEachUnprunedPair((pos1, rc1, pos2, rc2) -> {
-			numPairs.incrementAndGet();
-			return PruningMatrix.IteratorCommand.Continue;
-		});
-		Progress progress = new Progress(numPairs.get());
-
-		try (TaskExecutor tasks = parallelism.makeTaskExecutor()) {
-
-			pmat.forEachUnprunedPair((candidatePos1, candidateRc1, candidatePos2, candidateRc2) -> {
-
-				tasks.submit(
-					() -> {
-						// can we find a competitor rc that has much lower energy?
-						return competitors.forEachUnprunedPairAt(candidatePos1, candidatePos2, (competitorPos1, competitorRc1, competitorPos2, competitorRc2) -> {
-
-							// don't compete against self
-							if (competitorRc1 == candidateRc1 && competitorRc2 == candidateRc2) {
-								return PruningMatrix.IteratorCommand.Continue;
-							}
-
-							// skip unmatched types if needed
-							if (typeDependent) {
-								if (!getTemplate(candidatePos1, candidateRc1).name.equals(getTemplate(competitorPos1, competitorRc1).name)
-									|| !getTemplate(candidatePos2, candidateRc2).name.equals(getTemplate(competitorPos2, competitorRc2).name)) {
-									return PruningMatrix.IteratorCommand.Continue;
-								}
-							}
-
-							// start with fragment energy diff
-							double energyDiffSum = 0
-								+ emat.getOneBody(candidatePos1, candidateRc1)
-								+ emat.getOneBody(candidatePos2, candidateRc2)
-								+ emat.getPairwise(candidatePos1, candidateRc1, candidatePos2, candidateRc2)
-								- emat.getOneBody(competitorPos1, competitorRc1)
-								- emat.getOneBody(competitorPos2, competitorRc2)
-								- emat.getPairwise(competitorPos1, competitorRc1, competitorPos2, competitorRc2);
-
-							// sum over witness positions
-							for (int witnessPos=0; witnessPos<confSpace.positions.size(); witnessPos++) {
-
-								// witness pos can't be candidate pos
-								if (witnessPos == candidatePos1 || witnessPos == candidatePos2) {
-									continue;
-								}
-
-								// min over witness rcs
-								double minEnergyDiff = Double.POSITIVE_INFINITY;
-								int numWitnessRCs = confSpace.positions.get(witnessPos).resConfs.size();
-								for (int witnessRc=0; witnessRc<numWitnessRCs; witnessRc++) {
-
-									// skip pruned witnesses
-									if (pmat.isPairPruned(candidatePos1, candidateRc1, witnessPos, witnessRc)
-										|| pmat.isPairPruned(candidatePos2, candidateRc2, witnessPos, witnessRc)) {
-										continue;
-									}
-
-									// compute the energy diff between the candidate and competitor, from the point of view of the witness
-									double energyDiff = 0
-										+ emat.getPairwise(candidatePos1, candidateRc1, witnessPos, witnessRc)
-										+ emat.getPairwise(candidatePos2, candidateRc2, witnessPos, witnessRc)
-										- emat.getPairwise(competitorPos1, competitorRc1, witnessPos, witnessRc)
-										- emat.getPairwise(competitorPos2, competitorRc2, witnessPos, witnessRc);
-									minEnergyDiff = Math.min(minEnergyDiff, energyDiff);
-								}
-								energyDiffSum += minEnergyDiff;
-								if (energyDiffSum == Double.POSITIVE_INFINITY) {
-									break;
-								}
-							}
-
-							if (energyDiffSum > energyDiffThreshold) {
-								return PruningMatrix.IteratorCommand.Break;
-							} else {
-								return PruningMatrix.IteratorCommand.Continue;
-							}
-						});
-					},
-					(result) -> {
-
-						// if the iteration terminated early (ie, we found a suitable competitor), then prune the candidate
-						if (result == PruningMatrix.IteratorCommand.Break) {
-							pmat.prunePair(candidatePos1, candidateRc1, candidatePos2, candidateRc2);
-						}
-
-						progress.incrementProgress();
-					}
-				);
-
-				// always go onto to check the next candidate
-				return PruningMatrix.IteratorCommand.Continue;
-			});
-		}
+		new PackedDEE(getPackedEnergies(), pmat, competitors).prunePairsGoldstein(energyDiffThreshold, typeDependent, parallelism);
 	}
 
 	public void pruneTriplesGoldstein(double energyDiffThreshold, boolean typeDependent) {
@@ -669,110 +583,6 @@ public class SimpleDEE {
 	}
 
 	public void pruneTriplesGoldstein(double energyDiffThreshold, boolean typeDependent, Parallelism parallelism) {
-
-		// this one can take quite a while, so track progress
-		AtomicLong numTriples = new AtomicLong(0);
-		pmat.forEachUnprunedTriple((pos1, rc1, pos2, rc2, pos3, rc3) -> {
-			numTriples.incrementAndGet();
-			return PruningMatrix.IteratorCommand.Continue;
-		});
-		Progress progress = new Progress(numTriples.get());
-
-		try (TaskExecutor tasks = parallelism.makeTaskExecutor()) {
-
-			pmat.forEachUnprunedTriple((candidatePos1, candidateRc1, candidatePos2, candidateRc2, candidatePos3, candidateRc3) -> {
-
-				tasks.submit(
-					() -> {
-						// can we find a competitor rc that has much lower energy?
-						return competitors.forEachUnprunedTripleAt(candidatePos1, candidatePos2, candidatePos3, (competitorPos1, competitorRc1, competitorPos2, competitorRc2, competitorPos3, competitorRc3) -> {
-
-							// don't compete against self
-							if (competitorRc1 == candidateRc1 && competitorRc2 == candidateRc2 && competitorRc3 == candidateRc3) {
-								return PruningMatrix.IteratorCommand.Continue;
-							}
-
-							// skip unmatched types if needed
-							if (typeDependent) {
-								if (!getTemplate(candidatePos1, candidateRc1).name.equals(getTemplate(competitorPos1, competitorRc1).name)
-									|| !getTemplate(candidatePos2, candidateRc2).name.equals(getTemplate(competitorPos2, competitorRc2).name)
-									|| !getTemplate(candidatePos3, candidateRc3).name.equals(getTemplate(competitorPos3, competitorRc3).name)) {
-									return PruningMatrix.IteratorCommand.Continue;
-								}
-							}
-
-							// start with fragment energy diff
-							double energyDiffSum = 0
-								+ emat.getOneBody(candidatePos1, candidateRc1)
-								+ emat.getOneBody(candidatePos2, candidateRc2)
-								+ emat.getOneBody(candidatePos3, candidateRc3)
-								+ emat.getPairwise(candidatePos1, candidateRc1, candidatePos2, candidateRc2)
-								+ emat.getPairwise(candidatePos1, candidateRc1, candidatePos3, candidateRc3)
-								+ emat.getPairwise(candidatePos2, candidateRc2, candidatePos3, candidateRc3)
-								- emat.getOneBody(competitorPos1, competitorRc1)
-								- emat.getOneBody(competitorPos2, competitorRc2)
-								- emat.getOneBody(competitorPos3, competitorRc3)
-								- emat.getPairwise(competitorPos1, competitorRc1, competitorPos2, competitorRc2)
-								- emat.getPairwise(competitorPos1, competitorRc1, competitorPos3, competitorRc3)
-								- emat.getPairwise(competitorPos2, competitorRc2, competitorPos3, competitorRc3);
-
-							// sum over witness positions
-							for (int witnessPos=0; witnessPos<confSpace.positions.size(); witnessPos++) {
-
-								// witness pos can't be candidate pos
-								if (witnessPos == candidatePos1 || witnessPos == candidatePos2 || witnessPos == candidatePos3) {
-									continue;
-								}
-
-								// min over witness rcs
-								double minEnergyDiff = Double.POSITIVE_INFINITY;
-								int numWitnessRCs = confSpace.positions.get(witnessPos).resConfs.size();
-								for (int witnessRc=0; witnessRc<numWitnessRCs; witnessRc++) {
-
-									// skip pruned witnesses
-									if (pmat.isPairPruned(candidatePos1, candidateRc1, witnessPos, witnessRc)
-										|| pmat.isPairPruned(candidatePos2, candidateRc2, witnessPos, witnessRc)
-										|| pmat.isPairPruned(candidatePos3, candidateRc3, witnessPos, witnessRc)) {
-										continue;
-									}
-
-									// compute the energy diff between the candidate and competitor, from the point of view of the witness
-									double energyDiff = 0
-										+ emat.getPairwise(candidatePos1, candidateRc1, witnessPos, witnessRc)
-										+ emat.getPairwise(candidatePos2, candidateRc2, witnessPos, witnessRc)
-										+ emat.getPairwise(candidatePos3, candidateRc3, witnessPos, witnessRc)
-										- emat.getPairwise(competitorPos1, competitorRc1, witnessPos, witnessRc)
-										- emat.getPairwise(competitorPos2, competitorRc2, witnessPos, witnessRc)
-										- emat.getPairwise(competitorPos3, competitorRc3, witnessPos, witnessRc);
-									minEnergyDiff = Math.min(minEnergyDiff, energyDiff);
-								}
-								energyDiffSum += minEnergyDiff;
-								if (energyDiffSum == Double.POSITIVE_INFINITY) {
-									break;
-								}
-							}
-
-							if (energyDiffSum > energyDiffThreshold) {
-								return PruningMatrix.IteratorCommand.Break;
-							} else {
-								return PruningMatrix.IteratorCommand.Continue;
-							}
-						});
-					},
-					(result) -> {
-
-						// if the iteration terminated early (ie, we found a suitable competitor), then prune the candidate
-						if (result == PruningMatrix.IteratorCommand.Break) {
-							pmat.pruneTriple(candidatePos1, candidateRc1, candidatePos2, candidateRc2, candidatePos3, candidateRc3);
-						}
-
-						progress.incrementProgress();
-					}
-				);
-
-				// always go onto to check the next candidate
-				return PruningMatrix.IteratorCommand.Continue;
-			});
-		}
+		new PackedDEE(getPackedEnergies(), pmat, competitors).pruneTriplesGoldstein(energyDiffThreshold, typeDependent, parallelism);
 	}
 }
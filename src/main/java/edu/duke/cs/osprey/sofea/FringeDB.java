@@ -35,10 +35,16 @@ package edu.duke.cs.osprey.sofea;
 import edu.duke.cs.osprey.confspace.Conf;
 import edu.duke.cs.osprey.confspace.MultiStateConfSpace;
 import edu.duke.cs.osprey.tools.*;
+import jdk.incubator.foreign.MemorySegment;
+import jdk.incubator.foreign.ResourceScope;
 
 import java.io.*;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.IntStream;
 
 
@@ -56,11 +62,22 @@ import java.util.stream.IntStream;
  * The FIFO queue is implemented by a fixed-size circular buffer.
  * If the queue fills up, no new child nodes can be written, but
  * the current queue can continue to be swept as many times as needed.
+ *
+ * The database file is memory-mapped, so nodes are read directly out of the mapping.
+ * While one chunk of nodes is being read, the next chunk is loaded into memory on a background thread,
+ * so sweeps don't wait on storage latency for every chunk.
+ * Written nodes are buffered in the transaction and copied into the mapping in bulk at commit time,
+ * and only the modified regions of the file are flushed to storage.
+ *
+ * NOTE: needs the jdk.incubator.foreign module, so add this JVM flag if needed:
+ * --add-modules=jdk.incubator.foreign
  */
 public class FringeDB implements AutoCloseable {
 
 	static final byte[] Magic = { 'f', 'r', 'i', 'n', 'g', 'e', 'd', 'b' };
 
+	private static final int ReadChunkBytes = 1024*1024;
+
 
 	private class IOState {
 
@@ -111,7 +128,9 @@ public class FringeDB implements AutoCloseable {
 	public final MultiStateConfSpace confSpace;
 	public final File file;
 
-	private final RandomAccessFile io;
+	private final ResourceScope scope;
+	private final MemorySegment mem;
+	private final ExecutorService prefetcher;
 	private final IOState iostate;
 
 	private final IntEncoding stateEncoding;
@@ -123,6 +142,7 @@ public class FringeDB implements AutoCloseable {
 	private final long posZStats;
 	private final long posEntries;
 	private final long maxNumEntries;
+	private final int maxReadEntries;
 
 	/** create a new fringe node database, reserving the desired spase on the filesystem */
 	public static FringeDB create(MultiStateConfSpace confSpace, File file, long sizeBytes) {
@@ -231,76 +251,158 @@ public class FringeDB implements AutoCloseable {
 		);
 		confEncoding = getConfEncoding(confSpace);
 
-		// open the file and read the header
+		// header bytes: 64 for the sizes and read/write state, then the z stats, padded to 32 bytes
+		int numZStatsBytes = confSpace.states.size()*BigExp.NumBytes*2;
+		int headerBytes = 64 + MathTools.roundUpToMultiple(numZStatsBytes, 32);
+
+		// map the file
+		long fileBytes = file.length();
+		scope = ResourceScope.newSharedScope();
+		try {
+			if (fileBytes < headerBytes) {
+				throw new IOException("not a fringe db file");
+			}
+			mem = MemorySegment.mapFile(file.toPath(), 0, fileBytes, FileChannel.MapMode.READ_WRITE, scope);
+		} catch (IOException ex) {
+			scope.close();
+			throw new RuntimeException("can't open db file: " + file.getAbsolutePath(), ex);
+		}
+
+		// read the header
 		try {
 
-			io = new RandomAccessFile(file, "rw");
+			ByteBuffer buf = mem.asSlice(0, headerBytes).asByteBuffer();
+			DataInput in = new DataInputStream(new ByteBufferInputStream(buf));
 
 			// check the magic number
 			for (int i=0; i<8; i++) {
-				if (io.readByte() != Magic[i]) {
+				if (in.readByte() != Magic[i]) {
 					throw new IOException("not a fringe db file");
 				}
 			}
 
 			// check the version
-			int version = io.readInt();
+			int version = in.readInt();
 			if (version != 2) {
 				throw new IOException("unrecognized fringe db version: " + version);
 			}
 
 			// read the sizes
-			confBytes = io.readInt();
+			confBytes = in.readInt();
 			entryBytes = calcEntrySize();
 
 			// read the read/write state
-			posIOState = io.getFilePointer();
+			posIOState = buf.position();
 			iostate = new IOState();
-			iostate.readIndex = io.readLong();
-			iostate.numToRead = io.readLong();
-			iostate.writeIndex = io.readLong();
-			iostate.numWritten = io.readLong();
+			iostate.readIndex = in.readLong();
+			iostate.numToRead = in.readLong();
+			iostate.writeIndex = in.readLong();
+			iostate.numWritten = in.readLong();
 
 			// skip to alignment boundary
-			for (int i=48; i<64; i++) {
-				io.readByte();
-			}
-			assert (io.getFilePointer() % 32 == 0);
+			buf.position(64);
 
 			// read the z stats
-			posZStats = io.getFilePointer();
+			posZStats = buf.position();
 			for (MultiStateConfSpace.State state : confSpace.states) {
-				iostate.readZSumMax[state.index].readFrom(io);
+				iostate.readZSumMax[state.index].readFrom(in);
 			}
 			for (MultiStateConfSpace.State state : confSpace.states) {
-				iostate.writeZSumMax[state.index].readFrom(io);
+				iostate.writeZSumMax[state.index].readFrom(in);
 			}
 
 			// pad to 32 bytes
-			int numBytesRead = confSpace.states.size()*BigExp.NumBytes*2;
-			int numBytesNeeded = MathTools.roundUpToMultiple(numBytesRead, 32);
-			for (int i=numBytesRead; i<numBytesNeeded; i++) {
-				io.readByte();
-			}
-			assert (io.getFilePointer() % 32 == 0);
-
-			posEntries = io.getFilePointer();
+			posEntries = headerBytes;
+			assert (posEntries % 32 == 0);
 
 			// how many entries can we have?
-			maxNumEntries = (file.length() - posEntries)/entryBytes;
+			maxNumEntries = (fileBytes - posEntries)/entryBytes;
+			maxReadEntries = Math.max(1, ReadChunkBytes/entryBytes);
 
 		} catch (IOException ex) {
+			scope.close();
 			throw new RuntimeException("can't open db file: " + file.getAbsolutePath(), ex);
 		}
+
+		// make a thread to load the next nodes into memory while we're reading the current ones
+		prefetcher = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "FringeDB-prefetch");
+			thread.setDaemon(true);
+			return thread;
+		});
 	}
 
 	@Override
 	public void close() {
+
+		// wait for any outstanding prefetches before unmapping the file
+		prefetcher.shutdownNow();
 		try {
-			io.close();
-		} catch (IOException ex) {
+			prefetcher.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException ex) {
 			// don't care
 		}
+
+		scope.close();
+	}
+
+	/** returns the mapped region for the given range of entries, which must not wrap around */
+	private MemorySegment entries(long index, long count) {
+		return mem.asSlice(posEntries + index*entryBytes, count*entryBytes);
+	}
+
+	/** returns the most entries to read at once, starting at the given read state */
+	private long numToReadAt(long readIndex, long numToRead) {
+
+		// what's the most entries we could read without wrapping around?
+		long num = maxNumEntries - readIndex;
+
+		// but don't read more entries than are waiting
+		num = Math.min(num, numToRead);
+
+		// but don't read more than one chunk
+		return Math.min(num, maxReadEntries);
+	}
+
+	/** loads the given range of entries into memory in the background */
+	private void prefetch(long index, long count) {
+		if (count <= 0) {
+			return;
+		}
+		MemorySegment segment = entries(index, count);
+		prefetcher.submit(() -> {
+			// NOTE: this is just a hint to the OS, so don't worry if it fails
+			try {
+				segment.load();
+			} catch (IllegalStateException ex) {
+				// the db was closed
+			}
+		});
+	}
+
+	private void writeZStats(long pos, BigExp[] zSumMax) {
+		ByteBuffer buf = mem.asSlice(pos, BigExp.NumBytes*confSpace.states.size()).asByteBuffer();
+		DataOutput out = new DataOutputStream(new ByteBufferOutputStream(buf));
+		try {
+			for (MultiStateConfSpace.State state : confSpace.states) {
+				zSumMax[state.index].writeTo(out);
+			}
+		} catch (IOException ex) {
+			throw new RuntimeException("can't write z stats", ex);
+		}
+	}
+
+	private void writeIOState(IOState iostate) {
+		ByteBuffer buf = mem.asSlice(posIOState, Long.BYTES*4).asByteBuffer();
+		buf.putLong(iostate.readIndex);
+		buf.putLong(iostate.numToRead);
+		buf.putLong(iostate.writeIndex);
+		buf.putLong(iostate.numWritten);
+	}
+
+	/** flushes the header to the underlying storage */
+	private void forceHeader() {
+		mem.asSlice(0, posEntries).force();
 	}
 
 	private int calcEntrySize() {
@@ -354,9 +456,9 @@ public class FringeDB implements AutoCloseable {
 		private int[] conf;
 		private BigExp zSumUpper;
 
-		private final ByteBuffer readBuf = ByteBuffer.allocate(1024*1024);
-		private final DataInput readIn = new DataInputStream(new ByteBufferInputStream(readBuf));
-		private final int maxReadEntries = readBuf.capacity()/entryBytes;
+		// the read buffer is a view of the mapped file, so reads don't need to copy
+		private ByteBuffer readBuf = ByteBuffer.allocate(0);
+		private DataInput readIn = null;
 
 		private final ByteBuffer writeBuf = ByteBuffer.allocate(1024*1024);
 		private final DataOutput writeOut = new DataOutputStream(new ByteBufferOutputStream(writeBuf));
@@ -365,8 +467,6 @@ public class FringeDB implements AutoCloseable {
 
 		private Transaction() {
 			// keep the constructor private
-
-			readBuf.limit(0);
 		}
 
 		/** number of unread nodes left in this sweep */
@@ -388,58 +488,16 @@ public class FringeDB implements AutoCloseable {
 
 			try {
 
-				// if the read buffer is empty, fill it up
-				if (readBuf.position() == readBuf.limit()) {
-
-					// what's the most entries we could read without wrapping around?
-					long numToRead = maxNumEntries - iostate.readIndex;
-
-					// but don't read more entries than are waiting
-					numToRead = Math.min(numToRead, iostate.numToRead);
-
-					// but don't read more than the buffer
-					numToRead = Math.min(numToRead, maxReadEntries);
-
-					try {
-
-						int readSize = (int)(numToRead*entryBytes);
-						io.seek(posEntries + iostate.readIndex*entryBytes);
-						io.readFully(readBuf.array(), 0, readSize);
-						readBuf.position(0);
-						readBuf.limit(readSize);
-
-					} catch (IOException ex) {
-
-						// this actually happened, so add more debugging info to the exception
-						throw new IOException(
-							String.format(
-								"can't fill read buffer."
-									+ "\n\tmaxReadEntries=%d"
-									+ "\n\tiostate.numToRead=%d"
-									+ "\n\tmaxNumToRead=%d"
-									+ "\n\tnumToRead=%d"
-									+ "\n\tposEntries=%d"
-									+ "\n\tiostate.readIndex=%d"
-									+ "\n\tentryBytes=%d"
-									+ "\n\tseek pos=%d"
-									+ "\n\tread len=%d"
-									+ "\n\tend read pos=%d"
-									+ "\n\tcapacity=%d",
-								maxReadEntries,
-								iostate.numToRead,
-								maxNumEntries - iostate.readIndex,
-								numToRead,
-								posEntries,
-								iostate.readIndex,
-								entryBytes,
-								posEntries + iostate.readIndex*entryBytes,
-								numToRead*entryBytes,
-								posEntries + iostate.readIndex*entryBytes + numToRead*entryBytes,
-								io.length()
-							),
-							ex
-						);
-					}
+				// if the read buffer is empty, point it at the next chunk of entries
+				if (!readBuf.hasRemaining()) {
+
+					long numToRead = numToReadAt(iostate.readIndex, iostate.numToRead);
+					readBuf = entries(iostate.readIndex, numToRead).asByteBuffer();
+					readIn = new DataInputStream(new ByteBufferInputStream(readBuf));
+
+					// start loading the chunk after this one
+					long nextIndex = iostate.advanceEntryIndex(iostate.readIndex, (int)numToRead);
+					prefetch(nextIndex, numToReadAt(nextIndex, iostate.numToRead - numToRead));
 				}
 
 				// read the next entry out of the read buffer
@@ -584,56 +642,36 @@ public class FringeDB implements AutoCloseable {
 				throw new IllegalStateException("transaction too big to commit");
 			}
 
-			try {
-
-				// write the replacement entries
-				writeBuf.flip();
-				long maxNumToWriteAtOnce = maxNumEntries - iostate.writeIndex;
-				if (writtenEntries <= maxNumToWriteAtOnce) {
-
-					// write it all in one pass
-					io.seek(posEntries + iostate.writeIndex*entryBytes);
-					io.write(writeBuf.array(), 0, writtenEntries*entryBytes);
-					iostate.advanceWrite(writtenEntries);
-
-				} else {
-
-					// write in two passes
-					int numWrittenPass1 = (int)maxNumToWriteAtOnce;
-					io.seek(posEntries + iostate.writeIndex*entryBytes);
-					io.write(writeBuf.array(), 0, numWrittenPass1*entryBytes);
-					iostate.advanceWrite(numWrittenPass1);
-
-					int numWrittenPass2 = writtenEntries - (int)maxNumToWriteAtOnce;
-					io.seek(posEntries + iostate.writeIndex*entryBytes);
-					io.write(writeBuf.array(), numWrittenPass1*entryBytes, numWrittenPass2*entryBytes);
-					iostate.advanceWrite(numWrittenPass2);
-				}
-				writeBuf.clear();
-				writtenEntries = 0;
-
-				// write zSumMax
-				io.seek(posZStats + BigExp.NumBytes*confSpace.states.size());
-				for (MultiStateConfSpace.State state : confSpace.states) {
-					iostate.writeZSumMax[state.index].writeTo(io);
-				}
+			// copy the replacement entries into the mapped file in bulk, wrapping around if needed
+			writeBuf.flip();
+			int numLeft = writtenEntries;
+			while (numLeft > 0) {
+				int numToWrite = (int)Math.min(numLeft, maxNumEntries - iostate.writeIndex);
+				MemorySegment segment = entries(iostate.writeIndex, numToWrite);
+				ByteBuffer src = writeBuf.slice(writeBuf.position(), numToWrite*entryBytes);
+				segment.asByteBuffer().put(src);
+				writeBuf.position(writeBuf.position() + numToWrite*entryBytes);
+
+				// flush the new entries before the header points at them
+				segment.force();
+
+				iostate.advanceWrite(numToWrite);
+				numLeft -= numToWrite;
+			}
+			writeBuf.clear();
+			writtenEntries = 0;
 
-				// persist io state
-				io.seek(posIOState);
-				io.writeLong(iostate.readIndex);
-				io.writeLong(iostate.numToRead);
-				io.writeLong(iostate.writeIndex);
-				io.writeLong(iostate.numWritten);
+			// write zSumMax
+			writeZStats(posZStats + BigExp.NumBytes*confSpace.states.size(), iostate.writeZSumMax);
 
-				// copy io state outside of transaction
-				iostate.copyTo(FringeDB.this.iostate);
+			// persist io state
+			writeIOState(iostate);
 
-				// flush changes to storage
-				io.getChannel().force(false);
+			// copy io state outside of transaction
+			iostate.copyTo(FringeDB.this.iostate);
 
-			} catch (IOException ex) {
-				throw new RuntimeException("commit failed", ex);
-			}
+			// flush changes to storage
+			forceHeader();
 		}
 	}
 
@@ -652,35 +690,25 @@ public class FringeDB implements AutoCloseable {
 			throw new IllegalStateException("sweep not finished, " + iostate.numToRead + " nodes left to read");
 		}
 
-		try {
-
-			// update the entry counts
-			iostate.numToRead = iostate.numWritten;
-			iostate.numWritten = 0;
+		// update the entry counts
+		iostate.numToRead = iostate.numWritten;
+		iostate.numWritten = 0;
 
-			// update the z stats
-			io.seek(posZStats);
-			for (MultiStateConfSpace.State state : confSpace.states) {
-				iostate.readZSumMax[state.index].set(iostate.writeZSumMax[state.index]);
-				iostate.readZSumMax[state.index].writeTo(io);
-			}
-			for (MultiStateConfSpace.State state : confSpace.states) {
-				iostate.writeZSumMax[state.index].set(Double.NaN);
-				iostate.writeZSumMax[state.index].writeTo(io);
-			}
+		// update the z stats
+		for (MultiStateConfSpace.State state : confSpace.states) {
+			iostate.readZSumMax[state.index].set(iostate.writeZSumMax[state.index]);
+			iostate.writeZSumMax[state.index].set(Double.NaN);
+		}
+		writeZStats(posZStats, iostate.readZSumMax);
+		writeZStats(posZStats + BigExp.NumBytes*confSpace.states.size(), iostate.writeZSumMax);
 
-			// persist read state
-			io.seek(posIOState);
-			io.writeLong(iostate.readIndex);
-			io.writeLong(iostate.numToRead);
-			io.writeLong(iostate.writeIndex);
-			io.writeLong(iostate.numWritten);
+		// persist read state
+		writeIOState(iostate);
 
-			// flush changes to storage
-			io.getChannel().force(false);
+		// flush changes to storage
+		forceHeader();
 
-		} catch (IOException ex) {
-			throw new RuntimeException("finish failed", ex);
-		}
+		// start loading the first nodes of the next sweep
+		prefetch(iostate.readIndex, numToReadAt(iostate.readIndex, iostate.numToRead));
 	}
 }
@@ -142,27 +142,67 @@ public class RCDB implements AutoCloseable {
 				&& MathTools.isZero(bounds.upper);
 		}
 
-		public void update(int pos, int rc, Consumer<BigDecimalBounds> updater) {
+		private void update(int id, Consumer<BigDecimalBounds> updater) {
 
-			BigDecimalBounds sum = getZSumBounds(pos, rc);
+			// get the sum, or [0,0]
+			BigDecimalBounds sum = map.get(id);
+			if (sum == null) {
+				sum = new BigDecimalBounds(BigDecimal.ZERO, BigDecimal.ZERO);
+			}
 
 			updater.accept(sum);
 
 			// save the sum, if it's not [0,0]
 			if (isZero(sum)) {
-				map.remove(getId(pos, rc));
+				map.remove(id);
 			} else {
-				map.put(getId(pos, rc), sum);
+				map.put(id, sum);
 			}
 		}
 
-		public void addZSumUpper(int pos, int rc, BigDecimal zSumUpper) {
+		public void update(int pos, int rc, Consumer<BigDecimalBounds> updater) {
+			update(getId(pos, rc), updater);
+		}
+	}
+
+	/**
+	 * Buffers changes to the RC sums, so they can be written to the database all at once,
+	 * along with the matching SeqDB and FringeDB transactions.
+	 *
+	 * Changes in a transaction are not visible to readers until the transaction is committed.
+	 */
+	public class Transaction {
+
+		private final Map<Table,Map<Integer,BigDecimalBounds>> sums = new HashMap<>();
+		private boolean isEmpty = true;
+
+		private Transaction() {
+			// keep the constructor private
+		}
+
+		public BigMath bigMath() {
+			return RCDB.this.bigMath();
+		}
+
+		private void update(Table table, int pos, int rc, Consumer<BigDecimalBounds> updater) {
+
+			// get the tx sum, or empty
+			BigDecimalBounds sum = sums
+				.computeIfAbsent(table, key -> new HashMap<>())
+				.computeIfAbsent(table.getId(pos, rc), key -> new BigDecimalBounds(BigDecimal.ZERO, BigDecimal.ZERO));
+
+			updater.accept(sum);
+
+			isEmpty = false;
+		}
+
+		public void addZSumUpper(MultiStateConfSpace.State state, Sequence seq, int[] conf, int pos, BigDecimal zSumUpper) {
 
 			if (!MathTools.isFinite(zSumUpper)) {
 				throw new IllegalArgumentException("Z must be finite: " + zSumUpper);
 			}
 
-			update(pos, rc, sum -> {
+			update(table(state, seq), pos, conf[pos], sum -> {
 				sum.upper = bigMath()
 					.set(sum.upper)
 					.add(zSumUpper)
@@ -170,13 +210,13 @@ public class RCDB implements AutoCloseable {
 			});
 		}
 
-		public void subZSumUpper(int pos, int rc, BigDecimal zSumUpper) {
+		public void subZSumUpper(MultiStateConfSpace.State state, Sequence seq, int[] conf, int pos, BigDecimal zSumUpper) {
 
 			if (!MathTools.isFinite(zSumUpper)) {
 				throw new IllegalArgumentException("Z must be finite: " + zSumUpper);
 			}
 
-			update(pos, rc, sum -> {
+			update(table(state, seq), pos, conf[pos], sum -> {
 				sum.upper = bigMath()
 					.set(sum.upper)
 					.sub(zSumUpper)
@@ -184,16 +224,16 @@ public class RCDB implements AutoCloseable {
 			});
 		}
 
-		public void addZPath(int[] conf, int pos, BigDecimal zPath, BigDecimal zSumUpper) {
+		public void addZPath(MultiStateConfSpace.State state, Sequence seq, int[] conf, int pos, BigDecimal zPath, BigDecimal zSumUpper) {
 
 			if (!MathTools.isFinite(zPath) || !MathTools.isFinite(zSumUpper)) {
 				throw new IllegalArgumentException("Z must be finite: " + zPath + ", " + zSumUpper);
 			}
 
-			for (int posi=0; posi<state.confSpace.numPos(); posi++) {
-				int rc = conf[posi];
+			Table table = table(state, seq);
 
-				update(posi, rc, sum -> {
+			for (int posi=0; posi<state.confSpace.numPos(); posi++) {
+				update(table, posi, conf[posi], sum -> {
 					sum.lower = bigMath()
 						.set(sum.lower)
 						.add(zPath)
@@ -206,30 +246,79 @@ public class RCDB implements AutoCloseable {
 			}
 
 			// subtract off the zSumUpper only on the last position to be assigned (ie, the leaf node)
-			update(pos, conf[pos], sum ->
+			update(table, pos, conf[pos], sum ->
 				sum.upper = bigMath()
 					.set(sum.upper)
 					.sub(zSumUpper)
 					.get()
 			);
 		}
+
+		public boolean isEmpty() {
+			return isEmpty;
+		}
+
+		public void commit() {
+
+			// short circuit
+			if (isEmpty) {
+				return;
+			}
+
+			// push writes to the db, all at once
+			synchronized (RCDB.this) {
+
+				for (Map.Entry<Table,Map<Integer,BigDecimalBounds>> tableEntry : sums.entrySet()) {
+					Table table = tableEntry.getKey();
+					for (Map.Entry<Integer,BigDecimalBounds> entry : tableEntry.getValue().entrySet()) {
+						BigDecimalBounds delta = entry.getValue();
+						table.update(entry.getKey(), sum -> {
+							sum.lower = bigMath()
+								.set(sum.lower)
+								.add(delta.lower)
+								.get();
+							sum.upper = bigMath()
+								.set(sum.upper)
+								.add(delta.upper)
+								.get();
+						});
+					}
+				}
+
+				db.commit();
+			}
+
+			// reset the tx
+			sums.clear();
+			isEmpty = true;
+		}
+	}
+
+	public Transaction transaction() {
+		return new Transaction();
 	}
 
-	public Table table(MultiStateConfSpace.State state, Sequence seq) {
+	public synchronized Table table(MultiStateConfSpace.State state, Sequence seq) {
 		String id = String.format("%d[%s]", state.index, seq.toString(Sequence.Renderer.ResType));
 		return tables.computeIfAbsent(id, key -> new Table(state, seq, id));
 	}
 
 	public void addZSumUpper(MultiStateConfSpace.State state, Sequence seq, int[] conf, int pos, BigDecimal zSumUpper) {
-		table(state, seq).addZSumUpper(pos, conf[pos], zSumUpper);
+		Transaction tx = transaction();
+		tx.addZSumUpper(state, seq, conf, pos, zSumUpper);
+		tx.commit();
 	}
 
 	public void subZSumUpper(MultiStateConfSpace.State state, Sequence seq, int[] conf, int pos, BigDecimal zSumUpper) {
-		table(state, seq).subZSumUpper(pos, conf[pos], zSumUpper);
+		Transaction tx = transaction();
+		tx.subZSumUpper(state, seq, conf, pos, zSumUpper);
+		tx.commit();
 	}
 
 	public void addZPath(MultiStateConfSpace.State state, Sequence seq, int[] conf, int pos, BigDecimal zPath, BigDecimal zSumUpper) {
-		table(state, seq).addZPath(conf, pos, zPath, zSumUpper);
+		Transaction tx = transaction();
+		tx.addZPath(state, seq, conf, pos, zPath, zSumUpper);
+		tx.commit();
 	}
 
 	public BigDecimalBounds getZSumBounds(MultiStateConfSpace.State state, Sequence seq, int pos, int rc) {
@@ -270,8 +359,7 @@ public class RCDB implements AutoCloseable {
 		}
 	}
 
-	// TODO: implement transactions
-	public void commit() {
+	public synchronized void commit() {
 		db.commit();
 	}
 }
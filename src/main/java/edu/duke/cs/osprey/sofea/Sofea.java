@@ -53,6 +53,7 @@ import java.math.MathContext;
 import java.math.RoundingMode;
 import java.util.*;
 import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -157,6 +158,16 @@ public class Sofea {
 		 */
 		private double negligableFreeEnergy = -1.0;
 
+		/**
+		 * How many fringe nodes should each task process at once?
+		 *
+		 * Nodes in a batch are read from the fringe database together, refined by a single task,
+		 * and their results are merged back into the databases together, so larger batches
+		 * spend less time contending for the databases, but smaller batches balance the load
+		 * between threads better.
+		 */
+		private int sweepBatchSize = 1;
+
 		public Builder(MultiStateConfSpace confSpace) {
 
 			this.confSpace = confSpace;
@@ -251,6 +262,11 @@ public class Sofea {
 			return this;
 		}
 
+		public Builder setSweepBatchSize(int val) {
+			sweepBatchSize = val;
+			return this;
+		}
+
 		public Sofea build() {
 
 			// make sure all the states are configured
@@ -262,6 +278,10 @@ public class Sofea {
 				throw new IllegalStateException("not all states have been configured. Please configure states: " + unconfiguredStateNames);
 			}
 
+			if (sweepBatchSize <= 0) {
+				throw new IllegalArgumentException("sweep batch size must be positive, not " + sweepBatchSize);
+			}
+
 			return new Sofea(
 				confSpace,
 				Arrays.asList(stateConfigs),
@@ -277,7 +297,8 @@ public class Sofea {
 				sweepIncrement,
 				maxCriterionCheckSeconds,
 				maxNumMinimizations,
-				negligableFreeEnergy
+				negligableFreeEnergy,
+				sweepBatchSize
 			);
 		}
 	}
@@ -359,6 +380,7 @@ public class Sofea {
 	public final int maxCriterionCheckSeconds;
 	public final long maxNumMinimizations;
 	public final double negligableFreeEnergy;
+	public final int sweepBatchSize;
 
 	public final MathContext mathContext = BigExp.mathContext;
 	public final BoltzmannCalculator bcalc;
@@ -372,7 +394,8 @@ public class Sofea {
 		MultiStateConfSpace confSpace, List<StateConfig> stateConfigs, File seqdbFile, MathContext seqdbMathContext,
 		File fringedbLowerFile, long fringedbLowerBytes, File fringedbUpperFile, long fringedbUpperBytes, File rcdbFile,
 		boolean showProgress, File performanceLogFile,
-		double sweepIncrement, int maxCriterionCheckSeconds, long maxNumMinimizations, double negligableFreeEnergy
+		double sweepIncrement, int maxCriterionCheckSeconds, long maxNumMinimizations, double negligableFreeEnergy,
+		int sweepBatchSize
 	) {
 
 		this.confSpace = confSpace;
@@ -390,6 +413,7 @@ public class Sofea {
 		this.maxCriterionCheckSeconds = maxCriterionCheckSeconds;
 		this.maxNumMinimizations = maxNumMinimizations;
 		this.negligableFreeEnergy = negligableFreeEnergy;
+		this.sweepBatchSize = sweepBatchSize;
 
 		bcalc = new BoltzmannCalculator(mathContext);
 
@@ -661,12 +685,12 @@ public class Sofea {
 			// zSumUpper should already be normalized
 		}
 
-		boolean replacePass1(FringeDB.Transaction fringetx, SeqDB.Transaction seqtx, RCDB rcdb) {
+		boolean replacePass1(FringeDB.Transaction fringetx, SeqDB.Transaction seqtx, RCDB.Transaction rctx) {
 
 			// flush transactions if needed
 			boolean flush = !fringetx.txHasRoomFor(replacementNodes.size());
 			if (flush) {
-				flushTransactions(fringetx, seqtx);
+				flushTransactions(fringetx, seqtx, rctx);
 			}
 
 			StateInfo stateInfo = stateInfos.get(state.index);
@@ -688,19 +712,19 @@ public class Sofea {
 			seqtx.subZSumUpper(state, stateInfo.makeSeq(conf), zSumUpper);
 
 			// update rcdb if needed
-			if (rcdb != null) {
-				updateRCDBPass1(rcdb);
+			if (rctx != null) {
+				updateRCDBPass1(rctx);
 			}
 
 			return flush;
 		}
 
-		boolean requeuePass1(FringeDB.Transaction fringetx, SeqDB.Transaction seqtx, RCDB rcdb) {
+		boolean requeuePass1(FringeDB.Transaction fringetx, SeqDB.Transaction seqtx, RCDB.Transaction rctx) {
 
 			// flush transactions if needed
 			boolean flush = !fringetx.txHasRoomFor(1);
 			if (flush) {
-				flushTransactions(fringetx, seqtx);
+				flushTransactions(fringetx, seqtx, rctx);
 			}
 
 			if (replacementNodes.isEmpty() && zPaths.isEmpty()) {
@@ -739,27 +763,27 @@ public class Sofea {
 				seqtx.subZSumUpper(state, seq, zSumUpper);
 
 				// update rcdb if needed
-				if (rcdb != null ) {
-					updateRCDBPass1(rcdb);
+				if (rctx != null) {
+					updateRCDBPass1(rctx);
 				}
 			}
 
 			return flush;
 		}
 
-		void updateRCDBPass1(RCDB rcdb) {
+		void updateRCDBPass1(RCDB.Transaction rctx) {
 
 			StateInfo stateInfo = stateInfos.get(state.index);
 
 			for (RCInfo rcInfo : rcInfos) {
 
 				// add zSumUppers for all encountered nodes
-				rcdb.addZSumUpper(state, stateInfo.makeSeq(rcInfo.conf), rcInfo.conf, rcInfo.pos, rcInfo.zSumUpper);
+				rctx.addZSumUpper(state, stateInfo.makeSeq(rcInfo.conf), rcInfo.conf, rcInfo.pos, rcInfo.zSumUpper);
 
 				// and subtract from the parent nodes if needed
 				if (rcInfo.parentPos != Conf.Unassigned) {
 					Conf.unassignFor(rcInfo.conf, rcInfo.pos, () ->
-						rcdb.subZSumUpper(state, stateInfo.makeSeq(rcInfo.conf), rcInfo.conf, rcInfo.parentPos, rcInfo.zSumUpperInParent)
+						rctx.subZSumUpper(state, stateInfo.makeSeq(rcInfo.conf), rcInfo.conf, rcInfo.parentPos, rcInfo.zSumUpperInParent)
 					);
 				}
 			}
@@ -767,16 +791,16 @@ public class Sofea {
 			// subtract the current node, unless it's a root node
 			int pos = stateInfo.getLastAssignedPos(conf);
 			if (pos >= 0) {
-				rcdb.subZSumUpper(state, stateInfo.makeSeq(conf), conf, pos, zSumUpper.toBigDecimal());
+				rctx.subZSumUpper(state, stateInfo.makeSeq(conf), conf, pos, zSumUpper.toBigDecimal());
 			}
 		}
 
-		boolean replacePass2(FringeDB.Transaction fringetx, SeqDB.Transaction seqtx, RCDB rcdb) {
+		boolean replacePass2(FringeDB.Transaction fringetx, SeqDB.Transaction seqtx, RCDB.Transaction rctx) {
 
 			// flush transactions if needed
 			boolean flush = !fringetx.txHasRoomFor(replacementNodes.size());
 			if (flush) {
-				flushTransactions(fringetx, seqtx);
+				flushTransactions(fringetx, seqtx, rctx);
 			}
 
 			StateInfo stateInfo = stateInfos.get(state.index);
@@ -794,18 +818,18 @@ public class Sofea {
 			}
 
 			// update rcdb if needed
-			if (rcdb != null) {
+			if (rctx != null) {
 				for (ZPath zPath : zPaths) {
 
 					// add to the lower bound for all the RCs in this conf
 					int pos = stateInfo.getLastAssignedPos(zPath.conf);
-					rcdb.addZPath(state, stateInfo.makeSeq(zPath.conf), zPath.conf, pos, zPath.zPath.toBigDecimal(), zPath.zSumUpper.toBigDecimal());
+					rctx.addZPath(state, stateInfo.makeSeq(zPath.conf), zPath.conf, pos, zPath.zPath.toBigDecimal(), zPath.zSumUpper.toBigDecimal());
 
 					// subtract from the upper bound for the parent node
 					Conf.unassignFor(zPath.conf, pos, () -> {
 						int parentPos = stateInfo.getLastAssignedPos(zPath.conf);
 						if (parentPos >= 0) {
-							rcdb.subZSumUpper(state, stateInfo.makeSeq(zPath.conf), zPath.conf, parentPos, zPath.zSumUpper.toBigDecimal());
+							rctx.subZSumUpper(state, stateInfo.makeSeq(zPath.conf), zPath.conf, parentPos, zPath.zSumUpper.toBigDecimal());
 						}
 					});
 				}
@@ -814,12 +838,12 @@ public class Sofea {
 			return flush;
 		}
 
-		boolean requeuePass2(FringeDB.Transaction fringetx, SeqDB.Transaction seqtx, RCDB rcdb) {
+		boolean requeuePass2(FringeDB.Transaction fringetx, SeqDB.Transaction seqtx, RCDB.Transaction rctx) {
 
 			// flush transactions if needed
 			boolean flush = !fringetx.txHasRoomFor(1);
 			if (flush) {
-				flushTransactions(fringetx, seqtx);
+				flushTransactions(fringetx, seqtx, rctx);
 			}
 
 			normalize();
@@ -851,7 +875,7 @@ public class Sofea {
 			return flush;
 		}
 
-		boolean flushTransactions(FringeDB.Transaction fringetx, SeqDB.Transaction seqtx) {
+		boolean flushTransactions(FringeDB.Transaction fringetx, SeqDB.Transaction seqtx, RCDB.Transaction rctx) {
 
 			// make sure we didn't overflow the buffer entirely
 			if (replacementNodes.size() > fringetx.maxWriteBufferNodes()) {
@@ -860,10 +884,12 @@ public class Sofea {
 				));
 			}
 
-			// commit both transactions at the same time
+			// commit all the transactions at the same time
 			fringetx.commit();
 			seqtx.commit();
-			// TODO: make transactions for RCDB
+			if (rctx != null) {
+				rctx.commit();
+			}
 
 			return true;
 		}
@@ -1279,6 +1305,43 @@ public class Sofea {
 			.toArray(size -> new BigExp[size]);
 	}
 
+	/**
+	 * Reads the next batch of fringe nodes and makes transactions for them.
+	 * Returns an empty batch when there are no more nodes to read in this sweep step.
+	 */
+	private List<NodeTransaction> readBatch(FringeDB.Transaction fringetx, int[] nodesInFlight, Consumer<NodeTransaction> onRead) {
+		List<NodeTransaction> batch = new ArrayList<>(sweepBatchSize);
+		synchronized (this) { // don't race the listener thread
+			while (batch.size() < sweepBatchSize && fringetx.hasNodesToRead()) {
+				fringetx.readNode();
+				nodesInFlight[0]++;
+				NodeTransaction nodetx = new NodeTransaction(
+					fringetx.state(),
+					fringetx.conf(),
+					fringetx.zSumUpper()
+				);
+				onRead.accept(nodetx);
+				batch.add(nodetx);
+			}
+		}
+		return batch;
+	}
+
+	/**
+	 * Removes the nodes the criterion wants to requeue from the batch, and returns them.
+	 */
+	private List<NodeTransaction> filterBatch(List<NodeTransaction> batch, Criterion criterion) {
+		List<NodeTransaction> filtered = new ArrayList<>();
+		batch.removeIf(nodetx -> {
+			if (criterion.filterNode(nodetx.state, nodetx.conf, bcalc) == Criterion.Filter.Requeue) {
+				filtered.add(nodetx);
+				return true;
+			}
+			return false;
+		});
+		return filtered;
+	}
+
 	private long pass1(FringeDB fringedb, SeqDB seqdb, RCDB rcdb, long step, Criterion criterion, Double[] gThresholds, Stopwatch stopwatch, double targetSeconds) {
 
 		if (showProgress) {
@@ -1307,6 +1370,7 @@ public class Sofea {
 
 		FringeDB.Transaction fringetx = fringedb.transaction();
 		SeqDB.Transaction seqtx = seqdb.transaction();
+		RCDB.Transaction rctx = rcdb != null ? rcdb.transaction() : null;
 		long numNodesToRead = fringetx.numNodesToRead();
 
 		// keep track of how many nodes are in outstanding tasks, and hence unknown to FringeDB's size counters
@@ -1321,61 +1385,70 @@ public class Sofea {
 				break;
 			}
 
-			// read the next node and make a transaction for it
-			final NodeTransaction nodetx;
-			synchronized (Sofea.this) { // don't race the listener thread
-				if (!fringetx.hasNodesToRead()) {
-					break;
-				}
-				fringetx.readNode();
-				stats[fringetx.state().index].read++;
-				nodesInFlight[0]++;
-				nodetx = new NodeTransaction(
-					fringetx.state(),
-					fringetx.conf(),
-					fringetx.zSumUpper()
-				);
+			// read the next batch of nodes and make transactions for them
+			List<NodeTransaction> batch = readBatch(fringetx, nodesInFlight, nodetx -> stats[nodetx.state.index].read++);
+			if (batch.isEmpty()) {
+				break;
 			}
 
 			// check the node filter in the criterion
-			if (criterion != null && criterion.filterNode(nodetx.state, nodetx.conf, bcalc) == Criterion.Filter.Requeue) {
-				synchronized (Sofea.this) { // don't race the listener thread
-					stats[nodetx.state.index].requeuedByFilter++;
-					nodesInFlight[0]--;
-					nodetx.requeuePass1(fringetx, seqtx, rcdb);
+			if (criterion != null) {
+				List<NodeTransaction> filtered = filterBatch(batch, criterion);
+				if (!filtered.isEmpty()) {
+					synchronized (Sofea.this) { // don't race the listener thread
+						for (NodeTransaction nodetx : filtered) {
+							stats[nodetx.state.index].requeuedByFilter++;
+							nodesInFlight[0]--;
+							nodetx.requeuePass1(fringetx, seqtx, rctx);
+						}
+					}
+				}
+				if (batch.isEmpty()) {
+					continue;
 				}
-				continue;
 			}
 
-			// process nodes with tasks (possibly in parallel)
+			// process batches with tasks (possibly in parallel)
 			tasks.submit(
-				() -> refineZSumUpper(
-					nodetx,
-					zThresholds[nodetx.state.index],
-					nodetx.index,
-					nodetx.zSumUpper
-				),
-				(result) -> {
+				() -> {
+					NodeResult[] results = new NodeResult[batch.size()];
+					for (int i=0; i<batch.size(); i++) {
+						NodeTransaction nodetx = batch.get(i);
+						results[i] = refineZSumUpper(
+							nodetx,
+							zThresholds[nodetx.state.index],
+							nodetx.index,
+							nodetx.zSumUpper
+						);
+					}
+					return results;
+				},
+				(results) -> {
 
 					synchronized (Sofea.this) { // don't race the main thread
 
-						nodesInFlight[0]--;
+						for (int i=0; i<batch.size(); i++) {
+							NodeTransaction nodetx = batch.get(i);
+							NodeResult result = results[i];
 
-						if (result == NodeResult.Saved) {
+							nodesInFlight[0]--;
 
-							stats[nodetx.state.index].requeuedByThreshold++;
-							nodetx.requeuePass1(fringetx, seqtx, rcdb);
+							if (result == NodeResult.Saved) {
 
-						} else if (nodetx.hasRoomToReplace(fringetx, nodesInFlight[0])) {
+								stats[nodetx.state.index].requeuedByThreshold++;
+								nodetx.requeuePass1(fringetx, seqtx, rctx);
 
-							stats[nodetx.state.index].expanded++;
-							stats[nodetx.state.index].added += nodetx.numReplacementNodes();
-							nodetx.replacePass1(fringetx, seqtx, rcdb);
+							} else if (nodetx.hasRoomToReplace(fringetx, nodesInFlight[0])) {
 
-						} else {
+								stats[nodetx.state.index].expanded++;
+								stats[nodetx.state.index].added += nodetx.numReplacementNodes();
+								nodetx.replacePass1(fringetx, seqtx, rctx);
+
+							} else {
 
-							stats[nodetx.state.index].requeuedForSpace++;
-							nodetx.requeuePass1(fringetx, seqtx, rcdb);
+								stats[nodetx.state.index].requeuedForSpace++;
+								nodetx.requeuePass1(fringetx, seqtx, rctx);
+							}
 						}
 					}
 				}
@@ -1384,6 +1457,9 @@ public class Sofea {
 		tasks.waitForFinish();
 		fringetx.commit();
 		seqtx.commit();
+		if (rctx != null) {
+			rctx.commit();
+		}
 
 		// show stats if needed
 		if (showProgress) {
@@ -1534,6 +1610,7 @@ public class Sofea {
 		FringeDB.Transaction fringetx = fringedb.transaction();
 		long numNodesToRead = fringetx.numNodesToRead();
 		SeqDB.Transaction seqtx = seqdb.transaction();
+		RCDB.Transaction rctx = rcdb != null ? rcdb.transaction() : null;
 
 		// keep track of how many nodes are in outstanding tasks, and hence unknown to FringeDB's size counters
 		// NOTE: use a size-one array instead of a plain var, since Java's compiler is kinda dumb about lambdas
@@ -1578,7 +1655,7 @@ public class Sofea {
 							stats[nodetx.state.index].expanded++;
 							stats[nodetx.state.index].added += nodetx.numReplacementNodes();
 							stats[nodetx.state.index].minimized += nodetx.zPaths.size();
-							nodetx.replacePass2(fringetx, seqtx, rcdb);
+							nodetx.replacePass2(fringetx, seqtx, rctx);
 						}
 					}
 				);
@@ -1595,81 +1672,90 @@ public class Sofea {
 
 			processMinimizationQueue.run();
 
-			// read the next node and make a transaction for it
-			final NodeTransaction nodetx;
-			synchronized (Sofea.this) { // don't race the listener thread
-				if (!fringetx.hasNodesToRead()) {
-					break;
-				}
-				fringetx.readNode();
-				stats[fringetx.state().index].read++;
-				nodesInFlight[0]++;
-				nodetx = new NodeTransaction(
-					fringetx.state(),
-					fringetx.conf(),
-					fringetx.zSumUpper()
-				);
+			// read the next batch of nodes and make transactions for them
+			List<NodeTransaction> batch = readBatch(fringetx, nodesInFlight, nodetx -> stats[nodetx.state.index].read++);
+			if (batch.isEmpty()) {
+				break;
 			}
 
 			// check the node filter in the criterion
-			if (criterion != null && criterion.filterNode(nodetx.state, nodetx.conf, bcalc) == Criterion.Filter.Requeue) {
-				synchronized (Sofea.this) { // don't race the listener thread
-					nodesInFlight[0]--;
-					stats[nodetx.state.index].requeuedByFilter++;
-					nodetx.requeuePass2(fringetx, seqtx, rcdb);
+			if (criterion != null) {
+				List<NodeTransaction> filtered = filterBatch(batch, criterion);
+				if (!filtered.isEmpty()) {
+					synchronized (Sofea.this) { // don't race the listener thread
+						for (NodeTransaction nodetx : filtered) {
+							nodesInFlight[0]--;
+							stats[nodetx.state.index].requeuedByFilter++;
+							nodetx.requeuePass2(fringetx, seqtx, rctx);
+						}
+					}
+				}
+				if (batch.isEmpty()) {
+					continue;
 				}
-				continue;
 			}
 
-			// try to expand the node (possibly in parallel)
+			// try to expand the batch of nodes (possibly in parallel)
 			tasks.submit(
-				() -> refineZSumLower(
-					nodetx,
-					zThresholds[nodetx.state.index],
-					nodetx.index,
-					nodetx.zSumUpper
-				),
-				(result) -> {
+				() -> {
+					NodeResult[] results = new NodeResult[batch.size()];
+					for (int i=0; i<batch.size(); i++) {
+						NodeTransaction nodetx = batch.get(i);
+						results[i] = refineZSumLower(
+							nodetx,
+							zThresholds[nodetx.state.index],
+							nodetx.index,
+							nodetx.zSumUpper
+						);
+					}
+					return results;
+				},
+				(results) -> {
 
-					boolean needsMinimization = false;
+					List<NodeTransaction> needsMinimization = new ArrayList<>();
 
 					synchronized (Sofea.this) { // don't race the main thread
 
-						nodesInFlight[0]--;
+						for (int i=0; i<batch.size(); i++) {
+							NodeTransaction nodetx = batch.get(i);
+							NodeResult result = results[i];
 
-						if (result == NodeResult.Saved) {
+							nodesInFlight[0]--;
 
-							stats[nodetx.state.index].requeuedByThreshold++;
-							nodetx.requeuePass2(fringetx, seqtx, rcdb);
+							if (result == NodeResult.Saved) {
 
-						} else if (nodetx.hasRoomToReplace(fringetx, nodesInFlight[0])) {
+								stats[nodetx.state.index].requeuedByThreshold++;
+								nodetx.requeuePass2(fringetx, seqtx, rctx);
 
-							if (nodetx.zPaths.isEmpty()) {
+							} else if (nodetx.hasRoomToReplace(fringetx, nodesInFlight[0])) {
 
-								// no minimizations needed
-								stats[nodetx.state.index].expanded++;
-								stats[nodetx.state.index].added += nodetx.numReplacementNodes();
-								nodetx.replacePass2(fringetx, seqtx, rcdb);
+								if (nodetx.zPaths.isEmpty()) {
 
-							} else {
+									// no minimizations needed
+									stats[nodetx.state.index].expanded++;
+									stats[nodetx.state.index].added += nodetx.numReplacementNodes();
+									nodetx.replacePass2(fringetx, seqtx, rctx);
 
-								// now we know we won't have to throw away info, we can do the minimizations
-								nodesInFlight[0] += nodetx.replacementNodes.size();
-								needsMinimization = true;
-							}
+								} else {
 
-						} else {
+									// now we know we won't have to throw away info, we can do the minimizations
+									nodesInFlight[0] += nodetx.replacementNodes.size();
+									needsMinimization.add(nodetx);
+								}
 
-							stats[nodetx.state.index].requeuedForSpace++;
-							nodetx.requeuePass2(fringetx, seqtx, rcdb);
+							} else {
+
+								stats[nodetx.state.index].requeuedForSpace++;
+								nodetx.requeuePass2(fringetx, seqtx, rctx);
+							}
 						}
 					}
 
-					if (needsMinimization) {
+					if (!needsMinimization.isEmpty()) {
 						// but tell the main thread to send the tasks,
 						// since the listener thread can deadlock if it tries
 						synchronized (minimizationQueue) {
-							minimizationQueue.add(nodetx);
+							minimizationQueue.addAll(needsMinimization);
 						}
 					}
 				}
@@ -1687,6 +1773,9 @@ public class Sofea {
 
 		fringetx.commit();
 		seqtx.commit();
+		if (rctx != null) {
+			rctx.commit();
+		}
 
 		// show stats if needed
 		if (showProgress) {
@@ -368,7 +368,7 @@ def initExternalMemory(internalSizeMiB, tempDir=None, tempSubdir=None):
 # pythonic wrappers for Java builders #
 #-------------------------------------#
 
-def Parallelism(cpuCores=useJavaDefault, gpus=useJavaDefault, streamsPerGpu=useJavaDefault):
+def Parallelism(cpuCores=useJavaDefault, gpus=useJavaDefault, streamsPerGpu=useJavaDefault, workStealing=useJavaDefault):
 	'''
 	${class_javadoc(.parallelism.Parallelism)}
 
@@ -376,7 +376,8 @@ def Parallelism(cpuCores=useJavaDefault, gpus=useJavaDefault, streamsPerGpu=useJ
 	${args_fields_javadoc(.parallelism.Parallelism$Builder,
 		[cpuCores, numCpus],
 		[gpus, numGpus],
-		[streamsPerGpu, numStreamsPerGpu]
+		[streamsPerGpu, numStreamsPerGpu],
+		[workStealing]
 	)}
 
 	# Returns
@@ -389,6 +390,8 @@ def Parallelism(cpuCores=useJavaDefault, gpus=useJavaDefault, streamsPerGpu=useJ
 		builder.setNumGpus(gpus)
 	if streamsPerGpu is not useJavaDefault:
 		builder.setNumStreamsPerGpu(streamsPerGpu)
+	if workStealing is not useJavaDefault:
+		builder.setWorkStealing(workStealing)
 
 	return builder.build()
 
@@ -1150,7 +1153,7 @@ Paste.ConfSearchFactory = _PasteConfSearchFactory
 def KStar(
 	proteinConfSpace, ligandConfSpace, complexConfSpace, epsilon=useJavaDefault, stabilityThreshold=useJavaDefault,
 	maxSimultaneousMutations=useJavaDefault, writeSequencesToConsole=False, writeSequencesToFile=None,
-	useExternalMemory=useJavaDefault, showPfuncProgress=useJavaDefault
+	useExternalMemory=useJavaDefault, showPfuncProgress=useJavaDefault, numPfuncsInFlight=useJavaDefault
 ):
 	'''
 	${class_javadoc(.kstar.KStar)}
@@ -1168,7 +1171,8 @@ def KStar(
 		[stabilityThreshold, type=float],
 		[maxSimultaneousMutations],
 		[useExternalMemory],
-		[showPfuncProgress]
+		[showPfuncProgress],
+		[numPfuncsInFlight]
 	)}
 	writeSequencesToConsole `bool`: True to write sequences and scores to the console
 	writeSequencesToFile `str`: Path to the log file to write sequences scores (in TSV format), or None to skip logging
@@ -1193,6 +1197,8 @@ def KStar(
 		settingsBuilder.setExternalMemory(useExternalMemory)
 	if showPfuncProgress is not useJavaDefault:
 		settingsBuilder.setShowPfuncProgress(showPfuncProgress)
+	if numPfuncsInFlight is not useJavaDefault:
+		settingsBuilder.setNumPfuncsInFlight(numPfuncsInFlight)
 	settings = settingsBuilder.build()
 
 	return c.kstar.KStar(proteinConfSpace, ligandConfSpace, complexConfSpace, settings)
@@ -1268,7 +1274,8 @@ def MARKStarPfunc(confSpace, ematMinimized, confEcalcMinimized, ematRigid, confE
 def BBKStar(
 	proteinConfSpace, ligandConfSpace, complexConfSpace, epsilon=useJavaDefault, stabilityThreshold=useJavaDefault,
 	maxSimultaneousMutations=useJavaDefault, useExternalMemory=useJavaDefault, showPfuncProgress=useJavaDefault,
-	numBestSequences=useJavaDefault, numConfsPerBatch=useJavaDefault, writeSequencesToConsole=False, writeSequencesToFile=None
+	numBestSequences=useJavaDefault, numConfsPerBatch=useJavaDefault, pfuncCacheCapacity=useJavaDefault,
+	writeSequencesToConsole=False, writeSequencesToFile=None
 ):
 	'''
 	${class_javadoc(.kstar.BBKStar)}
@@ -1290,7 +1297,8 @@ def BBKStar(
 	)}
 	${args_fields_javadoc(.kstar.BBKStar$Settings$Builder,
 		[numBestSequences],
-		[numConfsPerBatch]
+		[numConfsPerBatch],
+		[pfuncCacheCapacity, type=int]
 	)}
 	writeSequencesToConsole `bool`: True to write sequences and scores to the console
 	writeSequencesToFile `str`: Path to the log file to write sequences scores (in TSV format), or None to skip logging
@@ -1322,6 +1330,8 @@ def BBKStar(
 		bbkstarSettingsBuilder.setNumBestSequences(numBestSequences)
 	if numConfsPerBatch is not useJavaDefault:
 		bbkstarSettingsBuilder.setNumConfsPerBatch(numConfsPerBatch)
+	if pfuncCacheCapacity is not useJavaDefault:
+		bbkstarSettingsBuilder.setPfuncCacheCapacity(jvm.boxInt(pfuncCacheCapacity))
 	bbkstarSettings = bbkstarSettingsBuilder.build()
 
 	return c.kstar.BBKStar(proteinConfSpace, ligandConfSpace, complexConfSpace, kstarSettings, bbkstarSettings)
@@ -39,15 +39,15 @@ osprey.c.parallelism.Cluster.fixHazelcastLogging()
 
 def loadConfSpace(path):
     '''
-    ${method_javadoc(.confspace.compiled.ConfSpace#fromBytes)}
+    ${method_javadoc(.confspace.compiled.ConfSpace#fromFile)}
 
     # Arguments
     path `str`: Path to the compiled conformation space file (usually has a .ccsx or .ccs extension)
 
     # Returns
-    ${returns_method_java(.confspace.compiled.ConfSpace#fromBytes)}
+    ${returns_method_java(.confspace.compiled.ConfSpace#fromFile)}
     '''
-    return osprey.c.confspace.compiled.ConfSpace.fromBytes(osprey.c.tools.FileTools.readFileBytes(path))
+    return osprey.c.confspace.compiled.ConfSpace.fromFile(jvm.toFile(path))
 
 
 def cudaEnergyCalculator(confSpace, precision, parallelism):
@@ -219,6 +219,7 @@ def freeEnergyCalc(
     precision=_useJavaDefault,
     nodeDBFile=_useJavaDefault,
     nodeDBMem=_useJavaDefault,
+    nodeDBShards=_useJavaDefault,
     seqDBFile=_useJavaDefault,
     seqDBMathContext=_useJavaDefault,
     posInterDist=PosInterDist.TighterBounds,
@@ -243,6 +244,7 @@ def freeEnergyCalc(
         [precision],
         [nodeDBFile, nodedbFile, type=str],
         [nodeDBMem, nodedbMemBytes],
+        [nodeDBShards, nodedbShards],
         [seqDBFile, seqdbFile, type=str],
         [seqDBMathContext, seqdbMathContext]
     )}
@@ -279,6 +281,8 @@ def freeEnergyCalc(
         builder.setNodeDBFile(jvm.toFile(nodeDBFile[0]), nodeDBFile[1])
     if nodeDBMem is not _useJavaDefault:
         builder.setNodeDBMem(nodeDBMem)
+    if nodeDBShards is not _useJavaDefault:
+        builder.setNodeDBShards(nodeDBShards)
     if seqDBFile is not _useJavaDefault:
         builder.setSeqDBFile(jvm.toFile(seqDBFile))
     if seqDBMathContext is not _useJavaDefault:
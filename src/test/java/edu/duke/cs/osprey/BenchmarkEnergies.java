@@ -15,6 +15,7 @@ import edu.duke.cs.osprey.energy.compiled.ConfEnergyCalculator.MinimizationJob;
 import edu.duke.cs.osprey.energy.compiled.CPUConfEnergyCalculator;
 import edu.duke.cs.osprey.energy.compiled.CudaConfEnergyCalculator;
 import edu.duke.cs.osprey.energy.compiled.NativeConfEnergyCalculator;
+import edu.duke.cs.osprey.energy.compiled.VectorConfEnergyCalculator;
 import edu.duke.cs.osprey.energy.forcefield.ForcefieldParams;
 import edu.duke.cs.osprey.gpu.Structs;
 import org.joml.Vector3d;
@@ -125,6 +126,7 @@ public class BenchmarkEnergies {
 
 		Benchmark[] bmClassic = new Benchmark[threadSizes.length];
 		Benchmark[] bmCompiled = new Benchmark[threadSizes.length];
+		Benchmark[] bmCompiledVector = new Benchmark[threadSizes.length];
 		Benchmark[] bmCompiledf32 = new Benchmark[threadSizes.length];
 		Benchmark[] bmCompiledf64 = new Benchmark[threadSizes.length];
 		Benchmark[] bmCompiledIntelf32 = new Benchmark[threadSizes.length];
@@ -150,6 +152,13 @@ public class BenchmarkEnergies {
 			});
 		}
 
+		{ // compiled vector
+			VectorConfEnergyCalculator ecalc = new VectorConfEnergyCalculator(compiled.complex);
+			benchmarkThreads("compiled vector", bmCompiledVector, bmClassic[0], threadSizes, numWarmups, numRuns, () -> {
+				ecalc.minimizeEnergy(compiledConf, compiledInters);
+			});
+		}
+
 		{ // compiled native f32
 			NativeConfEnergyCalculator ecalc = new NativeConfEnergyCalculator(compiled.complex, Structs.Precision.Float32);
 			benchmarkThreads("compiled reference f32", bmCompiledf32, bmClassic[0], threadSizes, numWarmups, numRuns, () -> {
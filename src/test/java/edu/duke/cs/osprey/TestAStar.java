@@ -539,6 +539,35 @@ public class TestAStar extends TestBase {
 		});
 	}
 
+	@Test
+	public void testExternalMemoryJava() {
+		SearchProblem search = makeSearchProblemDagkContinuous();
+
+		ExternalMemory.use(16, ExternalMemory.Backend.Java, () -> {
+			ConfAStarTree tree = new ConfAStarTree.Builder(search.emat, search.pruneMat)
+				.setTraditional()
+				.useExternalMemory()
+				.build();
+
+			checkDagkContinuous(tree, search);
+		});
+	}
+
+
+	// COMPACT MEMORY TESTS
+
+	@Test
+	public void testCompactMemory() {
+		SearchProblem search = makeSearchProblemDagkContinuous();
+
+		ConfAStarTree tree = new ConfAStarTree.Builder(search.emat, search.pruneMat)
+			.setTraditional()
+			.useCompactMemory()
+			.build();
+
+		checkDagkContinuous(tree, search);
+	}
+
 	@Test
 	public void optimization() {
 
@@ -0,0 +1,133 @@
+package edu.duke.cs.osprey.astar;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import org.junit.Test;
+
+import edu.duke.cs.osprey.astar.conf.ConfAStarNode;
+import edu.duke.cs.osprey.astar.conf.RCs;
+import edu.duke.cs.osprey.astar.conf.compact.CompactConfAStarQueue;
+import edu.duke.cs.osprey.externalMemory.EMConfAStarNode;
+
+
+public class TestCompactConfAStarQueue {
+
+	private static RCs makeRCs(int numPos, int numRCs) {
+		int[][] rcsAtPos = new int[numPos][numRCs];
+		for (int pos=0; pos<numPos; pos++) {
+			for (int rc=0; rc<numRCs; rc++) {
+				rcsAtPos[pos][rc] = rc;
+			}
+		}
+		return new RCs(rcsAtPos);
+	}
+
+	private static EMConfAStarNode makeNode(Random rand, int numPos, int numRCs) {
+		EMConfAStarNode node = new EMConfAStarNode(numPos);
+		for (int pos=0; pos<numPos; pos++) {
+			if (rand.nextBoolean()) {
+				node = node.assign(pos, rand.nextInt(numRCs));
+			}
+		}
+		node.setGScore(rand.nextDouble()*100 - 50);
+		// use h scores that floats can represent exactly, so the queue order matches the expected order exactly
+		node.setHScore((float)(rand.nextDouble()*100 - 50));
+		return node;
+	}
+
+	@Test
+	public void packing() {
+
+		CompactConfAStarQueue q = new CompactConfAStarQueue(makeRCs(10, 40));
+
+		// RCs 0-39, plus unassigned, needs 6 bits, so all 10 positions fit in one word
+		assertThat(q.bitsPerRC, is(6));
+		assertThat(q.rcsPerWord, is(10));
+		assertThat(q.wordsPerNode, is(1));
+		assertThat(q.getBytesPerNode(), is(20));
+
+		q = new CompactConfAStarQueue(makeRCs(30, 200));
+		assertThat(q.bitsPerRC, is(8));
+		assertThat(q.wordsPerNode, is(4));
+	}
+
+	@Test
+	public void roundTrip() {
+
+		CompactConfAStarQueue q = new CompactConfAStarQueue(makeRCs(5, 10));
+
+		EMConfAStarNode node = new EMConfAStarNode(5)
+			.assign(0, 9)
+			.assign(3, 0);
+		node.setGScore(-4.2);
+		node.setHScore(1.5);
+		q.push(node);
+
+		EMConfAStarNode out = (EMConfAStarNode)q.poll();
+		assertThat(out.getConf(), is(new int[] { 9, -1, -1, 0, -1 }));
+		assertThat(out.getLevel(), is(2));
+		assertThat(out.getGScore(), is(-4.2));
+		assertThat(out.getHScore(), is(1.5));
+		assertThat(q.isEmpty(), is(true));
+		assertThat(q.poll(), is(nullValue()));
+	}
+
+	@Test
+	public void hscoreRoundsDown() {
+
+		CompactConfAStarQueue q = new CompactConfAStarQueue(makeRCs(2, 2));
+
+		EMConfAStarNode node = new EMConfAStarNode(2);
+		node.setGScore(0.0);
+		node.setHScore(0.1);
+		q.push(node);
+
+		assertThat(q.poll().getHScore(), lessThanOrEqualTo(0.1));
+	}
+
+	@Test
+	public void order() {
+		order(5, 10);
+		order(40, 1000);
+	}
+
+	private void order(int numPos, int numRCs) {
+
+		CompactConfAStarQueue q = new CompactConfAStarQueue(makeRCs(numPos, numRCs));
+		PriorityQueue<ConfAStarNode> expected = new PriorityQueue<>(Comparator.comparingDouble(ConfAStarNode::getScore));
+
+		// like A*: push a bunch, then pop one and push a few
+		Random rand = new Random(12345);
+		for (int i=0; i<10_000; i++) {
+			EMConfAStarNode node = makeNode(rand, numPos, numRCs);
+			q.push(node);
+			expected.add(node);
+		}
+		for (int i=0; i<10_000; i++) {
+			assertSameNode((EMConfAStarNode)q.poll(), (EMConfAStarNode)expected.poll());
+			for (int j=0; j<2; j++) {
+				EMConfAStarNode node = makeNode(rand, numPos, numRCs);
+				q.push(node);
+				expected.add(node);
+			}
+		}
+
+		assertThat(q.size(), is((long)expected.size()));
+		while (!expected.isEmpty()) {
+			assertSameNode((EMConfAStarNode)q.poll(), (EMConfAStarNode)expected.poll());
+		}
+		assertThat(q.isEmpty(), is(true));
+	}
+
+	private static void assertSameNode(EMConfAStarNode observed, EMConfAStarNode expected) {
+		assertThat(observed.getConf(), is(expected.getConf()));
+		assertThat(observed.getLevel(), is(expected.getLevel()));
+		assertThat(observed.getGScore(), is(expected.getGScore()));
+		assertThat(observed.getHScore(), is(expected.getHScore()));
+	}
+}
@@ -49,6 +49,7 @@ import org.junit.Test;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.function.Consumer;
 
 import static edu.duke.cs.osprey.TestBase.isAbsolutely;
 import static org.hamcrest.Matchers.is;
@@ -116,7 +117,30 @@ public class TestSMAStar {
 		);
 	}
 
+	@Test
+	public void small1CCC8ParallelBytes() {
+
+		Strand strand = new Strand.Builder(PDBIO.readResource("/1CC8.ss.pdb")).build();
+		for (String resNum : Arrays.asList("A2", "A3", "A4", "A5", "A6", "A7")) {
+			strand.flexibility.get(resNum).setLibraryRotamers("VAL");
+		}
+
+		// use only a few KiB, so SMA* has to forget lots of nodes
+		test(
+			builder -> builder.setMaxNumBytes(8*1024L),
+			Parallelism.makeCpu(4),
+			MathTools.Optimizer.Minimize,
+			new SimpleConfSpace.Builder()
+				.addStrand(strand)
+				.build()
+		);
+	}
+
 	private static void test(int maxNumNodes, MathTools.Optimizer optimizer, SimpleConfSpace confSpace) {
+		test(builder -> builder.setMaxNumNodes(maxNumNodes), null, optimizer, confSpace);
+	}
+
+	private static void test(Consumer<ConfAStarTree.Builder> bounder, Parallelism parallelism, MathTools.Optimizer optimizer, SimpleConfSpace confSpace) {
 
 		try (EnergyCalculator ecalc = new EnergyCalculator.Builder(confSpace, new ForcefieldParams())
 			.setParallelism(Parallelism.makeCpu(8))
@@ -138,10 +162,12 @@ public class TestSMAStar {
 			astarStopwatch.stop();
 
 			// enumerate all the confs using SMA*
-			ConfAStarTree smastar = new ConfAStarTree.Builder(emat, rcs)
-				.setMaxNumNodes(maxNumNodes)
+			ConfAStarTree.Builder builder = new ConfAStarTree.Builder(emat, rcs);
+			bounder.accept(builder);
+			ConfAStarTree smastar = builder
 				.setTraditionalOpt(optimizer)
 				.build();
+			smastar.setParallelism(parallelism);
 			Stopwatch smastarStopwatch = new Stopwatch().start();
 			List<ConfSearch.ScoredConf> smastarConfs = smastar.nextConfs(optimizer.initDouble());
 			smastarStopwatch.stop();
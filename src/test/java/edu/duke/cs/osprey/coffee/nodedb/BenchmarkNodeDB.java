@@ -0,0 +1,119 @@
+package edu.duke.cs.osprey.coffee.nodedb;
+
+import edu.duke.cs.osprey.coffee.ClusterMember;
+import edu.duke.cs.osprey.coffee.TestCoffee;
+import edu.duke.cs.osprey.confspace.Conf;
+import edu.duke.cs.osprey.confspace.MultiStateConfSpace;
+import edu.duke.cs.osprey.parallelism.Cluster;
+import edu.duke.cs.osprey.tools.BigExp;
+import edu.duke.cs.osprey.tools.Stopwatch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static edu.duke.cs.osprey.tools.Log.log;
+
+
+/**
+ * Measures NodeDB throughput when many producer threads add and remove nodes at once,
+ * like the NodeThreads in NodeProcessor do.
+ */
+public class BenchmarkNodeDB {
+
+	private static final long MiB = 1024*1024;
+
+	public static void main(String[] args) {
+
+		Cluster.fixHazelcastLogging();
+
+		MultiStateConfSpace confSpace = TestCoffee.affinity_2RL0_7mut();
+
+		for (int numThreads : new int[] { 8, 32, 64 }) {
+			benchmark(confSpace, numThreads, 0);
+			benchmark(confSpace, numThreads, 4);
+			benchmark(confSpace, numThreads, numThreads);
+		}
+	}
+
+	private static void benchmark(MultiStateConfSpace confSpace, int numThreads, int numShards) {
+
+		final int numBatches = 2_000;
+		final int batchSize = 16;
+
+		var exceptions = ClusterMember.launchPseudoCluster(1, cluster -> {
+			try (var member = new ClusterMember(cluster)) {
+				try (var nodedb = new NodeDB.Builder(confSpace, member)
+					.setMem(256*MiB)
+					.setNumShards(numShards)
+					.build()
+				) {
+					member.barrier(1, TimeUnit.MINUTES);
+
+					var state = confSpace.states.get(0);
+
+					// seed the db so removals have something to find
+					var rand = new Random(12345);
+					var seedNodes = new ArrayList<NodeIndex.Node>();
+					for (int i=0; i<100_000; i++) {
+						seedNodes.add(makeNode(state, rand));
+					}
+					nodedb.addLocal(state.index, seedNodes);
+
+					// each thread removes a batch of nodes, then adds two batches of children, like a NodeThread
+					var stopwatch = new Stopwatch().start();
+					List<Thread> threads = IntStream.range(0, numThreads)
+						.mapToObj(t -> new Thread(() -> {
+							var threadRand = new Random(t);
+							var removed = new ArrayList<NodeIndex.Node>(batchSize);
+							var children = new ArrayList<NodeIndex.Node>(batchSize);
+							for (int b=0; b<numBatches; b++) {
+								removed.clear();
+								nodedb.removeHigh(state.index, batchSize, removed);
+								for (int c=0; c<2; c++) {
+									children.clear();
+									for (int i=0; i<batchSize; i++) {
+										children.add(makeNode(state, threadRand));
+									}
+									nodedb.add(state.index, children);
+								}
+							}
+						}))
+						.collect(Collectors.toList());
+					threads.forEach(t -> t.start());
+					threads.forEach(t -> {
+						try {
+							t.join();
+						} catch (InterruptedException ex) {
+							throw new RuntimeException(ex);
+						}
+					});
+					stopwatch.stop();
+
+					long numOps = (long)numThreads*numBatches*3;
+					log("%2d threads, %s: %8.0f batch ops/s  (%s)",
+						numThreads,
+						numShards > 0 ? String.format("%2d shards/state", numShards) : "bottleneck     ",
+						numOps/stopwatch.getTimeS(),
+						stopwatch.getTime(2)
+					);
+				}
+			}
+		});
+		if (!exceptions.isEmpty()) {
+			throw new Error("cluster threads encountered exceptions");
+		}
+	}
+
+	private static NodeIndex.Node makeNode(MultiStateConfSpace.State state, Random rand) {
+		return new NodeIndex.Node(
+			state.index,
+			Conf.make(state.confSpace),
+			new BigExp(rand.nextDouble(), rand.nextInt()),
+			new BigExp(rand.nextDouble(), rand.nextInt())
+		);
+	}
+}
@@ -38,12 +38,21 @@ public class TestNodeDB {
 	}
 
 	private static void withMemNodeDBs(MultiStateConfSpace confSpace, long dbBytes, int numMembers, Consumer<NodeDB> block) {
+		withMemNodeDBs(confSpace, dbBytes, numMembers, 0, block);
+	}
+
+	private static void withShardedNodeDB(MultiStateConfSpace confSpace, long dbBytes, int numShards, Consumer<NodeDB> block) {
+		withMemNodeDBs(confSpace, dbBytes, 1, numShards, block);
+	}
+
+	private static void withMemNodeDBs(MultiStateConfSpace confSpace, long dbBytes, int numMembers, int numShards, Consumer<NodeDB> block) {
 		var exceptions = ClusterMember.launchPseudoCluster(numMembers, cluster -> {
 			try (var member = new ClusterMember(cluster)) {
 
 				// make the node database
 				try (var nodedb = new NodeDB.Builder(confSpace, member)
 					.setMem(dbBytes)
+					.setNumShards(numShards)
 					.build()
 				) {
 
@@ -117,9 +126,13 @@ public class TestNodeDB {
 	}
 
 	private void addLotsLocalRemoveAll(int numThreads) {
+		addLotsLocalRemoveAll(numThreads, 0);
+	}
+
+	private void addLotsLocalRemoveAll(int numThreads, int numShards) {
 
 		MultiStateConfSpace confSpace = TestCoffee.affinity_2RL0_7mut();
-		withMemNodeDB(confSpace, 10*MiB, nodedb -> {
+		withMemNodeDBs(confSpace, 10*MiB, 1, numShards, nodedb -> {
 
 			var state = confSpace.states.get(0);
 
@@ -177,6 +190,106 @@ public class TestNodeDB {
 	@Test public void addLotsLocalRemoveAll_1() { addLotsLocalRemoveAll(1); }
 	@Test public void addLotsLocalRemoveAll_2() { addLotsLocalRemoveAll(2); }
 	@Test public void addLotsLocalRemoveAll_4() { addLotsLocalRemoveAll(4); }
+	@Test public void addLotsLocalRemoveAll_4_sharded() { addLotsLocalRemoveAll(4, 4); }
+
+	@Test
+	public void fillLocalSharded() {
+
+		MultiStateConfSpace confSpace = TestCoffee.affinity_2RL0_7mut();
+		withShardedNodeDB(confSpace, 4*MiB, 4, nodedb -> {
+
+			var state = confSpace.states.get(0);
+
+			// count dropped nodes
+			var numDropped = new AtomicLong(0);
+			nodedb.setDropHandler(nodes -> numDropped.addAndGet(nodes.count()));
+
+			// add a bunch of random nodes from a few threads at once
+			final int numThreads = 4;
+			final int numNodesPerThread = 150_000;
+			List<Thread> threads = IntStream.range(0, numThreads)
+				.mapToObj(t -> new Thread(() -> {
+					Random rand = new Random(12345 + t);
+					for (int i=0; i<numNodesPerThread; i++) {
+						nodedb.addLocal(new NodeIndex.Node(
+							state.index,
+							Conf.make(state.confSpace),
+							new BigExp(rand.nextDouble(), rand.nextInt()),
+							new BigExp(rand.nextDouble(), rand.nextInt())
+						));
+					}
+				}))
+				.collect(Collectors.toList());
+			threads.forEach(t -> t.start());
+			threads.forEach(t -> {
+				try {
+					t.join();
+				} catch (InterruptedException ex) {
+					throw new RuntimeException(ex);
+				}
+			});
+
+			// most of the nodes should get dropped, and none should get lost
+			long numNodes = numThreads*numNodesPerThread;
+			assertThat(nodedb.size(state.index), greaterThan(10_000L));
+			assertThat(numDropped.get(), greaterThan(numNodes/2));
+			assertThat(nodedb.size(state.index) + numDropped.get(), is(numNodes));
+		});
+	}
+
+	@Test
+	public void defaultMemSharded() {
+
+		MultiStateConfSpace confSpace = TestCoffee.affinity_2RL0_7mut();
+
+		// the default NodeDB memory is too small for this many shards in every state, so there should be fewer
+		withShardedNodeDB(confSpace, 2*MiB, 32, nodedb -> {
+
+			for (var state : confSpace.states) {
+
+				// add some random nodes, more than the smaller shards can hold
+				Random rand = new Random(12345);
+				var numDropped = new AtomicLong(0);
+				nodedb.setDropHandler(nodes -> numDropped.addAndGet(nodes.count()));
+				final int numNodes = 20_000;
+				for (int i=0; i<numNodes; i++) {
+					nodedb.addLocal(new NodeIndex.Node(
+						state.index,
+						Conf.make(state.confSpace),
+						new BigExp(rand.nextDouble(), rand.nextInt()),
+						new BigExp(rand.nextDouble(), rand.nextInt())
+					));
+				}
+				assertThat(nodedb.size(state.index) + numDropped.get(), is((long)numNodes));
+
+				// remove them all again
+				long size = nodedb.size(state.index);
+				for (long i=0; i<size; i++) {
+					assertThat(nodedb.removeHigh(state.index), is(not(nullValue())));
+				}
+				assertThat(nodedb.size(state.index), is(0L));
+			}
+		});
+	}
+
+	@Test
+	public void clampShards() {
+
+		MultiStateConfSpace confSpace = TestCoffee.affinity_2RL0_7mut();
+
+		// the default NodeDB memory only has space for a few shards in each state
+		try (var shards = new NodeShards(confSpace, 2*MiB, null, 0, 32)) {
+			assertThat(shards.numShardsPerStateRequested, is(32));
+			assertThat(shards.numShardsPerState, is(NodeShards.maxShardsPerState(confSpace.states.size(), 2*MiB)));
+			assertThat(shards.numShardsPerState, lessThan(32));
+			assertThat(shards.numShardsPerState, greaterThanOrEqualTo(1));
+		}
+
+		// but don't clamp when there's enough space
+		try (var shards = new NodeShards(confSpace, 64*MiB, null, 0, 4)) {
+			assertThat(shards.numShardsPerState, is(4));
+		}
+	}
 
 	@Test
 	public void addLocalRemoveHigh() {
@@ -393,4 +393,104 @@ public class TestNodeIndex {
 			scoreCollisions(file);
 		}
 	}
+
+	@Test
+	public void tieredAddLotsRemoveAll() {
+		try (var file = new TestBase.TempFile("node.index")) {
+
+			MultiStateConfSpace confSpace = TestCoffee.affinity_2RL0_7mut();
+			var state = confSpace.getState("complex");
+
+			// there's only room for ~55k nodes in memory, so the rest must spill to the disk tier
+			var store = new BlockStore(null, 1024*1024);
+			var diskStore = new BlockStore(file, 4*1024*1024);
+			var index = new NodeIndex(store, diskStore, state);
+			assertThat(index.isTiered(), is(true));
+
+			TreeSet<NodeIndex.Node> sortedNodes = new TreeSet<>(Comparator.comparing(node -> node.score));
+			final int numNodes = 100_000;
+
+			// add a bunch of random nodes
+			Random rand = new Random(12345);
+			for (int i=0; i<numNodes; i++) {
+
+				NodeIndex.Node node = new NodeIndex.Node(
+					state.index,
+					Conf.make(state.confSpace),
+					new BigExp(rand.nextDouble(), rand.nextInt()),
+					new BigExp(rand.nextDouble(), rand.nextInt())
+				);
+				assertThat(index.add(node), is(true));
+
+				assertThat(index.dropped().size(), is(0));
+
+				sortedNodes.add(node);
+			}
+
+			assertThat(index.size(), is((long)numNodes));
+			assertThat(index.sizeDisk(), greaterThan(0L));
+
+			// poll all the nodes, check the scores
+			for (int i=0; i<numNodes; i++) {
+				assertThat("" + i, index.size(), is((long)sortedNodes.size()));
+				assertThat("" + i, index.highestScore(), is(sortedNodes.last().score));
+				assertThat("" + i, index.removeHighest(), is(sortedNodes.pollLast()));
+				assertThat(index.dropped().size(), is(0));
+			}
+
+			assertThat(index.size(), is(0L));
+			assertThat(index.removeHighest(), is(nullValue()));
+
+			store.close();
+			diskStore.close();
+		}
+	}
+
+	@Test
+	public void tieredFillDropsLowest() {
+		try (var file = new TestBase.TempFile("node.index")) {
+
+			MultiStateConfSpace confSpace = TestCoffee.affinity_2RL0_7mut();
+			var state = confSpace.getState("complex");
+
+			var store = new BlockStore(null, 1024*1024);
+			var diskStore = new BlockStore(file, 1024*1024);
+			var index = new NodeIndex(store, diskStore, state);
+
+			TreeSet<NodeIndex.Node> highestNodes = new TreeSet<>(Comparator.comparing(node -> node.score));
+			final int numNodes = 10;
+
+			// overfill both tiers
+			Random rand = new Random(12345);
+			long numDropped = 0;
+			for (int i=0; i<300_000; i++) {
+
+				NodeIndex.Node node = new NodeIndex.Node(
+					state.index,
+					Conf.make(state.confSpace),
+					new BigExp(rand.nextDouble(), rand.nextInt()),
+					new BigExp(rand.nextDouble(), rand.nextInt())
+				);
+				index.add(node);
+				numDropped += index.dropped().size();
+				index.dropped().clear();
+
+				highestNodes.add(node);
+				while (highestNodes.size() > numNodes) {
+					highestNodes.pollFirst();
+				}
+			}
+
+			assertThat(numDropped, greaterThan(0L));
+
+			// the highest nodes should have survived
+			for (int i=0; i<numNodes; i++) {
+				assertThat("" + i, index.highestScore(), is(highestNodes.last().score));
+				assertThat("" + i, index.removeHighest(), is(highestNodes.pollLast()));
+			}
+
+			store.close();
+			diskStore.close();
+		}
+	}
 }
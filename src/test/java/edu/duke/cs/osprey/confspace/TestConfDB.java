@@ -49,7 +49,9 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.function.Consumer;
 
 public class TestConfDB {
@@ -84,7 +86,11 @@ public class TestConfDB {
 	}
 
 	private ConfDB openDB() {
-		return new ConfDB(confSpace, file);
+		return openDB(false);
+	}
+
+	private ConfDB openDB(boolean writeBehind) {
+		return new ConfDB(confSpace, file, writeBehind);
 	}
 
 	private void cleanDB() {
@@ -95,8 +101,12 @@ public class TestConfDB {
 	}
 
 	private void withDB(Consumer<ConfDB> block) {
+		withDB(false, block);
+	}
+
+	private void withDB(boolean writeBehind, Consumer<ConfDB> block) {
 		cleanDB();
-		ConfDB db = openDB();
+		ConfDB db = openDB(writeBehind);
 		try {
 			block.accept(db);
 		} finally {
@@ -822,4 +832,124 @@ public class TestConfDB {
 			assertThat(table.getConfsByLowerBound(6.0).iterator().hasNext(), is(false));
 		});
 	}
+
+	@Test
+	public void writeBehindReadPending() {
+		withDB(true, (db) -> {
+			ConfDB.ConfTable table = db.new ConfTable("foo");
+
+			int[] assignments = { 5, 5, 5 };
+
+			// reads should see the buffered bounds, even before they're written
+			table.setLowerBound(assignments, 7.2, 5L);
+			assertConfLower(table.get(assignments), assignments, 7.2, 5L);
+
+			table.setUpperBound(assignments, 9.9, 6L);
+			assertConf(table.get(assignments), assignments, 7.2, 5L, 9.9, 6L);
+
+			// even if the caller reuses the assignments array
+			assignments[0] = 1;
+			assertThat(table.get(assignments), is(nullValue()));
+			assertConf(table.get(new int[] { 5, 5, 5 }), new int[] { 5, 5, 5 }, 7.2, 5L, 9.9, 6L);
+		});
+	}
+
+	@Test
+	public void writeBehindIterate() {
+		withDB(true, (db) -> {
+			ConfDB.ConfTable table = db.new ConfTable("foo");
+
+			table.setUpperBound(new int[] { 1, 2, 3 }, 7.9, 42L);
+			table.setUpperBound(new int[] { 7, 9, 8 }, 3.2, 54L);
+			table.setUpperBound(new int[] { 4, 0, 5 }, 2.3, 69L);
+
+			assertThat(table.size(), is(3L));
+
+			Iterator<ConfDB.Conf> confs = table.iterator();
+			assertConfUpper(confs.next(), new int[] { 1, 2, 3 }, 7.9, 42L);
+			assertConfUpper(confs.next(), new int[] { 4, 0, 5 }, 2.3, 69L);
+			assertConfUpper(confs.next(), new int[] { 7, 9, 8 }, 3.2, 54L);
+			assertThat(confs.hasNext(), is(false));
+
+			assertThat(table.upperBounds(), contains(2.3, 3.2, 7.9));
+		});
+	}
+
+	@Test
+	public void writeBehindCloseRead() {
+		Sequence sequence = confSpace.makeWildTypeSequence();
+
+		cleanDB();
+		ConfDB db = openDB(true);
+		try {
+			ConfDB.SequenceDB sdb = db.getSequence(sequence);
+			sdb.setBounds(new int[] { 1, 2, 3 }, 1.0, 7.9, 42L);
+			sdb.setBounds(new int[] { 7, 9, 8 }, 2.0, 3.2, 54L);
+		} finally {
+			db.close();
+		}
+
+		// closing should write everything
+		db = openDB(false);
+		try {
+			Iterator<ConfDB.Conf> confs = db.getSequence(sequence).iterator();
+			assertConf(confs.next(), new int[] { 1, 2, 3 }, 1.0, 42L, 7.9, 42L);
+			assertConf(confs.next(), new int[] { 7, 9, 8 }, 2.0, 54L, 3.2, 54L);
+			assertThat(confs.hasNext(), is(false));
+		} finally {
+			db.close();
+			cleanDB();
+		}
+	}
+
+	@Test
+	public void writeBehindManyThreads() {
+		withDB(true, (db) -> {
+			ConfDB.ConfTable table = db.new ConfTable("foo");
+
+			// lots of threads write overlapping confs at once
+			final int numThreads = 8;
+			final int n = 5;
+			List<Thread> threads = new ArrayList<>();
+			for (int t=0; t<numThreads; t++) {
+				final long timestampNs = t + 1;
+				threads.add(new Thread(() -> {
+					for (int a=0; a<n; a++) {
+						for (int b=0; b<n; b++) {
+							for (int c=0; c<n; c++) {
+								int[] assignments = { a, b, c };
+								table.setLowerBound(assignments, a + b + c, timestampNs);
+								table.setUpperBound(assignments, 100.0 + a + b + c, timestampNs);
+								assertThat(table.get(assignments).lower, is(not(nullValue())));
+							}
+						}
+					}
+				}));
+			}
+			threads.forEach(t -> t.start());
+			threads.forEach(t -> {
+				try {
+					t.join();
+				} catch (InterruptedException ex) {
+					throw new RuntimeException(ex);
+				}
+			});
+
+			db.flush();
+
+			assertThat(table.size(), is((long)n*n*n));
+			for (ConfDB.Conf conf : table) {
+				double sum = conf.assignments[0] + conf.assignments[1] + conf.assignments[2];
+				assertThat(conf.lower.energy, is(sum));
+				assertThat(conf.upper.energy, is(100.0 + sum));
+			}
+
+			// each conf should be in the energy indices exactly once
+			int numIndexed = 0;
+			for (ConfSearch.ScoredConf conf : table.scoredConfs(ConfDB.SortOrder.Score)) {
+				numIndexed++;
+			}
+			assertThat(numIndexed, is(n*n*n));
+		});
+	}
 }
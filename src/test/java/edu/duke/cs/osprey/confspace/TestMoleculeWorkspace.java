@@ -0,0 +1,177 @@
+/*
+** This file is part of OSPREY 3.0
+** 
+** OSPREY Protein Redesign Software Version 3.0
+** Copyright (C) 2001-2018 Bruce Donald Lab, Duke University
+** 
+** OSPREY is free software: you can redistribute it and/or modify
+** it under the terms of the GNU General Public License version 2
+** as published by the Free Software Foundation.
+** 
+** You should have received a copy of the GNU General Public License
+** along with OSPREY.  If not, see <http://www.gnu.org/licenses/>.
+** 
+** OSPREY relies on grants for its development, and since visibility
+** in the scientific literature is essential for our success, we
+** ask that users of OSPREY cite our papers. See the CITING_OSPREY
+** document in this distribution for more information.
+** 
+** Contact Info:
+**    Bruce Donald
+**    Duke University
+**    Department of Computer Science
+**    Levine Science Research Center (LSRC)
+**    Durham
+**    NC 27708-0129
+**    USA
+**    e-mail: www.cs.duke.edu/brd/
+** 
+** <signature of Bruce Donald>, Mar 1, 2018
+** Bruce Donald, Professor of Computer Science
+*/
+
+package edu.duke.cs.osprey.confspace;
+
+import static edu.duke.cs.osprey.TestBase.isAbsolutely;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import edu.duke.cs.osprey.energy.ConfEnergyCalculator;
+import edu.duke.cs.osprey.energy.EnergyCalculator;
+import edu.duke.cs.osprey.energy.forcefield.ForcefieldParams;
+import edu.duke.cs.osprey.parallelism.Parallelism;
+import edu.duke.cs.osprey.structure.PDBIO;
+import edu.duke.cs.osprey.structure.Residue;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+public class TestMoleculeWorkspace {
+
+	private static SimpleConfSpace makeConfSpace() {
+		Strand strand = new Strand.Builder(PDBIO.readFile("examples/1CC8/1CC8.ss.pdb")).build();
+		strand.flexibility.get("A2").setLibraryRotamers(Strand.WildType, "VAL", "LEU").addWildTypeRotamers().setContinuous();
+		strand.flexibility.get("A3").setLibraryRotamers(Strand.WildType, "ILE").addWildTypeRotamers().setContinuous();
+		// A31 is a wild-type proline, so its library RCs have puckers
+		strand.flexibility.get("A31").setLibraryRotamers(Strand.WildType).addWildTypeRotamers().setContinuous();
+		return new SimpleConfSpace.Builder().addStrand(strand).build();
+	}
+
+	/** all the conformations, in order, so consecutive conformations usually differ at just the last position */
+	private static List<int[]> allConfs(SimpleConfSpace confSpace) {
+		List<int[]> confs = new ArrayList<>();
+		for (int rc0=0; rc0<confSpace.positions.get(0).resConfs.size(); rc0++) {
+			for (int rc1=0; rc1<confSpace.positions.get(1).resConfs.size(); rc1++) {
+				for (int rc2=0; rc2<confSpace.positions.get(2).resConfs.size(); rc2++) {
+					confs.add(new int[] { rc0, rc1, rc2 });
+				}
+			}
+		}
+		return confs;
+	}
+
+	@Test
+	public void sameCoords() {
+
+		SimpleConfSpace confSpace = makeConfSpace();
+		MoleculeWorkspace workspace = new MoleculeWorkspace(confSpace);
+
+		for (int[] conf : allConfs(confSpace)) {
+
+			ParametricMolecule expected = confSpace.makeMolecule(conf);
+			ParametricMolecule observed = workspace.makeMolecule(new RCTuple(conf));
+
+			assertThat(observed.dofs.size(), is(expected.dofs.size()));
+			for (int d=0; d<expected.dofs.size(); d++) {
+				assertThat(observed.dofs.get(d).getName(), is(expected.dofs.get(d).getName()));
+				assertThat(observed.dofBounds.getMin(d), is(expected.dofBounds.getMin(d)));
+				assertThat(observed.dofBounds.getMax(d), is(expected.dofBounds.getMax(d)));
+			}
+			for (Residue expectedRes : expected.mol.residues) {
+				Residue observedRes = observed.mol.getResByPDBResNumber(expectedRes.getPDBResNumber());
+				assertThat(observedRes.template, is(expectedRes.template));
+				assertThat(observedRes.coords, is(expectedRes.coords));
+			}
+
+			// move the DOFs around, like a minimizer would
+			for (int d=0; d<observed.dofs.size(); d++) {
+				observed.dofs.get(d).apply(observed.dofBounds.getMin(d));
+			}
+		}
+	}
+
+	@Test
+	public void sameMinimizedEnergies() {
+
+		SimpleConfSpace confSpace = makeConfSpace();
+		try (EnergyCalculator ecalc = new EnergyCalculator.Builder(confSpace, new ForcefieldParams())
+			.setParallelism(Parallelism.makeCpu(1))
+			.build()
+		) {
+			ConfEnergyCalculator confEcalc = new ConfEnergyCalculator.Builder(confSpace, ecalc)
+				.build();
+			ConfEnergyCalculator reusingConfEcalc = new ConfEnergyCalculator.Builder(confSpace, ecalc)
+				.setReuseMolecules(true)
+				.build();
+
+			for (int[] conf : allConfs(confSpace)) {
+				double expected = confEcalc.calcEnergy(new RCTuple(conf)).energy;
+				double observed = reusingConfEcalc.calcEnergy(new RCTuple(conf)).energy;
+				assertThat(observed, isAbsolutely(expected, 1e-9));
+			}
+		}
+	}
+
+	@Test
+	public void prolinePuckers() {
+
+		SimpleConfSpace confSpace = makeConfSpace();
+		MoleculeWorkspace workspace = new MoleculeWorkspace(confSpace);
+
+		// find two RCs at A3 that differ only by rotamer
+		SimpleConfSpace.Position pos1 = confSpace.positions.get(1);
+		int rcA = -1;
+		int rcB = -1;
+		for (SimpleConfSpace.ResidueConf resConfA : pos1.resConfs) {
+			for (SimpleConfSpace.ResidueConf resConfB : pos1.resConfs) {
+				if (resConfA.index < resConfB.index && resConfA.template == resConfB.template) {
+					rcA = resConfA.index;
+					rcB = resConfB.index;
+				}
+			}
+		}
+		assertThat(rcB, greaterThanOrEqualTo(0));
+
+		// and the pucker RCs at the proline
+		List<Integer> puckerRCs = new ArrayList<>();
+		for (SimpleConfSpace.ResidueConf resConf : confSpace.positions.get(2).resConfs) {
+			if (resConf.postTemplateModifier != null) {
+				puckerRCs.add(resConf.index);
+			}
+		}
+		assertThat(puckerRCs.size(), greaterThanOrEqualTo(2));
+
+		// the workspace only caches poses from new molecules, so visit all the RCs first
+		workspace.makeMolecule(new RCTuple(new int[] { 0, rcB, puckerRCs.get(1) }));
+		workspace.makeMolecule(new RCTuple(new int[] { 0, rcB, puckerRCs.get(0) }));
+
+		// changing just a rotamer re-uses the molecule
+		ParametricMolecule pmol1 = workspace.makeMolecule(new RCTuple(new int[] { 0, rcA, puckerRCs.get(0) }));
+		ParametricMolecule pmol2 = workspace.makeMolecule(new RCTuple(new int[] { 0, rcB, puckerRCs.get(0) }));
+		assertThat(pmol2.mol, sameInstance(pmol1.mol));
+
+		// but changing the pucker doesn't, since the pucker state lives in the residue
+		int[] conf3 = { 0, rcB, puckerRCs.get(1) };
+		ParametricMolecule pmol3 = workspace.makeMolecule(new RCTuple(conf3));
+		assertThat(pmol3.mol, not(sameInstance(pmol2.mol)));
+
+		// and the new molecule should have the new pucker
+		ParametricMolecule expected = confSpace.makeMolecule(conf3);
+		for (Residue expectedRes : expected.mol.residues) {
+			Residue observedRes = pmol3.mol.getResByPDBResNumber(expectedRes.getPDBResNumber());
+			assertThat(observedRes.coords, is(expectedRes.coords));
+		}
+	}
+}
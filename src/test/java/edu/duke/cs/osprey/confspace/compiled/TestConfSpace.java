@@ -16,6 +16,8 @@ import edu.duke.cs.osprey.structure.PDBIO;
 import edu.duke.cs.osprey.tools.FileTools;
 import org.junit.Test;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
 import java.util.function.Consumer;
@@ -223,6 +225,80 @@ public class TestConfSpace {
 		assertThat(energy, isAbsolutely(-1556.9551045257347, 1e-9));
 	}
 
+	@Test
+	public void check2RL0_mapped()
+	throws IOException {
+
+		byte[] bytes = FileTools.readResourceBytes("/confSpaces/2RL0.complex.ccsx");
+		ConfSpace expected = ConfSpace.fromBytes(bytes);
+
+		File file = File.createTempFile("2RL0.complex.", ".ccsm");
+		try {
+			ConfSpace.writeMapped(bytes, file);
+			ConfSpace confSpace = ConfSpace.fromFile(file);
+
+			// conf DBs etc rely on the hash to recognize the conf space
+			assertThat(confSpace.hashCode(), is(expected.hashCode()));
+
+			// the mapped indices should match exactly
+			for (int ffi=0; ffi<expected.ecalcs.length; ffi++) {
+
+				ConfSpace.IndicesStatic expStatic = expected.indicesStatic(ffi);
+				ConfSpace.IndicesStatic obsStatic = confSpace.indicesStatic(ffi);
+				assertThat(obsStatic.size(), is(expStatic.size()));
+				for (int i=0; i<expStatic.size(); i++) {
+					assertThat(obsStatic.getStaticAtom1Index(i), is(expStatic.getStaticAtom1Index(i)));
+					assertThat(obsStatic.getStaticAtom2Index(i), is(expStatic.getStaticAtom2Index(i)));
+					assertThat(obsStatic.getParamsIndex(i), is(expStatic.getParamsIndex(i)));
+				}
+
+				for (ConfSpace.Pos pos1 : expected.positions) {
+					for (int fragi1=0; fragi1<pos1.numFrags; fragi1++) {
+
+						ConfSpace.IndicesSingle expSingle = expected.indicesSinglesByFrag(ffi, pos1.index, fragi1);
+						ConfSpace.IndicesSingle obsSingle = confSpace.indicesSinglesByFrag(ffi, pos1.index, fragi1);
+						assertThat(obsSingle.sizeInternals(), is(expSingle.sizeInternals()));
+						for (int i=0; i<expSingle.sizeInternals(); i++) {
+							assertThat(obsSingle.getInternalConfAtom1Index(i), is(expSingle.getInternalConfAtom1Index(i)));
+							assertThat(obsSingle.getInternalConfAtom2Index(i), is(expSingle.getInternalConfAtom2Index(i)));
+							assertThat(obsSingle.getInternalParamsIndex(i), is(expSingle.getInternalParamsIndex(i)));
+						}
+						assertThat(obsSingle.sizeStatics(), is(expSingle.sizeStatics()));
+						for (int i=0; i<expSingle.sizeStatics(); i++) {
+							assertThat(obsSingle.getStaticConfAtomIndex(i), is(expSingle.getStaticConfAtomIndex(i)));
+							assertThat(obsSingle.getStaticStaticAtomIndex(i), is(expSingle.getStaticStaticAtomIndex(i)));
+							assertThat(obsSingle.getStaticParamsIndex(i), is(expSingle.getStaticParamsIndex(i)));
+						}
+
+						for (int posi2=0; posi2<pos1.index; posi2++) {
+							for (int fragi2=0; fragi2<expected.positions[posi2].numFrags; fragi2++) {
+
+								ConfSpace.IndicesPair expPair = expected.indicesPairsByFrags(ffi, pos1.index, fragi1, posi2, fragi2);
+								ConfSpace.IndicesPair obsPair = confSpace.indicesPairsByFrags(ffi, pos1.index, fragi1, posi2, fragi2);
+								assertThat(obsPair.size(), is(expPair.size()));
+								for (int i=0; i<expPair.size(); i++) {
+									assertThat(obsPair.getConfAtom1Index(i), is(expPair.getConfAtom1Index(i)));
+									assertThat(obsPair.getConfAtom2Index(i), is(expPair.getConfAtom2Index(i)));
+									assertThat(obsPair.getParamsIndex(i), is(expPair.getParamsIndex(i)));
+								}
+							}
+						}
+					}
+				}
+			}
+
+			// and so should the energies
+			AffinityCompiled design = new AffinityCompiled(confSpace, null, null);
+			int[] conf = design.makeConfWt(confSpace);
+			ConfEnergyCalculator ecalc = new CPUConfEnergyCalculator(confSpace);
+			double energy = ecalc.calcEnergy(conf, PosInterDist.all(confSpace, conf));
+			assertThat(energy, isAbsolutely(-1556.9551045257347, 1e-9));
+
+		} finally {
+			file.delete();
+		}
+	}
+
 	@Test
 	public void check2RL0_classic() {
 
@@ -12,6 +12,7 @@ import java.util.stream.Collectors;
 import edu.duke.cs.osprey.confspace.compiled.AssignedCoords;
 import edu.duke.cs.osprey.confspace.compiled.ConfSpace;
 import edu.duke.cs.osprey.confspace.compiled.CoordsList;
+import edu.duke.cs.osprey.confspace.compiled.PosInterDist;
 import edu.duke.cs.osprey.tools.FileTools;
 import org.joml.Quaterniond;
 import org.joml.Vector3d;
@@ -311,6 +312,19 @@ public class TestTranslationRotation {
 			assertPos(pos, v, Epsilon);
 		});
 	}
+
+	@Test
+	public void affectsNothingInOneMolecule() {
+
+		var assignedCoords = assignDipeptideGlyGly();
+		var transrot = findTransRots(assignedCoords).get(0);
+
+		// the whole conf space is one molecule, so moving it can't change any energies
+		for (var inter : PosInterDist.all(cs, assignedCoords.assignments)) {
+			assertThat(inter.toString(), transrot.dofX.affects(inter), is(false));
+			assertThat(inter.toString(), transrot.dofPsi.affects(inter), is(false));
+		}
+	}
 	
 	private static AssignedCoords assignDipeptideGlyGly() {
 		
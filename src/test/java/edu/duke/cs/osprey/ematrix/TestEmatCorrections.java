@@ -37,6 +37,7 @@ import static org.junit.Assert.*;
 
 import edu.duke.cs.osprey.astar.conf.ConfAStarTree;
 import edu.duke.cs.osprey.confspace.ConfSearch;
+import edu.duke.cs.osprey.confspace.RCTuple;
 import edu.duke.cs.osprey.confspace.SimpleConfSpace;
 import edu.duke.cs.osprey.confspace.Strand;
 import edu.duke.cs.osprey.energy.ConfEnergyCalculator;
@@ -49,6 +50,7 @@ import edu.duke.cs.osprey.structure.Molecule;
 import edu.duke.cs.osprey.structure.PDBIO;
 import org.junit.Test;
 
+import java.io.File;
 import java.util.*;
 
 import static edu.duke.cs.osprey.TestBase.isAbsolutely;
@@ -369,6 +371,66 @@ public class TestEmatCorrections {
 		);
 	}
 
+	// saving partial results shouldn't change the energy matrix
+	@Test
+	public void testCheckpoints_1CC8_3N_Traditional() {
+
+		SimpleConfSpace confSpace = makeConfSpaceNoFixed(
+			"/1CC8.ss.pdb",
+			"A26", // leu
+			"A45", // val
+			"A47" // val
+		);
+
+		File cacheFile = new File("emat.corrections.dat");
+		File checkpointFile = new File(cacheFile.getPath() + ".checkpoint");
+		cacheFile.delete();
+		try (EnergyCalculator ecalc = new EnergyCalculator.Builder(confSpace, new ForcefieldParams())
+			.setParallelism(Parallelism.makeCpu(4))
+			.build()) {
+
+			ConfEnergyCalculator confEcalc = new ConfEnergyCalculator.Builder(confSpace, ecalc)
+				.setEnergyPartition(EnergyPartition.Traditional)
+				.build();
+
+			EnergyMatrix expected = new SimplerEnergyMatrixCalculator.Builder(confEcalc)
+				.setTripleCorrectionThreshold(Double.POSITIVE_INFINITY)
+				.build()
+				.calcEnergyMatrix();
+
+			// save a checkpoint after every batch
+			EnergyMatrix observed = new SimplerEnergyMatrixCalculator.Builder(confEcalc)
+				.setTripleCorrectionThreshold(Double.POSITIVE_INFINITY)
+				.setCacheFile(cacheFile)
+				.setCheckpointIntervalS(0)
+				.build()
+				.calcEnergyMatrix();
+
+			assertThat(checkpointFile.exists(), is(false));
+			assertThat(observed.getConstTerm(), is(expected.getConstTerm()));
+			for (int pos1=0; pos1<expected.getNumPos(); pos1++) {
+				for (int rc1=0; rc1<expected.getNumConfAtPos(pos1); rc1++) {
+					assertThat(observed.getOneBody(pos1, rc1), isAbsolutely(expected.getOneBody(pos1, rc1), 1e-9));
+					for (int pos2=0; pos2<pos1; pos2++) {
+						for (int rc2=0; rc2<expected.getNumConfAtPos(pos2); rc2++) {
+							assertThat(observed.getPairwise(pos1, rc1, pos2, rc2), isAbsolutely(expected.getPairwise(pos1, rc1, pos2, rc2), 1e-9));
+							for (int pos3=0; pos3<pos2; pos3++) {
+								for (int rc3=0; rc3<expected.getNumConfAtPos(pos3); rc3++) {
+									RCTuple triple = new RCTuple(pos3, rc3, pos2, rc2, pos1, rc1);
+									assertThat(observed.getInternalEnergy(triple), isAbsolutely(expected.getInternalEnergy(triple), 1e-9));
+								}
+							}
+						}
+					}
+				}
+			}
+
+		} finally {
+			cacheFile.delete();
+			checkpointFile.delete();
+		}
+	}
+
 
 	private static SimpleConfSpace makeConfSpace(String pdbPath, String ... resNums) {
 
@@ -22,7 +22,7 @@ import java.util.stream.IntStream;
 
 /**
  * NOTE: running these tests directly from your IDE may require extra JVM flags:
- * --add-modules=jdk.incubator.foreign
+ * --add-modules=jdk.incubator.foreign --add-modules=jdk.incubator.vector
  */
 public class TestNativeConfEnergyCalculator {
 
@@ -212,6 +212,14 @@ public class TestNativeConfEnergyCalculator {
 	@Test public void calcEnergy_cpu_all_2RL0() { calcEnergy_cpu_all(confSpace_2RL0, confs_2RL0, calcEnergy_all_2RL0, 1e-9); }
 	@Test public void calcEnergy_cpu_all_1DG9_6f() { calcEnergy_cpu_all(confSpace_1DG9_6f, confs_1DG9_6f, calcEnergy_all_1DG9_6f, 1e-9); }
 
+	private void calcEnergy_vector_all(ConfSpace confSpace, int[][] confs, double[] energies, double epsilon) {
+		try (var confEcalc = new VectorConfEnergyCalculator(confSpace)) {
+			calcEnergy_all(confEcalc, confs, energies, epsilon);
+		}
+	}
+	@Test public void calcEnergy_vector_all_2RL0() { calcEnergy_vector_all(confSpace_2RL0, confs_2RL0, calcEnergy_all_2RL0, 1e-8); }
+	@Test public void calcEnergy_vector_all_1DG9_6f() { calcEnergy_vector_all(confSpace_1DG9_6f, confs_1DG9_6f, calcEnergy_all_1DG9_6f, 1e-8); }
+
 	private void calcEnergy_native_all(ConfSpace confSpace, int[][] confs, double[] energies, Structs.Precision precision, double epsilon) {
 		try (var confEcalc = new NativeConfEnergyCalculator(confSpace, precision)) {
 			calcEnergy_all(confEcalc, confs, energies, epsilon);
@@ -255,6 +263,14 @@ public class TestNativeConfEnergyCalculator {
 	@Test public void calcEnergy_cpu_weights_2RL0() { calcEnergy_cpu_weights(confSpace_2RL0, confs_2RL0, calcEnergy_all_2RL0, 1e-9); }
 	@Test public void calcEnergy_cpu_weights_1DG9_6f() { calcEnergy_cpu_weights(confSpace_1DG9_6f, confs_1DG9_6f, calcEnergy_all_1DG9_6f, 1e-9); }
 
+	private void calcEnergy_vector_weights(ConfSpace confSpace, int[][] confs, double[] energies, double epsilon) {
+		try (var confEcalc = new VectorConfEnergyCalculator(confSpace)) {
+			calcEnergy_weights(confEcalc, confs, energies, epsilon);
+		}
+	}
+	@Test public void calcEnergy_vector_weights_2RL0() { calcEnergy_vector_weights(confSpace_2RL0, confs_2RL0, calcEnergy_all_2RL0, 1e-8); }
+	@Test public void calcEnergy_vector_weights_1DG9_6f() { calcEnergy_vector_weights(confSpace_1DG9_6f, confs_1DG9_6f, calcEnergy_all_1DG9_6f, 1e-8); }
+
 	private void calcEnergy_native_weights(ConfSpace confSpace, int[][] confs, double[] energies, Structs.Precision precision, double epsilon) {
 		try (var confEcalc = new NativeConfEnergyCalculator(confSpace, precision)) {
 			calcEnergy_weights(confEcalc, confs, energies, epsilon);
@@ -299,6 +315,14 @@ public class TestNativeConfEnergyCalculator {
 	@Test public void calcEnergy_cpu_offsets_2RL0() { calcEnergy_cpu_offsets(confSpace_2RL0, confs_2RL0, calcEnergy_all_2RL0, 1e-9); }
 	@Test public void calcEnergy_cpu_offsets_1DG9_6f() { calcEnergy_cpu_offsets(confSpace_1DG9_6f, confs_1DG9_6f, calcEnergy_all_1DG9_6f, 1e-9); }
 
+	private void calcEnergy_vector_offsets(ConfSpace confSpace, int[][] confs, double[] energies, double epsilon) {
+		try (var confEcalc = new VectorConfEnergyCalculator(confSpace)) {
+			calcEnergy_offsets(confEcalc, confs, energies, epsilon);
+		}
+	}
+	@Test public void calcEnergy_vector_offsets_2RL0() { calcEnergy_vector_offsets(confSpace_2RL0, confs_2RL0, calcEnergy_all_2RL0, 1e-8); }
+	@Test public void calcEnergy_vector_offsets_1DG9_6f() { calcEnergy_vector_offsets(confSpace_1DG9_6f, confs_1DG9_6f, calcEnergy_all_1DG9_6f, 1e-8); }
+
 	private void calcEnergy_native_offsets(ConfSpace confSpace, int[][] confs, double[] energies, Structs.Precision precision, double epsilon) {
 		try (var confEcalc = new NativeConfEnergyCalculator(confSpace, precision)) {
 			calcEnergy_offsets(confEcalc, confs, energies, epsilon);
@@ -429,6 +453,14 @@ public class TestNativeConfEnergyCalculator {
 	@Test public void minimizeEnergy_cpu_all_2RL0() { minimizeEnergy_cpu_all(confSpace_2RL0, confs_2RL0, minimize_all_2RL0, 1e-9); }
 	@Test public void minimizeEnergy_cpu_all_1DG9_6f() { minimizeEnergy_cpu_all(confSpace_1DG9_6f, confs_1DG9_6f, minimize_all_1DG9_6f, 1e-9); }
 
+	private void minimizeEnergy_vector_all(ConfSpace confSpace, int[][] confs, double[] energies, double epsilon) {
+		try (var confEcalc = new VectorConfEnergyCalculator(confSpace)) {
+			minimizeEnergy_all(confEcalc, confs, energies, epsilon);
+		}
+	}
+	@Test public void minimizeEnergy_vector_all_2RL0() { minimizeEnergy_vector_all(confSpace_2RL0, confs_2RL0, minimize_all_2RL0, 1e-6); }
+	@Test public void minimizeEnergy_vector_all_1DG9_6f() { minimizeEnergy_vector_all(confSpace_1DG9_6f, confs_1DG9_6f, minimize_all_1DG9_6f, 1e-4); }
+
 	private void minimizeEnergy_native_all(ConfSpace confSpace, int[][] confs, double[] energies, Structs.Precision precision, double epsilon) {
 		try (var confEcalc = new NativeConfEnergyCalculator(confSpace, precision)) {
 			minimizeEnergy_all(confEcalc, confs, energies, epsilon);
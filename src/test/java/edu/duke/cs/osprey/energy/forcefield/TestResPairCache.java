@@ -0,0 +1,199 @@
+/*
+** This file is part of OSPREY 3.0
+** 
+** OSPREY Protein Redesign Software Version 3.0
+** Copyright (C) 2001-2018 Bruce Donald Lab, Duke University
+** 
+** OSPREY is free software: you can redistribute it and/or modify
+** it under the terms of the GNU General Public License version 2
+** as published by the Free Software Foundation.
+** 
+** You should have received a copy of the GNU General Public License
+** along with OSPREY.  If not, see <http://www.gnu.org/licenses/>.
+** 
+** OSPREY relies on grants for its development, and since visibility
+** in the scientific literature is essential for our success, we
+** ask that users of OSPREY cite our papers. See the CITING_OSPREY
+** document in this distribution for more information.
+** 
+** Contact Info:
+**    Bruce Donald
+**    Duke University
+**    Department of Computer Science
+**    Levine Science Research Center (LSRC)
+**    Durham
+**    NC 27708-0129
+**    USA
+**    e-mail: www.cs.duke.edu/brd/
+** 
+** <signature of Bruce Donald>, Mar 1, 2018
+** Bruce Donald, Professor of Computer Science
+*/
+
+package edu.duke.cs.osprey.energy.forcefield;
+
+import static edu.duke.cs.osprey.TestBase.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import edu.duke.cs.osprey.energy.ResidueInteractions;
+import edu.duke.cs.osprey.structure.AtomConnectivity;
+import edu.duke.cs.osprey.structure.Residues;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class TestResPairCache {
+
+	@BeforeClass
+	public static void before() {
+		TestForcefieldEnergy.before();
+	}
+
+	private static Residues makeResidues() {
+		TestForcefieldEnergy.TestResidues r = new TestForcefieldEnergy.TestResidues();
+		return new Residues(r.gly15, r.ser17, r.trp18, r.arg22, r.ala24);
+	}
+
+	private static double calcEnergy(ResPairCache cache, Residues residues) {
+		ResidueInteractions inters = TestForcefieldEnergy.IntersType.AllPairs.makeInters(residues);
+		return new ResidueForcefieldEnergy(cache, inters, residues).getEnergy();
+	}
+
+	@Test
+	public void saveAndLoad() {
+
+		Residues residues = makeResidues();
+
+		for (TestForcefieldEnergy.FFType fftype : TestForcefieldEnergy.FFType.values()) {
+			try (TempFile file = new TempFile("resPairCache.dat")) {
+
+				ForcefieldParams ffparams = fftype.makeFFParams();
+
+				ResPairCache cache = new ResPairCache(ffparams, new AtomConnectivity.Builder().build(), Long.MAX_VALUE, file);
+				double expected = calcEnergy(cache, residues);
+				cache.save();
+				assertThat(file.exists(), is(true));
+
+				// a new cache with a new connectivity should read the same parameters from the file
+				ResPairCache loaded = new ResPairCache(ffparams, new AtomConnectivity.Builder().build(), Long.MAX_VALUE, file);
+				assertThat("forcefield type: " + fftype, calcEnergy(loaded, residues), is(expected));
+				assertThat(loaded.size(), is(cache.size()));
+			}
+		}
+	}
+
+	@Test
+	public void evict() {
+
+		Residues residues = makeResidues();
+		ForcefieldParams ffparams = TestForcefieldEnergy.FFType.EEF1.makeFFParams();
+		AtomConnectivity connectivity = new AtomConnectivity.Builder().build();
+
+		double expected = calcEnergy(new ResPairCache(ffparams, connectivity), residues);
+
+		// make a cache too small to hold everything
+		long maxBytes = 16*1024;
+		ResPairCache cache = new ResPairCache(ffparams, connectivity, maxBytes, null);
+		for (int i=0; i<3; i++) {
+			assertThat(calcEnergy(cache, residues), is(expected));
+			assertThat(cache.getNumBytes(), lessThanOrEqualTo(maxBytes));
+		}
+	}
+
+	@Test
+	public void saveEvicted() {
+
+		Residues residues = makeResidues();
+		ForcefieldParams ffparams = TestForcefieldEnergy.FFType.EEF1.makeFFParams();
+
+		ResPairCache unbounded = new ResPairCache(ffparams, new AtomConnectivity.Builder().build());
+		double expected = calcEnergy(unbounded, residues);
+
+		try (TempFile file = new TempFile("resPairCache.dat")) {
+
+			// evict parameters before saving, they should still end up in the file
+			long maxBytes = 16*1024;
+			ResPairCache cache = new ResPairCache(ffparams, new AtomConnectivity.Builder().build(), maxBytes, file);
+			assertThat(calcEnergy(cache, residues), is(expected));
+			cache.save();
+
+			// so reading the file should get all the parameters
+			ResPairCache loaded = new ResPairCache(ffparams, new AtomConnectivity.Builder().build(), Long.MAX_VALUE, file);
+			assertThat(loaded.getNumBytes(), is(unbounded.getNumBytes()));
+			assertThat(calcEnergy(loaded, residues), is(expected));
+			assertThat(loaded.getNumBytes(), is(unbounded.getNumBytes()));
+
+			// but only as many as fit in a small cache
+			ResPairCache small = new ResPairCache(ffparams, new AtomConnectivity.Builder().build(), maxBytes, file);
+			assertThat(small.getNumBytes(), lessThanOrEqualTo(maxBytes));
+			assertThat(calcEnergy(small, residues), is(expected));
+			assertThat(small.getNumBytes(), lessThanOrEqualTo(maxBytes));
+		}
+	}
+
+	@Test
+	public void differentForcefieldParams() {
+
+		Residues residues = makeResidues();
+
+		try (TempFile file = new TempFile("resPairCache.dat")) {
+
+			ForcefieldParams ffparams = TestForcefieldEnergy.FFType.EEF1.makeFFParams();
+			ResPairCache cache = new ResPairCache(ffparams, new AtomConnectivity.Builder().build(), Long.MAX_VALUE, file);
+			calcEnergy(cache, residues);
+			cache.save();
+
+			// parameters saved with one parameter file shouldn't be used with another
+			ForcefieldParams otherParams = TestForcefieldEnergy.FFType.EEF1.makeFFParams();
+			for (int i=0; i<otherParams.eef1parms.numAtTypesEEF1; i++) {
+				otherParams.eef1parms.dGiFree[i] *= 2;
+			}
+			ResPairCache loaded = new ResPairCache(otherParams, new AtomConnectivity.Builder().build(), Long.MAX_VALUE, file);
+			assertThat(loaded.getNumBytes(), is(0L));
+			assertThat(
+				calcEnergy(loaded, residues),
+				is(calcEnergy(new ResPairCache(otherParams, new AtomConnectivity.Builder().build()), residues))
+			);
+		}
+	}
+
+	@Test
+	public void threads() {
+
+		ForcefieldParams ffparams = TestForcefieldEnergy.FFType.EEF1.makeFFParams();
+		ResPairCache cache = new ResPairCache(ffparams, new AtomConnectivity.Builder().build());
+
+		double expected = calcEnergy(new ResPairCache(ffparams, new AtomConnectivity.Builder().build()), makeResidues());
+
+		// hammer the cache from many threads at once
+		List<Thread> threads = new ArrayList<>();
+		List<Double> energies = new ArrayList<>();
+		for (int t=0; t<8; t++) {
+			threads.add(new Thread(() -> {
+				Residues residues = makeResidues();
+				for (int i=0; i<10; i++) {
+					double energy = calcEnergy(cache, residues);
+					synchronized (energies) {
+						energies.add(energy);
+					}
+				}
+			}));
+		}
+		threads.forEach(Thread::start);
+		for (Thread thread : threads) {
+			try {
+				thread.join();
+			} catch (InterruptedException ex) {
+				throw new RuntimeException(ex);
+			}
+		}
+
+		assertThat(energies.size(), is(8*10));
+		for (double energy : energies) {
+			assertThat(energy, is(expected));
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package edu.duke.cs.osprey.externalMemory;
+
+import edu.duke.cs.osprey.astar.conf.ConfAStarTree;
+import edu.duke.cs.osprey.astar.conf.RCs;
+import edu.duke.cs.osprey.confspace.ConfSearch;
+import edu.duke.cs.osprey.ematrix.EnergyMatrix;
+import edu.duke.cs.osprey.tools.Stopwatch;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static edu.duke.cs.osprey.tools.Log.log;
+
+
+/**
+ * Compares the TPIE and pure Java external memory backends by enumerating lots of confs with A*.
+ */
+public class BenchmarkExternalMemory {
+
+	public static void main(String[] args) {
+
+		final int internalMiB = 256;
+		final int numConfs = 2_000_000;
+
+		// make a random energy matrix for a wide tree, so A* queues lots of nodes
+		final int numPos = 10;
+		final int numRCs = 12;
+		int[] numRCsAtPos = new int[numPos];
+		Arrays.fill(numRCsAtPos, numRCs);
+		EnergyMatrix emat = new EnergyMatrix(numPos, numRCsAtPos, 0);
+		Random rand = new Random(12345);
+		for (int pos1=0; pos1<numPos; pos1++) {
+			for (int rc1=0; rc1<numRCs; rc1++) {
+				emat.setOneBody(pos1, rc1, rand.nextDouble()*10);
+				for (int pos2=0; pos2<pos1; pos2++) {
+					for (int rc2=0; rc2<numRCs; rc2++) {
+						emat.setPairwise(pos1, rc1, pos2, rc2, rand.nextDouble()*2 - 1);
+					}
+				}
+			}
+		}
+		int[][] rcsAtPos = new int[numPos][numRCs];
+		for (int pos=0; pos<numPos; pos++) {
+			for (int rc=0; rc<numRCs; rc++) {
+				rcsAtPos[pos][rc] = rc;
+			}
+		}
+		RCs rcs = new RCs(rcsAtPos);
+
+		for (ExternalMemory.Backend backend : ExternalMemory.Backend.values()) {
+			ExternalMemory.use(internalMiB, backend, () -> {
+
+				ConfAStarTree tree = new ConfAStarTree.Builder(emat, rcs)
+					.setTraditional()
+					.useExternalMemory()
+					.build();
+
+				Stopwatch stopwatch = new Stopwatch().start();
+				double lastScore = Double.NEGATIVE_INFINITY;
+				for (int i=0; i<numConfs; i++) {
+					ConfSearch.ScoredConf conf = tree.nextConf();
+					if (conf.getScore() < lastScore) {
+						throw new Error("confs out of order");
+					}
+					lastScore = conf.getScore();
+				}
+				stopwatch.stop();
+
+				log("%5s: %d confs in %s, %.0f confs/s, external memory: %s",
+					backend,
+					numConfs,
+					stopwatch.getTime(2),
+					numConfs/stopwatch.getTimeS(),
+					ExternalMemory.getUsageReport()
+				);
+			});
+		}
+	}
+}
@@ -0,0 +1,182 @@
+package edu.duke.cs.osprey.externalMemory;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import edu.duke.cs.osprey.astar.conf.ConfAStarNode;
+import edu.duke.cs.osprey.astar.conf.RCs;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+
+public class TestExternalPriorityQueue {
+
+	private static final int NumPos = 5;
+
+	private static RCs makeRCs() {
+		int[][] rcsAtPos = new int[NumPos][];
+		for (int pos=0; pos<NumPos; pos++) {
+			rcsAtPos[pos] = new int[] { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9 };
+		}
+		return new RCs(rcsAtPos);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Queue<EMConfAStarNode> makeQueue() {
+		Queue<? extends ConfAStarNode> q = new EMConfAStarFactory().makeQueue(makeRCs());
+		return (Queue<EMConfAStarNode>)q;
+	}
+
+	private static EMConfAStarNode makeNode(Random rand) {
+		EMConfAStarNode node = new EMConfAStarNode(NumPos);
+		for (int pos=0; pos<NumPos; pos++) {
+			node.getConf()[pos] = rand.nextInt(10);
+		}
+		node.setGScore(rand.nextDouble()*100);
+		node.setHScore(rand.nextDouble()*100);
+		node.setLevel(rand.nextInt(NumPos));
+		return node;
+	}
+
+	private static void assertSameNode(EMConfAStarNode observed, EMConfAStarNode expected) {
+		assertThat(observed.getScore(), is(expected.getScore()));
+		assertThat(observed.getGScore(), is(expected.getGScore()));
+		assertThat(observed.getHScore(), is(expected.getHScore()));
+		assertThat(observed.getLevel(), is(expected.getLevel()));
+		assertThat(observed.getConf(), is(expected.getConf()));
+	}
+
+	@Test
+	public void serializerSize() {
+		ExternalMemory.use(1, ExternalMemory.Backend.Java, () -> {
+			Queue<EMConfAStarNode> q = makeQueue();
+			assertThat(q, instanceOf(ExternalPriorityQueue.class));
+
+			// 5 bytes of assignments, 2 doubles, 1 int, no padding
+			assertThat(((ExternalPriorityQueue<EMConfAStarNode>)q).serializer.getNumBytes(), is(5 + 8 + 8 + 4));
+		});
+	}
+
+	@Test
+	public void internal() {
+		ExternalMemory.use(16, ExternalMemory.Backend.Java, () -> {
+			pushPopAll(makeQueue(), 10_000);
+		});
+	}
+
+	@Test
+	public void spill() {
+		ExternalMemory.use(1, ExternalMemory.Backend.Java, () -> {
+			// 1 MiB holds about 13k nodes in the internal heap
+			ExternalPriorityQueue<EMConfAStarNode> q = (ExternalPriorityQueue<EMConfAStarNode>)makeQueue();
+			pushPopAll(q, 100_000);
+			assertThat(q.getNumRuns(), is(0));
+			assertThat(q.getExternalBytes(), is(0L));
+		});
+	}
+
+	@Test
+	public void spillAndMerge() {
+		ExternalMemory.use(1, ExternalMemory.Backend.Java, () -> {
+			// 1 MiB only has room for a few run buffers, so this forces merges
+			pushPopAll(makeQueue(), 500_000);
+		});
+	}
+
+	@Test
+	public void interleaved() {
+		ExternalMemory.use(1, ExternalMemory.Backend.Java, () -> {
+
+			Queue<EMConfAStarNode> q = makeQueue();
+			PriorityQueue<EMConfAStarNode> expected = new PriorityQueue<>(Comparator.comparingDouble(EMConfAStarNode::getScore));
+
+			// like A*: pop one node, push a few children
+			Random rand = new Random(12345);
+			for (int i=0; i<100_000; i++) {
+				EMConfAStarNode node = makeNode(rand);
+				q.push(node);
+				expected.add(node);
+			}
+			for (int i=0; i<100_000; i++) {
+				assertSameNode(q.poll(), expected.poll());
+				for (int j=0; j<2; j++) {
+					EMConfAStarNode node = makeNode(rand);
+					q.push(node);
+					expected.add(node);
+				}
+			}
+
+			assertThat(q.size(), is((long)expected.size()));
+			while (!expected.isEmpty()) {
+				assertSameNode(q.poll(), expected.poll());
+			}
+			assertThat(q.isEmpty(), is(true));
+			assertThat(q.poll(), is(nullValue()));
+		});
+	}
+
+	@Test
+	public void sharedLimit() {
+		ExternalMemory.use(1, ExternalMemory.Backend.Java, () -> {
+
+			// the queues share one internal memory limit, rather than each taking all of it
+			List<Queue<EMConfAStarNode>> queues = new ArrayList<>();
+			Random rand = new Random(12345);
+			for (int i=0; i<4; i++) {
+				Queue<EMConfAStarNode> q = makeQueue();
+				for (int j=0; j<50_000; j++) {
+					q.push(makeNode(rand));
+				}
+				queues.add(q);
+			}
+			assertThat(ExternalMemory.getInternalBytes(), lessThan(ExternalMemory.getInternalLimitBytes()*3/2));
+			assertThat(ExternalMemory.getExternalBytes(), greaterThan(0L));
+
+			// closing the queues frees everything
+			for (Queue<EMConfAStarNode> q : queues) {
+				((ExternalPriorityQueue<EMConfAStarNode>)q).close();
+			}
+			assertThat(ExternalMemory.getInternalBytes(), is(0L));
+			assertThat(ExternalMemory.getExternalBytes(), is(0L));
+		});
+	}
+
+	@Test
+	public void cleanup() {
+		ExternalMemory.use(1, ExternalMemory.Backend.Java, () -> {
+			Queue<EMConfAStarNode> q = makeQueue();
+			Random rand = new Random(12345);
+			for (int i=0; i<50_000; i++) {
+				q.push(makeNode(rand));
+			}
+			assertThat(ExternalMemory.getExternalBytes(), greaterThan(0L));
+		});
+
+		// queues that weren't closed get cleaned up with the external memory system
+		assertThat(ExternalMemory.getInternalBytes(), is(0L));
+	}
+
+	private static void pushPopAll(Queue<EMConfAStarNode> q, int numNodes) {
+
+		PriorityQueue<EMConfAStarNode> expected = new PriorityQueue<>(Comparator.comparingDouble(EMConfAStarNode::getScore));
+
+		Random rand = new Random(12345);
+		for (int i=0; i<numNodes; i++) {
+			EMConfAStarNode node = makeNode(rand);
+			q.push(node);
+			expected.add(node);
+		}
+		assertThat(q.size(), is((long)numNodes));
+
+		while (!expected.isEmpty()) {
+			assertSameNode(q.poll(), expected.poll());
+		}
+		assertThat(q.isEmpty(), is(true));
+		assertThat(q.poll(), is(nullValue()));
+	}
+}
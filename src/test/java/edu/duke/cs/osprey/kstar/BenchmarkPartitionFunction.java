@@ -77,17 +77,18 @@ public class BenchmarkPartitionFunction {
 				.setTraditional()
 				.build();
 
-			benchmarkPfunc(new SimplePartitionFunction(confEcalc, astarFactory.get(), rcs.getNumConformations()));
-			benchmarkPfunc(new GradientDescentPfunc(confEcalc, astarFactory.get(), astarFactory.get(), rcs.getNumConformations()));
+			benchmarkPfunc("SimplePartitionFunction", new SimplePartitionFunction(confEcalc, astarFactory.get(), rcs.getNumConformations()));
+			benchmarkPfunc("GradientDescentPfunc", new GradientDescentPfunc(confEcalc, astarFactory.get(), astarFactory.get(), rcs.getNumConformations()));
+			benchmarkPfunc("GradientDescentPfunc BigExp", new GradientDescentPfunc(confEcalc, astarFactory.get(), astarFactory.get(), rcs.getNumConformations()).setUseBigExp(true));
 		}
 	}
 
-	private static void benchmarkPfunc(PartitionFunction pfunc) {
+	private static void benchmarkPfunc(String name, PartitionFunction pfunc) {
 
 		// compute pfunc
 		pfunc.init(0.05);
 		Stopwatch sw = new Stopwatch().start();
 		pfunc.compute();
-		System.out.println(String.format("%-30s %s", pfunc.getClass().getSimpleName(), sw.stop().getTime(2)));
+		System.out.println(String.format("%-30s %s", name, sw.stop().getTime(2)));
 	}
 }
@@ -0,0 +1,58 @@
+package edu.duke.cs.osprey.kstar;
+
+import edu.duke.cs.osprey.Benchmark;
+import edu.duke.cs.osprey.kstar.pfunc.BoltzmannCalculator;
+import edu.duke.cs.osprey.kstar.pfunc.PartitionFunction;
+import edu.duke.cs.osprey.tools.BigExp;
+import edu.duke.cs.osprey.tools.BigMath;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static edu.duke.cs.osprey.tools.Log.log;
+
+
+/**
+ * Compares the BigDecimal and BigExp ways GradientDescentPfunc can turn energies into Boltzmann weights
+ * and accumulate them into a shared sum under a lock, like the pfunc listener does.
+ */
+public class BenchmarkPfuncAccumulation {
+
+	private static final BoltzmannCalculator bcalc = new BoltzmannCalculator(PartitionFunction.decimalPrecision);
+
+	public static void main(String[] args) {
+
+		for (int numThreads : new int[] { 1, 4, 16, 32 }) {
+
+			Object bigDecimalLock = new Object();
+			BigDecimal[] bigDecimalSum = { BigDecimal.ZERO };
+			Benchmark bmBigDecimal = new Benchmark(numThreads, 1_000, 20_000, () -> {
+				BigDecimal weight = bcalc.calcPrecise(randomEnergy());
+				synchronized (bigDecimalLock) {
+					bigDecimalSum[0] = new BigMath(PartitionFunction.decimalPrecision)
+						.set(bigDecimalSum[0])
+						.add(weight)
+						.get();
+				}
+			});
+
+			Object bigExpLock = new Object();
+			BigExp bigExpSum = new BigExp(0.0);
+			Benchmark bmBigExp = new Benchmark(numThreads, 1_000, 20_000, () -> {
+				BigExp weight = bcalc.calcBigExp(randomEnergy());
+				synchronized (bigExpLock) {
+					bigExpSum.addFast(weight);
+				}
+			});
+
+			log("%2d threads", numThreads);
+			log("\tBigDecimal: %s", bmBigDecimal.toString());
+			log("\tBigExp:     %s", bmBigExp.toString(bmBigDecimal));
+		}
+	}
+
+	private static double randomEnergy() {
+		// typical minimized conformation energies are tens to hundreds of kcal/mol below zero
+		return -ThreadLocalRandom.current().nextDouble(10.0, 300.0);
+	}
+}
@@ -80,6 +80,10 @@ public class TestKStar {
 	}
 
 	public static Result runKStar(ConfSpaces confSpaces, double epsilon, String confDBPattern, boolean useExternalMemory, int maxSimultaneousMutations) {
+		return runKStar(confSpaces, epsilon, confDBPattern, useExternalMemory, maxSimultaneousMutations, 1);
+	}
+
+	public static Result runKStar(ConfSpaces confSpaces, double epsilon, String confDBPattern, boolean useExternalMemory, int maxSimultaneousMutations, int numPfuncsInFlight) {
 
 		Parallelism parallelism = Parallelism.makeCpu(4);
 
@@ -117,6 +121,7 @@ public class TestKStar {
 				.addScoreConsoleWriter(testFormatter)
 				.setExternalMemory(useExternalMemory)
 				.setMaxSimultaneousMutations(maxSimultaneousMutations)
+				.setNumPfuncsInFlight(numPfuncsInFlight)
 				//.setShowPfuncProgress(true)
 				.build();
 			KStar kstar = new KStar(confSpaces.protein, confSpaces.ligand, confSpaces.complex, settings);
@@ -409,6 +414,14 @@ public class TestKStar {
 		});
 	}
 
+	@Test
+	public void test2RL0Pipelined() {
+
+		double epsilon = 0.95;
+		Result result = runKStar(make2RL0(), epsilon, null, false, 1, 3);
+		assert2RL0(result, epsilon);
+	}
+
 	private static void assert2RL0(Result result, double epsilon) {
 		// check the results (values collected with e = 0.01 and 64 digits precision)
 		// NOTE: these values don't match the ones in the TestKSImplLinear test because the conf spaces are slightly different
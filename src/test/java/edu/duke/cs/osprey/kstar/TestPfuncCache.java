@@ -0,0 +1,122 @@
+package edu.duke.cs.osprey.kstar;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import edu.duke.cs.osprey.kstar.pfunc.PartitionFunction;
+import edu.duke.cs.osprey.kstar.pfunc.PfuncCache;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+
+public class TestPfuncCache {
+
+	/** evaluates a fixed number of confs, each adding 1 to q* */
+	private static class CountingPfunc implements PartitionFunction {
+
+		final int maxNumConfs;
+		final Values values = Values.makeFullRange();
+		int numConfs = 0;
+		int numComputedConfs = 0;
+
+		CountingPfunc(int maxNumConfs) {
+			this.maxNumConfs = maxNumConfs;
+			values.qstar = BigDecimal.ZERO;
+		}
+
+		@Override
+		public void setReportProgress(boolean val) {}
+
+		@Override
+		public void setConfListener(ConfListener val) {}
+
+		@Override
+		public void init(double targetEpsilon) {}
+
+		@Override
+		public Status getStatus() {
+			return numConfs < maxNumConfs ? Status.Estimating : Status.Estimated;
+		}
+
+		@Override
+		public Values getValues() {
+			return values;
+		}
+
+		@Override
+		public int getParallelism() {
+			return 1;
+		}
+
+		@Override
+		public int getNumConfsEvaluated() {
+			return numConfs;
+		}
+
+		@Override
+		public void compute(int maxNumConfs) {
+			int n = Math.min(maxNumConfs, this.maxNumConfs - numConfs);
+			numConfs += n;
+			numComputedConfs += n;
+			values.qstar = values.qstar.add(BigDecimal.valueOf(n));
+		}
+	}
+
+	@Test
+	public void replay() {
+
+		PfuncCache cache = new PfuncCache(1);
+		CountingPfunc[] last = { null };
+		PfuncCache.Entry pfunc = cache.make(() -> last[0] = new CountingPfunc(20));
+
+		pfunc.compute(5);
+		assertThat(pfunc.getNumConfsEvaluated(), is(5));
+		assertThat(cache.getNumReplays(), is(0L));
+
+		// forget the pfunc, the status and values should still be known
+		pfunc.clearRefs();
+		assertThat(pfunc.isLoaded(), is(false));
+		assertThat(pfunc.getStatus(), is(PartitionFunction.Status.Estimating));
+		assertThat(pfunc.getValues().qstar, is(BigDecimal.valueOf(5)));
+		assertThat(cache.getNumReplays(), is(0L));
+
+		// computing again should replay the first 5 confs, then compute 5 more
+		pfunc.compute(5);
+		assertThat(cache.getNumReplays(), is(1L));
+		assertThat(last[0].numComputedConfs, is(10));
+		assertThat(pfunc.getNumConfsEvaluated(), is(10));
+		assertThat(pfunc.getValues().qstar, is(BigDecimal.valueOf(10)));
+
+		// finish the pfunc, then it should be dropped from memory
+		pfunc.compute(100);
+		assertThat(pfunc.getStatus(), is(PartitionFunction.Status.Estimated));
+		assertThat(pfunc.isLoaded(), is(false));
+		assertThat(pfunc.makeResult().numConfs, is(20));
+		assertThat(pfunc.makeResult().values.qstar, is(BigDecimal.valueOf(20)));
+	}
+
+	@Test
+	public void capacity() {
+
+		PfuncCache cache = new PfuncCache(2);
+
+		PfuncCache.Entry pfunc1 = cache.make(() -> new CountingPfunc(100));
+		assertThat(pfunc1.isProtected(), is(true));
+
+		PfuncCache.Entry pfunc2 = cache.make(() -> new CountingPfunc(100));
+		assertThat(pfunc1.isProtected(), is(true));
+		assertThat(pfunc2.isProtected(), is(true));
+
+		PfuncCache.Entry pfunc3 = cache.make(() -> new CountingPfunc(100));
+		assertThat(pfunc1.isProtected(), is(false));
+		assertThat(pfunc2.isProtected(), is(true));
+		assertThat(pfunc3.isProtected(), is(true));
+
+		// using pfunc1 should protect it again
+		pfunc1.compute(1);
+		assertThat(pfunc1.isProtected(), is(true));
+		assertThat(pfunc2.isProtected(), is(false));
+		assertThat(pfunc3.isProtected(), is(true));
+	}
+}
@@ -145,6 +145,7 @@ public class TestSimplePartitionFunction {
 
 	private static PfuncFactory simplePfuncs = (confEcalc, confSearch) -> new SimplePartitionFunction(confEcalc, confSearch, new RCs(confEcalc.confSpace).getNumConformations());
 	private static PfuncFactory gdPfuncs = (confEcalc, confSearch) -> new GradientDescentPfunc(confEcalc, confSearch, new RCs(confEcalc.confSpace).getNumConformations());
+	private static PfuncFactory gdBigExpPfuncs = (confEcalc, confSearch) -> new GradientDescentPfunc(confEcalc, confSearch, new RCs(confEcalc.confSpace).getNumConformations()).setUseBigExp(true);
 
 	public static void testStrand(ForcefieldParams ffparams, SimpleConfSpace confSpace, Parallelism parallelism, double targetEpsilon, String approxQStar, EnergyMatrix emat, PfuncFactory pfuncs) {
 
@@ -232,6 +233,8 @@ public class TestSimplePartitionFunction {
 	@Test public void test2RL0ProteinGD2Cpus() { calc2RL0Protein(gdPfuncs, Parallelism.make(2, 0, 0)); }
 	@Test public void test2RL0ProteinGD1GpuStream() { calc2RL0Protein(gdPfuncs, Parallelism.make(1, 1, 1)); }
 	@Test public void test2RL0ProteinGD4GpuStreams() { calc2RL0Protein(gdPfuncs, Parallelism.make(2, 1, 4)); }
+	@Test public void test2RL0ProteinGDBigExp1Cpu() { calc2RL0Protein(gdBigExpPfuncs, Parallelism.make(1, 0, 0)); }
+	@Test public void test2RL0ProteinGDBigExp2Cpus() { calc2RL0Protein(gdBigExpPfuncs, Parallelism.make(2, 0, 0)); }
 
 	private static EnergyMatrix calc2RL0LigandEmat = null;
 	public void calc2RL0LigandPfunc(PfuncFactory pfuncs, Parallelism parallelism) {
@@ -254,6 +257,8 @@ public class TestSimplePartitionFunction {
 	@Test public void test2RL0LigandGD2Cpus() { calc2RL0LigandPfunc(gdPfuncs, Parallelism.make(2, 0, 0)); }
 	@Test public void test2RL0LigandGD1GpuStream() { calc2RL0LigandPfunc(gdPfuncs, Parallelism.make(1, 1, 1)); }
 	@Test public void test2RL0LigandGD4GpuStreams() { calc2RL0LigandPfunc(gdPfuncs, Parallelism.make(2, 1, 4)); }
+	@Test public void test2RL0LigandGDBigExp1Cpu() { calc2RL0LigandPfunc(gdBigExpPfuncs, Parallelism.make(1, 0, 0)); }
+	@Test public void test2RL0LigandGDBigExp2Cpus() { calc2RL0LigandPfunc(gdBigExpPfuncs, Parallelism.make(2, 0, 0)); }
 
 	private static EnergyMatrix calc2RL0ComplexEmat = null;
 	public void calc2RL0Complex(PfuncFactory pfuncs, Parallelism parallelism) {
@@ -287,6 +292,8 @@ public class TestSimplePartitionFunction {
 	@Test public void test2RL0ComplexGD4Cpus() { calc2RL0Complex(gdPfuncs, Parallelism.make(4, 0, 0)); }
 	@Test public void test2RL0ComplexGD1GpuStream() { calc2RL0Complex(gdPfuncs, Parallelism.make(1, 1, 1)); }
 	@Test public void test2RL0ComplexGD4GpuStreams() { calc2RL0Complex(gdPfuncs, Parallelism.make(2, 1, 4)); }
+	@Test public void test2RL0ComplexGDBigExp1Cpu() { calc2RL0Complex(gdBigExpPfuncs, Parallelism.make(1, 0, 0)); }
+	@Test public void test2RL0ComplexGDBigExp4Cpus() { calc2RL0Complex(gdBigExpPfuncs, Parallelism.make(4, 0, 0)); }
 
 
 	public static TestInfo make1GUA11TestInfo() {
@@ -370,6 +377,7 @@ public class TestSimplePartitionFunction {
 	}
 	@Test public void calc1GUA11ComplexSimple() { calc1GUA11Complex(simplePfuncs, Parallelism.makeCpu(4)); }
 	@Test public void calc1GUA11ComplexGD() { calc1GUA11Complex(gdPfuncs, Parallelism.makeCpu(4)); }
+	@Test public void calc1GUA11ComplexGDBigExp() { calc1GUA11Complex(gdBigExpPfuncs, Parallelism.makeCpu(4)); }
 
 	public void calcWithConfDB(PfuncFactory pfuncs) {
 
@@ -36,8 +36,11 @@ import static edu.duke.cs.osprey.TestBase.isAbsolutely;
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.*;
 
+import edu.duke.cs.osprey.astar.conf.ConfAStarNode;
 import edu.duke.cs.osprey.astar.conf.ConfAStarTree;
+import edu.duke.cs.osprey.astar.conf.ConfIndex;
 import edu.duke.cs.osprey.astar.conf.RCs;
+import edu.duke.cs.osprey.astar.conf.linked.LinkedConfAStarNode;
 import edu.duke.cs.osprey.confspace.*;
 import edu.duke.cs.osprey.ematrix.EnergyMatrix;
 import edu.duke.cs.osprey.ematrix.SimplerEnergyMatrixCalculator;
@@ -50,12 +53,17 @@ import edu.duke.cs.osprey.kstar.*;
 import edu.duke.cs.osprey.kstar.pfunc.GradientDescentPfunc;
 import edu.duke.cs.osprey.kstar.pfunc.PartitionFunction;
 import edu.duke.cs.osprey.parallelism.Parallelism;
+import edu.duke.cs.osprey.parallelism.ThreadPoolTaskExecutor;
 import edu.duke.cs.osprey.pruning.PruningMatrix;
 import edu.duke.cs.osprey.pruning.SimpleDEE;
 import edu.duke.cs.osprey.restypes.ResidueTemplateLibrary;
 import edu.duke.cs.osprey.structure.Molecule;
 import edu.duke.cs.osprey.structure.PDBIO;
 import edu.duke.cs.osprey.tools.Streams;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.ConjugateGradient;
+import org.apache.commons.math3.linear.RealLinearOperator;
+import org.apache.commons.math3.linear.RealVector;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
@@ -810,4 +818,279 @@ public class TestLute {
 			new RCTuple(1, 2, 2, 0, 3, 1).sorted()
 		));
 	}
+
+	@Test
+	public void denseTables() {
+
+		// make a small conf space with random LUTE energies, including some triples
+
+		Strand protein = new Strand.Builder(PDBIO.readResource("/1CC8.ss.pdb")).build();
+		for (String resNum : Arrays.asList("A16", "A17", "A18", "A19")) {
+			protein.flexibility.get(resNum).setLibraryRotamers("VAL"); // 3 rotamers each
+		}
+		SimpleConfSpace confSpace = new SimpleConfSpace.Builder().addStrands(protein).build();
+		PruningMatrix pmat = new PruningMatrix(confSpace);
+
+		List<RCTuple> tuples = new ArrayList<>();
+		tuples.addAll(new LUTE(confSpace).getUnprunedPairTuples(pmat));
+		tuples.add(new RCTuple(0, 1, 1, 2, 2, 0).sorted());
+		tuples.add(new RCTuple(1, 2, 2, 0, 3, 1).sorted());
+		tuples.add(new RCTuple(0, 0, 1, 0, 3, 2).sorted());
+		tuples.add(new RCTuple(1, 1));
+
+		Random rand = new Random(12345);
+		LUTEState state = new LUTEState(tuples.size());
+		for (int i=0; i<tuples.size(); i++) {
+			state.tuples[i] = tuples.get(i);
+			state.tupleEnergies[i] = rand.nextDouble()*10 - 5;
+		}
+		state.tupleEnergyOffset = 1.5;
+		LUTEConfEnergyCalculator luteEcalc = new LUTEConfEnergyCalculator(confSpace, state);
+		RCs rcs = new RCs(confSpace);
+
+		// conf energies should match the tuples index
+		for (int[] conf : Arrays.asList(new int[] { 1, 2, 0, 1 }, new int[] { 0, 0, 0, 2 }, new int[] { 2, 1, 2, 0 })) {
+			double[] expected = { state.tupleEnergyOffset };
+			luteEcalc.tuples.forEachIn(conf, false, true, (t) -> expected[0] += state.tupleEnergies[t]);
+			assertThat(luteEcalc.calcEnergy(conf), isAbsolutely(expected[0], 1e-12));
+		}
+
+		// h-scores should match, whether we compute them from scratch or differentially
+		LUTEHScorer hscorer = new LUTEHScorer(luteEcalc);
+		ConfIndex index = new ConfIndex(confSpace.positions.size());
+		index.updateUndefined();
+		Runnable[] f = { null };
+		f[0] = () -> {
+
+			index.node = new LinkedConfAStarNode();
+			assertThat(hscorer.calc(index, rcs), isAbsolutely(calcNaiveHScore(luteEcalc, index, rcs), 1e-9));
+
+			if (index.isFullyDefined()) {
+				return;
+			}
+
+			int pos = index.undefinedPos[0];
+			for (int rc : rcs.get(pos)) {
+				ConfIndex childIndex = index.assign(pos, rc);
+				double expected = calcNaiveHScore(luteEcalc, childIndex, rcs);
+				assertThat(hscorer.calcDifferential(index, rcs, pos, rc), isAbsolutely(expected, 1e-9));
+			}
+
+			for (int rc : rcs.get(pos)) {
+				ConfAStarNode node = index.node;
+				index.assignInPlace(pos, rc);
+				f[0].run();
+				index.unassignInPlace(pos);
+				index.node = node;
+			}
+		};
+		f[0].run();
+	}
+
+	private static class FitCase {
+
+		final LUTE lute;
+		final ConfSampler sampler;
+		final Conf.Map<Double> energies = new Conf.Map<>();
+		final double[] trueTupleEnergies;
+		final Random rand = new Random(12345);
+
+		FitCase() {
+
+			Strand protein = new Strand.Builder(PDBIO.readResource("/1CC8.ss.pdb")).build();
+			for (String resNum : Arrays.asList("A16", "A17", "A18", "A19", "A20", "A21")) {
+				protein.flexibility.get(resNum).setLibraryRotamers("VAL");
+			}
+			SimpleConfSpace confSpace = new SimpleConfSpace.Builder().addStrands(protein).build();
+			PruningMatrix pmat = new PruningMatrix(confSpace);
+
+			lute = new LUTE(confSpace);
+			lute.addTuples(lute.getUnprunedPairTuples(pmat));
+			sampler = new RandomizedDFSConfSampler(confSpace, pmat, 12345);
+
+			// don't bother with real energies, just make up some that are nearly, but not exactly, pairwise
+			trueTupleEnergies = new double[lute.tuplesIndex.size()];
+			for (int t=0; t<trueTupleEnergies.length; t++) {
+				trueTupleEnergies[t] = rand.nextDouble()*10 - 5;
+			}
+		}
+
+		LUTE.LinearSystem sample(int samplesPerTuple) {
+			sampler.sampleConfsForTuples(lute.trainingSet, samplesPerTuple);
+			for (int[] conf : lute.trainingSet.getAllConfs()) {
+				if (!energies.containsKey(conf)) {
+					double[] energy = { rand.nextGaussian()*0.1 };
+					lute.tuplesIndex.forEachIn(conf, false, true, (t) -> energy[0] += trueTupleEnergies[t]);
+					energies.put(conf, energy[0]);
+				}
+			}
+			return new LUTE.LinearSystem(lute.tuplesIndex, lute.trainingSet, energies);
+		}
+	}
+
+	private static double[] multA(LUTE.LinearSystem system, double[] x) {
+		double[] out = new double[system.confs.size()];
+		for (int c=0; c<system.confs.size(); c++) {
+			final int fc = c;
+			system.tuples.forEachIn(system.confs.get(c), false, true, (t) -> out[fc] += x[t]);
+		}
+		return out;
+	}
+
+	private static double[] multAt(LUTE.LinearSystem system, double[] x) {
+		double[] out = new double[system.tuples.size()];
+		for (int c=0; c<system.confs.size(); c++) {
+			double xc = x[c];
+			system.tuples.forEachIn(system.confs.get(c), false, true, (t) -> out[t] += xc);
+		}
+		return out;
+	}
+
+	/** the OLSCG fit before it went matrix-free: the commons-math ConjugateGradient, on A^tA applied as A, then A^t */
+	private static double[] fitWithCommonsMath(LUTE.LinearSystem system, double[] oldTupleEnergies) {
+
+		int numTuples = system.tuples.size();
+
+		// normalize b
+		double min = Arrays.stream(system.confEnergies).min().getAsDouble();
+		double max = Arrays.stream(system.confEnergies).max().getAsDouble();
+		double scale = max - min;
+		double[] b = new double[system.confs.size()];
+		for (int c=0; c<b.length; c++) {
+			b[c] = (system.confEnergies[c] - min)/scale;
+		}
+
+		double[] x0 = new double[numTuples];
+		if (oldTupleEnergies != null) {
+			for (int t=0; t<oldTupleEnergies.length; t++) {
+				x0[t] = oldTupleEnergies[t]/scale;
+			}
+		}
+
+		RealLinearOperator AtA = new RealLinearOperator() {
+
+			@Override
+			public int getRowDimension() {
+				return numTuples;
+			}
+
+			@Override
+			public int getColumnDimension() {
+				return numTuples;
+			}
+
+			@Override
+			public RealVector operate(RealVector vx) {
+				double[] x = ((ArrayRealVector)vx).getDataRef();
+				return new ArrayRealVector(multAt(system, multA(system, x)), false);
+			}
+		};
+		RealVector Atb = new ArrayRealVector(multAt(system, b), false);
+		double[] x = ((ArrayRealVector)new ConjugateGradient(100000, 1e-6, false).solve(AtA, Atb, new ArrayRealVector(x0, false))).getDataRef();
+
+		// un-normalize the tuple energies
+		for (int t=0; t<numTuples; t++) {
+			x[t] *= scale;
+		}
+		return x;
+	}
+
+	private static void assertSameFit(LUTE.LinearSystem system, double[] expectedTupleEnergies) {
+
+		assertThat(system.tupleEnergyOffset, is(Arrays.stream(system.confEnergies).min().getAsDouble()));
+		for (int t=0; t<expectedTupleEnergies.length; t++) {
+			assertThat(system.tupleEnergies[t], isAbsolutely(expectedTupleEnergies[t], 1e-3));
+		}
+
+		// the fitted conf energies should match too
+		double[] expectedConfEnergies = multA(system, expectedTupleEnergies);
+		for (int c=0; c<system.confs.size(); c++) {
+			double observed = system.errors.residual[c] + system.confEnergies[c];
+			assertThat(observed, isAbsolutely(expectedConfEnergies[c] + system.tupleEnergyOffset, 1e-4));
+		}
+	}
+
+	@Test
+	public void fitMatchesCommonsMath() {
+
+		FitCase fitCase = new FitCase();
+
+		try (ThreadPoolTaskExecutor tasks = new ThreadPoolTaskExecutor()) {
+			tasks.start(4);
+
+			// fit from scratch
+			LUTE.LinearSystem system = fitCase.sample(2);
+			system.fit(LUTE.Fitter.OLSCG, null, tasks);
+			assertSameFit(system, fitWithCommonsMath(system, null));
+
+			// add more samples and warm-start from the previous fit
+			LUTE.LinearSystem moreSystem = fitCase.sample(4);
+			assertThat(moreSystem.confs.size(), greaterThan(system.confs.size()));
+			moreSystem.fit(LUTE.Fitter.OLSCG, system.tupleEnergies, tasks);
+			assertSameFit(moreSystem, fitWithCommonsMath(moreSystem, system.tupleEnergies));
+		}
+	}
+
+	@Test(expected=LUTE.NotConvergedException.class)
+	public void fitNotConverged() {
+
+		LUTE.LinearSystem system = new FitCase().sample(2);
+		double[] Atb = multAt(system, system.confEnergies);
+
+		try (ThreadPoolTaskExecutor tasks = new ThreadPoolTaskExecutor()) {
+			tasks.start(4);
+
+			// one iteration isn't nearly enough
+			system.solveNormalEquations(Atb, new double[Atb.length], 1, 1e-12, tasks);
+		}
+	}
+
+	/** the original LUTE h-score, computed using the tuples index */
+	private static double calcNaiveHScore(LUTEConfEnergyCalculator luteEcalc, ConfIndex index, RCs rcs) {
+
+		Function<RCTuple,Double> getEnergy = (tuple) -> {
+			Integer t = luteEcalc.tuples.getIndex(tuple.sorted());
+			return t == null ? 0.0 : luteEcalc.state.tupleEnergies[t];
+		};
+
+		double hscore = 0;
+		for (int i=0; i<index.numUndefined; i++) {
+			int pos1 = index.undefinedPos[i];
+			double pos1Energy = Double.POSITIVE_INFINITY;
+			for (int rc1 : rcs.get(pos1)) {
+				double rc1Energy = getEnergy.apply(new RCTuple(pos1, rc1));
+				for (int j=0; j<index.numDefined; j++) {
+					int pos2 = index.definedPos[j];
+					int rc2 = index.definedRCs[j];
+					rc1Energy += getEnergy.apply(new RCTuple(pos1, rc1, pos2, rc2));
+					for (int k=0; k<j; k++) {
+						rc1Energy += getEnergy.apply(new RCTuple(pos1, rc1, pos2, rc2, index.definedPos[k], index.definedRCs[k]));
+					}
+				}
+				for (int j=0; j<i; j++) {
+					int pos2 = index.undefinedPos[j];
+					double minrc2Energy = Double.POSITIVE_INFINITY;
+					for (int rc2 : rcs.get(pos2)) {
+						double rc2Energy = getEnergy.apply(new RCTuple(pos1, rc1, pos2, rc2));
+						for (int k=0; k<index.numDefined; k++) {
+							rc2Energy += getEnergy.apply(new RCTuple(pos1, rc1, pos2, rc2, index.definedPos[k], index.definedRCs[k]));
+						}
+						for (int k=0; k<j; k++) {
+							int pos3 = index.undefinedPos[k];
+							double minrc3Energy = Double.POSITIVE_INFINITY;
+							for (int rc3 : rcs.get(pos3)) {
+								minrc3Energy = Math.min(minrc3Energy, getEnergy.apply(new RCTuple(pos1, rc1, pos2, rc2, pos3, rc3)));
+							}
+							rc2Energy += minrc3Energy;
+						}
+						minrc2Energy = Math.min(minrc2Energy, rc2Energy);
+					}
+					rc1Energy += minrc2Energy;
+				}
+				pos1Energy = Math.min(pos1Energy, rc1Energy);
+			}
+			hscore += pos1Energy;
+		}
+		return hscore;
+	}
 }
@@ -0,0 +1,200 @@
+package edu.duke.cs.osprey.parallelism;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import edu.duke.cs.osprey.parallelism.TaskExecutor.TaskException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+
+public class TestForkJoinTaskExecutor {
+
+	@Test
+	public void countLotsOfTimes() {
+
+		try (ForkJoinTaskExecutor tasks = new ForkJoinTaskExecutor(4, 0)) {
+
+			for (int r=0; r<1000; r++) {
+
+				int[] count = { 0 };
+
+				for (int i=0; i<4; i++) {
+					tasks.submit(
+						() -> {
+							// on worker thread: no work to do
+							return null;
+						},
+						(Void ignore) -> {
+							// listeners are never concurrent: increment counter
+							count[0]++;
+						}
+					);
+				}
+				tasks.waitForFinish();
+
+				assertThat(count[0], is(4));
+			}
+		}
+	}
+
+	@Test
+	public void submitAll() {
+
+		try (ForkJoinTaskExecutor tasks = new ForkJoinTaskExecutor(4, 0)) {
+
+			for (int r=0; r<100; r++) {
+
+				List<TaskExecutor.Task<Integer>> batch = new ArrayList<>();
+				for (int i=0; i<1000; i++) {
+					final int value = i;
+					batch.add(() -> value);
+				}
+
+				long[] sum = { 0 };
+				tasks.submitAll(batch, (Integer value) -> sum[0] += value);
+				tasks.waitForFinish();
+
+				assertThat(sum[0], is(1000L*999L/2));
+				assertThat(tasks.getNumRunningTasks(), is(0L));
+			}
+		}
+	}
+
+	@Test
+	public void handleTaskExceptionsGracefully() {
+
+		try (ForkJoinTaskExecutor tasks = new ForkJoinTaskExecutor(2, 0)) {
+
+			for (int r=0; r<100; r++) {
+
+				try {
+					for (int i=0; i<10; i++) {
+						tasks.submit(
+							() -> {
+								// crash in the task
+								throw new Error("Oh No! a Bad Thing has happened");
+							},
+							(Void ignore) -> {
+								fail("task should not finish");
+							}
+						);
+					}
+					tasks.waitForFinish();
+
+					fail("should have thrown Error");
+
+				} catch (TaskException ex) {
+
+					assertThat(tasks.getNumRunningTasks(), is(0L));
+
+					// all is well
+					continue;
+				}
+			}
+		}
+	}
+
+	@Test
+	public void handleListenerExceptionsGracefully() {
+
+		try (ForkJoinTaskExecutor tasks = new ForkJoinTaskExecutor(2, 0)) {
+
+			for (int r=0; r<100; r++) {
+
+				try {
+					List<TaskExecutor.Task<Void>> batch = new ArrayList<>();
+					for (int i=0; i<10; i++) {
+						batch.add(() -> {
+							// easiest task ever!
+							return null;
+						});
+					}
+					tasks.submitAll(batch, (Void ignore) -> {
+						// crash in the listener
+						throw new Error("Oh No! a Bad Thing has happened");
+					});
+					tasks.waitForFinish();
+
+					fail("should have thrown error");
+
+				} catch (TaskException ex) {
+
+					assertThat(tasks.getNumRunningTasks(), is(0L));
+
+					// all is well
+					continue;
+				}
+			}
+		}
+	}
+
+	@Test
+	public void trackerWaitsForOwnTasksOnly() {
+
+		try (ForkJoinTaskExecutor tasks = new ForkJoinTaskExecutor(2, 0)) {
+
+			// someone else's task is stuck
+			CountDownLatch latch = new CountDownLatch(1);
+			tasks.submit(
+				() -> {
+					try {
+						latch.await();
+					} catch (InterruptedException ex) {
+						throw new RuntimeException(ex);
+					}
+					return null;
+				},
+				(Void ignore) -> {}
+			);
+
+			// but our tasks should still finish
+			TaskExecutor.Tracker tracker = tasks.tracker();
+			int[] count = { 0 };
+			for (int i=0; i<10; i++) {
+				tracker.submit(
+					() -> null,
+					(Void ignore) -> count[0]++
+				);
+			}
+			tracker.waitForFinish();
+
+			assertThat(count[0], is(10));
+			assertThat(tracker.getNumRunningTasks(), is(0));
+			// (the executor counts a task as finished only after its listener returns)
+			assertThat(tasks.getNumRunningTasks(), greaterThanOrEqualTo(1L));
+
+			latch.countDown();
+			tasks.waitForFinish();
+		}
+	}
+
+	@Test
+	public void trackerHandleTaskExceptionsGracefully() {
+
+		try (ForkJoinTaskExecutor tasks = new ForkJoinTaskExecutor(2, 0)) {
+
+			TaskExecutor.Tracker tracker = tasks.tracker();
+			tracker.submit(
+				() -> {
+					// crash in the task
+					throw new Error("Oh No! a Bad Thing has happened");
+				},
+				(Void ignore) -> {
+					fail("task should not finish");
+				}
+			);
+
+			try {
+				tracker.waitForFinish();
+				fail("should have thrown Error");
+			} catch (TaskException ex) {
+				// all is well
+			}
+		}
+	}
+}
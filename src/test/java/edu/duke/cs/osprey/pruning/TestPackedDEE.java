@@ -0,0 +1,377 @@
+/*
+** This file is part of OSPREY 3.0
+**
+** OSPREY Protein Redesign Software Version 3.0
+** Copyright (C) 2001-2018 Bruce Donald Lab, Duke University
+**
+** OSPREY is free software: you can redistribute it and/or modify
+** it under the terms of the GNU General Public License version 2
+** as published by the Free Software Foundation.
+**
+** You should have received a copy of the GNU General Public License
+** along with OSPREY.  If not, see <http://www.gnu.org/licenses/>.
+**
+** OSPREY relies on grants for its development, and since visibility
+** in the scientific literature is essential for our success, we
+** ask that users of OSPREY cite our papers. See the CITING_OSPREY
+** document in this distribution for more information.
+**
+** Contact Info:
+**    Bruce Donald
+**    Duke University
+**    Department of Computer Science
+**    Levine Science Research Center (LSRC)
+**    Durham
+**    NC 27708-0129
+**    USA
+**    e-mail: www.cs.duke.edu/brd/
+**
+** <signature of Bruce Donald>, Mar 1, 2018
+** Bruce Donald, Professor of Computer Science
+*/
+
+package edu.duke.cs.osprey.pruning;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import edu.duke.cs.osprey.TestBase;
+import edu.duke.cs.osprey.confspace.RCTuple;
+import edu.duke.cs.osprey.confspace.SimpleConfSpace;
+import edu.duke.cs.osprey.confspace.Strand;
+import edu.duke.cs.osprey.ematrix.EnergyMatrix;
+import edu.duke.cs.osprey.parallelism.Parallelism;
+import edu.duke.cs.osprey.structure.PDBIO;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Random;
+
+
+/**
+ * Checks the packed Goldstein DEE against the original implementation that reads the tuple matrices directly.
+ *
+ * The energies are random, so lots of different things get pruned, and the pruning matrices start out
+ * with some random singles, pairs, and triples already pruned.
+ */
+public class TestPackedDEE extends TestBase {
+
+	private static SimpleConfSpace confSpace;
+	private static EnergyMatrix emat;
+
+	@BeforeClass
+	public static void beforeClass() {
+
+		// use a few different residue types at each position, so type-dependent pruning matters
+		Strand strand = new Strand.Builder(PDBIO.readResource("/1CC8.ss.pdb")).build();
+		for (String resNum : new String[] { "A2", "A3", "A4", "A5", "A6" }) {
+			strand.flexibility.get(resNum).setLibraryRotamers("ALA", "VAL", "THR");
+		}
+		confSpace = new SimpleConfSpace.Builder()
+			.addStrand(strand)
+			.build();
+
+		// singles mostly decide the pruning, but pairs can change it
+		Random rand = new Random(12345);
+		emat = new EnergyMatrix(confSpace);
+		for (int pos1=0; pos1<emat.getNumPos(); pos1++) {
+			for (int rc1=0; rc1<emat.getNumConfAtPos(pos1); rc1++) {
+				emat.setOneBody(pos1, rc1, rand.nextDouble()*10.0 - 5.0);
+				for (int pos2=0; pos2<pos1; pos2++) {
+					for (int rc2=0; rc2<emat.getNumConfAtPos(pos2); rc2++) {
+						emat.setPairwise(pos1, rc1, pos2, rc2, rand.nextDouble()*4.0 - 2.0);
+					}
+				}
+			}
+		}
+	}
+
+	private static PruningMatrix makePmat(long seed, double prunedFraction) {
+		Random rand = new Random(seed);
+		PruningMatrix pmat = new PruningMatrix(confSpace);
+		for (int pos1=0; pos1<pmat.getNumPos(); pos1++) {
+			for (int rc1=0; rc1<pmat.getNumConfAtPos(pos1); rc1++) {
+				if (rand.nextDouble() < prunedFraction) {
+					// don't fold pruned singles into the pairs, so DEE has to check the singles itself
+					pmat.setOneBody(pos1, rc1, true);
+				}
+				for (int pos2=0; pos2<pos1; pos2++) {
+					for (int rc2=0; rc2<pmat.getNumConfAtPos(pos2); rc2++) {
+						if (rand.nextDouble() < prunedFraction) {
+							pmat.prunePair(pos1, rc1, pos2, rc2);
+						}
+						for (int pos3=0; pos3<pos2; pos3++) {
+							for (int rc3=0; rc3<pmat.getNumConfAtPos(pos3); rc3++) {
+								if (rand.nextDouble() < prunedFraction) {
+									pmat.pruneTriple(pos1, rc1, pos2, rc2, pos3, rc3);
+								}
+							}
+						}
+					}
+				}
+			}
+		}
+		return pmat;
+	}
+
+	private static String getType(int pos, int rc) {
+		return confSpace.positions.get(pos).resConfs.get(rc).template.name;
+	}
+
+	/** the original pair Goldstein DEE, run serially */
+	private static void prunePairsGoldsteinTuples(PruningMatrix pmat, PruningMatrix competitors, double energyDiffThreshold, boolean typeDependent) {
+
+		pmat.forEachUnprunedPair((candidatePos1, candidateRc1, candidatePos2, candidateRc2) -> {
+
+			// can we find a competitor rc that has much lower energy?
+			PruningMatrix.IteratorCommand result = competitors.forEachUnprunedPairAt(candidatePos1, candidatePos2, (competitorPos1, competitorRc1, competitorPos2, competitorRc2) -> {
+
+				// don't compete against self
+				if (competitorRc1 == candidateRc1 && competitorRc2 == candidateRc2) {
+					return PruningMatrix.IteratorCommand.Continue;
+				}
+
+				// skip unmatched types if needed
+				if (typeDependent) {
+					if (!getType(candidatePos1, candidateRc1).equals(getType(competitorPos1, competitorRc1))
+						|| !getType(candidatePos2, candidateRc2).equals(getType(competitorPos2, competitorRc2))) {
+						return PruningMatrix.IteratorCommand.Continue;
+					}
+				}
+
+				// start with fragment energy diff
+				double energyDiffSum = 0
+					+ emat.getOneBody(candidatePos1, candidateRc1)
+					+ emat.getOneBody(candidatePos2, candidateRc2)
+					+ emat.getPairwise(candidatePos1, candidateRc1, candidatePos2, candidateRc2)
+					- emat.getOneBody(competitorPos1, competitorRc1)
+					- emat.getOneBody(competitorPos2, competitorRc2)
+					- emat.getPairwise(competitorPos1, competitorRc1, competitorPos2, competitorRc2);
+
+				// sum over witness positions
+				for (int witnessPos=0; witnessPos<confSpace.positions.size(); witnessPos++) {
+
+					// witness pos can't be candidate pos
+					if (witnessPos == candidatePos1 || witnessPos == candidatePos2) {
+						continue;
+					}
+
+					// min over witness rcs
+					double minEnergyDiff = Double.POSITIVE_INFINITY;
+					for (int witnessRc=0; witnessRc<emat.getNumConfAtPos(witnessPos); witnessRc++) {
+
+						// skip pruned witnesses
+						if (pmat.isPairPruned(candidatePos1, candidateRc1, witnessPos, witnessRc)
+							|| pmat.isPairPruned(candidatePos2, candidateRc2, witnessPos, witnessRc)) {
+							continue;
+						}
+
+						// compute the energy diff between the candidate and competitor, from the point of view of the witness
+						double energyDiff = 0
+							+ emat.getPairwise(candidatePos1, candidateRc1, witnessPos, witnessRc)
+							+ emat.getPairwise(candidatePos2, candidateRc2, witnessPos, witnessRc)
+							- emat.getPairwise(competitorPos1, competitorRc1, witnessPos, witnessRc)
+							- emat.getPairwise(competitorPos2, competitorRc2, witnessPos, witnessRc);
+						minEnergyDiff = Math.min(minEnergyDiff, energyDiff);
+					}
+					energyDiffSum += minEnergyDiff;
+					if (energyDiffSum == Double.POSITIVE_INFINITY) {
+						break;
+					}
+				}
+
+				if (energyDiffSum > energyDiffThreshold) {
+					return PruningMatrix.IteratorCommand.Break;
+				} else {
+					return PruningMatrix.IteratorCommand.Continue;
+				}
+			});
+
+			// if the iteration terminated early (ie, we found a suitable competitor), then prune the candidate
+			if (result == PruningMatrix.IteratorCommand.Break) {
+				pmat.prunePair(candidatePos1, candidateRc1, candidatePos2, candidateRc2);
+			}
+
+			return PruningMatrix.IteratorCommand.Continue;
+		});
+	}
+
+	/** the original triple Goldstein DEE, run serially */
+	private static void pruneTriplesGoldsteinTuples(PruningMatrix pmat, PruningMatrix competitors, double energyDiffThreshold, boolean typeDependent) {
+
+		pmat.forEachUnprunedTriple((candidatePos1, candidateRc1, candidatePos2, candidateRc2, candidatePos3, candidateRc3) -> {
+
+			// can we find a competitor rc that has much lower energy?
+			PruningMatrix.IteratorCommand result = competitors.forEachUnprunedTripleAt(candidatePos1, candidatePos2, candidatePos3, (competitorPos1, competitorRc1, competitorPos2, competitorRc2, competitorPos3, competitorRc3) -> {
+
+				// don't compete against self
+				if (competitorRc1 == candidateRc1 && competitorRc2 == candidateRc2 && competitorRc3 == candidateRc3) {
+					return PruningMatrix.IteratorCommand.Continue;
+				}
+
+				// skip unmatched types if needed
+				if (typeDependent) {
+					if (!getType(candidatePos1, candidateRc1).equals(getType(competitorPos1, competitorRc1))
+						|| !getType(candidatePos2, candidateRc2).equals(getType(competitorPos2, competitorRc2))
+						|| !getType(candidatePos3, candidateRc3).equals(getType(competitorPos3, competitorRc3))) {
+						return PruningMatrix.IteratorCommand.Continue;
+					}
+				}
+
+				// start with fragment energy diff
+				double energyDiffSum = 0
+					+ emat.getOneBody(candidatePos1, candidateRc1)
+					+ emat.getOneBody(candidatePos2, candidateRc2)
+					+ emat.getOneBody(candidatePos3, candidateRc3)
+					+ emat.getPairwise(candidatePos1, candidateRc1, candidatePos2, candidateRc2)
+					+ emat.getPairwise(candidatePos1, candidateRc1, candidatePos3, candidateRc3)
+					+ emat.getPairwise(candidatePos2, candidateRc2, candidatePos3, candidateRc3)
+					- emat.getOneBody(competitorPos1, competitorRc1)
+					- emat.getOneBody(competitorPos2, competitorRc2)
+					- emat.getOneBody(competitorPos3, competitorRc3)
+					- emat.getPairwise(competitorPos1, competitorRc1, competitorPos2, competitorRc2)
+					- emat.getPairwise(competitorPos1, competitorRc1, competitorPos3, competitorRc3)
+					- emat.getPairwise(competitorPos2, competitorRc2, competitorPos3, competitorRc3);
+
+				// sum over witness positions
+				for (int witnessPos=0; witnessPos<confSpace.positions.size(); witnessPos++) {
+
+					// witness pos can't be candidate pos
+					if (witnessPos == candidatePos1 || witnessPos == candidatePos2 || witnessPos == candidatePos3) {
+						continue;
+					}
+
+					// min over witness rcs
+					double minEnergyDiff = Double.POSITIVE_INFINITY;
+					for (int witnessRc=0; witnessRc<emat.getNumConfAtPos(witnessPos); witnessRc++) {
+
+						// skip pruned witnesses
+						if (pmat.isPairPruned(candidatePos1, candidateRc1, witnessPos, witnessRc)
+							|| pmat.isPairPruned(candidatePos2, candidateRc2, witnessPos, witnessRc)
+							|| pmat.isPairPruned(candidatePos3, candidateRc3, witnessPos, witnessRc)) {
+							continue;
+						}
+
+						// compute the energy diff between the candidate and competitor, from the point of view of the witness
+						double energyDiff = 0
+							+ emat.getPairwise(candidatePos1, candidateRc1, witnessPos, witnessRc)
+							+ emat.getPairwise(candidatePos2, candidateRc2, witnessPos, witnessRc)
+							+ emat.getPairwise(candidatePos3, candidateRc3, witnessPos, witnessRc)
+							- emat.getPairwise(competitorPos1, competitorRc1, witnessPos, witnessRc)
+							- emat.getPairwise(competitorPos2, competitorRc2, witnessPos, witnessRc)
+							- emat.getPairwise(competitorPos3, competitorRc3, witnessPos, witnessRc);
+						minEnergyDiff = Math.min(minEnergyDiff, energyDiff);
+					}
+					energyDiffSum += minEnergyDiff;
+					if (energyDiffSum == Double.POSITIVE_INFINITY) {
+						break;
+					}
+				}
+
+				if (energyDiffSum > energyDiffThreshold) {
+					return PruningMatrix.IteratorCommand.Break;
+				} else {
+					return PruningMatrix.IteratorCommand.Continue;
+				}
+			});
+
+			// if the iteration terminated early (ie, we found a suitable competitor), then prune the candidate
+			if (result == PruningMatrix.IteratorCommand.Break) {
+				pmat.pruneTriple(candidatePos1, candidateRc1, candidatePos2, candidateRc2, candidatePos3, candidateRc3);
+			}
+
+			return PruningMatrix.IteratorCommand.Continue;
+		});
+	}
+
+	private static void assertSamePmat(PruningMatrix observed, PruningMatrix expected) {
+
+		RCTuple triple = new RCTuple(0, 0, 0, 0, 0, 0);
+		for (int pos1=0; pos1<expected.getNumPos(); pos1++) {
+			for (int rc1=0; rc1<expected.getNumConfAtPos(pos1); rc1++) {
+				assertThat(observed.getOneBody(pos1, rc1), is(expected.getOneBody(pos1, rc1)));
+				for (int pos2=0; pos2<pos1; pos2++) {
+					for (int rc2=0; rc2<expected.getNumConfAtPos(pos2); rc2++) {
+						assertThat(observed.getPairwise(pos1, rc1, pos2, rc2), is(expected.getPairwise(pos1, rc1, pos2, rc2)));
+						for (int pos3=0; pos3<pos2; pos3++) {
+							for (int rc3=0; rc3<expected.getNumConfAtPos(pos3); rc3++) {
+								triple.set(pos3, rc3, pos2, rc2, pos1, rc1);
+								assertThat(observed.getTuple(triple), is(expected.getTuple(triple)));
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private static void assertPairs(double energyDiffThreshold, boolean typeDependent, boolean separateCompetitors) {
+
+		PruningMatrix expected = makePmat(42, 0.1);
+		PruningMatrix expectedCompetitors = separateCompetitors ? makePmat(7, 0.2) : expected;
+		prunePairsGoldsteinTuples(expected, expectedCompetitors, energyDiffThreshold, typeDependent);
+
+		PruningMatrix observed = makePmat(42, 0.1);
+		PruningMatrix observedCompetitors = separateCompetitors ? makePmat(7, 0.2) : observed;
+		new SimpleDEE(confSpace, emat, observed, observedCompetitors)
+			.prunePairsGoldstein(energyDiffThreshold, typeDependent, Parallelism.makeCpu(1));
+
+		// make sure the test actually pruned something
+		assertThat(expected.countPrunedPairs(), greaterThan(makePmat(42, 0.1).countPrunedPairs()));
+
+		assertSamePmat(observed, expected);
+	}
+
+	private static void assertTriples(double energyDiffThreshold, boolean typeDependent, boolean separateCompetitors, Parallelism parallelism) {
+
+		PruningMatrix expected = makePmat(42, 0.1);
+		PruningMatrix expectedCompetitors = separateCompetitors ? makePmat(7, 0.2) : expected;
+		pruneTriplesGoldsteinTuples(expected, expectedCompetitors, energyDiffThreshold, typeDependent);
+
+		// triples at different positions don't affect each other, so the result shouldn't depend on the parallelism
+		PruningMatrix observed = makePmat(42, 0.1);
+		PruningMatrix observedCompetitors = separateCompetitors ? makePmat(7, 0.2) : observed;
+		new SimpleDEE(confSpace, emat, observed, observedCompetitors)
+			.pruneTriplesGoldstein(energyDiffThreshold, typeDependent, parallelism);
+
+		// make sure the test actually pruned something
+		assertThat(expected.countPrunedTriples(), greaterThan(makePmat(42, 0.1).countPrunedTriples()));
+
+		assertSamePmat(observed, expected);
+	}
+
+	@Test
+	public void pairs() {
+		assertPairs(0.0, false, false);
+	}
+
+	@Test
+	public void pairsTypeDependent() {
+		assertPairs(0.0, true, false);
+	}
+
+	@Test
+	public void pairsCompetitors() {
+		assertPairs(0.0, false, true);
+	}
+
+	@Test
+	public void triples() {
+		assertTriples(0.0, false, false, Parallelism.makeCpu(1));
+	}
+
+	@Test
+	public void triplesTypeDependent() {
+		assertTriples(0.0, true, false, Parallelism.makeCpu(1));
+	}
+
+	@Test
+	public void triplesCompetitors() {
+		assertTriples(0.0, false, true, Parallelism.makeCpu(1));
+	}
+
+	@Test
+	public void triplesParallel() {
+		assertTriples(0.0, false, true, Parallelism.makeCpu(4));
+	}
+}
@@ -455,6 +455,51 @@ public class TestFringeDB {
 		}
 	}
 
+	@Test
+	public void manyChunksWrapAround() {
+
+		MultiStateConfSpace confSpace = makeConfSpace();
+		MultiStateConfSpace.State state = confSpace.states.get(0);
+
+		try (TempFile file = new TempFile("fringe.db")) {
+			try (FringeDB db = FringeDB.create(confSpace, file, 4*1024*1024)) {
+
+				// write enough nodes to need several read chunks, and so the sweeps wrap around the end of the file
+				int numNodes = (int)(db.getCapacity()*3/4);
+
+				FringeDB.Transaction tx = db.transaction();
+				for (int i=0; i<numNodes; i++) {
+					if (!tx.txHasRoomFor(1)) {
+						tx.commit();
+					}
+					tx.writeRootNode(state, new BigExp(i));
+				}
+				tx.commit();
+				db.finishStep();
+				assertThat(db.getNumNodes(), is((long)numNodes));
+
+				for (int sweep=0; sweep<3; sweep++) {
+
+					// read all the nodes back in order and keep them
+					tx = db.transaction();
+					for (int i=0; i<numNodes; i++) {
+						tx.readNode();
+						assertThat(tx.state().index, is(state.index));
+						assertThat(tx.zSumUpper(), is(new BigExp(i)));
+						if (!tx.txHasRoomFor(1)) {
+							tx.commit();
+						}
+						tx.writeReplacementNode(tx.state(), tx.conf(), tx.zSumUpper());
+					}
+					assertThat(tx.hasNodesToRead(), is(false));
+					tx.commit();
+					db.finishStep();
+					assertThat(db.getNumNodes(), is((long)numNodes));
+				}
+			}
+		}
+	}
+
 	private static MultiStateConfSpace makeConfSpace() {
 
 		Molecule pdb = PDBIO.readResource("/1CC8.ss.pdb");
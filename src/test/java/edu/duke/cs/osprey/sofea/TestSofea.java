@@ -586,6 +586,38 @@ public class TestSofea {
 			1024
 		);
 	}
+	@Test
+	public void test_Binding1CC8Mut2Flex1_AllOnPairs_TripleCorrections_MultiStepHiMem_4Threads_Batched() {
+		stepUntilExhaustion(
+			Designs.Binding1CC8Mut2Flex1_AllOnPairs_TripleCorrections.get(),
+			5.0,
+			1024*1024,
+			4,
+			8,
+			TestSofea::assertResults_Binding1CC8Mut2Flex1_AllOnPairs
+		);
+	}
+	@Test
+	public void test_Binding1CC8Mut2Flex1_AllOnPairs_TripleCorrections_MultiStepLoMem_4Threads_Batched() {
+		stepUntilExhaustion(
+			Designs.Binding1CC8Mut2Flex1_AllOnPairs_TripleCorrections.get(),
+			5.0,
+			1024,
+			4,
+			8,
+			TestSofea::assertResults_Binding1CC8Mut2Flex1_AllOnPairs
+		);
+	}
+	@Test
+	public void test_Binding1CC8Mut2Flex1_AllOnPairs_TripleCorrections_MultiStepHiMem_RCInfo_4Threads_Batched() {
+		stepUntilExhaustionAndCheckRCInfo(
+			Designs.Binding1CC8Mut2Flex1_AllOnPairs_TripleCorrections.get(),
+			5.0,
+			1024*1024,
+			4,
+			8
+		);
+	}
 
 
 	/** brute forces every node in the tree and calls the supplied block with a ConfIndex instance describing the node */
@@ -860,6 +892,10 @@ public class TestSofea {
 	}
 
 	public void stepUntilExhaustion(Design design, double sweepIncrement, long fringeDBBytes, int numThreads, IntermediateChecker checker) {
+		stepUntilExhaustion(design, sweepIncrement, fringeDBBytes, numThreads, 1, checker);
+	}
+
+	public void stepUntilExhaustion(Design design, double sweepIncrement, long fringeDBBytes, int numThreads, int sweepBatchSize, IntermediateChecker checker) {
 		try (TempFile fringedbLowerFile = new TempFile(tmpdir, "fringe.lower.db")) {
 		try (TempFile fringedbUpperFile = new TempFile(tmpdir, "fringe.upper.db")) {
 		try (TempFile seqdbFile = new TempFile(tmpdir, "seq.db")) {
@@ -872,6 +908,7 @@ public class TestSofea {
 				.setFringeDBUpperBytes(fringeDBBytes)
 				.setSeqDBFile(seqdbFile)
 				.setSweepIncrement(sweepIncrement)
+				.setSweepBatchSize(sweepBatchSize)
 				.configEachState(state -> design.configState(state, ecalcs))
 				.build();
 
@@ -910,11 +947,15 @@ public class TestSofea {
 	}
 
 	public void stepUntilExhaustionAndCheckRCInfo(Design design, double sweepIncrement, long fringeDBBytes) {
+		stepUntilExhaustionAndCheckRCInfo(design, sweepIncrement, fringeDBBytes, 1, 1);
+	}
+
+	public void stepUntilExhaustionAndCheckRCInfo(Design design, double sweepIncrement, long fringeDBBytes, int numThreads, int sweepBatchSize) {
 		try (TempFile fringedbLowerFile = new TempFile(tmpdir, "fringe.lower.db")) {
 		try (TempFile fringedbUpperFile = new TempFile(tmpdir, "fringe.upper.db")) {
 		try (TempFile seqdbFile = new TempFile(tmpdir, "seq.db")) {
 		try (TempFile rcdbFile = new TempFile(tmpdir, "rc.db")) {
-		try (Ecalcs ecalcs = design.makeEcalcs(Parallelism.makeCpu(1))) {
+		try (Ecalcs ecalcs = design.makeEcalcs(Parallelism.makeCpu(numThreads))) {
 
 			Sofea sofea = new Sofea.Builder(design.confSpace)
 				.setFringeDBLowerFile(fringedbLowerFile)
@@ -924,6 +965,7 @@ public class TestSofea {
 				.setSeqDBFile(seqdbFile)
 				.setRCDBFile(rcdbFile)
 				.setSweepIncrement(sweepIncrement)
+				.setSweepBatchSize(sweepBatchSize)
 				.setNegligableFreeEnergy(10.0)
 				.configEachState(state -> design.configState(state, ecalcs))
 				.build();
@@ -402,6 +402,78 @@ public class TestBigExp {
 		assertBigExp(mult.apply(new BigExp(-8.43e-200), new BigExp(3.92e-200)), "-3.30e-399");
 	}
 
+	@Test
+	public void addFast() {
+
+		BiFunction<BigExp,BigExp,BigExp> add = (a, b) -> {
+			BigExp out = new BigExp(a);
+			out.addFast(b);
+			return out;
+		};
+
+		assertBigExp(add.apply(new BigExp(0.0, 0), new BigExp(0.0, 0)), "0.00e0");
+		assertBigExp(add.apply(new BigExp(3.29, -1000), new BigExp(0.0, 0)), "3.29e-1000");
+		assertBigExp(add.apply(new BigExp(0.0, 0), new BigExp(3.29, 1000)), "3.29e1000");
+
+		assertBigExp(add.apply(new BigExp(1.0, 0), new BigExp(1.0, 0)), "2.00e0");
+		assertBigExp(add.apply(new BigExp(8.43, 0), new BigExp(3.91, 0)), "1.23e1");
+		assertBigExp(add.apply(new BigExp(8.43, 1000), new BigExp(3.91, 1000)), "1.23e1001");
+		assertBigExp(add.apply(new BigExp(8.43, -1000), new BigExp(3.91, -1000)), "1.23e-999");
+		assertBigExp(add.apply(new BigExp(8.43, 1000), new BigExp(3.92, 999)), "8.82e1000");
+		assertBigExp(add.apply(new BigExp(8.43, 999), new BigExp(3.92, 1000)), "4.76e1000");
+		assertBigExp(add.apply(new BigExp(8.43, 0), new BigExp(-3.92, 0)), "4.51e0");
+		assertBigExp(add.apply(new BigExp(8.43e200), new BigExp(8.43e200)), "1.69e201");
+
+		// too small to change the sum
+		assertBigExp(add.apply(new BigExp(8.43, 1000), new BigExp(3.92, 900)), "8.43e1000");
+		assertBigExp(add.apply(new BigExp(8.43, 900), new BigExp(3.92, 1000)), "3.92e1000");
+
+		// infinities
+		assertBigExp(add.apply(new BigExp(Double.POSITIVE_INFINITY), new BigExp(3.92, 1000)), "Infinity");
+		assertBigExp(add.apply(new BigExp(3.92, 1000), new BigExp(Double.POSITIVE_INFINITY)), "Infinity");
+
+		// should match the BigDecimal-based add to double precision
+		for (int exp : new int[] { -1000, -100, -16, -10, -1, 0, 1, 10, 16, 100, 1000 }) {
+			BigExp a = new BigExp(1.234567890123, 0);
+			BigExp b = new BigExp(9.876543210987, exp);
+			BigExp slow = new BigExp(a);
+			slow.add(b);
+			BigExp fast = new BigExp(a);
+			fast.addFast(b);
+			// compare the BigDecimals directly, since doubles can't hold the big exponents
+			BigDecimal fastVal = fast.toBigDecimal();
+			BigDecimal slowVal = slow.toBigDecimal();
+			double relErr = fastVal.subtract(slowVal).abs().divide(slowVal.abs(), MathContext.DECIMAL64).doubleValue();
+			assertThat("exp: " + exp, relErr, lessThanOrEqualTo(1e-14));
+		}
+
+		// shouldn't change the argument, which might be shared with other threads
+		BigExp a = new BigExp(1.234567890123, 0);
+		BigExp b = new BigExp(987.6543210987, 10);
+		double fp = b.fp;
+		int exp = b.exp;
+		a.addFast(b);
+		a.subFast(b);
+		assertThat(b.fp, is(fp));
+		assertThat(b.exp, is(exp));
+	}
+
+	@Test
+	public void subFast() {
+
+		BiFunction<BigExp,BigExp,BigExp> sub = (a, b) -> {
+			BigExp out = new BigExp(a);
+			out.subFast(b);
+			return out;
+		};
+
+		assertBigExp(sub.apply(new BigExp(8.43, 0), new BigExp(3.92, 0)), "4.51e0");
+		assertBigExp(sub.apply(new BigExp(3.92, 0), new BigExp(8.43, 0)), "-4.51e0");
+		assertBigExp(sub.apply(new BigExp(8.43, 1000), new BigExp(8.43, 1000)), "0.00e0");
+		assertBigExp(sub.apply(new BigExp(8.43, 1000), new BigExp(3.92, 999)), "8.04e1000");
+		assertBigExp(sub.apply(new BigExp(Double.POSITIVE_INFINITY), new BigExp(3.92, 1000)), "Infinity");
+	}
+
 	@Test
 	public void compare() {
 